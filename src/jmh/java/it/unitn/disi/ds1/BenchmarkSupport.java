@@ -0,0 +1,73 @@
+package it.unitn.disi.ds1;
+
+import akka.actor.AbstractActor;
+import akka.actor.ActorRef;
+import it.unitn.disi.ds1.messages.ReadMessage;
+import it.unitn.disi.ds1.messages.ResponseMessage;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.StreamHandler;
+
+/**
+ * Support of the microbenchmarks: the actors standing for the rest of the tree and the setup of the loggers
+ */
+public class BenchmarkSupport {
+    /**
+     * Actor which drops every message, it stands for the children and the clients of the benchmarked cache
+     */
+    public static class Sink extends AbstractActor {
+        @Override
+        public Receive createReceive() {
+            return receiveBuilder().matchAny(msg -> {
+            }).build();
+        }
+    }
+
+    /**
+     * Actor which answers to every read with an error response, it stands for the parent of the benchmarked cache
+     * Since the error is not stored, every read of a key not cached by the cache is a miss
+     */
+    public static class Parent extends AbstractActor {
+        @Override
+        public Receive createReceive() {
+            return receiveBuilder().match(ReadMessage.class, msg -> {
+                List<ActorRef> hops = new ArrayList<>(msg.hops);
+                hops.remove(hops.size() - 1);
+                getSender().tell(new ResponseMessage(null, hops, msg.queryUUID, Config.RequestType.READ,
+                        msg.isCritical, -1), getSelf());
+            }).matchAny(msg -> {
+            }).build();
+        }
+    }
+
+    /**
+     * Silence the debug logger and make the checker logger format its records without writing them to disk,
+     * hence the benchmarks pay the formatting of the log lines but not the I/O
+     */
+    public static void discardLogs() {
+        Logger.DEBUG.setLevel(Level.OFF);
+
+        java.util.logging.Logger check = java.util.logging.Logger.getLogger("check-solution-logger");
+        for (Handler handler : check.getHandlers()) {
+            check.removeHandler(handler);
+            handler.close();
+        }
+        StreamHandler discard = new StreamHandler(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }, new VerySimpleFormatter());
+        discard.setLevel(Level.ALL);
+        check.addHandler(discard);
+        check.setUseParentHandlers(false);
+        check.setLevel(Level.ALL);
+    }
+}
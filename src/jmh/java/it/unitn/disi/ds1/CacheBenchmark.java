@@ -0,0 +1,145 @@
+package it.unitn.disi.ds1;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.testkit.TestActorRef;
+import it.unitn.disi.ds1.actors.Cache;
+import it.unitn.disi.ds1.messages.JoinCachesMessage;
+import it.unitn.disi.ds1.messages.ReadMessage;
+import it.unitn.disi.ds1.messages.ResponseMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Microbenchmarks of the handlers of an L1 cache
+ * <p>
+ * The cache is a {@link TestActorRef}, hence each message is handled synchronously by the benchmark thread, and
+ * the simulated network delay is disabled. The fork pins the periods of the heartbeats, of the hot keys, of the
+ * metrics and of the anti-entropy rounds to 0, so that no timer of the cache interleaves with the measured handlers,
+ * and the times to live as well, so that the hits are not turned into refreshes or misses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Dds1.networkDelayMs=0", "-Dds1.heartbeatIntervalMs=0",
+        "-Dds1.hotKeysIntervalMs=0", "-Dds1.metricsPublishIntervalMs=0", "-Dds1.antiEntropyIntervalMs=0",
+        "-Dds1.cacheSoftTtlMs=0", "-Dds1.cacheHardTtlMs=0"})
+public class CacheBenchmark {
+    /**
+     * Number of keys stored by the cache
+     */
+    private final static int CACHED_KEYS = 64;
+
+    /**
+     * Number of keys which are never stored by the cache
+     */
+    private final static int MISSED_KEYS = 64;
+
+    /**
+     * Number of children of the cache
+     */
+    private final static int CHILDREN = 4;
+
+    private ActorSystem system;
+    private TestActorRef<Cache> cache;
+    private ActorRef parent;
+    private ActorRef child;
+    private List<ActorRef> hops;
+    private ReadMessage[] hits;
+    private ReadMessage[] misses;
+    private int next;
+    private int seqno;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkSupport.discardLogs();
+        this.system = ActorSystem.create("benchmark");
+
+        // Actor names end with the identifier, as in the architecture
+        this.parent = TestActorRef.create(this.system, Props.create(BenchmarkSupport.Parent.class), "database-0");
+        this.cache = TestActorRef.create(this.system, Cache.props(1, this.parent, this.parent), "l1-cache-0-1");
+        List<ActorRef> children = new ArrayList<>();
+        for (int i = 0; i < CHILDREN; i++) {
+            children.add(TestActorRef.create(this.system, Props.create(BenchmarkSupport.Sink.class),
+                    "l2-cache-0-" + i + "-" + (i + 2)));
+        }
+        this.child = children.get(0);
+        this.cache.tell(new JoinCachesMessage(children), ActorRef.noSender());
+
+        // Reads coming from the first child on behalf of a client
+        ActorRef client = TestActorRef.create(this.system, Props.create(BenchmarkSupport.Sink.class),
+                "client-0-" + (CHILDREN + 2));
+        this.hops = Arrays.asList(client, this.child);
+        this.hits = new ReadMessage[CACHED_KEYS];
+        this.misses = new ReadMessage[MISSED_KEYS];
+        for (int i = 0; i < CACHED_KEYS; i++) {
+            this.hits[i] = new ReadMessage(i, this.hops, UUID.randomUUID(), false, -1);
+        }
+        for (int i = 0; i < MISSED_KEYS; i++) {
+            this.misses[i] = new ReadMessage(CACHED_KEYS + i, this.hops, null, false, -1);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void storeEntries() {
+        // A response the cache is not waiting for is stored without being forwarded
+        this.seqno++;
+        for (int key = 0; key < CACHED_KEYS; key++) {
+            this.cache.tell(new ResponseMessage(Collections.singletonMap(key, key),
+                    Collections.singletonList(this.child), UUID.randomUUID(), Config.RequestType.READ, false,
+                    this.seqno), this.parent);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.system.terminate();
+    }
+
+    /**
+     * Read of a stored key, answered by the cache
+     */
+    @Benchmark
+    public void readHit() {
+        this.cache.tell(this.hits[this.next++ % CACHED_KEYS], this.child);
+    }
+
+    /**
+     * Read of a key which is not stored, forwarded to the parent whose error response is forwarded back
+     */
+    @Benchmark
+    public void readMiss() {
+        this.cache.tell(this.misses[this.next++ % MISSED_KEYS], this.child);
+    }
+
+    /**
+     * Response of a write on a stored key, sent back to the child on the path of the write and batched for the
+     * other children
+     */
+    @Benchmark
+    public void writePropagation() {
+        int key = this.next++ % CACHED_KEYS;
+        this.cache.tell(new ResponseMessage(Collections.singletonMap(key, this.next), this.hops, UUID.randomUUID(),
+                Config.RequestType.WRITE, false, ++this.seqno), this.parent);
+    }
+}
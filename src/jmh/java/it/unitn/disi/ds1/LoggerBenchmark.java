@@ -0,0 +1,42 @@
+package it.unitn.disi.ds1;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Microbenchmark of the log line written for the consistency checks on every hop of a request
+ * The line is formatted and handled, but not written to disk
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dds1.networkDelayMs=0")
+public class LoggerBenchmark {
+    private UUID queryUUID;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkSupport.discardLogs();
+        this.queryUUID = UUID.randomUUID();
+    }
+
+    @Benchmark
+    public void logCheck() {
+        Logger.logCheck(java.util.logging.Level.FINE, 1, 2, Config.RequestType.READ, true, 42, 7, 3,
+                "Response read for key [CRIT: false]", this.queryUUID);
+    }
+}
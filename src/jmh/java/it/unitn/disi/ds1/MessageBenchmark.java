@@ -0,0 +1,70 @@
+package it.unitn.disi.ds1;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import it.unitn.disi.ds1.messages.ReadMessage;
+import it.unitn.disi.ds1.messages.ResponseMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Microbenchmarks of the construction of the messages exchanged on each hop of a request
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dds1.networkDelayMs=0")
+public class MessageBenchmark {
+    private ActorSystem system;
+    private List<ActorRef> hops;
+    private Map<Integer, Integer> values;
+    private UUID queryUUID;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.system = ActorSystem.create("benchmark");
+        // Hops of a read which has reached the database through an L2 and an L1 cache
+        this.hops = Arrays.asList(
+                this.system.actorOf(Props.create(BenchmarkSupport.Sink.class), "client-0-3"),
+                this.system.actorOf(Props.create(BenchmarkSupport.Sink.class), "l2-cache-0-0-2"),
+                this.system.actorOf(Props.create(BenchmarkSupport.Sink.class), "l1-cache-0-1")
+        );
+        this.values = Collections.singletonMap(42, 7);
+        this.queryUUID = UUID.randomUUID();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.system.terminate();
+    }
+
+    @Benchmark
+    public ReadMessage readMessage() {
+        return new ReadMessage(42, this.hops, this.queryUUID, false, 3);
+    }
+
+    @Benchmark
+    public ResponseMessage responseMessage() {
+        return new ResponseMessage(this.values, this.hops, this.queryUUID, Config.RequestType.READ, false, 3);
+    }
+}
@@ -30,15 +30,73 @@ public class Config {
     public final static Random RANDOM = new Random();
 
     /**
-     * Network delay in milliseconds
+     * Network delay in milliseconds, it can be overridden with the ds1.networkDelayMs system property
+     * 0 disables the simulated delay, as the microbenchmarks do
      */
-    public final static int NETWORK_DELAY_MS = 10;
+    public final static int NETWORK_DELAY_MS = Integer.getInteger("ds1.networkDelayMs", 10);
 
     /**
      * Timeout after which the client will make a request to a new cache
+     * It is the initial timeout, then it adapts to the round trip times observed with each cache
      */
     public final static int CLIENT_TIMEOUT = 1500;
 
+    /**
+     * Time left to a cache, after its own timeout has fired, to answer the client
+     */
+    public final static int CLIENT_TIMEOUT_MARGIN = 200;
+
+    /**
+     * Floor of the adaptive client timeout
+     * It is longer than the ceilings of the timeouts of the caches, so that the client does not give up on a
+     * request which the caches are still able to serve
+     */
+    public final static int CLIENT_TIMEOUT_MIN = Math.max(Config.L2_TIMEOUT_MAX, Config.CRIT_WRITE_TIME_OUT_MAX) +
+            CLIENT_TIMEOUT_MARGIN;
+
+    /**
+     * Ceiling of the adaptive client timeout
+     */
+    public final static int CLIENT_TIMEOUT_MAX = 3000;
+
+    /**
+     * Whether the clients send a duplicate of a READ or CRITREAD to another cache when it is slower than usual
+     * Disabled by default, it can be enabled with the ds1.hedgedReads system property
+     */
+    public final static boolean HEDGED_READS = Boolean.getBoolean("ds1.hedgedReads");
+
+    /**
+     * Percentile of the observed latencies of an operation type after which a read is hedged
+     */
+    public final static double HEDGE_PERCENTILE = 0.95;
+
+    /**
+     * Number of latencies of an operation type a client remembers to compute the percentile
+     */
+    public final static int HEDGE_LATENCY_WINDOW = 100;
+
+    /**
+     * Number of latencies of an operation type a client has to observe before hedging
+     */
+    public final static int HEDGE_MIN_SAMPLES = 10;
+
+    /**
+     * Hedged reads a client is allowed to send per read, which caps the extra load they cause
+     */
+    public final static double HEDGE_BUDGET = 0.1;
+
+    /**
+     * Number of values a client keeps in its near cache, 0 disables the near cache
+     * Disabled by default, it can be enabled with the ds1.nearCacheSize system property
+     */
+    public final static int NEAR_CACHE_SIZE = Integer.getInteger("ds1.nearCacheSize", 0);
+
+    /**
+     * Milliseconds during which a client serves a value from its near cache
+     * It bounds the staleness of the values whose invalidation has been lost with a crash of an L2 cache
+     */
+    public final static int NEAR_CACHE_TTL_MS = 1000;
+
     /**
      * Minimum milliseconds to wait to recover a crash
      */
@@ -51,14 +109,407 @@ public class Config {
 
     /**
      * Timeout after which the L2 cache will become a new L1 cache
+     * It is the initial timeout, then it adapts to the round trip times observed with the parent
      */
     public final static int L2_TIMEOUT = 500;
 
+    /**
+     * Floor of the adaptive L2 timeout, it bounds READ_LEASE_MAX_MS
+     */
+    public final static int L2_TIMEOUT_MIN = 300;
+
+    /**
+     * Ceiling of the adaptive L2 timeout, it bounds the floor of the client timeout
+     */
+    public final static int L2_TIMEOUT_MAX = 800;
+
     /**
      * Timeout after which the Crit Write on database will abort
+     * It is the initial timeout, then it adapts to the round trip times observed with the involved caches
      */
     public final static int CRIT_WRITE_TIME_OUT = 800;
 
+    /**
+     * Floor of the adaptive critical write timeout
+     */
+    public final static int CRIT_WRITE_TIME_OUT_MIN = 200;
+
+    /**
+     * Ceiling of the adaptive critical write timeout, it bounds the floor of the client timeout
+     */
+    public final static int CRIT_WRITE_TIME_OUT_MAX = 1000;
+
+    /**
+     * Number of counters of the counting Bloom filter summarizing the keys cached under an L1 cache
+     */
+    public final static int SUMMARY_FILTER_SIZE = 1024;
+
+    /**
+     * Number of hash functions of the counting Bloom filter summarizing the keys cached under an L1 cache
+     */
+    public final static int SUMMARY_FILTER_HASHES = 3;
+
+    /**
+     * Milliseconds during which write updates are collected before being propagated to a child
+     */
+    public final static int WRITE_BATCH_WINDOW_MS = 30;
+
+    /**
+     * Maximum number of updates a batch can carry, once reached the batch is propagated right away
+     */
+    public final static int WRITE_BATCH_MAX_SIZE = 32;
+
+    /**
+     * Milliseconds between two anti-entropy rounds of a parent with its children, 0 disables anti-entropy
+     * Disabled by default, it can be enabled with the ds1.antiEntropyIntervalMs system property
+     */
+    public final static int ANTI_ENTROPY_INTERVAL_MS = Integer.getInteger("ds1.antiEntropyIntervalMs", 0);
+
+    /**
+     * Number of key ranges, namely of leaves of the Merkle trees compared during anti-entropy (power of two)
+     */
+    public final static int ANTI_ENTROPY_LEAVES = 16;
+
+    /**
+     * Duration in milliseconds of the read leases granted by the database to the L1 caches, 0 disables leases
+     * It cannot exceed READ_LEASE_MAX_MS, since a write on a leased key may wait for the lease to expire
+     * Disabled by default, it can be enabled with the ds1.readLeaseMs system property
+     */
+    public final static int READ_LEASE_MS = Integer.getInteger("ds1.readLeaseMs", 0);
+
+    /**
+     * Longest read lease in milliseconds: a write delayed by a lease has to reach the database and come back
+     * (four network hops from the L2 cache) before the L2 cache times out, even with the shortest L2 timeout
+     */
+    public final static int READ_LEASE_MAX_MS = L2_TIMEOUT_MIN - 4 * NETWORK_DELAY_MS;
+
+    /**
+     * Age in milliseconds after which a cached entry is stale: it is still served, but refreshed from the parent
+     * 0 disables the refreshes
+     * Disabled by default, it can be enabled with the ds1.cacheSoftTtlMs system property
+     */
+    public final static int CACHE_SOFT_TTL_MS = Integer.getInteger("ds1.cacheSoftTtlMs", 0);
+
+    /**
+     * Age in milliseconds after which a cached entry is not served anymore, 0 disables the expiry
+     * Disabled by default, it can be enabled with the ds1.cacheHardTtlMs system property
+     */
+    public final static int CACHE_HARD_TTL_MS = Integer.getInteger("ds1.cacheHardTtlMs", 0);
+
+    /**
+     * Eagerness of the probabilistic early refreshes of the cached entries before they become stale
+     */
+    public final static double XFETCH_BETA = 1.0;
+
+    /**
+     * Milliseconds between two updates of the hot keys of a cache, 0 disables the hot keys tracking
+     * Disabled by default, it can be enabled with the ds1.hotKeysIntervalMs system property
+     */
+    public final static int HOT_KEYS_INTERVAL_MS = Integer.getInteger("ds1.hotKeysIntervalMs", 0);
+
+    /**
+     * Estimated reads within an interval, halved at each interval, above which a key is hot
+     */
+    public final static int HOT_KEY_THRESHOLD = 8;
+
+    /**
+     * Maximum number of hot keys of a cache
+     */
+    public final static int HOT_KEYS_TOP_K = 8;
+
+    /**
+     * Number of counters per row of the count-min sketch estimating the reads of each key
+     */
+    public final static int HOT_KEYS_SKETCH_WIDTH = 256;
+
+    /**
+     * Number of rows of the count-min sketch estimating the reads of each key
+     */
+    public final static int HOT_KEYS_SKETCH_DEPTH = 4;
+
+    /**
+     * Milliseconds between two heartbeats a node sends to its parent and to its children, 0 disables heartbeats
+     * Disabled by default, it can be enabled with the ds1.heartbeatIntervalMs system property
+     */
+    public final static int HEARTBEAT_INTERVAL_MS = Integer.getInteger("ds1.heartbeatIntervalMs", 0);
+
+    /**
+     * Suspicion level of the phi-accrual failure detector above which a peer is considered crashed
+     */
+    public final static double PHI_THRESHOLD = 8.0;
+
+    /**
+     * Number of heartbeat inter-arrival times remembered by the phi-accrual failure detector
+     */
+    public final static int PHI_WINDOW_SIZE = 100;
+
+    /**
+     * Floor in milliseconds of the standard deviation of the heartbeat inter-arrival times
+     */
+    public final static int PHI_MIN_STD_DEVIATION_MS = 50;
+
+    /**
+     * Delay in milliseconds of a heartbeat tolerated without raising the suspicion, e.g. when the peer is busy
+     */
+    public final static int PHI_ACCEPTABLE_PAUSE_MS = 150;
+
+    /**
+     * Highest latency in milliseconds tracked by the latency histograms, higher latencies are recorded as this one
+     */
+    public final static long METRICS_MAX_LATENCY_MS = 60000;
+
+    /**
+     * Milliseconds the database waits for the statistics of its subtree before answering with the ones collected
+     * so far, each level below waits half of the level above
+     */
+    public final static int STATS_TIMEOUT_MS = 1000;
+
+    /**
+     * Milliseconds between two publications of the statistics of an actor to the exporters, 0 disables them
+     * Disabled by default, it can be enabled with the ds1.metricsPublishIntervalMs system property
+     */
+    public final static int METRICS_PUBLISH_INTERVAL_MS = Integer.getInteger("ds1.metricsPublishIntervalMs", 0);
+
+    /**
+     * Whether the statistics of each actor are registered as a JMX MBean
+     * Disabled by default, it can be enabled with the ds1.jmx system property
+     */
+    public final static boolean JMX_ENABLED = Boolean.getBoolean("ds1.jmx");
+
+    /**
+     * File the spans of the traced requests are appended to, one OTLP/JSON export request per line
+     */
+    public final static String TRACES_FILE = "traces.json";
+
+    /**
+     * Milliseconds between two rounds of the load generator, in which it sends the operations whose intended
+     * time has passed
+     */
+    public final static int LOAD_TICK_MS = 5;
+
+    /**
+     * Milliseconds after which the load generator gives up on an operation, e.g. since its client is stuck
+     */
+    public final static int LOAD_OPERATION_TIMEOUT_MS = 10000;
+
+    /**
+     * Milliseconds the load generator waits, once the last operation has been scheduled, for the pending ones
+     */
+    public final static int LOAD_DRAIN_MS = 10000;
+
+    /**
+     * Milliseconds of each interval of the timeline of the load report, which counts the operations ended in it
+     */
+    public final static int LOAD_TIMELINE_MS = 100;
+
+    /**
+     * Skew of the Zipfian key distribution, the higher the more skewed
+     */
+    public final static double ZIPFIAN_THETA = 0.99;
+
+    /**
+     * Fraction of the keys which are hot in the hotspot key distribution
+     */
+    public final static double HOTSPOT_KEY_FRACTION = 0.2;
+
+    /**
+     * Fraction of the operations on the hot keys in the hotspot key distribution
+     */
+    public final static double HOTSPOT_OPERATION_FRACTION = 0.8;
+
+    /**
+     * Default percentages of reads, writes, critical reads and critical writes of the load generator
+     */
+    public final static String LOAD_DEFAULT_MIX = "80,15,4,1";
+
+    /**
+     * File the report of the load generator is written to
+     */
+    public final static String LOAD_REPORT_FILE = "load-report.json";
+
+    /**
+     * Default target rate in operations per second of each run of the workload profiles
+     */
+    public final static int WORKLOAD_DEFAULT_RATE = 20;
+
+    /**
+     * File where the report of the workload profiles is written
+     */
+    public final static String WORKLOAD_REPORT_FILE = "workload-report.json";
+
+    /**
+     * Default target rate in operations per second of each point of the scalability sweep
+     */
+    public final static int SWEEP_DEFAULT_RATE = 50;
+
+    /**
+     * File where the results of the scalability sweep are written
+     */
+    public final static String SWEEP_REPORT_FILE = "scalability-sweep.csv";
+
+    /**
+     * Default target rate in operations per second of the failover benchmark
+     */
+    public final static int FAILOVER_DEFAULT_RATE = 50;
+
+    /**
+     * Milliseconds of steady load before the crash of each scenario of the failover benchmark, over which the
+     * baseline hit ratio is measured
+     */
+    public final static int FAILOVER_WARMUP_MS = 3000;
+
+    /**
+     * Milliseconds between two samples of the hit ratio of the caches during the failover benchmark
+     */
+    public final static int FAILOVER_SAMPLE_MS = 250;
+
+    /**
+     * Milliseconds of reads over which each sample of the hit ratio of the failover benchmark is computed
+     */
+    public final static int FAILOVER_HIT_RATIO_WINDOW_MS = 1000;
+
+    /**
+     * Fraction of the baseline hit ratio above which the caches are considered warm again after a crash
+     */
+    public final static double FAILOVER_HIT_RATIO_RECOVERED = 0.9;
+
+    /**
+     * File the report of the failover benchmark is written to
+     */
+    public final static String FAILOVER_REPORT_FILE = "failover-report.json";
+
+    /**
+     * Default numbers of keys at which the memory footprint is measured
+     */
+    public final static String FOOTPRINT_DEFAULT_KEYS = "10000,1000000,10000000";
+
+    /**
+     * Most pending requests and in-flight responses of the memory footprint benchmark, which are bounded by the
+     * requests in flight rather than by the number of keys
+     */
+    public final static int FOOTPRINT_MAX_IN_FLIGHT = 100000;
+
+    /**
+     * Fewest units the memory footprint benchmark measures at once, smaller structures being built several times
+     */
+    public final static int FOOTPRINT_MIN_UNITS = 200000;
+
+    /**
+     * Baseline bytes of heap per entry of an L1 cache, read critically by a child and leased by the database
+     */
+    public final static int FOOTPRINT_L1_ENTRY_BYTES = 400;
+
+    /**
+     * Baseline bytes of heap per entry of an L2 cache, read by a client whose near cache it invalidates
+     */
+    public final static int FOOTPRINT_L2_ENTRY_BYTES = 500;
+
+    /**
+     * Baseline bytes of heap per pending request of an L2 cache, its timer included
+     */
+    public final static int FOOTPRINT_PENDING_BYTES = 500;
+
+    /**
+     * Baseline bytes of heap per in-flight response, its hops and values included
+     */
+    public final static int FOOTPRINT_MESSAGE_BYTES = 300;
+
+    /**
+     * Fraction by which a measure of the memory footprint may exceed its baseline before it is a regression
+     */
+    public final static double FOOTPRINT_TOLERANCE = 0.1;
+
+    /**
+     * Default minutes of the soak test
+     */
+    public final static int SOAK_DEFAULT_MINUTES = 120;
+
+    /**
+     * Default rate of the soak test in operations per second
+     */
+    public final static int SOAK_DEFAULT_RATE = 50;
+
+    /**
+     * Number of samples of the state of the actors and of the heap taken over the soak test
+     */
+    public final static int SOAK_SAMPLES = 60;
+
+    /**
+     * Milliseconds between two crashes injected by the soak test
+     */
+    public final static int SOAK_CRASH_INTERVAL_MS = 10000;
+
+    /**
+     * Entries by which a gauge has to grow between the two halves of the soak test to be a leak
+     */
+    public final static int SOAK_LEAK_MIN_ENTRIES = 50;
+
+    /**
+     * Bytes by which the heap in use has to grow between the two halves of the soak test to be a leak
+     */
+    public final static long SOAK_LEAK_MIN_HEAP_BYTES = 64L * 1024 * 1024;
+
+    /**
+     * File the soak report is written to
+     */
+    public final static String SOAK_REPORT_FILE = "soak-report.csv";
+
+    /**
+     * Number of L1 caches of the architecture of the performance gate
+     */
+    public final static int PERF_GATE_L1 = 2;
+
+    /**
+     * Number of L2 caches of each L1 cache of the architecture of the performance gate
+     */
+    public final static int PERF_GATE_L2 = 2;
+
+    /**
+     * Number of clients of the architecture of the performance gate
+     */
+    public final static int PERF_GATE_CLIENTS = 8;
+
+    /**
+     * Seed of the operations of the performance gate, which sends the same operations at each run
+     */
+    public final static long PERF_GATE_SEED = 42;
+
+    /**
+     * Rate of the performance gate in operations per second, below the capacity of its clients
+     */
+    public final static int PERF_GATE_RATE = 40;
+
+    /**
+     * Seconds during which the operations of the performance gate are scheduled
+     */
+    public final static int PERF_GATE_SECONDS = 15;
+
+    /**
+     * Seconds of the warm up of the performance gate, whose metrics are discarded
+     */
+    public final static int PERF_GATE_WARMUP_SECONDS = 5;
+
+    /**
+     * Rate in operations per second offered by the performance gate to measure the throughput, above the capacity
+     * of its clients so that the throughput is the one they achieve instead of the offered one
+     */
+    public final static int PERF_GATE_SATURATION_RATE = 1000;
+
+    /**
+     * Seconds during which the operations of the throughput run of the performance gate are scheduled
+     */
+    public final static int PERF_GATE_SATURATION_SECONDS = 5;
+
+    /**
+     * Standard deviations of the calibration runs a metric of the performance gate tolerates
+     */
+    public final static double PERF_GATE_SIGMAS = 3;
+
+    /**
+     * Minimum relative tolerance of a metric of the performance gate, for the ones which barely vary between runs
+     */
+    public final static double PERF_GATE_MIN_TOLERANCE = 0.05;
+
     /**
      * Number of iterations
      */
@@ -0,0 +1,206 @@
+package it.unitn.disi.ds1;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import it.unitn.disi.ds1.messages.CrashMessage;
+import it.unitn.disi.ds1.structures.Architecture;
+import it.unitn.disi.ds1.structures.DistributedCacheNode;
+import it.unitn.disi.ds1.structures.FailoverReport;
+import it.unitn.disi.ds1.structures.KeyDistribution;
+import it.unitn.disi.ds1.structures.LoadReport;
+import it.unitn.disi.ds1.structures.Metrics;
+import it.unitn.disi.ds1.structures.OperationMix;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Failover benchmark
+ * <p>
+ * Each crash type runs against a fresh architecture of the given shape: the load generator keeps a steady load on
+ * the clients and, after {@link Config#FAILOVER_WARMUP_MS}, the first L1 cache or the first L2 cache of the first
+ * L1 cache, depending on the crash type, is told to crash at the given point and to recover after
+ * {@link Config#MAX_RECOVERY_IN}. The timeline of the load report tells when the clients see the errors and when
+ * they stop, while the hit ratio of the caches is sampled every {@link Config#FAILOVER_SAMPLE_MS} from the clients
+ * and from the database, which never crash, over the last {@link Config#FAILOVER_HIT_RATIO_WINDOW_MS}: it is the
+ * share of the reads missed by the near caches which have not reached the database, critical reads included, hence
+ * it drops while the flushed cache warms up again.
+ */
+public class FailoverBenchmark {
+    /**
+     * Number of L1 caches of the architecture
+     */
+    private final int countL1;
+
+    /**
+     * Number of L2 caches of each L1 cache
+     */
+    private final int countL2;
+
+    /**
+     * Number of clients of the architecture
+     */
+    private final int countClients;
+
+    /**
+     * Target rate in operations per second
+     */
+    private final double rate;
+
+    /**
+     * Seconds during which the operations of each scenario are scheduled, the warm up included
+     */
+    private final int durationSeconds;
+
+    /**
+     * Distribution of the keys of the operations
+     */
+    private final KeyDistribution.Type distribution;
+
+    /**
+     * Mix of the operations
+     */
+    private final OperationMix mix;
+
+    /**
+     * Constructor of the benchmark
+     *
+     * @param countL1         number of L1 caches
+     * @param countL2         number of L2 caches of each L1 cache
+     * @param countClients    number of clients
+     * @param rate            target rate in operations per second
+     * @param durationSeconds seconds during which the operations of each scenario are scheduled, the warm up
+     *                        included
+     * @param distribution    distribution of the keys of the operations
+     * @param mix             mix of the operations
+     * @throws IllegalArgumentException if the scenarios end before the crash
+     */
+    public FailoverBenchmark(int countL1, int countL2, int countClients, double rate, int durationSeconds,
+                             KeyDistribution.Type distribution, OperationMix mix) {
+        if (durationSeconds * 1000L <= Config.FAILOVER_WARMUP_MS) {
+            throw new IllegalArgumentException("The failover scenarios have to last more than " +
+                    Config.FAILOVER_WARMUP_MS + " ms");
+        }
+        this.countL1 = countL1;
+        this.countL2 = countL2;
+        this.countClients = countClients;
+        this.rate = rate;
+        this.durationSeconds = durationSeconds;
+        this.distribution = distribution;
+        this.mix = mix;
+    }
+
+    /**
+     * Run a scenario for each crash type
+     *
+     * @param crashTypes crash types
+     * @return report of the scenarios, without the ones which have not ended in time
+     */
+    public FailoverReport run(List<Config.CrashType> crashTypes) {
+        FailoverReport report = new FailoverReport();
+        for (Config.CrashType crashType : crashTypes) {
+            FailoverReport.Scenario scenario = this.run(crashType);
+            if (scenario != null) {
+                report.add(scenario);
+            }
+        }
+        return report;
+    }
+
+    /**
+     * Run the load against a fresh architecture, crashing a cache
+     *
+     * @param crashType type of the crash
+     * @return scenario, null if the load generator has not ended in time
+     */
+    public FailoverReport.Scenario run(Config.CrashType crashType) {
+        System.out.println("Running the failover scenario " + crashType + "...");
+        ActorSystem system = Utils.createActorSystem();
+        try {
+            Map<Integer, Integer> database = Utils.createDatabase();
+            Architecture architecture = Utils.createArchiteture(system, database, this.countL1, this.countL2,
+                    this.countClients);
+            Logger.logConfig(this.countL1, this.countL2, this.countClients);
+            Logger.logDatabase(database);
+            // Let the caches join the tree
+            Utils.timeout(200);
+
+            DistributedCacheNode l1 = architecture.cacheTree.database.children.get(0);
+            ActorRef target = crashType.name().startsWith("L1_") ? l1.actor : l1.children.get(0).actor;
+
+            long startedAt = System.nanoTime();
+            CompletableFuture<LoadReport> load = Utils.startLoad(system, architecture, database, this.rate,
+                    this.durationSeconds, this.distribution, this.mix);
+            Utils.scheduleMessage(system, target, new CrashMessage(crashType, Config.MAX_RECOVERY_IN),
+                    Config.FAILOVER_WARMUP_MS);
+
+            // Each sample covers the reads of the window, since an interval holds too few of them
+            int window = Math.max(1, Config.FAILOVER_HIT_RATIO_WINDOW_MS / Config.FAILOVER_SAMPLE_MS);
+            List<long[]> reads = new ArrayList<>();
+            List<FailoverReport.Sample> samples = new ArrayList<>();
+            reads.add(this.sampleReads(architecture));
+            while (!load.isDone()) {
+                Utils.timeout(Config.FAILOVER_SAMPLE_MS);
+                long[] current = this.sampleReads(architecture);
+                long[] previous = reads.get(Math.max(0, reads.size() - window));
+                reads.add(current);
+                long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+                samples.add(new FailoverReport.Sample(millis - Config.FAILOVER_WARMUP_MS,
+                        hitRatio(current[0] - previous[0], current[1] - previous[1])));
+            }
+
+            LoadReport report;
+            try {
+                report = load.get();
+            } catch (Exception e) {
+                Logger.DEBUG.severe(e.toString());
+                return null;
+            }
+            // A cache which does not answer is still crashed
+            Metrics metrics = Utils.collectMetrics(Collections.singletonList(target));
+            return new FailoverReport.Scenario(crashType, target.path().name(),
+                    metrics == null || metrics.count(Metrics.Counter.CRASHES) > 0, Config.FAILOVER_WARMUP_MS,
+                    report, samples);
+        } finally {
+            system.terminate();
+            try {
+                system.getWhenTerminated().toCompletableFuture().get(10, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                Logger.DEBUG.severe(e.toString());
+            }
+        }
+    }
+
+    /**
+     * Count the reads which have left the clients and the ones which have reached the database so far
+     *
+     * @param architecture architecture to query
+     * @return reads missed by the near caches of the clients and reads served by the database
+     */
+    private long[] sampleReads(Architecture architecture) {
+        Metrics clients = Utils.collectMetrics(architecture.clients);
+        Metrics database = Utils.collectMetrics(Collections.singletonList(architecture.cacheTree.database.actor));
+        return new long[]{
+                clients == null ? 0 : clients.count(Metrics.Counter.MISSES),
+                database == null ? 0 : database.count(Metrics.Counter.HITS)
+        };
+    }
+
+    /**
+     * Hit ratio of the caches within a window
+     *
+     * @param clientMisses  reads which have left the clients within the window
+     * @param databaseReads reads which have reached the database within the window
+     * @return share of the reads served by the caches, NaN if no read has left the clients
+     */
+    private static double hitRatio(long clientMisses, long databaseReads) {
+        if (clientMisses <= 0) {
+            return Double.NaN;
+        }
+        return Math.max(0, Math.min(1, 1 - (double) databaseReads / clientMisses));
+    }
+}
@@ -1,7 +1,18 @@
 package it.unitn.disi.ds1;
 
 import akka.actor.ActorSystem;
+import com.sun.net.httpserver.HttpServer;
 import it.unitn.disi.ds1.structures.Architecture;
+import it.unitn.disi.ds1.structures.FailoverReport;
+import it.unitn.disi.ds1.structures.FootprintReport;
+import it.unitn.disi.ds1.structures.KeyDistribution;
+import it.unitn.disi.ds1.structures.LoadReport;
+import it.unitn.disi.ds1.structures.OperationMix;
+import it.unitn.disi.ds1.structures.RequestTrace;
+import it.unitn.disi.ds1.structures.ScalabilityReport;
+import it.unitn.disi.ds1.structures.SoakReport;
+import it.unitn.disi.ds1.structures.WorkloadProfile;
+import it.unitn.disi.ds1.structures.WorkloadReport;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.DefaultParser;
@@ -10,8 +21,15 @@ import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 
+import java.io.FileWriter;
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Scanner;
 
@@ -31,6 +49,24 @@ public class Main {
         int countL2 = 5;
         int countClients = 3;
         int secondsForIteration = 20;
+        int metricsPort = 0;
+        boolean traces = false;
+        int loadRate = 0;
+        KeyDistribution.Type loadDistribution = KeyDistribution.Type.ZIPFIAN;
+        OperationMix loadMix = OperationMix.parse(Config.LOAD_DEFAULT_MIX);
+        List<WorkloadProfile> workloads = null;
+        List<WorkloadProfile.Mode> workloadModes = Arrays.asList(WorkloadProfile.Mode.values());
+        List<Integer> sweepL1 = null;
+        List<Integer> sweepL2 = null;
+        List<Integer> sweepClients = null;
+        List<Config.CrashType> failovers = null;
+        List<Integer> footprintKeys = null;
+        Integer soakMinutes = null;
+        String recordFile = null;
+        String replayFile = null;
+        double replaySpeed = 1;
+        String convertFile = null;
+        Long simulationSeed = null;
 
         /**
          * Command line parser and helper
@@ -75,6 +111,167 @@ public class Main {
                 .build()
         );
 
+        options.addOption(Option.builder().
+                longOpt("metrics-port")
+                .argName("Port of the metrics endpoint")
+                .hasArg(true)
+                .desc("Port of a local HTTP endpoint serving the statistics in the Prometheus text format")
+                .type(Number.class)
+                .build()
+        );
+
+        options.addOption(Option.builder().
+                longOpt("load-rate")
+                .argName("Operations per second")
+                .hasArg(true)
+                .desc("Run headless, generating an open-loop load at this rate for the given seconds, then report")
+                .type(Number.class)
+                .build()
+        );
+
+        options.addOption(Option.builder().
+                longOpt("load-distribution")
+                .argName("uniform|zipfian|hotspot|latest")
+                .hasArg(true)
+                .desc("Distribution of the keys requested by the load generator")
+                .build()
+        );
+
+        options.addOption(Option.builder().
+                longOpt("load-mix")
+                .argName("read,write,critread,critwrite")
+                .hasArg(true)
+                .desc("Shares of the operations of the load generator, e.g. " + Config.LOAD_DEFAULT_MIX)
+                .build()
+        );
+
+        options.addOption(Option.builder().
+                longOpt("workload")
+                .argName("A,B,C,D,F|all")
+                .hasArg(true)
+                .desc("Run the YCSB-like workload profiles headless, each against a fresh architecture, at the " +
+                        "load rate (default " + Config.WORKLOAD_DEFAULT_RATE + ") for the given seconds, then compare")
+                .build()
+        );
+
+        options.addOption(Option.builder().
+                longOpt("workload-modes")
+                .argName("eventual,critical")
+                .hasArg(true)
+                .desc("Protocol modes each workload profile runs in, both by default")
+                .build()
+        );
+
+        options.addOption(Option.builder().
+                longOpt("sweep-l1")
+                .argName("1,2,4")
+                .hasArg(true)
+                .desc("Numbers of L1 caches of the scalability sweep, which runs the load (default rate " +
+                        Config.SWEEP_DEFAULT_RATE + ") for the given seconds against each architecture of the grid " +
+                        "and writes " + Config.SWEEP_REPORT_FILE + " [default the number of L1 caches]")
+                .build()
+        );
+
+        options.addOption(Option.builder().
+                longOpt("sweep-l2")
+                .argName("1,2,4")
+                .hasArg(true)
+                .desc("Numbers of L2 caches of each L1 cache of the scalability sweep [default the number of L2 " +
+                        "caches]")
+                .build()
+        );
+
+        options.addOption(Option.builder().
+                longOpt("sweep-clients")
+                .argName("1,4,16")
+                .hasArg(true)
+                .desc("Numbers of clients of the scalability sweep [default the number of clients]")
+                .build()
+        );
+
+        options.addOption(Option.builder().
+                longOpt("failover")
+                .argName("L2_BEFORE_READ,...|all")
+                .hasArg(true)
+                .desc("Run the failover benchmark: for each crash type, a cache crashes under the load (default rate " +
+                        Config.FAILOVER_DEFAULT_RATE + ") of the given seconds, then the availability and recovery " +
+                        "table is printed and written to " + Config.FAILOVER_REPORT_FILE)
+                .build()
+        );
+
+        options.addOption(Option.builder().
+                longOpt("footprint")
+                .argName("10000,1000000,...")
+                .hasArg(true)
+                .optionalArg(true)
+                .desc("Measure the heap retained by each L1 and L2 entry, pending request and in-flight response at " +
+                        "the given numbers of keys [default " + Config.FOOTPRINT_DEFAULT_KEYS + "], failing if a " +
+                        "measure exceeds its baseline, then exit")
+                .build()
+        );
+
+        options.addOption(Option.builder().
+                longOpt("soak")
+                .argName("Minutes")
+                .hasArg(true)
+                .optionalArg(true)
+                .type(Number.class)
+                .desc("Run the load (default rate " + Config.SOAK_DEFAULT_RATE + ") with random crashes for the " +
+                        "given minutes [default " + Config.SOAK_DEFAULT_MINUTES + "], sampling the state of the " +
+                        "actors and the heap into " + Config.SOAK_REPORT_FILE + ", failing if any of them leaks")
+                .build()
+        );
+
+        options.addOption(Option.builder().
+                longOpt("record")
+                .argName("Trace file")
+                .hasArg(true)
+                .desc("Record the requests received by the clients to a trace file, which can be replayed")
+                .build()
+        );
+
+        options.addOption(Option.builder().
+                longOpt("replay")
+                .argName("Trace file")
+                .hasArg(true)
+                .desc("Run headless, replaying the requests of a trace file through the clients, then report")
+                .build()
+        );
+
+        options.addOption(Option.builder().
+                longOpt("replay-speed")
+                .argName("Speedup")
+                .hasArg(true)
+                .desc("Factor by which the replayed trace is accelerated [default 1, the original speed]")
+                .type(Number.class)
+                .build()
+        );
+
+        options.addOption(Option.builder().
+                longOpt("convert-log")
+                .argName("Trace file")
+                .hasArg(true)
+                .desc("Convert the requests of the clients in ./logs.txt into a trace file, then exit")
+                .build()
+        );
+
+        options.addOption(Option.builder().
+                longOpt("simulate")
+                .argName("Seed")
+                .hasArg(true)
+                .desc("Run the random requests and crashes for the given seconds of virtual time, deterministically " +
+                        "for the seed, then check the consistency")
+                .type(Number.class)
+                .build()
+        );
+
+        options.addOption(Option.builder().
+                longOpt("traces")
+                .hasArg(false)
+                .desc("Trace the requests, exporting the spans to " + Config.TRACES_FILE)
+                .build()
+        );
+
         /**
          * Parse the arguments
          */
@@ -110,17 +307,219 @@ public class Main {
             } else {
                 System.out.println("seconds argument not found or invalid, using default: " + secondsForIteration);
             }
-        } catch (ParseException e) {
+
+            if (cmdLine.hasOption("metrics-port") &&
+                    ((Number) cmdLine.getParsedOptionValue("metrics-port")).intValue() > 0) {
+                metricsPort = ((Number) cmdLine.getParsedOptionValue("metrics-port")).intValue();
+            }
+
+            traces = cmdLine.hasOption("traces");
+
+            if (cmdLine.hasOption("load-rate") &&
+                    ((Number) cmdLine.getParsedOptionValue("load-rate")).intValue() > 0) {
+                loadRate = ((Number) cmdLine.getParsedOptionValue("load-rate")).intValue();
+            }
+
+            if (cmdLine.hasOption("load-distribution")) {
+                loadDistribution = KeyDistribution.Type.valueOf(
+                        cmdLine.getOptionValue("load-distribution").toUpperCase(Locale.ROOT));
+            }
+
+            if (cmdLine.hasOption("load-mix")) {
+                loadMix = OperationMix.parse(cmdLine.getOptionValue("load-mix"));
+            }
+
+            if (cmdLine.hasOption("workload")) {
+                String workload = cmdLine.getOptionValue("workload").trim();
+                workloads = workload.equalsIgnoreCase("all") ? Arrays.asList(WorkloadProfile.values()) :
+                        parseList(workload, WorkloadProfile.class);
+            }
+
+            if (cmdLine.hasOption("workload-modes")) {
+                workloadModes = parseList(cmdLine.getOptionValue("workload-modes"), WorkloadProfile.Mode.class);
+            }
+
+            if (cmdLine.hasOption("sweep-l1") || cmdLine.hasOption("sweep-l2") || cmdLine.hasOption("sweep-clients")) {
+                sweepL1 = cmdLine.hasOption("sweep-l1") ? parseCounts(cmdLine.getOptionValue("sweep-l1")) :
+                        Collections.singletonList(countL1);
+                sweepL2 = cmdLine.hasOption("sweep-l2") ? parseCounts(cmdLine.getOptionValue("sweep-l2")) :
+                        Collections.singletonList(countL2);
+                sweepClients = cmdLine.hasOption("sweep-clients") ?
+                        parseCounts(cmdLine.getOptionValue("sweep-clients")) : Collections.singletonList(countClients);
+            }
+
+            if (cmdLine.hasOption("footprint")) {
+                footprintKeys = parseCounts(cmdLine.getOptionValue("footprint", Config.FOOTPRINT_DEFAULT_KEYS));
+            }
+
+            if (cmdLine.hasOption("soak")) {
+                soakMinutes = cmdLine.getOptionValue("soak") == null ? Config.SOAK_DEFAULT_MINUTES :
+                        ((Number) cmdLine.getParsedOptionValue("soak")).intValue();
+                if (soakMinutes <= 0) {
+                    throw new IllegalArgumentException("The soak test has to last at least a minute");
+                }
+            }
+
+            if (cmdLine.hasOption("failover")) {
+                String failover = cmdLine.getOptionValue("failover").trim();
+                failovers = failover.equalsIgnoreCase("all") ?
+                        new ArrayList<>(Arrays.asList(Config.CrashType.values())) :
+                        parseList(failover, Config.CrashType.class);
+                failovers.remove(Config.CrashType.NONE);
+                if (secondsForIteration * 1000L <= Config.FAILOVER_WARMUP_MS) {
+                    throw new IllegalArgumentException("The failover scenarios have to last more than " +
+                            Config.FAILOVER_WARMUP_MS + " ms");
+                }
+            }
+
+            recordFile = cmdLine.getOptionValue("record");
+            replayFile = cmdLine.getOptionValue("replay");
+            convertFile = cmdLine.getOptionValue("convert-log");
+
+            if (cmdLine.hasOption("replay-speed") &&
+                    ((Number) cmdLine.getParsedOptionValue("replay-speed")).doubleValue() > 0) {
+                replaySpeed = ((Number) cmdLine.getParsedOptionValue("replay-speed")).doubleValue();
+            }
+
+            if (cmdLine.hasOption("simulate")) {
+                // The load generators and the workload reports ask the actors, which needs them to run on their own
+                if (loadRate > 0 || replayFile != null || workloads != null || sweepL1 != null || failovers != null ||
+                        soakMinutes != null) {
+                    throw new IllegalArgumentException("--simulate cannot be combined with a load, a replay, a " +
+                            "workload, a sweep, a failover benchmark or a soak test");
+                }
+                simulationSeed = ((Number) cmdLine.getParsedOptionValue("simulate")).longValue();
+            }
+        } catch (ParseException | IllegalArgumentException e) {
             System.out.println(e.getMessage());
             helper.printHelp("Usage:", options);
             System.exit(0);
         }
 
+        /**
+         * Convert the log of a previous run, before it is overwritten
+         */
+        if (convertFile != null) {
+            try {
+                RequestTrace trace = RequestTrace.fromLog("logs.txt");
+                trace.write(convertFile);
+                System.out.println("Converted " + trace.entries().size() + " requests into " + convertFile);
+            } catch (IOException e) {
+                System.out.println("Cannot convert the log file: " + e.getMessage());
+            }
+            return;
+        }
+
+        /**
+         * Measure the memory footprint, the exit status tells whether it has regressed
+         */
+        if (footprintKeys != null) {
+            FootprintReport report = new MemoryFootprint().run(footprintKeys);
+            System.out.print(report.toTable());
+            List<String> regressions = report.regressions();
+            for (String regression : regressions) {
+                System.out.println("Regression: " + regression);
+            }
+            System.exit(regressions.isEmpty() ? 0 : 1);
+        }
+
+        /**
+         * Load the trace to replay
+         */
+        RequestTrace replay = null;
+        if (replayFile != null) {
+            try {
+                replay = RequestTrace.read(replayFile);
+            } catch (IOException e) {
+                System.out.println("Cannot read the trace: " + e.getMessage());
+                return;
+            }
+        }
+
         /**
          * Initialize the logger
          */
         Utils.initializeLogger();
 
+        /**
+         * Compare the workload profiles, each one against its own architecture
+         */
+        if (workloads != null) {
+            WorkloadReport report = new WorkloadRunner(countL1, countL2, countClients,
+                    loadRate > 0 ? loadRate : Config.WORKLOAD_DEFAULT_RATE, secondsForIteration)
+                    .run(workloads, workloadModes);
+            System.out.print(report.toTable());
+            try (FileWriter writer = new FileWriter(Config.WORKLOAD_REPORT_FILE)) {
+                writer.write(report.toJson());
+                System.out.println("Workload report written to " + Config.WORKLOAD_REPORT_FILE);
+            } catch (IOException e) {
+                System.out.println("Cannot write the workload report: " + e.getMessage());
+            }
+            return;
+        }
+
+        /**
+         * Sweep the shape of the architecture, running the same load against each point of the grid
+         */
+        if (sweepL1 != null) {
+            ScalabilityReport report = new ScalabilitySweep(loadRate > 0 ? loadRate : Config.SWEEP_DEFAULT_RATE,
+                    secondsForIteration, loadDistribution, loadMix).run(sweepL1, sweepL2, sweepClients);
+            System.out.print(report.toCsv());
+            try (FileWriter writer = new FileWriter(Config.SWEEP_REPORT_FILE)) {
+                writer.write(report.toCsv());
+                System.out.println("Scalability sweep written to " + Config.SWEEP_REPORT_FILE);
+            } catch (IOException e) {
+                System.out.println("Cannot write the scalability sweep: " + e.getMessage());
+            }
+            return;
+        }
+
+        /**
+         * Crash a cache under steady load for each crash type, each one against its own architecture
+         */
+        if (failovers != null) {
+            FailoverReport report = new FailoverBenchmark(countL1, countL2, countClients,
+                    loadRate > 0 ? loadRate : Config.FAILOVER_DEFAULT_RATE, secondsForIteration, loadDistribution,
+                    loadMix).run(failovers);
+            System.out.print(report.toTable());
+            try (FileWriter writer = new FileWriter(Config.FAILOVER_REPORT_FILE)) {
+                writer.write(report.toJson());
+                System.out.println("Failover report written to " + Config.FAILOVER_REPORT_FILE);
+            } catch (IOException e) {
+                System.out.println("Cannot write the failover report: " + e.getMessage());
+            }
+            return;
+        }
+
+        /**
+         * Soak the architecture under load and crashes, the exit status tells whether some state has leaked
+         */
+        if (soakMinutes != null) {
+            SoakReport report = new Soak(countL1, countL2, countClients,
+                    loadRate > 0 ? loadRate : Config.SOAK_DEFAULT_RATE, loadDistribution, loadMix)
+                    .run(soakMinutes * 60);
+            System.out.print(report.toTable());
+            try (FileWriter writer = new FileWriter(Config.SOAK_REPORT_FILE)) {
+                writer.write(report.toCsv());
+                System.out.println("Soak report written to " + Config.SOAK_REPORT_FILE);
+            } catch (IOException e) {
+                System.out.println("Cannot write the soak report: " + e.getMessage());
+            }
+            List<String> leaks = report.leaks();
+            for (String leak : leaks) {
+                System.out.println("Leak: " + leak);
+            }
+            System.exit(leaks.isEmpty() ? 0 : 1);
+        }
+
+        /**
+         * Run in virtual time, the database and the random actions depend only on the seed
+         */
+        if (simulationSeed != null) {
+            Simulation.start(simulationSeed);
+            System.out.println("Simulating " + secondsForIteration + " seconds with seed " + simulationSeed);
+        }
+
         /**
          * Setup actor system, database and architecture
          */
@@ -138,43 +537,125 @@ public class Main {
         Logger.DEBUG.info(architecture.toString());
 
         /**
-         * Main
+         * Serve the statistics of the actors
+         */
+        HttpServer metricsServer = null;
+        if (metricsPort > 0) {
+            try {
+                metricsServer = MetricsExporter.startHttpServer(metricsPort);
+                System.out.println("Serving the metrics at http://localhost:" + metricsPort + "/metrics");
+                if (Config.METRICS_PUBLISH_INTERVAL_MS <= 0) {
+                    System.out.println("The actors publish no statistics, set the ds1.metricsPublishIntervalMs " +
+                            "system property to make them publish");
+                }
+            } catch (IOException e) {
+                System.out.println("Cannot serve the metrics on port " + metricsPort + ": " + e.getMessage());
+            }
+        }
+
+        /**
+         * Record the requests of the clients
          */
-        float crashProbability = (float) 0.05;
-        int maxTimeToWait = 300;
-        int minTimeToWait = 100;
-        int timePassedInSeconds = 0;
-        boolean keepLooping = true;
-        boolean repeat;
+        if (recordFile != null) {
+            try {
+                RequestRecorder.start(recordFile);
+                System.out.println("Recording the requests to " + recordFile);
+            } catch (IOException e) {
+                System.out.println("Cannot record the requests to " + recordFile + ": " + e.getMessage());
+            }
+        }
 
-        LocalDateTime then = LocalDateTime.now();
+        /**
+         * Trace the requests
+         */
+        if (traces) {
+            try {
+                Tracer.start(Config.TRACES_FILE);
+                System.out.println("Exporting the spans to " + Config.TRACES_FILE);
+            } catch (IOException e) {
+                System.out.println("Cannot export the spans to " + Config.TRACES_FILE + ": " + e.getMessage());
+            }
+        }
 
-        do {
-            // Iterate for secondsForIteration seconds and do random actions
-            while (keepLooping) {
-                // Random message
+        /**
+         * Main
+         */
+        if (loadRate > 0 || replay != null) {
+            // Headless run, without random crashes nor prompts
+            LoadReport report;
+            if (replay != null) {
+                System.out.println("Replaying " + replay.entries().size() + " requests " + replaySpeed +
+                        " times faster than recorded");
+                report = Utils.replayTrace(system, architecture, replay, replaySpeed);
+            } else {
+                System.out.println("Generating " + loadRate + " operations per second for " + secondsForIteration +
+                        " seconds, " + loadDistribution + " keys, mix " + loadMix);
+                report = Utils.runLoad(system, architecture, database, loadRate, secondsForIteration,
+                        loadDistribution, loadMix);
+            }
+            if (report == null) {
+                System.out.println("The run has not ended in time");
+            } else {
+                String json = report.toJson();
+                System.out.println(json);
+                try (FileWriter writer = new FileWriter(Config.LOAD_REPORT_FILE)) {
+                    writer.write(json);
+                    System.out.println("Load report written to " + Config.LOAD_REPORT_FILE);
+                } catch (IOException e) {
+                    System.out.println("Cannot write the load report: " + e.getMessage());
+                }
+            }
+
+            // Let the last updates propagate before the consistency check
+            Utils.timeout(3000);
+        } else if (Simulation.isEnabled()) {
+            // Same actions as the interactive run, for the given seconds of virtual time
+            float crashProbability = (float) 0.05;
+            int maxTimeToWait = 300;
+            int minTimeToWait = 100;
+            for (int i = 0; i < secondsForIteration * 1000 / maxTimeToWait; i++) {
                 Utils.randomAction(system, architecture, database,
                         minTimeToWait, maxTimeToWait, crashProbability);
-                // Wait for something to finish
                 Utils.timeout(maxTimeToWait);
-                if (ChronoUnit.SECONDS.between(then, LocalDateTime.now()) >= secondsForIteration) {
-                    keepLooping = false;
-                }
             }
+            Utils.timeout(maxTimeToWait * 10);
+        } else {
+            float crashProbability = (float) 0.05;
+            int maxTimeToWait = 300;
+            int minTimeToWait = 100;
+            int timePassedInSeconds = 0;
+            boolean keepLooping = true;
+            boolean repeat;
+
+            LocalDateTime then = LocalDateTime.now();
+
+            do {
+                // Iterate for secondsForIteration seconds and do random actions
+                while (keepLooping) {
+                    // Random message
+                    Utils.randomAction(system, architecture, database,
+                            minTimeToWait, maxTimeToWait, crashProbability);
+                    // Wait for something to finish
+                    Utils.timeout(maxTimeToWait);
+                    if (ChronoUnit.SECONDS.between(then, LocalDateTime.now()) >= secondsForIteration) {
+                        keepLooping = false;
+                    }
+                }
 
-            // Update the current execution time
-            timePassedInSeconds += secondsForIteration;
+                // Update the current execution time
+                timePassedInSeconds += secondsForIteration;
 
-            // Small timeout
-            Utils.timeout(maxTimeToWait * 10);
+                // Small timeout
+                Utils.timeout(maxTimeToWait * 10);
 
-            // Ask for repetition
-            repeat = askToContinue(timePassedInSeconds);
+                // Ask for repetition
+                repeat = askToContinue(timePassedInSeconds);
 
-            // Reset loop
-            then = LocalDateTime.now();
-            keepLooping = true;
-        } while (repeat);
+                // Reset loop
+                then = LocalDateTime.now();
+                keepLooping = true;
+            } while (repeat);
+        }
 
         // Consistency check
         boolean consistent = Checker.check();
@@ -185,7 +666,52 @@ public class Main {
         }
 
         // Shutdown system
-        system.terminate();
+        if (metricsServer != null) {
+            metricsServer.stop(0);
+        }
+        Tracer.stop();
+        RequestRecorder.stop();
+        if (Simulation.isEnabled()) {
+            Simulation.terminate(system);
+            Simulation.stop();
+        } else {
+            system.terminate();
+        }
+    }
+
+    /**
+     * Parse a comma separated list of constants of an enum, ignoring the case
+     *
+     * @param list     comma separated names of the constants
+     * @param enumType type of the enum
+     * @param <E>      enum
+     * @return parsed constants
+     * @throws IllegalArgumentException if a name is not a constant of the enum
+     */
+    private static <E extends Enum<E>> List<E> parseList(String list, Class<E> enumType) {
+        List<E> constants = new ArrayList<>();
+        for (String name : list.split(",")) {
+            constants.add(Enum.valueOf(enumType, name.trim().toUpperCase(Locale.ROOT)));
+        }
+        return constants;
+    }
+
+    /**
+     * Parse a comma separated list of positive counts
+     *
+     * @param list comma separated counts
+     * @return counts, in the given order
+     */
+    private static List<Integer> parseCounts(String list) {
+        List<Integer> counts = new ArrayList<>();
+        for (String count : list.split(",")) {
+            int value = Integer.parseInt(count.trim());
+            if (value <= 0) {
+                throw new IllegalArgumentException("Not a positive count: " + value);
+            }
+            counts.add(value);
+        }
+        return counts;
     }
 
     /**
@@ -0,0 +1,330 @@
+package it.unitn.disi.ds1;
+
+import akka.actor.AbstractActor;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import it.unitn.disi.ds1.actors.Cache;
+import it.unitn.disi.ds1.messages.HotKeysPushMessage;
+import it.unitn.disi.ds1.messages.JoinCachesMessage;
+import it.unitn.disi.ds1.messages.LeaseGrantMessage;
+import it.unitn.disi.ds1.messages.ReadMessage;
+import it.unitn.disi.ds1.messages.ResponseMessage;
+import it.unitn.disi.ds1.structures.FootprintReport;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Level;
+
+/**
+ * Memory footprint benchmark
+ * <p>
+ * The benchmark fills real caches and measures the heap they retain as the difference of the heap in use, after a
+ * garbage collection, before and after filling them. The caches run in {@link Simulation virtual time}, hence the
+ * benchmark thread handles their messages, the network delays take no time and their timers never fire while
+ * they are filled. Their parents, children and clients are actors which drop every message, hence the benchmark
+ * plays the parent by sending the responses itself:
+ * <ul>
+ *     <li>an L1 entry is a key read critically by a child, which the database leases to the cache: its value,
+ *     sequence number and store time, the key in the summary of the database, in the keys of the child and in
+ *     the read leases</li>
+ *     <li>an L2 entry is a key read by a client, whose near cache the cache invalidates: its value, sequence
+ *     number and store time, and the client among the readers of the key. The cache pins the hot keys pushed
+ *     by its parent as well</li>
+ *     <li>a pending request of an L2 cache is a read forwarded to the parent which has not answered yet: the
+ *     forwarded read, its start times and its timer, whose timeout message wraps the read</li>
+ *     <li>an in-flight response is a response of the database, with its copied hops and values</li>
+ * </ul>
+ * The entries are measured at the given number of keys, while the pending requests and the responses are bounded
+ * by the requests in flight, hence they are measured at most at {@link Config#FOOTPRINT_MAX_IN_FLIGHT}. The
+ * structures of fewer than {@link Config#FOOTPRINT_MIN_UNITS} units are built several times, since the heap in use
+ * is too coarse to measure them alone. The sizes are the ones of a 64-bit JVM with compressed references.
+ */
+public class MemoryFootprint {
+    /**
+     * Number of messages sent to a cache before letting it handle them
+     */
+    private static final int BATCH = 1000;
+
+    /**
+     * Actor which drops every message, it stands for the parents, the children and the clients of the caches
+     */
+    public static class Sink extends AbstractActor {
+        @Override
+        public Receive createReceive() {
+            return receiveBuilder().matchAny(msg -> {
+            }).build();
+        }
+    }
+
+    private ActorSystem system;
+    private ActorRef parent;
+    private ActorRef child;
+    private ActorRef client;
+    /**
+     * Number of caches created so far, which tells their names apart
+     */
+    private int caches;
+
+    /**
+     * Measure the footprint at each number of keys, skipping the ones which do not fit in the heap
+     *
+     * @param keys numbers of keys
+     * @return report of the measures
+     */
+    public FootprintReport run(List<Integer> keys) {
+        FootprintReport report = new FootprintReport();
+        for (int count : keys) {
+            // Room for the entries of a cache and for the garbage of the previous measures
+            if (2L * count * Math.max(Config.FOOTPRINT_L1_ENTRY_BYTES, Config.FOOTPRINT_L2_ENTRY_BYTES) >
+                    Runtime.getRuntime().maxMemory()) {
+                System.out.println("Skipping " + count + " keys, the heap is too small");
+                report.skip(count);
+                continue;
+            }
+            report.add(this.run(count));
+        }
+        return report;
+    }
+
+    /**
+     * Measure the footprint at a number of keys
+     *
+     * @param keys number of cached entries
+     * @return measures
+     */
+    public FootprintReport.Point run(int keys) {
+        System.out.println("Measuring the footprint of " + keys + " keys...");
+        int inFlight = Math.min(keys, Config.FOOTPRINT_MAX_IN_FLIGHT);
+        // The caches log every message they handle, which would flood the console and the log file
+        java.util.logging.Logger check = java.util.logging.Logger.getLogger("check-solution-logger");
+        Level debugLevel = Logger.DEBUG.getLevel();
+        Level checkLevel = check.getLevel();
+        Logger.DEBUG.setLevel(Level.OFF);
+        check.setLevel(Level.OFF);
+        Simulation.start(keys);
+        try {
+            this.system = Utils.createActorSystem();
+            this.parent = this.system.actorOf(Props.create(Sink.class), "database-0");
+            this.child = this.system.actorOf(Props.create(Sink.class), "l2-cache-0-1");
+            this.client = this.system.actorOf(Props.create(Sink.class), "client-0-2");
+            this.caches = 0;
+            double l1EntryBytes = this.l1EntryBytes(keys);
+            double l2EntryBytes = this.l2EntryBytes(keys);
+            double pendingBytes = this.pendingBytes(inFlight);
+            double messageBytes = this.messageBytes(inFlight);
+            return new FootprintReport.Point(keys, inFlight, l1EntryBytes, l2EntryBytes, pendingBytes,
+                    messageBytes);
+        } finally {
+            if (this.system != null) {
+                Simulation.terminate(this.system);
+                this.system = null;
+            }
+            Simulation.stop();
+            Logger.DEBUG.setLevel(debugLevel);
+            check.setLevel(checkLevel);
+        }
+    }
+
+    /**
+     * Bytes retained by each entry of an L1 cache
+     *
+     * @param keys number of entries
+     * @return bytes per entry
+     */
+    private double l1EntryBytes(int keys) {
+        List<ActorRef> caches = new ArrayList<>();
+        for (int copy = 0; copy < copies(keys); copy++) {
+            ActorRef cache = this.createCache(true);
+            cache.tell(new JoinCachesMessage(Collections.singletonList(this.child)), ActorRef.noSender());
+            caches.add(cache);
+        }
+        Simulation.runUntilIdle();
+
+        long before = usedHeap();
+        List<ActorRef> hops = Arrays.asList(this.client, this.child);
+        for (ActorRef cache : caches) {
+            for (int key = 0; key < keys; key++) {
+                UUID uuid = Simulation.randomUUID();
+                cache.tell(new ReadMessage(key, hops, uuid, true, -1), this.child);
+                cache.tell(new ResponseMessage(Collections.singletonMap(key, key % 100), hops, uuid,
+                        Config.RequestType.CRITREAD, true, 0), this.parent);
+                cache.tell(new LeaseGrantMessage(key, 0, Long.MAX_VALUE), this.parent);
+                this.handleBatch(key);
+            }
+            Simulation.runUntilIdle();
+        }
+        long after = usedHeap();
+        this.stop(caches);
+        return perUnit(after - before, caches.size() * keys, caches);
+    }
+
+    /**
+     * Bytes retained by each entry of an L2 cache
+     *
+     * @param keys number of entries
+     * @return bytes per entry
+     */
+    private double l2EntryBytes(int keys) {
+        List<ActorRef> caches = new ArrayList<>();
+        for (int copy = 0; copy < copies(keys); copy++) {
+            caches.add(this.createCache(false));
+        }
+        Simulation.runUntilIdle();
+
+        long before = usedHeap();
+        List<ActorRef> hops = Collections.singletonList(this.client);
+        List<Integer> hotKeys = new ArrayList<>();
+        for (int key = 0; key < Math.min(keys, Config.HOT_KEYS_TOP_K); key++) {
+            hotKeys.add(key);
+        }
+        for (ActorRef cache : caches) {
+            for (int key = 0; key < keys; key++) {
+                UUID uuid = Simulation.randomUUID();
+                cache.tell(new ReadMessage(key, hops, uuid, false, -1), this.client);
+                cache.tell(new ResponseMessage(Collections.singletonMap(key, key % 100), hops, uuid,
+                        Config.RequestType.READ, false, 0), this.parent);
+                this.handleBatch(key);
+            }
+            cache.tell(new HotKeysPushMessage(Collections.emptyMap(), Collections.emptyMap(), hotKeys), this.parent);
+            Simulation.runUntilIdle();
+        }
+        // The timers of the answered reads are cancelled, but the virtual scheduler drops them only once they
+        // are due, while the real one drops them right away
+        Simulation.advance(Config.L2_TIMEOUT_MAX + 1);
+        long after = usedHeap();
+        this.stop(caches);
+        return perUnit(after - before, caches.size() * keys, caches);
+    }
+
+    /**
+     * Bytes retained by each pending request of an L2 cache
+     *
+     * @param requests number of pending requests
+     * @return bytes per pending request
+     */
+    private double pendingBytes(int requests) {
+        List<ActorRef> caches = new ArrayList<>();
+        for (int copy = 0; copy < copies(requests); copy++) {
+            caches.add(this.createCache(false));
+        }
+        Simulation.runUntilIdle();
+
+        long before = usedHeap();
+        List<ActorRef> hops = Collections.singletonList(this.client);
+        for (ActorRef cache : caches) {
+            // The parent never answers, and the timers do not fire until the virtual time is advanced
+            for (int key = 0; key < requests; key++) {
+                cache.tell(new ReadMessage(key, hops, Simulation.randomUUID(), false, -1), this.client);
+                this.handleBatch(key);
+            }
+            Simulation.runUntilIdle();
+        }
+        long after = usedHeap();
+        this.stop(caches);
+        return perUnit(after - before, caches.size() * requests, caches);
+    }
+
+    /**
+     * Bytes retained by each in-flight response of the database
+     *
+     * @param responses number of responses
+     * @return bytes per response
+     */
+    private double messageBytes(int responses) {
+        List<ActorRef> hops = Arrays.asList(this.client, this.child);
+        int count = copies(responses) * responses;
+        ResponseMessage[] messages = new ResponseMessage[count];
+        long before = usedHeap();
+        for (int i = 0; i < count; i++) {
+            Map<Integer, Integer> values = new HashMap<>();
+            values.put(i, i % 100);
+            messages[i] = new ResponseMessage(values, new ArrayList<>(hops), UUID.randomUUID(),
+                    Config.RequestType.READ, false, 0);
+        }
+        long after = usedHeap();
+        return perUnit(after - before, count, (Object) messages);
+    }
+
+    /**
+     * Create a cache whose parent and database drop every message
+     *
+     * @param isL1 whether the cache is an L1 one, it becomes so once it is told its children
+     * @return cache
+     */
+    private ActorRef createCache(boolean isL1) {
+        int id = 3 + this.caches++;
+        // Heartbeats disabled, and near caches invalidated by the L2 caches
+        return this.system.actorOf(Cache.props(id, this.parent, this.parent, 0, !isL1),
+                (isL1 ? "l1-cache-0-" : "l2-cache-0-") + id);
+    }
+
+    /**
+     * Let the caches handle the messages sent so far, once a batch of them has been sent
+     *
+     * @param sent number of keys sent so far, minus one
+     */
+    private void handleBatch(int sent) {
+        if ((sent + 1) % BATCH == 0) {
+            Simulation.runUntilIdle();
+        }
+    }
+
+    /**
+     * Stop the caches, releasing their state
+     *
+     * @param caches caches
+     */
+    private void stop(List<ActorRef> caches) {
+        for (ActorRef cache : caches) {
+            this.system.stop(cache);
+        }
+        Simulation.runUntilIdle();
+    }
+
+    /**
+     * Number of copies of a structure to build, so that the measure covers enough units
+     *
+     * @param units number of units of the structure
+     * @return number of copies
+     */
+    private static int copies(int units) {
+        return Math.max(1, (Config.FOOTPRINT_MIN_UNITS + units - 1) / Math.max(1, units));
+    }
+
+    /**
+     * Bytes of heap in use after a garbage collection
+     *
+     * @return bytes in use
+     */
+    static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long used = Long.MAX_VALUE;
+        // A collection may leave some garbage behind, the lowest reading is the closest to the live objects
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            used = Math.min(used, memory.getHeapMemoryUsage().getUsed());
+        }
+        return used;
+    }
+
+    /**
+     * Bytes per unit of the structures
+     *
+     * @param bytes      bytes retained by the structures
+     * @param units      number of units in the structures
+     * @param structures structures, reachable up to the measure
+     * @return bytes per unit
+     */
+    private static double perUnit(long bytes, int units, Object... structures) {
+        // The structures are passed only to keep them reachable while the heap is measured
+        return structures.length == 0 || units == 0 ? 0 : (double) Math.max(0, bytes) / units;
+    }
+}
@@ -0,0 +1,216 @@
+package it.unitn.disi.ds1;
+
+import com.sun.net.httpserver.HttpServer;
+import it.unitn.disi.ds1.structures.ActorStats;
+import it.unitn.disi.ds1.structures.Metrics;
+import org.HdrHistogram.Histogram;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Exporter of the statistics of the actors
+ * <p>
+ * Every actor registers its {@link ActorStats statistics} as a JMX MBean, and the statistics of all the actors
+ * can be served in the Prometheus text format by a local HTTP endpoint
+ */
+public class MetricsExporter {
+    /**
+     * JMX domain of the MBeans
+     */
+    private final static String JMX_DOMAIN = "it.unitn.disi.ds1";
+
+    /**
+     * Percentiles of the latencies exported to Prometheus
+     */
+    private final static double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    /**
+     * Statistics of the registered actors, by name
+     */
+    private final static Map<String, ActorStats> REGISTRY = new ConcurrentHashMap<>();
+
+    /**
+     * Register the statistics of an actor, replacing the ones of a previous actor with the same name
+     *
+     * @param type type of the actor
+     * @param name name of the actor
+     * @param role current role of the actor
+     * @return statistics the actor has to publish to
+     */
+    public static ActorStats register(String type, String name, String role) {
+        return register(type, name, role, Config.JMX_ENABLED);
+    }
+
+    /**
+     * Register the statistics of an actor, replacing the ones of a previous actor with the same name
+     *
+     * @param type type of the actor
+     * @param name name of the actor
+     * @param role current role of the actor
+     * @param jmx  whether the statistics are registered as a JMX MBean as well
+     * @return statistics the actor has to publish to
+     */
+    public static ActorStats register(String type, String name, String role, boolean jmx) {
+        ActorStats stats = new ActorStats(name, role);
+        REGISTRY.put(name, stats);
+        if (jmx) {
+            try {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                ObjectName objectName = objectName(type, name);
+                if (server.isRegistered(objectName)) {
+                    server.unregisterMBean(objectName);
+                }
+                server.registerMBean(stats, objectName);
+            } catch (JMException e) {
+                Logger.DEBUG.warning("Cannot register the MBean of " + name + ": " + e);
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Unregister the statistics of an actor, unless they have already been replaced
+     *
+     * @param type  type of the actor
+     * @param stats statistics of the actor
+     */
+    public static void unregister(String type, ActorStats stats) {
+        if (!REGISTRY.remove(stats.name, stats)) {
+            return;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = objectName(type, stats.name);
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            Logger.DEBUG.warning("Cannot unregister the MBean of " + stats.name + ": " + e);
+        }
+    }
+
+    /**
+     * Get the JMX name of the MBean of an actor
+     *
+     * @param type type of the actor
+     * @param name name of the actor
+     * @return object name
+     * @throws JMException if the name is not valid
+     */
+    private static ObjectName objectName(String type, String name) throws JMException {
+        return new ObjectName(JMX_DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name));
+    }
+
+    /**
+     * Render the statistics of all the registered actors in the Prometheus text format
+     *
+     * @return Prometheus exposition text
+     */
+    public static String prometheusText() {
+        // Sorted by name, so that the series of an actor are always in the same place
+        Map<String, ActorStats> registry = new TreeMap<>(REGISTRY);
+        StringBuilder text = new StringBuilder();
+
+        text.append("# HELP cache_events_total Events counted by each actor\n");
+        text.append("# TYPE cache_events_total counter\n");
+        for (ActorStats stats : registry.values()) {
+            Metrics metrics = stats.metrics();
+            for (Metrics.Counter counter : Metrics.Counter.values()) {
+                text.append("cache_events_total{").append(labels(stats)).append(",event=\"")
+                        .append(counter.name().toLowerCase()).append("\"} ").append(metrics.count(counter))
+                        .append('\n');
+            }
+        }
+
+        gauge(text, registry, "cache_hit_ratio", "Fraction of the reads served by each actor from its storage",
+                ActorStats::getHitRatio);
+        gauge(text, registry, "cache_entries", "Entries stored by each actor", ActorStats::getEntries);
+        gauge(text, registry, "cache_pending_queries", "Requests each actor is waiting an answer for",
+                ActorStats::getPendingQueries);
+        gauge(text, registry, "cache_timers", "Cancellable timers scheduled by each actor", ActorStats::getTimers);
+
+        text.append("# HELP cache_latency_ms Latency of the requests handled by each actor, in milliseconds\n");
+        text.append("# TYPE cache_latency_ms summary\n");
+        for (ActorStats stats : registry.values()) {
+            Metrics metrics = stats.metrics();
+            for (Config.RequestType requestType : Config.RequestType.values()) {
+                Histogram histogram = metrics.latency(requestType);
+                if (histogram.getTotalCount() == 0) {
+                    continue;
+                }
+                String labels = labels(stats) + ",type=\"" + requestType + "\"";
+                for (double quantile : QUANTILES) {
+                    text.append("cache_latency_ms{").append(labels).append(",quantile=\"").append(quantile)
+                            .append("\"} ").append(histogram.getValueAtPercentile(quantile * 100)).append('\n');
+                }
+                text.append("cache_latency_ms_sum{").append(labels).append("} ")
+                        .append(Math.round(histogram.getMean() * histogram.getTotalCount())).append('\n');
+                text.append("cache_latency_ms_count{").append(labels).append("} ")
+                        .append(histogram.getTotalCount()).append('\n');
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Render a gauge of all the registered actors
+     *
+     * @param text     text to append to
+     * @param registry registered actors
+     * @param metric   name of the metric
+     * @param help     description of the metric
+     * @param getter   getter of the value from the statistics
+     */
+    private static void gauge(StringBuilder text, Map<String, ActorStats> registry, String metric, String help,
+                              Function<ActorStats, Number> getter) {
+        text.append("# HELP ").append(metric).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(metric).append(" gauge\n");
+        for (ActorStats stats : registry.values()) {
+            text.append(metric).append('{').append(labels(stats)).append("} ").append(getter.apply(stats))
+                    .append('\n');
+        }
+    }
+
+    /**
+     * Labels identifying an actor
+     *
+     * @param stats statistics of the actor
+     * @return labels, without braces
+     */
+    private static String labels(ActorStats stats) {
+        return "actor=\"" + stats.name + "\",role=\"" + stats.getRole() + "\"";
+    }
+
+    /**
+     * Start a local HTTP endpoint serving the statistics in the Prometheus text format at /metrics
+     *
+     * @param port port to listen to
+     * @return the started server, to be stopped once done
+     * @throws IOException if the port cannot be bound
+     */
+    public static HttpServer startHttpServer(int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        server.createContext("/metrics", exchange -> {
+            byte[] body = prometheusText().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream stream = exchange.getResponseBody()) {
+                stream.write(body);
+            }
+        });
+        server.start();
+        Logger.DEBUG.info("Serving the metrics at http://localhost:" + port + "/metrics");
+        return server;
+    }
+}
@@ -0,0 +1,197 @@
+package it.unitn.disi.ds1;
+
+import akka.actor.ActorSystem;
+import it.unitn.disi.ds1.structures.Architecture;
+import it.unitn.disi.ds1.structures.KeyDistribution;
+import it.unitn.disi.ds1.structures.LoadReport;
+import it.unitn.disi.ds1.structures.Metrics;
+import it.unitn.disi.ds1.structures.OperationMix;
+import it.unitn.disi.ds1.structures.PerformanceReport;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Performance gate
+ * <p>
+ * A fixed workload runs against a fresh architecture of a fixed shape: the load generator sends, at
+ * {@link Config#PERF_GATE_RATE} operations per second for {@link Config#PERF_GATE_SECONDS}, the operations drawn
+ * from a generator seeded with {@link Config#PERF_GATE_SEED}, with the zipfian distribution and the default mix,
+ * hence every run sends the same operations at the same times. It is preceded by a warm up of
+ * {@link Config#PERF_GATE_WARMUP_SECONDS} against another architecture, whose metrics are discarded, since the
+ * latencies of a cold JVM are several times the ones of a warm one. The messages of the requests received by the
+ * actors and the bytes allocated by the threads of their dispatcher are counted from right before the load to right
+ * after it, and divided by the operations sent, which are the same at every run, so that they do not depend on the
+ * failures. Since at that rate the throughput is the offered one, it is measured by a further run offering
+ * {@link Config#PERF_GATE_SATURATION_RATE} operations per second, more than the clients can serve.
+ * <p>
+ * The periodic protocols and the optional features must be disabled, since their messages and allocations do not
+ * depend on the workload.
+ */
+public class PerformanceGate {
+    /**
+     * Run the fixed workload, after a warm up whose metrics are discarded
+     *
+     * @return report of the metrics, null if the load generator has not ended in time
+     * @throws IllegalStateException if a periodic protocol or an optional feature is enabled
+     */
+    public PerformanceReport run() {
+        checkDisabled();
+        System.out.println("Warming up the performance gate...");
+        this.run(Config.PERF_GATE_RATE, Config.PERF_GATE_WARMUP_SECONDS);
+        System.out.println("Running the performance gate...");
+        PerformanceReport report = this.run(Config.PERF_GATE_RATE, Config.PERF_GATE_SECONDS);
+        System.out.println("Measuring the throughput...");
+        PerformanceReport saturated = this.run(Config.PERF_GATE_SATURATION_RATE, Config.PERF_GATE_SATURATION_SECONDS);
+        if (report == null || saturated == null) {
+            return null;
+        }
+        return new PerformanceReport(saturated.value(PerformanceReport.Metric.THROUGHPUT),
+                report.value(PerformanceReport.Metric.P99_LATENCY_MS),
+                report.value(PerformanceReport.Metric.MESSAGES_PER_OPERATION),
+                report.value(PerformanceReport.Metric.ALLOCATED_BYTES_PER_OPERATION));
+    }
+
+    /**
+     * Run the gate several times, and derive a baseline from the mean and the variance of the metrics
+     *
+     * @param runs number of runs
+     * @return content of the baseline file, null if the load generator has not ended in time
+     */
+    public String calibrate(int runs) {
+        List<PerformanceReport> reports = new ArrayList<>();
+        for (int i = 0; i < runs; i++) {
+            System.out.println("Calibration run " + (i + 1) + " of " + runs);
+            PerformanceReport report = this.run();
+            if (report == null) {
+                return null;
+            }
+            reports.add(report);
+        }
+        return PerformanceReport.baseline(reports, Config.PERF_GATE_SIGMAS, Config.PERF_GATE_MIN_TOLERANCE);
+    }
+
+    /**
+     * Run the fixed workload against a fresh architecture
+     *
+     * @param rate            target rate in operations per second
+     * @param durationSeconds seconds during which the operations are scheduled
+     * @return report of the metrics, null if the load generator has not ended in time
+     */
+    private PerformanceReport run(int rate, int durationSeconds) {
+        ActorSystem system = Utils.createActorSystem();
+        try {
+            Map<Integer, Integer> database = Utils.createDatabase();
+            Architecture architecture = Utils.createArchiteture(system, database, Config.PERF_GATE_L1,
+                    Config.PERF_GATE_L2, Config.PERF_GATE_CLIENTS);
+            Logger.logConfig(Config.PERF_GATE_L1, Config.PERF_GATE_L2, Config.PERF_GATE_CLIENTS);
+            Logger.logDatabase(database);
+            // Let the caches join the tree
+            Utils.timeout(200);
+
+            long messagesBefore = countMessages(architecture);
+            Map<Long, Long> allocatedBefore = allocatedBytes(system);
+            LoadReport load = Utils.runLoad(system, architecture, database, rate, durationSeconds,
+                    KeyDistribution.Type.ZIPFIAN, OperationMix.parse(Config.LOAD_DEFAULT_MIX),
+                    new Random(Config.PERF_GATE_SEED));
+            Map<Long, Long> allocatedAfter = allocatedBytes(system);
+            long messagesAfter = countMessages(architecture);
+            if (load == null || load.scheduled() == 0) {
+                return null;
+            }
+
+            double operations = load.scheduled();
+            double allocated = Double.NaN;
+            if (allocatedBefore != null && allocatedAfter != null) {
+                allocated = 0;
+                // The threads started during the load have allocated all their bytes during it
+                for (Map.Entry<Long, Long> thread : allocatedAfter.entrySet()) {
+                    allocated += thread.getValue() - allocatedBefore.getOrDefault(thread.getKey(), 0L);
+                }
+            }
+            return new PerformanceReport(load.throughput(),
+                    load.latency().getValueAtPercentile(99) / 1000.0,
+                    (messagesAfter - messagesBefore) / operations,
+                    allocated / operations);
+        } finally {
+            system.terminate();
+            try {
+                system.getWhenTerminated().toCompletableFuture().get(10, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                Logger.DEBUG.severe(e.toString());
+            }
+        }
+    }
+
+    /**
+     * Check that the periodic protocols and the optional features are disabled
+     *
+     * @throws IllegalStateException if any of them is enabled
+     */
+    private static void checkDisabled() {
+        Map<String, Boolean> enabled = new LinkedHashMap<>();
+        enabled.put("ds1.antiEntropyIntervalMs", Config.ANTI_ENTROPY_INTERVAL_MS > 0);
+        enabled.put("ds1.heartbeatIntervalMs", Config.HEARTBEAT_INTERVAL_MS > 0);
+        enabled.put("ds1.hotKeysIntervalMs", Config.HOT_KEYS_INTERVAL_MS > 0);
+        enabled.put("ds1.metricsPublishIntervalMs", Config.METRICS_PUBLISH_INTERVAL_MS > 0);
+        enabled.put("ds1.cacheSoftTtlMs", Config.CACHE_SOFT_TTL_MS > 0);
+        enabled.put("ds1.cacheHardTtlMs", Config.CACHE_HARD_TTL_MS > 0);
+        enabled.put("ds1.readLeaseMs", Config.READ_LEASE_MS > 0);
+        enabled.put("ds1.hedgedReads", Config.HEDGED_READS);
+        enabled.put("ds1.nearCacheSize", Config.NEAR_CACHE_SIZE > 0);
+        enabled.put("ds1.jmx", Config.JMX_ENABLED);
+        enabled.values().removeIf(value -> !value);
+        if (!enabled.isEmpty()) {
+            throw new IllegalStateException("The performance gate runs with the periodic protocols and the " +
+                    "optional features disabled, unset " + String.join(", ", enabled.keySet()));
+        }
+    }
+
+    /**
+     * Count the messages of the requests received so far by the actors of the architecture
+     *
+     * @param architecture architecture to query
+     * @return messages of the requests received, the ones of the periodic protocols and the stats excluded
+     */
+    private static long countMessages(Architecture architecture) {
+        Metrics metrics = Utils.collectMetrics(architecture);
+        return metrics == null ? 0 : metrics.count(Metrics.Counter.REQUEST_MESSAGES);
+    }
+
+    /**
+     * Bytes allocated so far by each thread of the default dispatcher of the actor system, which runs the actors
+     *
+     * @param system actor system
+     * @return bytes allocated by thread identifier, null if the JVM does not count them
+     */
+    private static Map<Long, Long> allocatedBytes(ActorSystem system) {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        if (!allocations.isThreadAllocatedMemorySupported() || !allocations.isThreadAllocatedMemoryEnabled()) {
+            return null;
+        }
+        // The other threads of the JVM, such as the ones of the compiler and of the test runner, are left out
+        String prefix = system.name() + "-akka.actor.default-dispatcher-";
+        Map<Long, Long> allocated = new HashMap<>();
+        for (ThreadInfo thread : threads.getThreadInfo(threads.getAllThreadIds())) {
+            if (thread != null && thread.getThreadName().startsWith(prefix)) {
+                long bytes = allocations.getThreadAllocatedBytes(thread.getThreadId());
+                if (bytes >= 0) {
+                    allocated.put(thread.getThreadId(), bytes);
+                }
+            }
+        }
+        return allocated;
+    }
+}
@@ -0,0 +1,74 @@
+package it.unitn.disi.ds1;
+
+import it.unitn.disi.ds1.structures.RequestTrace;
+
+import java.io.IOException;
+
+/**
+ * Recorder of the requests the clients receive, which can be replayed later
+ * <p>
+ * Every read and write received by a client is appended to a {@link RequestTrace trace file}, including the ones
+ * served by its near cache and the ones it drops while busy, since they are part of the incoming traffic. Recording
+ * is disabled until {@link #start(String) started}
+ */
+public class RequestRecorder {
+    /**
+     * Writer of the requests, null while recording is disabled
+     */
+    private static RequestTrace.Writer writer;
+
+    /**
+     * Start recording the requests to a file
+     *
+     * @param file trace file, overwritten
+     * @throws IOException if the file cannot be written
+     */
+    public static synchronized void start(String file) throws IOException {
+        stop();
+        writer = new RequestTrace.Writer(file, System.currentTimeMillis());
+    }
+
+    /**
+     * Stop recording, flushing the requests recorded so far
+     */
+    public static synchronized void stop() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            Logger.DEBUG.severe("Cannot close the request trace: " + e);
+        }
+        writer = null;
+    }
+
+    /**
+     * Whether recording is enabled
+     *
+     * @return true if the requests are recorded
+     */
+    public static synchronized boolean isEnabled() {
+        return writer != null;
+    }
+
+    /**
+     * Record a request received by a client, if recording is enabled
+     *
+     * @param client id of the client
+     * @param type   type of the request
+     * @param key    requested key
+     * @param value  written value, null for the reads
+     */
+    public static synchronized void record(int client, Config.RequestType type, int key, Integer value) {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.append(System.currentTimeMillis(), client, type, key, value);
+        } catch (IOException e) {
+            Logger.DEBUG.severe("Cannot record the request, recording stopped: " + e);
+            stop();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package it.unitn.disi.ds1;
+
+import akka.actor.ActorSystem;
+import it.unitn.disi.ds1.structures.Architecture;
+import it.unitn.disi.ds1.structures.KeyDistribution;
+import it.unitn.disi.ds1.structures.LoadReport;
+import it.unitn.disi.ds1.structures.OperationMix;
+import it.unitn.disi.ds1.structures.ScalabilityReport;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Driver of the scalability sweep
+ * <p>
+ * The same workload runs against a fresh architecture for each combination of the given numbers of L1 caches, L2
+ * caches and clients, to see how throughput, latency and the load of the database change with the shape of the
+ * tree. The heap in use is measured at the end of each run, after a garbage collection and while the architecture
+ * is still alive; it is the one of the whole JVM, so it is meaningful only in comparison with the other points.
+ */
+public class ScalabilitySweep {
+    /**
+     * Target rate in operations per second
+     */
+    private final double rate;
+
+    /**
+     * Seconds during which the operations of each run are scheduled
+     */
+    private final int durationSeconds;
+
+    /**
+     * Distribution of the keys of the operations
+     */
+    private final KeyDistribution.Type distribution;
+
+    /**
+     * Mix of the operations
+     */
+    private final OperationMix mix;
+
+    /**
+     * Constructor of the sweep
+     *
+     * @param rate            target rate in operations per second
+     * @param durationSeconds seconds during which the operations of each run are scheduled
+     * @param distribution    distribution of the keys of the operations
+     * @param mix             mix of the operations
+     */
+    public ScalabilitySweep(double rate, int durationSeconds, KeyDistribution.Type distribution, OperationMix mix) {
+        this.rate = rate;
+        this.durationSeconds = durationSeconds;
+        this.distribution = distribution;
+        this.mix = mix;
+    }
+
+    /**
+     * Run the workload against every architecture of the grid
+     *
+     * @param countsL1      numbers of L1 caches
+     * @param countsL2      numbers of L2 caches of each L1 cache
+     * @param countsClients numbers of clients
+     * @return report of the sweep, without the points which have not ended in time
+     */
+    public ScalabilityReport run(List<Integer> countsL1, List<Integer> countsL2, List<Integer> countsClients) {
+        ScalabilityReport report = new ScalabilityReport();
+        for (int countL1 : countsL1) {
+            for (int countL2 : countsL2) {
+                for (int countClients : countsClients) {
+                    ScalabilityReport.Point point = this.run(countL1, countL2, countClients);
+                    if (point != null) {
+                        report.add(point);
+                    }
+                }
+            }
+        }
+        return report;
+    }
+
+    /**
+     * Run the workload against a fresh architecture
+     *
+     * @param countL1      number of L1 caches
+     * @param countL2      number of L2 caches of each L1 cache
+     * @param countClients number of clients
+     * @return point of the sweep, null if the load generator has not ended in time
+     */
+    public ScalabilityReport.Point run(int countL1, int countL2, int countClients) {
+        System.out.println("Running the sweep with " + countL1 + " L1, " + countL2 + " L2 and " + countClients +
+                " clients...");
+        ActorSystem system = Utils.createActorSystem();
+        try {
+            Map<Integer, Integer> database = Utils.createDatabase();
+            Architecture architecture = Utils.createArchiteture(system, database, countL1, countL2, countClients);
+            Logger.logConfig(countL1, countL2, countClients);
+            Logger.logDatabase(database);
+            // Let the caches join the tree
+            Utils.timeout(200);
+
+            LoadReport load = Utils.runLoad(system, architecture, database, this.rate, this.durationSeconds,
+                    this.distribution, this.mix);
+            if (load == null) {
+                return null;
+            }
+
+            System.gc();
+            long heapBytes = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+            return new ScalabilityReport.Point(countL1, countL2, countClients, load,
+                    Utils.collectMetrics(Collections.singletonList(architecture.cacheTree.database.actor)), heapBytes);
+        } finally {
+            system.terminate();
+            try {
+                system.getWhenTerminated().toCompletableFuture().get(10, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                Logger.DEBUG.severe(e.toString());
+            }
+        }
+    }
+}
@@ -0,0 +1,540 @@
+package it.unitn.disi.ds1;
+
+import akka.actor.ActorSystem;
+import akka.actor.Cancellable;
+import akka.dispatch.DispatcherPrerequisites;
+import akka.dispatch.ExecutorServiceConfigurator;
+import akka.dispatch.ExecutorServiceFactory;
+import akka.event.LoggingAdapter;
+import com.typesafe.config.ConfigFactory;
+import scala.concurrent.ExecutionContext;
+import scala.concurrent.duration.FiniteDuration;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Deterministic simulation mode, running the actors in virtual time
+ * <p>
+ * Once {@link #start(long) started}, the actor systems created by {@link Utils#createActorSystem()} run all the
+ * actors on the thread which drives the simulation, one message at a time, and their timers fire when the virtual
+ * time is {@link #advance(long) advanced} instead of after a real wait. The network delays take no time, the clock
+ * of the actors is the virtual one, and the random numbers and the query identifiers are drawn from a generator
+ * seeded by the simulation, hence a run with the same seed sends the same messages in the same order and it can be
+ * replayed exactly. The simulation belongs to the thread which has started it: the actor systems running on other
+ * threads keep using the wall clock and the shared generator. Requests made from outside the actors, such as
+ * {@link akka.pattern.Patterns#ask asks}, cannot be awaited while simulating, since nothing runs until the simulation
+ * is advanced.
+ */
+public class Simulation {
+    /**
+     * Timer of the virtual scheduler
+     */
+    private static class Timer implements Cancellable, Comparable<Timer> {
+        /**
+         * Scheduler of the timer
+         */
+        final VirtualScheduler scheduler;
+
+        /**
+         * Task run when the timer fires
+         */
+        final Runnable task;
+
+        /**
+         * Execution context running the task
+         */
+        final ExecutionContext executor;
+
+        /**
+         * Period in milliseconds, 0 for a timer which fires once
+         */
+        final long periodMillis;
+
+        /**
+         * Order in which the timer has been scheduled, to fire the timers due at the same time in order
+         */
+        long sequence;
+
+        /**
+         * Virtual time at which the timer fires
+         */
+        long dueAt;
+
+        /**
+         * Whether the timer has been cancelled
+         */
+        boolean cancelled;
+
+        Timer(VirtualScheduler scheduler, Runnable task, ExecutionContext executor, long periodMillis) {
+            this.scheduler = scheduler;
+            this.task = task;
+            this.executor = executor;
+            this.periodMillis = periodMillis;
+        }
+
+        @Override
+        public boolean cancel() {
+            synchronized (this.scheduler.simulation) {
+                boolean wasCancelled = this.cancelled;
+                this.cancelled = true;
+                return !wasCancelled;
+            }
+        }
+
+        @Override
+        public boolean isCancelled() {
+            synchronized (this.scheduler.simulation) {
+                return this.cancelled;
+            }
+        }
+
+        @Override
+        public int compareTo(Timer other) {
+            int byTime = Long.compare(this.dueAt, other.dueAt);
+            return byTime != 0 ? byTime : Long.compare(this.sequence, other.sequence);
+        }
+    }
+
+    /**
+     * Scheduler of the simulated actor systems, whose timers fire as the virtual time advances
+     */
+    public static class VirtualScheduler implements akka.actor.Scheduler, Closeable {
+        /**
+         * Simulation the actor system belongs to
+         */
+        private final Simulation simulation;
+
+        /**
+         * Whether the actor system has terminated
+         */
+        private boolean closed;
+
+        /**
+         * Constructor used by the actor system
+         *
+         * @param config        configuration of the scheduler
+         * @param log           logger of the scheduler
+         * @param threadFactory factory of the threads of the scheduler, unused
+         */
+        public VirtualScheduler(com.typesafe.config.Config config, LoggingAdapter log, ThreadFactory threadFactory) {
+            this.simulation = running();
+        }
+
+        @Override
+        public Cancellable scheduleAtFixedRate(FiniteDuration initialDelay, FiniteDuration interval,
+                                               Runnable runnable, ExecutionContext executor) {
+            return this.simulation.schedule(new Timer(this, runnable, executor, Math.max(1, interval.toMillis())),
+                    initialDelay.toMillis());
+        }
+
+        /**
+         * Periodic timers of the older API, which Akka still requires, handled as the ones at a fixed rate
+         *
+         * @deprecated use {@link #scheduleAtFixedRate(FiniteDuration, FiniteDuration, Runnable, ExecutionContext)}
+         */
+        @Deprecated
+        @Override
+        public Cancellable schedule(FiniteDuration initialDelay, FiniteDuration interval, Runnable runnable,
+                                    ExecutionContext executor) {
+            return this.scheduleAtFixedRate(initialDelay, interval, runnable, executor);
+        }
+
+        @Override
+        public Cancellable scheduleOnce(FiniteDuration delay, Runnable runnable, ExecutionContext executor) {
+            return this.simulation.schedule(new Timer(this, runnable, executor, 0), delay.toMillis());
+        }
+
+        /**
+         * Run the pending timers of the terminated actor system, as the default scheduler does, and refuse the new
+         * ones, which lets the dispatchers shut down at once instead of waiting for the virtual time to advance
+         */
+        @Override
+        public void close() {
+            List<Timer> pending = new ArrayList<>();
+            synchronized (this.simulation) {
+                this.closed = true;
+                this.simulation.timers.removeIf(timer -> timer.scheduler == this && pending.add(timer));
+            }
+            for (Timer timer : pending) {
+                if (timer.cancel()) {
+                    timer.executor.execute(timer.task);
+                }
+            }
+        }
+
+        @Override
+        public double maxFrequency() {
+            return 1000;
+        }
+    }
+
+    /**
+     * Configurator of the executor of the simulated dispatchers, which runs the actors on the driving thread
+     */
+    public static class ExecutorConfigurator extends ExecutorServiceConfigurator {
+        /**
+         * Simulation the dispatcher belongs to
+         */
+        private final Simulation simulation;
+
+        /**
+         * Constructor used by the actor system
+         *
+         * @param config        configuration of the executor
+         * @param prerequisites prerequisites of the dispatcher
+         */
+        public ExecutorConfigurator(com.typesafe.config.Config config, DispatcherPrerequisites prerequisites) {
+            super(config, prerequisites);
+            this.simulation = running();
+        }
+
+        @Override
+        public ExecutorServiceFactory createExecutorServiceFactory(String id, ThreadFactory threadFactory) {
+            return () -> new QueueExecutor(this.simulation);
+        }
+    }
+
+    /**
+     * Executor queueing the tasks of the actors, which are run when the simulation is driven
+     */
+    private static class QueueExecutor extends AbstractExecutorService {
+        /**
+         * Simulation running the tasks
+         */
+        private final Simulation simulation;
+
+        /**
+         * Whether the executor has been shut down
+         */
+        private boolean shutdown;
+
+        QueueExecutor(Simulation simulation) {
+            this.simulation = simulation;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            synchronized (this.simulation) {
+                this.simulation.tasks.addLast(command);
+            }
+        }
+
+        @Override
+        public void shutdown() {
+            this.shutdown = true;
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            this.shutdown = true;
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return this.shutdown;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return this.shutdown;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return this.shutdown;
+        }
+    }
+
+    /**
+     * Virtual time at the start of a simulation, in milliseconds since the epoch
+     */
+    private final static long START_MILLIS = 1_600_000_000_000L;
+
+    /**
+     * Maximum number of steps of 100 virtual milliseconds taken to terminate an actor system
+     */
+    private final static int TERMINATION_STEPS = 1000;
+
+    /**
+     * Configuration of the simulated actor systems
+     */
+    private final static String SYSTEM_CONFIG =
+            "akka.scheduler.implementation = \"" + VirtualScheduler.class.getName() + "\"\n" +
+            "akka.actor.default-dispatcher.executor = \"" + ExecutorConfigurator.class.getName() + "\"\n" +
+            // The system actors run in the simulation too, since they send messages to the simulated actors
+            "akka.actor.internal-dispatcher.executor = \"" + ExecutorConfigurator.class.getName() + "\"\n" +
+            "akka.jvm-shutdown-hooks = off\n" +
+            "akka.coordinated-shutdown.run-by-jvm-shutdown-hook = off\n";
+
+    /**
+     * Running simulation, null while not simulating
+     * <p>
+     * Read without locking by the clock and the generators of the actors, which fall through to the wall clock and
+     * the shared generator when it is null or owned by another thread; its own state is guarded by its monitor.
+     */
+    private static volatile Simulation current;
+
+    /**
+     * Tasks of the actors waiting to run, in order of submission
+     */
+    private final Deque<Runnable> tasks = new ArrayDeque<>();
+
+    /**
+     * Pending timers, in order of virtual time
+     */
+    private final PriorityQueue<Timer> timers = new PriorityQueue<>();
+
+    /**
+     * Random number generator of the simulation, used by the driving thread only
+     */
+    private final Random random;
+
+    /**
+     * Thread driving the simulation, on which the simulated actors run
+     */
+    private final Thread driver;
+
+    /**
+     * Virtual time in milliseconds since the epoch
+     */
+    private long now = START_MILLIS;
+
+    /**
+     * Number of timers scheduled so far
+     */
+    private long sequence;
+
+    /**
+     * Constructor of a simulation
+     *
+     * @param seed   seed of the random numbers of the simulation
+     * @param driver thread driving the simulation
+     */
+    private Simulation(long seed, Thread driver) {
+        this.random = new Random(seed);
+        this.driver = driver;
+    }
+
+    /**
+     * Start simulating: the actor systems created from now on run in virtual time
+     *
+     * @param seed seed of the random numbers of the simulation
+     */
+    public static void start(long seed) {
+        current = new Simulation(seed, Thread.currentThread());
+    }
+
+    /**
+     * Stop simulating, discarding the pending tasks and timers
+     */
+    public static void stop() {
+        Simulation simulation = current;
+        current = null;
+        if (simulation != null) {
+            synchronized (simulation) {
+                simulation.tasks.clear();
+                simulation.timers.clear();
+            }
+        }
+    }
+
+    /**
+     * Whether a simulation is running on the current thread
+     *
+     * @return true if simulating
+     */
+    public static boolean isEnabled() {
+        return driven() != null;
+    }
+
+    /**
+     * Current time of the actors
+     *
+     * @return virtual time while simulating, wall clock time otherwise, in milliseconds since the epoch
+     */
+    public static long currentTimeMillis() {
+        Simulation simulation = driven();
+        if (simulation == null) {
+            return System.currentTimeMillis();
+        }
+        synchronized (simulation) {
+            return simulation.now;
+        }
+    }
+
+    /**
+     * Random number generator of the actors
+     *
+     * @return seeded generator while simulating, {@link Config#RANDOM} otherwise
+     */
+    public static Random random() {
+        Simulation simulation = driven();
+        return simulation != null ? simulation.random : Config.RANDOM;
+    }
+
+    /**
+     * Random identifier of a query
+     *
+     * @return version 4 UUID, drawn from the seeded generator while simulating
+     */
+    public static UUID randomUUID() {
+        Simulation simulation = driven();
+        if (simulation == null) {
+            return UUID.randomUUID();
+        }
+        long most = (simulation.random.nextLong() & ~0xF000L) | 0x4000L;
+        long least = (simulation.random.nextLong() & ~(0xC000L << 48)) | (0x8000L << 48);
+        return new UUID(most, least);
+    }
+
+    /**
+     * Create an actor system running in virtual time
+     *
+     * @param name name of the actor system
+     * @return simulated actor system
+     */
+    static ActorSystem createActorSystem(String name) {
+        // The actor system waits for its loggers to start, hence it is created while the simulation is driven
+        CompletableFuture<ActorSystem> system = CompletableFuture.supplyAsync(() -> ActorSystem.create(name,
+                ConfigFactory.parseString(SYSTEM_CONFIG).withFallback(ConfigFactory.load())));
+        while (!system.isDone()) {
+            runUntilIdle();
+            try {
+                system.get(1, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException | InterruptedException | ExecutionException ignored) {
+                // Checked again by the loop, or thrown below
+            }
+        }
+        runUntilIdle();
+        return system.join();
+    }
+
+    /**
+     * Terminate a simulated actor system, advancing the virtual time until its actors have stopped
+     *
+     * @param system simulated actor system
+     */
+    public static void terminate(ActorSystem system) {
+        system.terminate();
+        // The coordinated shutdown waits on the timers of the system
+        for (int i = 0; i < TERMINATION_STEPS && !system.whenTerminated().isCompleted(); i++) {
+            advance(100);
+        }
+    }
+
+    /**
+     * Advance the virtual time, running the actors and firing the timers which are due in the meanwhile
+     *
+     * @param millis milliseconds of virtual time
+     */
+    public static void advance(long millis) {
+        Simulation simulation = running();
+        long target;
+        synchronized (simulation) {
+            target = simulation.now + Math.max(0, millis);
+        }
+        while (true) {
+            simulation.runTasks();
+            Timer timer;
+            synchronized (simulation) {
+                timer = simulation.timers.peek();
+                if (timer == null || timer.dueAt > target) {
+                    simulation.now = target;
+                    break;
+                }
+                simulation.timers.poll();
+                if (timer.cancelled) {
+                    continue;
+                }
+                simulation.now = timer.dueAt;
+                if (timer.periodMillis > 0) {
+                    timer.dueAt = simulation.now + timer.periodMillis;
+                    timer.sequence = simulation.sequence++;
+                    simulation.timers.add(timer);
+                } else {
+                    timer.cancelled = true;
+                }
+            }
+            timer.executor.execute(timer.task);
+        }
+        simulation.runTasks();
+    }
+
+    /**
+     * Run the actors until no message is left to handle, without advancing the virtual time
+     */
+    public static void runUntilIdle() {
+        running().runTasks();
+    }
+
+    /**
+     * Simulation driven by the current thread
+     *
+     * @return the running simulation if the current thread drives it, null otherwise
+     */
+    private static Simulation driven() {
+        Simulation simulation = current;
+        return simulation != null && simulation.driver == Thread.currentThread() ? simulation : null;
+    }
+
+    /**
+     * Running simulation, to which the actor systems being created belong
+     *
+     * @return the running simulation
+     */
+    private static Simulation running() {
+        Simulation simulation = current;
+        if (simulation == null) {
+            throw new IllegalStateException("No simulation is running");
+        }
+        return simulation;
+    }
+
+    /**
+     * Run the queued tasks of the actors until none is left
+     */
+    private void runTasks() {
+        while (true) {
+            Runnable task;
+            synchronized (this) {
+                task = this.tasks.pollFirst();
+            }
+            if (task == null) {
+                return;
+            }
+            task.run();
+        }
+    }
+
+    /**
+     * Add a timer to the virtual scheduler
+     *
+     * @param timer        timer
+     * @param delayMillis  milliseconds of virtual time before the timer fires
+     * @return the timer, which can be cancelled
+     */
+    private synchronized Cancellable schedule(Timer timer, long delayMillis) {
+        if (timer.scheduler.closed) {
+            throw new IllegalStateException("The actor system has terminated");
+        }
+        timer.dueAt = this.now + Math.max(0, delayMillis);
+        timer.sequence = this.sequence++;
+        this.timers.add(timer);
+        return timer;
+    }
+}
@@ -0,0 +1,133 @@
+package it.unitn.disi.ds1;
+
+import akka.actor.ActorSystem;
+import it.unitn.disi.ds1.messages.StartSnapshotMessage;
+import it.unitn.disi.ds1.structures.Architecture;
+import it.unitn.disi.ds1.structures.KeyDistribution;
+import it.unitn.disi.ds1.structures.LoadReport;
+import it.unitn.disi.ds1.structures.Metrics;
+import it.unitn.disi.ds1.structures.OperationMix;
+import it.unitn.disi.ds1.structures.SoakReport;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Soak test
+ * <p>
+ * The load generator runs against a single architecture for a long time, split in {@link Config#SOAK_SAMPLES}
+ * rounds. Before each round a crash of a random type is injected every {@link Config#SOAK_CRASH_INTERVAL_MS} and
+ * a distributed snapshot is started, then the round runs until its operations have been answered, so that the
+ * requests in progress are as few as possible when the gauges of the actors and the heap are sampled at its end.
+ * The state of the requests which are over is expected to be freed, hence the gauges and the heap which keep
+ * growing over the rounds are reported as leaks.
+ */
+public class Soak {
+    /**
+     * Number of L1 caches of the architecture
+     */
+    private final int countL1;
+
+    /**
+     * Number of L2 caches of each L1 cache
+     */
+    private final int countL2;
+
+    /**
+     * Number of clients of the architecture
+     */
+    private final int countClients;
+
+    /**
+     * Target rate in operations per second
+     */
+    private final double rate;
+
+    /**
+     * Distribution of the keys of the operations
+     */
+    private final KeyDistribution.Type distribution;
+
+    /**
+     * Mix of the operations
+     */
+    private final OperationMix mix;
+
+    /**
+     * Constructor of the soak test
+     *
+     * @param countL1      number of L1 caches
+     * @param countL2      number of L2 caches of each L1 cache
+     * @param countClients number of clients
+     * @param rate         target rate in operations per second
+     * @param distribution distribution of the keys of the operations
+     * @param mix          mix of the operations
+     */
+    public Soak(int countL1, int countL2, int countClients, double rate, KeyDistribution.Type distribution,
+                OperationMix mix) {
+        this.countL1 = countL1;
+        this.countL2 = countL2;
+        this.countClients = countClients;
+        this.rate = rate;
+        this.distribution = distribution;
+        this.mix = mix;
+    }
+
+    /**
+     * Run the soak test
+     *
+     * @param durationSeconds seconds during which the operations are scheduled, the drains of the rounds excluded
+     * @return report of the samples
+     */
+    public SoakReport run(int durationSeconds) {
+        int rounds = Math.max(1, Math.min(Config.SOAK_SAMPLES, durationSeconds));
+        System.out.println("Soaking for " + durationSeconds + " seconds in " + rounds + " rounds...");
+        SoakReport report = new SoakReport();
+        ActorSystem system = Utils.createActorSystem();
+        try {
+            Map<Integer, Integer> database = Utils.createDatabase();
+            Architecture architecture = Utils.createArchiteture(system, database, this.countL1, this.countL2,
+                    this.countClients);
+            Logger.logConfig(this.countL1, this.countL2, this.countClients);
+            Logger.logDatabase(database);
+            // Let the caches join the tree
+            Utils.timeout(200);
+
+            long startedAt = System.nanoTime();
+            long nextCrash = Config.SOAK_CRASH_INTERVAL_MS;
+            long scheduledMillis = 0;
+            for (int round = 0; round < rounds; round++) {
+                // The seconds are spread over the rounds, the first ones taking the remainder
+                int seconds = durationSeconds / rounds + (round < durationSeconds % rounds ? 1 : 0);
+                for (; nextCrash < scheduledMillis + seconds * 1000L; nextCrash += Config.SOAK_CRASH_INTERVAL_MS) {
+                    int delay = (int) (nextCrash - scheduledMillis);
+                    Utils.randomCrash(system, architecture, delay, delay);
+                }
+                scheduledMillis += seconds * 1000L;
+                Utils.scheduleMessage(system, architecture.cacheTree.database.actor, new StartSnapshotMessage(),
+                        seconds * 500);
+
+                LoadReport load = Utils.runLoad(system, architecture, database, this.rate, seconds,
+                        this.distribution, this.mix);
+                Metrics metrics = Utils.collectMetrics(architecture);
+                if (metrics == null) {
+                    System.out.println("The database has not answered, skipping the sample of round " + round);
+                    continue;
+                }
+                long operations = load == null ? 0 : load.count(LoadReport.Outcome.SUCCEEDED);
+                long failed = load == null ? 0 : load.count(LoadReport.Outcome.FAILED) +
+                        load.count(LoadReport.Outcome.TIMED_OUT);
+                report.add(new SoakReport.Sample(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt),
+                        operations, failed, metrics, MemoryFootprint.usedHeap()));
+            }
+            return report;
+        } finally {
+            system.terminate();
+            try {
+                system.getWhenTerminated().toCompletableFuture().get(10, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                Logger.DEBUG.severe(e.toString());
+            }
+        }
+    }
+}
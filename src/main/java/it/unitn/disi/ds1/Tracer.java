@@ -0,0 +1,161 @@
+package it.unitn.disi.ds1;
+
+import it.unitn.disi.ds1.structures.Span;
+import it.unitn.disi.ds1.structures.TraceContext;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Tracer of the requests across the tree of caches
+ * <p>
+ * Each traced message handled by an actor opens a span, child of the span which has sent the message. The spans are
+ * exported to a file, one OTLP/JSON export request per line, as the file exporter of OpenTelemetry does. Tracing is
+ * disabled until {@link #start(String) started}
+ */
+public class Tracer {
+    /**
+     * Time since the epoch in nanoseconds when the tracer has been loaded, with the precision of the clock
+     */
+    private final static long EPOCH_NANOS = System.currentTimeMillis() * 1_000_000L;
+
+    /**
+     * Value of the monotonic clock when the tracer has been loaded
+     */
+    private final static long NANO_TIME = System.nanoTime();
+
+    /**
+     * Span of the message each actor thread is handling
+     */
+    private final static ThreadLocal<Span> ACTIVE_SPAN = new ThreadLocal<>();
+
+    /**
+     * Writer of the spans, null while tracing is disabled
+     */
+    private static BufferedWriter writer;
+
+    /**
+     * Start tracing, exporting the spans to a file
+     *
+     * @param file file the spans are appended to
+     * @throws IOException if the file cannot be opened
+     */
+    public static synchronized void start(String file) throws IOException {
+        stop();
+        writer = new BufferedWriter(new FileWriter(file, true));
+    }
+
+    /**
+     * Stop tracing, flushing the spans exported so far
+     */
+    public static synchronized void stop() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            Logger.DEBUG.severe("Cannot close the traces file: " + e);
+        }
+        writer = null;
+    }
+
+    /**
+     * Whether tracing is enabled
+     *
+     * @return true if the spans are exported
+     */
+    public static synchronized boolean isEnabled() {
+        return writer != null;
+    }
+
+    /**
+     * Open a span and make it the active one of the current thread
+     *
+     * @param name   name of the span
+     * @param parent trace context of the parent span, null to start a new trace
+     * @return open span
+     */
+    public static Span startSpan(String name, TraceContext parent) {
+        Span span = new Span(parent == null ? randomId(32) : parent.traceId, randomId(16),
+                parent == null ? null : parent.spanId, name, now());
+        ACTIVE_SPAN.set(span);
+        return span;
+    }
+
+    /**
+     * Close a span and export it
+     *
+     * @param span span to close
+     */
+    public static void endSpan(Span span) {
+        span.end(now());
+        if (ACTIVE_SPAN.get() == span) {
+            ACTIVE_SPAN.remove();
+        }
+        export(span);
+    }
+
+    /**
+     * Get the active span of the current thread
+     *
+     * @return active span, null if the thread is not handling a traced message
+     */
+    public static Span activeSpan() {
+        return ACTIVE_SPAN.get();
+    }
+
+    /**
+     * Get the trace context to attach to a message created by the current thread
+     *
+     * @return context of the active span, null if the thread is not handling a traced message
+     */
+    public static TraceContext currentContext() {
+        Span span = ACTIVE_SPAN.get();
+        return span == null ? null : new TraceContext(span.traceId, span.spanId, System.currentTimeMillis());
+    }
+
+    /**
+     * Append a span to the traces file, wrapped into an OTLP export request
+     *
+     * @param span closed span
+     */
+    private static synchronized void export(Span span) {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.write("{\"resourceSpans\":[{\"resource\":{\"attributes\":[{\"key\":\"service.name\"," +
+                    "\"value\":{\"stringValue\":\"multilevel-cache\"}}]},\"scopeSpans\":[{\"scope\":" +
+                    "{\"name\":\"it.unitn.disi.ds1\"},\"spans\":[" + span.toJson() + "]}]}]}");
+            writer.newLine();
+        } catch (IOException e) {
+            Logger.DEBUG.severe("Cannot export the span " + span.name + ": " + e);
+        }
+    }
+
+    /**
+     * Current time in nanoseconds since the epoch
+     *
+     * @return time in nanoseconds
+     */
+    private static long now() {
+        return EPOCH_NANOS + System.nanoTime() - NANO_TIME;
+    }
+
+    /**
+     * Random identifier in hexadecimal digits
+     *
+     * @param digits number of digits, multiple of 16
+     * @return identifier
+     */
+    private static String randomId(int digits) {
+        StringBuilder id = new StringBuilder();
+        while (id.length() < digits) {
+            id.append(String.format("%016x", ThreadLocalRandom.current().nextLong()));
+        }
+        return id.toString();
+    }
+}
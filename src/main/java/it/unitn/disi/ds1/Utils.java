@@ -2,23 +2,38 @@ package it.unitn.disi.ds1;
 
 import akka.actor.ActorRef;
 import akka.actor.ActorSystem;
+import akka.pattern.Patterns;
 import it.unitn.disi.ds1.actors.Cache;
 import it.unitn.disi.ds1.actors.Client;
 import it.unitn.disi.ds1.actors.Database;
+import it.unitn.disi.ds1.actors.LoadGenerator;
+import it.unitn.disi.ds1.actors.TraceReplayer;
 import it.unitn.disi.ds1.messages.CrashMessage;
 import it.unitn.disi.ds1.messages.JoinCachesMessage;
+import it.unitn.disi.ds1.messages.LoadReportMessage;
 import it.unitn.disi.ds1.messages.Message;
 import it.unitn.disi.ds1.messages.ReadMessage;
+import it.unitn.disi.ds1.messages.StartLoadMessage;
+import it.unitn.disi.ds1.messages.StatsRequestMessage;
+import it.unitn.disi.ds1.messages.StatsResponseMessage;
 import it.unitn.disi.ds1.messages.WriteMessage;
 import it.unitn.disi.ds1.structures.Architecture;
 import it.unitn.disi.ds1.structures.DistributedCacheTree;
+import it.unitn.disi.ds1.structures.KeyDistribution;
+import it.unitn.disi.ds1.structures.LoadReport;
+import it.unitn.disi.ds1.structures.Metrics;
+import it.unitn.disi.ds1.structures.OperationMix;
+import it.unitn.disi.ds1.structures.RequestTrace;
 import scala.concurrent.duration.Duration;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -31,7 +46,10 @@ public class Utils {
      * @return Akka Actor System
      */
     public static ActorSystem createActorSystem() {
-        // Create the actor system
+        // Create the actor system, in virtual time while simulating
+        if (Simulation.isEnabled()) {
+            return Simulation.createActorSystem("distributed-cache");
+        }
         final ActorSystem system = ActorSystem.create("distributed-cache");
         return system;
     }
@@ -52,7 +70,7 @@ public class Utils {
     public static Map<Integer, Integer> createDatabase() {
         Map<Integer, Integer> db = new HashMap<>();
         for (int i = 0; i < 100; i++) {
-            db.put(i, (int) (Math.random() * (100)));
+            db.put(i, Simulation.random().nextInt(100));
         }
         return db;
     }
@@ -150,7 +168,7 @@ public class Utils {
      * @see java.util.Random#nextInt(int)
      */
     public static int randInt(int min, int max) {
-        final Random rand = new Random();
+        final Random rand = Simulation.random();
         return rand.nextInt((max - min) + 1) + min;
     }
 
@@ -338,11 +356,169 @@ public class Utils {
     }
 
     /**
-     * Timeout
+     * Collect the metrics of the whole architecture, namely of the database, of the caches and of the clients
+     * The metrics of the nodes which do not answer in time, e.g. since they have crashed, are missing
+     *
+     * @param architecture architecture to query
+     * @return cluster-wide metrics, null if the database has not answered
+     */
+    public static Metrics collectMetrics(Architecture architecture) {
+        return askMetrics(architecture.cacheTree.database.actor, new StatsRequestMessage(UUID.randomUUID(),
+                architecture.clients, Config.STATS_TIMEOUT_MS));
+    }
+
+    /**
+     * Collect the metrics of some nodes alone, e.g. of a level of the tree, without the ones of their subtrees
+     * The metrics of the nodes which do not answer in time are missing
+     *
+     * @param nodes nodes to query
+     * @return merged metrics of the nodes, null if none of them has answered
+     */
+    public static Metrics collectMetrics(List<ActorRef> nodes) {
+        Metrics merged = null;
+        for (ActorRef node : nodes) {
+            Metrics metrics = askMetrics(node, new StatsRequestMessage(UUID.randomUUID(), Collections.emptyList(),
+                    Config.STATS_TIMEOUT_MS, false));
+            if (metrics == null) {
+                continue;
+            }
+            if (merged == null) {
+                merged = metrics;
+            } else {
+                merged.merge(metrics);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Send a stats request to a node, waiting for its answer
+     *
+     * @param node    node to query
+     * @param request stats request
+     * @return metrics of the answer, null if the node has not answered
+     */
+    private static Metrics askMetrics(ActorRef node, StatsRequestMessage request) {
+        try {
+            Object response = Patterns.ask(node, request,
+                    java.time.Duration.ofMillis(2L * request.timeoutMillis)).toCompletableFuture().get();
+            return ((StatsResponseMessage) response).metrics;
+        } catch (Exception e) {
+            Logger.DEBUG.severe(e.toString());
+            return null;
+        }
+    }
+
+    /**
+     * Run the open-loop load generator against the clients of the architecture, waiting for its report
+     *
+     * @param system          actor system
+     * @param architecture    architecture whose clients perform the operations
+     * @param database        database content, whose keys are requested
+     * @param rate            target rate in operations per second
+     * @param durationSeconds seconds during which the operations are scheduled
+     * @param distribution    distribution of the requested keys
+     * @param mix             mix of the operations
+     * @return report of the run, null if it has not ended in time
+     */
+    public static LoadReport runLoad(ActorSystem system, Architecture architecture, Map<Integer, Integer> database,
+                                     double rate, int durationSeconds, KeyDistribution.Type distribution,
+                                     OperationMix mix) {
+        return runLoad(system, architecture, database, rate, durationSeconds, distribution, mix, new Random());
+    }
+
+    /**
+     * Run the open-loop load generator against the clients of the architecture, drawing the operations from the
+     * given generator, waiting for its report
+     *
+     * @param system          actor system
+     * @param architecture    architecture whose clients perform the operations
+     * @param database        database content, whose keys are requested
+     * @param rate            target rate in operations per second
+     * @param durationSeconds seconds during which the operations are scheduled
+     * @param distribution    distribution of the requested keys
+     * @param mix             mix of the operations
+     * @param random          generator of the keys, of the operations and of the written values, seeded to send
+     *                        the same operations at each run
+     * @return report of the run, null if it has not ended in time
+     */
+    public static LoadReport runLoad(ActorSystem system, Architecture architecture, Map<Integer, Integer> database,
+                                     double rate, int durationSeconds, KeyDistribution.Type distribution,
+                                     OperationMix mix, Random random) {
+        ActorRef generator = system.actorOf(LoadGenerator.props(architecture.clients,
+                new KeyDistribution(distribution, database.keySet()), mix, rate, durationSeconds, random));
+        return awaitReport(system, generator, durationSeconds * 1000L + 2L * Config.LOAD_DRAIN_MS);
+    }
+
+    /**
+     * Start the open-loop load generator against the clients of the architecture, without waiting for its report
+     *
+     * @param system          actor system
+     * @param architecture    architecture whose clients perform the operations
+     * @param database        database content, whose keys are requested
+     * @param rate            target rate in operations per second
+     * @param durationSeconds seconds during which the operations are scheduled
+     * @param distribution    distribution of the requested keys
+     * @param mix             mix of the operations
+     * @return report of the run, completed exceptionally if it has not ended in time
+     */
+    public static CompletableFuture<LoadReport> startLoad(ActorSystem system, Architecture architecture,
+                                                          Map<Integer, Integer> database, double rate,
+                                                          int durationSeconds, KeyDistribution.Type distribution,
+                                                          OperationMix mix) {
+        ActorRef generator = system.actorOf(LoadGenerator.props(architecture.clients,
+                new KeyDistribution(distribution, database.keySet()), mix, rate, durationSeconds, new Random()));
+        return Patterns.ask(generator, new StartLoadMessage(),
+                        java.time.Duration.ofMillis(durationSeconds * 1000L + 2L * Config.LOAD_DRAIN_MS))
+                .toCompletableFuture()
+                .thenApply(response -> ((LoadReportMessage) response).report);
+    }
+
+    /**
+     * Replay a request trace through the clients of the architecture, waiting for the report
+     *
+     * @param system       actor system
+     * @param architecture architecture whose clients replay the requests
+     * @param trace        trace to replay
+     * @param speedup      factor by which the trace is accelerated, 1 to replay it at its original speed
+     * @return report of the replay, null if it has not ended in time
+     */
+    public static LoadReport replayTrace(ActorSystem system, Architecture architecture, RequestTrace trace,
+                                         double speedup) {
+        ActorRef replayer = system.actorOf(TraceReplayer.props(architecture.clients, trace, speedup));
+        return awaitReport(system, replayer, (long) (trace.durationMillis() / speedup) + 2L * Config.LOAD_DRAIN_MS);
+    }
+
+    /**
+     * Start a load generator or a trace replayer, waiting for its report
+     *
+     * @param system        actor system
+     * @param driver        load generator or trace replayer
+     * @param timeoutMillis milliseconds to wait for the report
+     * @return report of the run, null if it has not ended in time
+     */
+    private static LoadReport awaitReport(ActorSystem system, ActorRef driver, long timeoutMillis) {
+        try {
+            Object response = Patterns.ask(driver, new StartLoadMessage(), java.time.Duration.ofMillis(timeoutMillis))
+                    .toCompletableFuture().get();
+            return ((LoadReportMessage) response).report;
+        } catch (Exception e) {
+            Logger.DEBUG.severe(e.toString());
+            system.stop(driver);
+            return null;
+        }
+    }
+
+    /**
+     * Timeout, which advances the virtual time while simulating
      *
      * @param milliseconds number of milliseconds
      */
     public static void timeout(Integer milliseconds) {
+        if (Simulation.isEnabled()) {
+            Simulation.advance(milliseconds);
+            return;
+        }
         try {
             Thread.sleep(milliseconds);
         } catch (Exception e) {
@@ -0,0 +1,23 @@
+package it.unitn.disi.ds1;
+
+import java.util.logging.Formatter;
+import java.util.logging.LogRecord;
+
+/***
+ * Class employed for the log formatting
+ */
+class VerySimpleFormatter extends Formatter {
+
+    /**
+     * Format function
+     *
+     * @param record what to log
+     * @return formatted string
+     * @see java.util.logging.Formatter#format(java.util.logging.LogRecord)
+     */
+    @Override
+    public String format(LogRecord record) {
+        return String.valueOf(record.getLevel()) + ':' +
+                record.getMessage() + '\n';
+    }
+}
@@ -0,0 +1,133 @@
+package it.unitn.disi.ds1;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import it.unitn.disi.ds1.structures.Architecture;
+import it.unitn.disi.ds1.structures.DistributedCacheNode;
+import it.unitn.disi.ds1.structures.LoadReport;
+import it.unitn.disi.ds1.structures.WorkloadProfile;
+import it.unitn.disi.ds1.structures.WorkloadReport;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runner of the workload profiles
+ * <p>
+ * Each profile runs in each protocol mode against a fresh architecture of the given shape, so that the caches start
+ * empty and the metrics of a run are not mixed with the ones of the previous runs. After the load generator has
+ * reported, the metrics of the clients, of the L2 caches, of the L1 caches and of the database are collected
+ * separately, to compare the hit ratio of each level of the tree.
+ */
+public class WorkloadRunner {
+    /**
+     * Number of L1 caches of the architecture
+     */
+    private final int countL1;
+
+    /**
+     * Number of L2 caches of each L1 cache
+     */
+    private final int countL2;
+
+    /**
+     * Number of clients of the architecture
+     */
+    private final int countClients;
+
+    /**
+     * Target rate in operations per second
+     */
+    private final double rate;
+
+    /**
+     * Seconds during which the operations of each run are scheduled
+     */
+    private final int durationSeconds;
+
+    /**
+     * Constructor of the runner
+     *
+     * @param countL1         number of L1 caches
+     * @param countL2         number of L2 caches of each L1 cache
+     * @param countClients    number of clients
+     * @param rate            target rate in operations per second
+     * @param durationSeconds seconds during which the operations of each run are scheduled
+     */
+    public WorkloadRunner(int countL1, int countL2, int countClients, double rate, int durationSeconds) {
+        this.countL1 = countL1;
+        this.countL2 = countL2;
+        this.countClients = countClients;
+        this.rate = rate;
+        this.durationSeconds = durationSeconds;
+    }
+
+    /**
+     * Run profiles in some protocol modes
+     *
+     * @param profiles profiles to run
+     * @param modes    protocol modes of each profile
+     * @return side-by-side report of the runs, without the ones which have not ended in time
+     */
+    public WorkloadReport run(List<WorkloadProfile> profiles, List<WorkloadProfile.Mode> modes) {
+        WorkloadReport report = new WorkloadReport();
+        for (WorkloadProfile profile : profiles) {
+            for (WorkloadProfile.Mode mode : modes) {
+                WorkloadReport.Run run = this.run(profile, mode);
+                if (run != null) {
+                    report.add(run);
+                }
+            }
+        }
+        return report;
+    }
+
+    /**
+     * Run a profile in a protocol mode against a fresh architecture
+     *
+     * @param profile profile to run
+     * @param mode    protocol mode
+     * @return run of the profile, null if the load generator has not ended in time
+     */
+    public WorkloadReport.Run run(WorkloadProfile profile, WorkloadProfile.Mode mode) {
+        System.out.println("Running workload " + profile + " (" + profile.description + ") in " + mode + " mode...");
+        ActorSystem system = Utils.createActorSystem();
+        try {
+            Map<Integer, Integer> database = Utils.createDatabase();
+            Architecture architecture = Utils.createArchiteture(system, database, this.countL1, this.countL2,
+                    this.countClients);
+            Logger.logConfig(this.countL1, this.countL2, this.countClients);
+            Logger.logDatabase(database);
+            // Let the caches join the tree
+            Utils.timeout(200);
+
+            LoadReport load = Utils.runLoad(system, architecture, database, this.rate, this.durationSeconds,
+                    profile.distribution, profile.mix(mode));
+            if (load == null) {
+                return null;
+            }
+
+            List<ActorRef> l1 = new ArrayList<>();
+            List<ActorRef> l2 = new ArrayList<>();
+            for (DistributedCacheNode l1Node : architecture.cacheTree.database.children) {
+                l1.add(l1Node.actor);
+                for (DistributedCacheNode l2Node : l1Node.children) {
+                    l2.add(l2Node.actor);
+                }
+            }
+            return new WorkloadReport.Run(profile, mode, load, Utils.collectMetrics(architecture.clients),
+                    Utils.collectMetrics(l2), Utils.collectMetrics(l1),
+                    Utils.collectMetrics(Collections.singletonList(architecture.cacheTree.database.actor)));
+        } finally {
+            system.terminate();
+            try {
+                system.getWhenTerminated().toCompletableFuture().get(10, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                Logger.DEBUG.severe(e.toString());
+            }
+        }
+    }
+}
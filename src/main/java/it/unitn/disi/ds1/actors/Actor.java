@@ -5,20 +5,51 @@ import akka.actor.ActorRef;
 import akka.actor.Cancellable;
 import it.unitn.disi.ds1.Config;
 import it.unitn.disi.ds1.Logger;
+import it.unitn.disi.ds1.MetricsExporter;
+import it.unitn.disi.ds1.Simulation;
+import it.unitn.disi.ds1.Tracer;
+import it.unitn.disi.ds1.messages.AntiEntropyKeysMessage;
+import it.unitn.disi.ds1.messages.AntiEntropyRepairMessage;
+import it.unitn.disi.ds1.messages.AntiEntropyTickMessage;
+import it.unitn.disi.ds1.messages.HeartbeatMessage;
 import it.unitn.disi.ds1.messages.JoinCachesMessage;
+import it.unitn.disi.ds1.messages.MerkleDigestMessage;
+import it.unitn.disi.ds1.messages.MetricsTickMessage;
 import it.unitn.disi.ds1.messages.Message;
 import it.unitn.disi.ds1.messages.ReadMessage;
 import it.unitn.disi.ds1.messages.RecoveryMessage;
+import it.unitn.disi.ds1.messages.RefreshRequestMessage;
+import it.unitn.disi.ds1.messages.RefreshResponseMessage;
+import it.unitn.disi.ds1.messages.RequestPath;
 import it.unitn.disi.ds1.messages.ResponseMessage;
 import it.unitn.disi.ds1.messages.StartSnapshotMessage;
+import it.unitn.disi.ds1.messages.StatsRequestMessage;
+import it.unitn.disi.ds1.messages.StatsResponseMessage;
+import it.unitn.disi.ds1.messages.StatsTimeoutMessage;
 import it.unitn.disi.ds1.messages.TimeoutMessage;
 import it.unitn.disi.ds1.messages.TokenMessage;
+import it.unitn.disi.ds1.messages.Traced;
+import it.unitn.disi.ds1.messages.WriteBatchMessage;
+import it.unitn.disi.ds1.messages.WriteBatchTimeoutMessage;
 import it.unitn.disi.ds1.messages.WriteMessage;
+import it.unitn.disi.ds1.structures.ActorStats;
+import it.unitn.disi.ds1.structures.MerkleTree;
+import it.unitn.disi.ds1.structures.Metrics;
+import it.unitn.disi.ds1.structures.PhiAccrualFailureDetector;
+import it.unitn.disi.ds1.structures.RttEstimator;
+import it.unitn.disi.ds1.structures.Span;
+import it.unitn.disi.ds1.structures.TraceContext;
+import it.unitn.disi.ds1.structures.WriteBatch;
+import scala.PartialFunction;
 import scala.concurrent.duration.Duration;
+import scala.runtime.BoxedUnit;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -64,7 +95,7 @@ public abstract class Actor extends AbstractActor {
     /**
      * Set which considers the token which has been received
      */
-    protected Set<ActorRef> tokensReceived = new HashSet<>();
+    protected Set<ActorRef> tokensReceived = new LinkedHashSet<>();
     /**
      * Snapshot identifier
      */
@@ -73,6 +104,59 @@ public abstract class Actor extends AbstractActor {
      * Timer associated to each request
      */
     protected Map<UUID, Cancellable> timeoutScheduler;
+    /**
+     * Time at which each cancellable timer has been scheduled, namely at which its request has been sent
+     */
+    private final Map<UUID, Long> timerStartTimes;
+    /**
+     * Round trip time estimators of each peer, per request type, employed to adapt the timeouts
+     */
+    private final Map<ActorRef, Map<Config.RequestType, RttEstimator>> rttEstimators;
+    /**
+     * Failure detectors of the parent and of the children, fed by their heartbeats
+     */
+    private final Map<ActorRef, PhiAccrualFailureDetector> failureDetectors;
+    /**
+     * Write updates waiting to be propagated to each child
+     */
+    protected final Map<ActorRef, WriteBatch> pendingBatches;
+    /**
+     * Whether the timer which propagates the pending batches has been scheduled
+     */
+    private boolean batchTimerScheduled = false;
+    /**
+     * Keys each child is thought to store, employed by the anti-entropy protocol
+     * It is a superset of the keys the child actually stores, refined at each anti-entropy round
+     */
+    protected final Map<ActorRef, Set<Integer>> childKeys;
+    /**
+     * Counters and latencies of the operations handled by the actor
+     */
+    protected final Metrics metrics;
+    /**
+     * Time at which each request whose latency is measured has been received or sent
+     */
+    private final Map<UUID, Long> requestStartTimes;
+    /**
+     * Metrics collected so far for each pending stats query
+     */
+    private final Map<UUID, Metrics> statsAggregates;
+    /**
+     * Nodes which have not answered yet to each pending stats query
+     */
+    private final Map<UUID, Set<ActorRef>> statsAwaited;
+    /**
+     * Node which has asked each pending stats query
+     */
+    private final Map<UUID, ActorRef> statsRequesters;
+    /**
+     * Last stats query answered, recognized if the node is reached again through another parent
+     */
+    private UUID lastStatsQuery;
+    /**
+     * Statistics published to the exporters, null if the publication is disabled
+     */
+    private ActorStats stats;
 
     /**
      * Constructor of the Actor base class
@@ -82,7 +166,124 @@ public abstract class Actor extends AbstractActor {
     public Actor(int id) {
         this.id = id;
         this.timeoutScheduler = new HashMap<>();
+        this.timerStartTimes = new HashMap<>();
+        // The peers are kept in insertion order, since the hash codes of the actor references change at each run
+        this.rttEstimators = new LinkedHashMap<>();
+        this.failureDetectors = new LinkedHashMap<>();
         this.seqnoCache = new HashMap<>();
+        this.pendingBatches = new LinkedHashMap<>();
+        this.childKeys = new LinkedHashMap<>();
+        this.metrics = new Metrics();
+        this.requestStartTimes = new HashMap<>();
+        this.statsAggregates = new HashMap<>();
+        this.statsAwaited = new HashMap<>();
+        this.statsRequesters = new HashMap<>();
+    }
+
+    /**
+     * Register the statistics of the actor to the exporters, and start publishing them periodically
+     */
+    @Override
+    public void preStart() {
+        if (Config.METRICS_PUBLISH_INTERVAL_MS > 0) {
+            this.stats = MetricsExporter.register(getClass().getSimpleName(), getSelf().path().name(), this.role());
+            this.schedulePeriodicTimer(new MetricsTickMessage(), Config.METRICS_PUBLISH_INTERVAL_MS);
+        }
+    }
+
+    /**
+     * Unregister the statistics of the actor from the exporters
+     */
+    @Override
+    public void postStop() {
+        if (this.stats != null) {
+            MetricsExporter.unregister(getClass().getSimpleName(), this.stats);
+        }
+    }
+
+    /**
+     * Count the message, and handle it within a span when tracing is enabled and the message carries a trace context
+     * The span is the child of the one which has sent the message, and records how long the message has been in
+     * transit, namely the simulated network delay plus the time spent in the mailbox
+     *
+     * @param receive current behavior of the actor
+     * @param msg     message to handle
+     */
+    @Override
+    public void aroundReceive(PartialFunction<Object, BoxedUnit> receive, Object msg) {
+        // The timers of the actor are sent by the actor itself
+        if (msg instanceof Message && !getSender().equals(getSelf())) {
+            this.metrics.increment(Metrics.Counter.MESSAGES);
+            if (msg instanceof RequestPath) {
+                this.metrics.increment(Metrics.Counter.REQUEST_MESSAGES);
+            }
+        }
+        if (!Tracer.isEnabled() || !(msg instanceof Traced)) {
+            super.aroundReceive(receive, msg);
+            return;
+        }
+        TraceContext parent = ((Traced) msg).traceContext();
+        Span span = Tracer.startSpan(getClass().getSimpleName() + " " + msg.getClass().getSimpleName(), parent);
+        span.setAttribute("actor", getSelf().path().name());
+        span.setAttribute("role", this.role());
+        if (parent != null) {
+            span.setAttribute("transit_ms", Simulation.currentTimeMillis() - parent.sentAt);
+        }
+        try {
+            super.aroundReceive(receive, msg);
+        } finally {
+            Tracer.endSpan(span);
+        }
+    }
+
+    /**
+     * Handler of the MetricsTickMessage
+     * Publish a copy of the metrics and of the gauges of the actor, which the exporters read from their own threads
+     *
+     * @param msg metrics tick message
+     */
+    protected void onMetricsTickMessage(MetricsTickMessage msg) {
+        if (this.stats == null) {
+            return;
+        }
+        this.stats.publish(this.role(), this.metrics, this.storedEntries(), this.pendingRequests(),
+                this.timeoutScheduler.size());
+    }
+
+    /**
+     * Role of the actor, shown by the exporters
+     *
+     * @return role of the actor
+     */
+    protected abstract String role();
+
+    /**
+     * Number of entries stored by the actor, shown by the exporters
+     *
+     * @return number of entries
+     */
+    protected abstract int storedEntries();
+
+    /**
+     * Number of requests the actor is waiting an answer for, shown by the exporters
+     *
+     * @return number of pending requests
+     */
+    protected abstract int pendingRequests();
+
+    /**
+     * Sample the sizes of the state kept for the requests in progress into the gauges of a copy of the metrics
+     * The actors which keep more state for their requests add its sizes
+     *
+     * @param snapshot copy of the metrics to be sent
+     */
+    protected void sampleGauges(Metrics snapshot) {
+        snapshot.set(Metrics.Gauge.TIMERS, this.timeoutScheduler.size());
+        snapshot.set(Metrics.Gauge.TIMER_STARTS, this.timerStartTimes.size());
+        snapshot.set(Metrics.Gauge.REQUEST_STARTS, this.requestStartTimes.size());
+        snapshot.set(Metrics.Gauge.SEQNOS, this.seqnoCache.size());
+        snapshot.set(Metrics.Gauge.IN_TRANSIT, this.dataInTransit.size() + this.seqNoInTransit.size());
+        snapshot.set(Metrics.Gauge.STATS_QUERIES, this.statsAggregates.size());
     }
 
     /**
@@ -117,11 +318,7 @@ public abstract class Actor extends AbstractActor {
                 p.tell(msg, getSelf());
 
                 // simulate network delays using sleep
-                try {
-                    Thread.sleep(Config.RANDOM.nextInt(Config.NETWORK_DELAY_MS));
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
+                this.delay();
             }
         }
     }
@@ -140,13 +337,239 @@ public abstract class Actor extends AbstractActor {
                 p.tell(msg, getSelf());
 
                 // simulate network delays using sleep
-                try {
-                    Thread.sleep(Config.RANDOM.nextInt(Config.NETWORK_DELAY_MS));
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
+                this.delay();
+            }
+        }
+    }
+
+    /**
+     * Queue a write update for a child, it will be propagated within the next batch
+     * The batch is sent right away if it reaches the maximum size, otherwise when the batching window ends
+     *
+     * @param child     child to whom propagate the update
+     * @param key       updated key
+     * @param value     updated value
+     * @param seqno     sequence number of the update
+     * @param queryUUID UUID of the write
+     */
+    protected void batchUpdate(ActorRef child, int key, int value, int seqno, UUID queryUUID) {
+        WriteBatch batch = this.pendingBatches.computeIfAbsent(child, c -> new WriteBatch());
+        batch.put(key, value, seqno, queryUUID);
+
+        if (batch.size() >= Config.WRITE_BATCH_MAX_SIZE) {
+            this.sendBatch(child);
+        } else if (!this.batchTimerScheduled) {
+            this.batchTimerScheduled = true;
+            this.scheduleDetatchedTimer(new WriteBatchTimeoutMessage(), Config.WRITE_BATCH_WINDOW_MS);
+        }
+    }
+
+    /**
+     * Drop the queued update of a key for a child, unless it is newer than the given sequence number
+     * It has to be called whenever a value of the key is sent to the child by other means,
+     * so that the child never receives an older value after a newer one
+     *
+     * @param child child which is receiving a value
+     * @param key   key of the value
+     * @param seqno sequence number of the value
+     */
+    protected void discardBatchedUpdate(ActorRef child, int key, int seqno) {
+        WriteBatch batch = this.pendingBatches.get(child);
+        if (batch != null && batch.seqnos.containsKey(key) && batch.seqnos.get(key) <= seqno) {
+            batch.remove(key);
+        }
+    }
+
+    /**
+     * Send the pending batch of a child, logging each update for future consistency checks
+     *
+     * @param child child to whom send the batch
+     */
+    protected void sendBatch(ActorRef child) {
+        WriteBatch batch = this.pendingBatches.remove(child);
+        if (batch == null || batch.isEmpty()) {
+            return;
+        }
+
+        for (Map.Entry<Integer, Integer> update : batch.values.entrySet()) {
+            Logger.logCheck(Level.FINE, this.id, this.getIdFromName(child.path().name()), Config.RequestType.WRITE,
+                    true, update.getKey(), update.getValue(), batch.seqnos.get(update.getKey()),
+                    "Batched update for key [CRIT: false]", batch.queryUUIDs.get(update.getKey()));
+        }
+        Logger.DEBUG.info(getSelf().path().name() + " is sending a batch of " + batch.size() + " updates to " +
+                child.path().name());
+
+        child.tell(new WriteBatchMessage(batch.values, batch.seqnos, batch.queryUUIDs), getSelf());
+        // One simulated network delay for the whole batch
+        this.delay();
+    }
+
+    /**
+     * The batching window is over: send all the pending batches
+     *
+     * @param msg write batch timeout message
+     */
+    protected void onWriteBatchTimeoutMessage(WriteBatchTimeoutMessage msg) {
+        this.batchTimerScheduled = false;
+        for (ActorRef child : new ArrayList<>(this.pendingBatches.keySet())) {
+            this.sendBatch(child);
+        }
+    }
+
+    /**
+     * Forget all the pending batches, for instance after a crash
+     */
+    protected void clearBatches() {
+        this.pendingBatches.clear();
+        // A timer scheduled before the crash may never be delivered
+        this.batchTimerScheduled = false;
+    }
+
+    /**
+     * Start an anti-entropy round with each child
+     * The parent sends to each child the Merkle digests of its own sequence numbers of the keys the child stores
+     *
+     * @param msg      anti-entropy tick message
+     * @param seqno    sequence numbers of the parent
+     * @param children children of the parent
+     */
+    protected void onAntiEntropyTick(AntiEntropyTickMessage msg, Map<Integer, Integer> seqno, List<ActorRef> children) {
+        for (ActorRef child : children) {
+            Map<Integer, Integer> expected = new HashMap<>();
+            for (Integer key : this.keysOf(child)) {
+                if (seqno.containsKey(key)) {
+                    expected.put(key, seqno.get(key));
                 }
             }
+            MerkleTree tree = new MerkleTree(expected, Config.ANTI_ENTROPY_LEAVES);
+            child.tell(new MerkleDigestMessage(tree.getNodes()), getSelf());
+        }
+    }
+
+    /**
+     * Keys the given child is thought to store, whose sequence numbers are compared by the anti-entropy protocol
+     *
+     * @param child child of the actor
+     * @return keys of the child
+     */
+    protected Set<Integer> keysOf(ActorRef child) {
+        return this.childKeys.getOrDefault(child, Collections.emptySet());
+    }
+
+    /**
+     * Refine the keys a child is thought to store with the ones it has reported within the divergent ranges
+     *
+     * @param child  child of the actor
+     * @param leaves divergent key ranges
+     * @param keys   keys the child stores within the divergent ranges, which the actor stores as well
+     */
+    protected void refineKeysOf(ActorRef child, Set<Integer> leaves, Set<Integer> keys) {
+        Set<Integer> childKeys = this.childKeys.computeIfAbsent(child, c -> new HashSet<>());
+        childKeys.removeIf(key -> leaves.contains(MerkleTree.leafOf(key, Config.ANTI_ENTROPY_LEAVES)));
+        childKeys.addAll(keys);
+    }
+
+    /**
+     * Repair the divergent key ranges of a child
+     * Keys with an older sequence number are sent the newer value, while keys the parent does not store
+     * are evicted. Keys in the middle of a critical write are left untouched.
+     *
+     * @param msg        anti-entropy keys message
+     * @param data       values of the parent
+     * @param seqno      sequence numbers of the parent
+     * @param lockedKeys keys in the middle of a critical write
+     */
+    protected void onAntiEntropyKeysMessage(
+            AntiEntropyKeysMessage msg,
+            Map<Integer, Integer> data,
+            Map<Integer, Integer> seqno,
+            Set<Integer> lockedKeys
+    ) {
+        // The child has told exactly which keys it stores within the divergent ranges
+        Set<Integer> storedKeys = new HashSet<>(msg.seqnos.keySet());
+        storedKeys.retainAll(data.keySet());
+        this.refineKeysOf(getSender(), msg.leaves, storedKeys);
+
+        Map<Integer, Integer> values = new HashMap<>();
+        Map<Integer, Integer> seqnos = new HashMap<>();
+        Set<Integer> evictedKeys = new HashSet<>();
+        for (Map.Entry<Integer, Integer> entry : msg.seqnos.entrySet()) {
+            int key = entry.getKey();
+            if (!data.containsKey(key)) {
+                evictedKeys.add(key);
+                continue;
+            }
+            if (lockedKeys.contains(key) || seqno.get(key) <= entry.getValue()) {
+                continue;
+            }
+            values.put(key, data.get(key));
+            seqnos.put(key, seqno.get(key));
+            // The repair carries the newest value of the key
+            this.discardBatchedUpdate(getSender(), key, seqno.get(key));
+
+            this.logPushedValue(getSender(), key, data.get(key), seqno.get(key), "Anti-entropy repair");
         }
+
+        if (values.isEmpty() && evictedKeys.isEmpty()) {
+            return;
+        }
+        Logger.DEBUG.info(getSelf().path().name() + " is repairing " + values.keySet() + " and evicting " +
+                evictedKeys + " of " + getSender().path().name());
+
+        // Network delay
+        this.delay();
+        getSender().tell(new AntiEntropyRepairMessage(values, seqnos, evictedKeys), getSelf());
+    }
+
+    /**
+     * Answer the refresh request of a child for a stale entry
+     * The newer value is pushed if the parent has one, otherwise the parent confirms the version of the child
+     * if it stores the same one. Keys in the middle of a critical write are not refreshed.
+     *
+     * @param msg        refresh request message
+     * @param data       values of the parent
+     * @param seqno      sequence numbers of the parent
+     * @param lockedKeys keys in the middle of a critical write
+     */
+    protected void onRefreshRequestMessage(
+            RefreshRequestMessage msg,
+            Map<Integer, Integer> data,
+            Map<Integer, Integer> seqno,
+            Set<Integer> lockedKeys
+    ) {
+        RefreshResponseMessage response;
+        if (!data.containsKey(msg.key) || lockedKeys.contains(msg.key) || seqno.get(msg.key) < msg.seqno) {
+            response = new RefreshResponseMessage(msg.key, null, null);
+        } else if (seqno.get(msg.key) == msg.seqno) {
+            response = new RefreshResponseMessage(msg.key, null, msg.seqno);
+        } else {
+            // The refresh carries the newest value of the key
+            this.discardBatchedUpdate(getSender(), msg.key, seqno.get(msg.key));
+            this.logPushedValue(getSender(), msg.key, data.get(msg.key), seqno.get(msg.key), "Refresh");
+            response = new RefreshResponseMessage(msg.key, data.get(msg.key), seqno.get(msg.key));
+        }
+
+        // Network delay
+        this.delay();
+        getSender().tell(response, getSelf());
+    }
+
+    /**
+     * Log a value pushed by the actor to a child without a read request of the child
+     * The value is logged as a read pulled by the actor, so that the consistency check updates the child's state
+     *
+     * @param child       child receiving the value
+     * @param key         key
+     * @param value       value
+     * @param seqno       sequence number of the value
+     * @param description description of the push
+     */
+    protected void logPushedValue(ActorRef child, int key, int value, int seqno, String description) {
+        UUID pushUUID = Simulation.randomUUID();
+        Logger.logCheck(Level.FINE, this.id, this.getIdFromName(child.path().name()), Config.RequestType.READ,
+                false, key, null, seqno, description + " request for key [CRIT: false]", pushUUID);
+        Logger.logCheck(Level.FINE, this.id, this.getIdFromName(child.path().name()), Config.RequestType.READ,
+                true, key, value, seqno, description + " for key [CRIT: false]", pushUUID);
     }
 
     /**
@@ -290,6 +713,7 @@ public abstract class Actor extends AbstractActor {
      */
     protected void scheduleTimer(Message msg, int timeoutMillis, UUID timerRequest) {
         Logger.DEBUG.info(getSelf().path().name() + " is scheduling a cancellable timeout of " + timeoutMillis);
+        this.timerStartTimes.put(timerRequest, Simulation.currentTimeMillis());
         this.timeoutScheduler.put(timerRequest,                               // timer associated with the request UUID
                 // how frequently generate them
                 getContext().system().scheduler().scheduleOnce(Duration.create(timeoutMillis, TimeUnit.MILLISECONDS),
@@ -300,6 +724,25 @@ public abstract class Actor extends AbstractActor {
                 ));
     }
 
+    /**
+     * Schedule a message to be delivered periodically to the actor itself
+     * The message is delivered even while the actor is crashed, hence the period survives crashes
+     *
+     * @param msg            message to schedule
+     * @param intervalMillis period in milliseconds
+     */
+    protected void schedulePeriodicTimer(Message msg, int intervalMillis) {
+        Logger.DEBUG.info(getSelf().path().name() + " is scheduling a periodic timer of " + intervalMillis);
+        getContext().system().scheduler().scheduleWithFixedDelay(
+                Duration.create(intervalMillis, TimeUnit.MILLISECONDS),      // initial delay
+                Duration.create(intervalMillis, TimeUnit.MILLISECONDS),      // period
+                getSelf(),                                                    // destination actor reference
+                msg,                                                          // periodic message
+                getContext().system().dispatcher(),                           // system dispatcher
+                getSelf()                                                     // source of the message (myself)
+        );
+    }
+
     /**
      * Schedule a message after a fixed timer which cannot be cancelled
      *
@@ -331,6 +774,256 @@ public abstract class Actor extends AbstractActor {
 
         // Remove the timer from the HashMap
         this.timeoutScheduler.remove(timerRequest);
+        this.timerStartTimes.remove(timerRequest);
+    }
+
+    /**
+     * Cancel all the timeout {@link Cancellable timers}, e.g. after a crash, since their requests are forgotten
+     */
+    protected void cancelTimers() {
+        for (Cancellable timer : this.timeoutScheduler.values()) {
+            timer.cancel();
+        }
+        this.timeoutScheduler.clear();
+        this.timerStartTimes.clear();
+    }
+
+    /**
+     * Get the adaptive timeout for a request to a peer, based on the round trip times observed so far
+     *
+     * @param peer           peer the request is sent to
+     * @param requestType    type of the request
+     * @param initialTimeout timeout before any round trip time is observed
+     * @param minTimeout     floor of the timeout
+     * @param maxTimeout     ceiling of the timeout
+     * @return timeout in milliseconds
+     */
+    protected int adaptiveTimeout(ActorRef peer, Config.RequestType requestType, int initialTimeout,
+                                  int minTimeout, int maxTimeout) {
+        return this.rttEstimators.computeIfAbsent(peer, p -> new HashMap<>())
+                .computeIfAbsent(requestType, type -> new RttEstimator(initialTimeout, minTimeout, maxTimeout))
+                .timeout();
+    }
+
+    /**
+     * Sample the round trip time of a request to a peer, measured since its cancellable timer has been scheduled
+     * Nothing is sampled if the timer has already been cancelled
+     *
+     * @param peer         peer which has answered
+     * @param requestType  type of the request
+     * @param timerRequest request associated with the timer
+     */
+    protected void sampleRtt(ActorRef peer, Config.RequestType requestType, UUID timerRequest) {
+        Long startTime = this.timerStartTimes.get(timerRequest);
+        RttEstimator estimator = this.rttEstimators.getOrDefault(peer, Collections.emptyMap()).get(requestType);
+        if (startTime != null && estimator != null) {
+            estimator.sample(Simulation.currentTimeMillis() - startTime);
+        }
+    }
+
+    /**
+     * Back off the timeout for a peer, since a request to it has timed out
+     *
+     * @param peer        peer which has not answered
+     * @param requestType type of the request
+     */
+    protected void backoffTimeout(ActorRef peer, Config.RequestType requestType) {
+        RttEstimator estimator = this.rttEstimators.getOrDefault(peer, Collections.emptyMap()).get(requestType);
+        if (estimator != null) {
+            estimator.backoff();
+        }
+    }
+
+    /**
+     * Get the timeout of the prepare phase of a critical write, namely the largest adaptive timeout of the caches
+     * involved. If one of them is suspected to have crashed it would never acknowledge, hence the timeout is zero
+     *
+     * @param involvedCaches caches taking part in the critical write
+     * @return timeout in milliseconds
+     */
+    protected int criticalUpdateTimeout(List<ActorRef> involvedCaches) {
+        int timeout = 0;
+        for (ActorRef cache : involvedCaches) {
+            if (this.isSuspected(cache)) {
+                Logger.DEBUG.info(getSelf().path().name() + " suspects " + cache.path().name() +
+                        ", the critical write is aborted right away");
+                return 0;
+            }
+            timeout = Math.max(timeout, this.adaptiveTimeout(cache, Config.RequestType.CRITWRITE,
+                    Config.CRIT_WRITE_TIME_OUT, Config.CRIT_WRITE_TIME_OUT_MIN, Config.CRIT_WRITE_TIME_OUT_MAX));
+        }
+        return timeout;
+    }
+
+    /**
+     * Send a heartbeat to the given peers
+     * Heartbeats carry no data, hence they are neither delayed nor logged for the consistency checks
+     *
+     * @param peers parent and children of the node
+     */
+    protected void sendHeartbeats(List<ActorRef> peers) {
+        for (ActorRef peer : peers) {
+            peer.tell(new HeartbeatMessage(), getSelf());
+        }
+    }
+
+    /**
+     * Handler of the HeartbeatMessage
+     * Feed the failure detector of the sender
+     *
+     * @param msg heartbeat message
+     */
+    protected void onHeartbeatMessage(HeartbeatMessage msg) {
+        this.failureDetectors.computeIfAbsent(getSender(), peer -> new PhiAccrualFailureDetector(
+                Config.PHI_THRESHOLD, Config.PHI_WINDOW_SIZE, Config.PHI_MIN_STD_DEVIATION_MS,
+                Config.PHI_ACCEPTABLE_PAUSE_MS
+        )).heartbeat(Simulation.currentTimeMillis());
+    }
+
+    /**
+     * Whether a peer is suspected to have crashed
+     * A peer which has never sent heartbeats is not suspected
+     *
+     * @param peer peer to check
+     * @return true if the suspicion level of the peer exceeds the threshold
+     */
+    protected boolean isSuspected(ActorRef peer) {
+        PhiAccrualFailureDetector detector = this.failureDetectors.get(peer);
+        return detector != null && detector.isSuspected(Simulation.currentTimeMillis());
+    }
+
+    /**
+     * Forget the heartbeats received so far, e.g. after a crash
+     */
+    protected void clearFailureDetectors() {
+        this.failureDetectors.clear();
+    }
+
+    /**
+     * Start measuring the latency of a request
+     *
+     * @param queryUUID identifier of the request
+     */
+    protected void startRequest(UUID queryUUID) {
+        this.requestStartTimes.putIfAbsent(queryUUID, Simulation.currentTimeMillis());
+    }
+
+    /**
+     * Stop measuring the latency of a request, recording it if the measure has been started
+     *
+     * @param queryUUID   identifier of the request
+     * @param requestType type of the request
+     */
+    protected void endRequest(UUID queryUUID, Config.RequestType requestType) {
+        Long startTime = this.requestStartTimes.remove(queryUUID);
+        if (startTime != null) {
+            this.metrics.recordLatency(requestType, Simulation.currentTimeMillis() - startTime);
+        }
+    }
+
+    /**
+     * Stop measuring the latency of a request which has failed, without recording it
+     *
+     * @param queryUUID identifier of the request
+     */
+    protected void abandonRequest(UUID queryUUID) {
+        this.requestStartTimes.remove(queryUUID);
+    }
+
+    /**
+     * Forget all the latencies being measured, e.g. after a crash
+     */
+    protected void abandonRequests() {
+        this.requestStartTimes.clear();
+    }
+
+    /**
+     * Handler of the StatsRequestMessage
+     * Forward the query to the children and to the given clients, then answer with the metrics of the whole subtree
+     * once all of them have answered or the query has timed out
+     *
+     * @param msg      stats request message
+     * @param children children of the node
+     */
+    protected void onStatsRequestMessage(StatsRequestMessage msg, List<ActorRef> children) {
+        // The node has already been reached through another parent, its metrics must not be counted twice
+        if (this.statsRequesters.containsKey(msg.queryUUID) || msg.queryUUID.equals(this.lastStatsQuery)) {
+            getSender().tell(new StatsResponseMessage(msg.queryUUID, null), getSelf());
+            return;
+        }
+
+        Set<ActorRef> awaited = new LinkedHashSet<>();
+        if (msg.recursive) {
+            awaited.addAll(children);
+            awaited.addAll(msg.clients);
+            awaited.remove(getSelf());
+        }
+        Metrics snapshot = this.metrics.copy();
+        this.sampleGauges(snapshot);
+        this.statsAggregates.put(msg.queryUUID, snapshot);
+        this.statsAwaited.put(msg.queryUUID, awaited);
+        this.statsRequesters.put(msg.queryUUID, getSender());
+        if (awaited.isEmpty()) {
+            this.answerStats(msg.queryUUID);
+            return;
+        }
+
+        // Stats carry no data, hence they are neither delayed nor logged for the consistency checks
+        // The children wait less, so that their partial stats arrive before this node gives up on them
+        StatsRequestMessage forward = new StatsRequestMessage(msg.queryUUID, Collections.emptyList(),
+                msg.timeoutMillis / 2);
+        for (ActorRef peer : awaited) {
+            peer.tell(forward, getSelf());
+        }
+        this.scheduleDetatchedTimer(new StatsTimeoutMessage(msg.queryUUID), msg.timeoutMillis);
+    }
+
+    /**
+     * Handler of the StatsResponseMessage
+     * Merge the metrics of a child, answering once all the children have answered
+     *
+     * @param msg stats response message
+     */
+    protected void onStatsResponseMessage(StatsResponseMessage msg) {
+        Set<ActorRef> awaited = this.statsAwaited.get(msg.queryUUID);
+        if (awaited == null || !awaited.remove(getSender())) {
+            return;
+        }
+        if (msg.metrics != null) {
+            this.statsAggregates.get(msg.queryUUID).merge(msg.metrics);
+        }
+        if (awaited.isEmpty()) {
+            this.answerStats(msg.queryUUID);
+        }
+    }
+
+    /**
+     * Handler of the StatsTimeoutMessage
+     * Answer with the metrics collected so far, since the missing children have probably crashed
+     *
+     * @param msg stats timeout message
+     */
+    protected void onStatsTimeoutMessage(StatsTimeoutMessage msg) {
+        if (!this.statsAwaited.containsKey(msg.queryUUID)) {
+            return;
+        }
+        Logger.DEBUG.info(getSelf().path().name() + " has not received the stats of " +
+                this.statsAwaited.get(msg.queryUUID).size() + " peers, answering with partial stats");
+        this.answerStats(msg.queryUUID);
+    }
+
+    /**
+     * Answer a stats query with the metrics collected so far
+     *
+     * @param queryUUID identifier of the query
+     */
+    private void answerStats(UUID queryUUID) {
+        Metrics aggregate = this.statsAggregates.remove(queryUUID);
+        this.statsAwaited.remove(queryUUID);
+        ActorRef requester = this.statsRequesters.remove(queryUUID);
+        this.lastStatsQuery = queryUUID;
+        Logger.DEBUG.info(getSelf().path().name() + " answering the stats query " + queryUUID + "\n" + aggregate);
+        requester.tell(new StatsResponseMessage(queryUUID, aggregate), getSelf());
     }
 
     /**
@@ -378,12 +1071,25 @@ public abstract class Actor extends AbstractActor {
      * Method used in order to simulate network delays
      */
     protected void delay() {
+        if (Config.NETWORK_DELAY_MS <= 0) {
+            return;
+        }
         // simulate network delays using sleep
+        int delay = Simulation.random().nextInt(Config.NETWORK_DELAY_MS);
+        // The virtual time does not pass while handling a message
+        if (Simulation.isEnabled()) {
+            return;
+        }
         try {
-            Thread.sleep(Config.RANDOM.nextInt(Config.NETWORK_DELAY_MS));
+            Thread.sleep(delay);
         } catch (InterruptedException e) {
             e.printStackTrace();
         }
+        // The delays are charged to the span of the message being handled, to tell them apart from its processing
+        Span span = Tracer.activeSpan();
+        if (span != null) {
+            span.addToAttribute("network_delay_ms", delay);
+        }
     }
 
     /**
@@ -4,27 +4,61 @@ import akka.actor.ActorRef;
 import akka.actor.Props;
 import it.unitn.disi.ds1.Config;
 import it.unitn.disi.ds1.Logger;
+import it.unitn.disi.ds1.Simulation;
+import it.unitn.disi.ds1.messages.AntiEntropyKeysMessage;
+import it.unitn.disi.ds1.messages.AntiEntropyRepairMessage;
+import it.unitn.disi.ds1.messages.AntiEntropyTickMessage;
 import it.unitn.disi.ds1.messages.CrashMessage;
 import it.unitn.disi.ds1.messages.CriticalUpdateMessage;
 import it.unitn.disi.ds1.messages.CriticalUpdateResponseMessage;
 import it.unitn.disi.ds1.messages.CriticalUpdateTimeoutMessage;
 import it.unitn.disi.ds1.messages.CriticalWriteResponseMessage;
-import it.unitn.disi.ds1.messages.FlushMessage;
+import it.unitn.disi.ds1.messages.HeartbeatMessage;
+import it.unitn.disi.ds1.messages.HeartbeatTickMessage;
+import it.unitn.disi.ds1.messages.HotKeysPushMessage;
+import it.unitn.disi.ds1.messages.HotKeysRequestMessage;
+import it.unitn.disi.ds1.messages.HotKeysResponseMessage;
+import it.unitn.disi.ds1.messages.HotKeysTickMessage;
 import it.unitn.disi.ds1.messages.JoinCachesMessage;
+import it.unitn.disi.ds1.messages.LeaseGrantMessage;
+import it.unitn.disi.ds1.messages.LeaseRecallMessage;
+import it.unitn.disi.ds1.messages.LeaseRecallResponseMessage;
+import it.unitn.disi.ds1.messages.MerkleDigestMessage;
+import it.unitn.disi.ds1.messages.MetricsTickMessage;
+import it.unitn.disi.ds1.messages.NearCacheInvalidationMessage;
 import it.unitn.disi.ds1.messages.Message;
 import it.unitn.disi.ds1.messages.ReadMessage;
 import it.unitn.disi.ds1.messages.RecoveryMessage;
+import it.unitn.disi.ds1.messages.RefreshRequestMessage;
+import it.unitn.disi.ds1.messages.RefreshResponseMessage;
 import it.unitn.disi.ds1.messages.ResponseMessage;
+import it.unitn.disi.ds1.messages.ResyncMessage;
+import it.unitn.disi.ds1.messages.ResyncRequestMessage;
+import it.unitn.disi.ds1.messages.ResyncResponseMessage;
+import it.unitn.disi.ds1.messages.StatsRequestMessage;
+import it.unitn.disi.ds1.messages.StatsResponseMessage;
+import it.unitn.disi.ds1.messages.StatsTimeoutMessage;
+import it.unitn.disi.ds1.messages.SummaryUpdateMessage;
 import it.unitn.disi.ds1.messages.TimeoutMessage;
 import it.unitn.disi.ds1.messages.TokenMessage;
+import it.unitn.disi.ds1.messages.UnavailableMessage;
+import it.unitn.disi.ds1.messages.WriteBatchMessage;
+import it.unitn.disi.ds1.messages.WriteBatchTimeoutMessage;
 import it.unitn.disi.ds1.messages.WriteMessage;
+import it.unitn.disi.ds1.structures.FreshnessPolicy;
+import it.unitn.disi.ds1.structures.HotKeyTracker;
+import it.unitn.disi.ds1.structures.MerkleTree;
+import it.unitn.disi.ds1.structures.Metrics;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
 import java.util.logging.Level;
@@ -77,6 +111,26 @@ public class Cache extends Actor {
      * Acknowledgements for saying OK to the database
      */
     private final Map<UUID, Set<ActorRef>> receivedAcksForCritWrite;
+    /**
+     * Children involved in each critical write, namely the ones which may store the key
+     * relevant only for L1 caches
+     */
+    private final Map<UUID, List<ActorRef>> criticalSessionCaches;
+    /**
+     * Keys announced to the database summary, relevant only for L1 caches
+     * <p>
+     * They survive crashes, since they are the keys the cache resyncs with the database once it recovers,
+     * and they are retracted once neither the cache nor its children store them
+     */
+    private final Set<Integer> summarizedKeys;
+    /**
+     * Whether the L1 cache has recovered and is waiting for the resync response of the database
+     */
+    private boolean resyncing;
+    /**
+     * Read leases granted by the database, with their expiration time, relevant only for L1 caches
+     */
+    private final Map<Integer, Long> readLeases;
     /**
      * Reference to the parent actor
      */
@@ -89,6 +143,38 @@ public class Cache extends Actor {
      * Pending requests
      */
     private final HashMap<UUID, Message> pendingQueries;
+    /**
+     * Time at which each entry has been stored or confirmed by the parent
+     */
+    private final Map<Integer, Long> storedAt;
+    /**
+     * Time at which the refresh of each stale entry has been requested to the parent
+     */
+    private final Map<Integer, Long> refreshingKeys;
+    /**
+     * Time the last refresh of each entry has taken
+     */
+    private final Map<Integer, Long> refreshDurations;
+    /**
+     * Policy deciding when the entries are refreshed and when they expire
+     */
+    private final FreshnessPolicy freshnessPolicy;
+    /**
+     * Tracker of the accesses of the keys read through this cache
+     */
+    private final HotKeyTracker hotKeyTracker;
+    /**
+     * Current hot keys, the most accessed first
+     */
+    private List<Integer> hotKeys;
+    /**
+     * Hot keys pinned by the parent, they do not expire
+     */
+    private Set<Integer> pinnedKeys;
+    /**
+     * Clients which may store each key in their near cache, to be invalidated when the key changes
+     */
+    private final Map<Integer, Set<ActorRef>> nearCacheReaders;
     /**
      * Type of the next simulated crash
      */
@@ -101,6 +187,14 @@ public class Cache extends Actor {
      * Whether the cache is unvailable
      */
     private boolean unavailable = false;
+    /**
+     * Milliseconds between two heartbeats, 0 disables the heartbeats
+     */
+    private final int heartbeatIntervalMs;
+    /**
+     * Whether the cache invalidates the near caches of the clients it answers to
+     */
+    private final boolean nearCacheInvalidations;
 
     /**
      * Cache constructor, by default the cache is an L2
@@ -111,18 +205,48 @@ public class Cache extends Actor {
      * @param database  Reference to the database
      */
     public Cache(int id, ActorRef parent, ActorRef database) {
+        this(id, parent, database, Config.HEARTBEAT_INTERVAL_MS, Config.NEAR_CACHE_SIZE > 0);
+    }
+
+    /**
+     * Cache constructor, by default the cache is an L2
+     * Initialize all variables
+     *
+     * @param id                     Cache identifier
+     * @param parent                 Reference to the parent actor
+     * @param database               Reference to the database
+     * @param heartbeatIntervalMs    Milliseconds between two heartbeats, 0 disables them
+     * @param nearCacheInvalidations Whether to invalidate the near caches of the clients
+     */
+    public Cache(int id, ActorRef parent, ActorRef database, int heartbeatIntervalMs,
+                 boolean nearCacheInvalidations) {
         super(id);
+        this.heartbeatIntervalMs = heartbeatIntervalMs;
+        this.nearCacheInvalidations = nearCacheInvalidations;
         this.parent = parent;
         this.originalParent = parent;
         this.caches = new ArrayList<>();
         this.cachedDatabase = new HashMap<>();
         this.isL1 = false;
         this.pendingQueries = new HashMap<>();
+        this.nearCacheReaders = new HashMap<>();
+        this.storedAt = new HashMap<>();
+        this.refreshingKeys = new HashMap<>();
+        this.refreshDurations = new HashMap<>();
+        this.freshnessPolicy = new FreshnessPolicy(Config.CACHE_SOFT_TTL_MS, Config.CACHE_HARD_TTL_MS,
+                Config.XFETCH_BETA);
+        this.hotKeyTracker = new HotKeyTracker(Config.HOT_KEYS_TOP_K, Config.HOT_KEYS_SKETCH_WIDTH,
+                Config.HOT_KEYS_SKETCH_DEPTH);
+        this.hotKeys = new ArrayList<>();
+        this.pinnedKeys = new HashSet<>();
         this.database = database;
         // Initialize the critical keys
         this.criticalSessionKey = new HashMap<>();
         this.criticalKeyValue = new HashMap<>();
         this.receivedAcksForCritWrite = new HashMap<>();
+        this.criticalSessionCaches = new HashMap<>();
+        this.readLeases = new HashMap<>();
+        this.summarizedKeys = new HashSet<>();
     }
 
     /**
@@ -134,7 +258,36 @@ public class Cache extends Actor {
      * @return Cache instance
      */
     static public Props props(int id, ActorRef parent, ActorRef database) {
-        return Props.create(Cache.class, () -> new Cache(id, parent, database));
+        return props(id, parent, database, Config.HEARTBEAT_INTERVAL_MS);
+    }
+
+    /**
+     * Static class builder
+     *
+     * @param id                  identifier
+     * @param parent              reference to the parent node
+     * @param database            reference to the database
+     * @param heartbeatIntervalMs milliseconds between two heartbeats, 0 disables them
+     * @return Cache instance
+     */
+    static public Props props(int id, ActorRef parent, ActorRef database, int heartbeatIntervalMs) {
+        return props(id, parent, database, heartbeatIntervalMs, Config.NEAR_CACHE_SIZE > 0);
+    }
+
+    /**
+     * Static class builder
+     *
+     * @param id                     identifier
+     * @param parent                 reference to the parent node
+     * @param database               reference to the database
+     * @param heartbeatIntervalMs    milliseconds between two heartbeats, 0 disables them
+     * @param nearCacheInvalidations whether to invalidate the near caches of the clients
+     * @return Cache instance
+     */
+    static public Props props(int id, ActorRef parent, ActorRef database, int heartbeatIntervalMs,
+                              boolean nearCacheInvalidations) {
+        return Props.create(Cache.class,
+                () -> new Cache(id, parent, database, heartbeatIntervalMs, nearCacheInvalidations));
     }
 
     /**
@@ -148,8 +301,216 @@ public class Cache extends Actor {
         this.criticalKeyValue.clear();
         this.criticalSessionKey.clear();
         this.receivedAcksForCritWrite.clear();
-        // Empty pending queries
+        this.criticalSessionCaches.clear();
+        this.readLeases.clear();
+        // Empty pending queries, together with their timers
         this.pendingQueries.clear();
+        this.cancelTimers();
+        this.abandonRequests();
+        // Forget the updates which had still to be propagated
+        this.clearBatches();
+        // The keys of the children are known again once the resync is over
+        this.childKeys.clear();
+        // Heartbeats received before the crash say nothing about the peers
+        this.clearFailureDetectors();
+        // The near caches of the clients expire by themselves
+        this.nearCacheReaders.clear();
+        this.storedAt.clear();
+        this.refreshingKeys.clear();
+        this.refreshDurations.clear();
+        this.hotKeyTracker.clear();
+        this.hotKeys = new ArrayList<>();
+        this.pinnedKeys = new HashSet<>();
+        this.metrics.increment(Metrics.Counter.FLUSHES);
+    }
+
+    /**
+     * Remember that a child may store a key, the child is going to be checked by the anti-entropy protocol
+     *
+     * @param child child which has received the key
+     * @param key   key
+     */
+    private void recordChildKey(ActorRef child, int key) {
+        if (this.caches.contains(child)) {
+            this.childKeys.computeIfAbsent(child, c -> new HashSet<>()).add(key);
+        }
+    }
+
+    /**
+     * Remember that a client may store a key in its near cache
+     * Only L2 caches answer to clients
+     *
+     * @param client client which has received the key
+     * @param key    key
+     */
+    private void recordNearCacheReader(ActorRef client, int key) {
+        if (!this.isL1 && this.nearCacheInvalidations) {
+            this.nearCacheReaders.computeIfAbsent(key, k -> new LinkedHashSet<>()).add(client);
+        }
+    }
+
+    /**
+     * Tell the clients which may store a key in their near cache to drop it, since its value has changed
+     * or the cache does not store it anymore
+     * Invalidations are not delayed, the sooner they arrive the shorter clients serve a stale value
+     *
+     * @param key key
+     */
+    private void invalidateNearCaches(int key) {
+        Set<ActorRef> readers = this.nearCacheReaders.remove(key);
+        if (readers == null) {
+            return;
+        }
+        for (ActorRef client : readers) {
+            client.tell(new NearCacheInvalidationMessage(key), getSelf());
+        }
+    }
+
+    /**
+     * Remember that an entry has just been stored or confirmed by the parent, hence it is fresh
+     *
+     * @param key key of the entry
+     */
+    private void touchEntry(int key) {
+        this.storedAt.put(key, Simulation.currentTimeMillis());
+    }
+
+    /**
+     * Get the age of an entry, namely the time since it has been stored or confirmed by the parent
+     *
+     * @param key key of the entry
+     * @return age in milliseconds
+     */
+    private long entryAge(int key) {
+        long now = Simulation.currentTimeMillis();
+        return now - this.storedAt.getOrDefault(key, now);
+    }
+
+    /**
+     * Ask the parent to refresh an entry which has just been served, if it is stale or drawn for an early refresh
+     * Only one refresh per entry is in flight
+     *
+     * @param key key of the entry
+     */
+    private void refreshIfStale(int key) {
+        if (this.refreshingKeys.containsKey(key) || !this.freshnessPolicy.shouldRefresh(this.entryAge(key),
+                this.refreshDurations.getOrDefault(key, 0L), 1.0 - Simulation.random().nextDouble())) {
+            return;
+        }
+        Logger.DEBUG.info(getSelf().path().name() + ": refreshing the stale key " + key + " with ID " + this.id);
+        this.refreshingKeys.put(key, Simulation.currentTimeMillis());
+
+        // Network delay
+        this.delay();
+        this.parent.tell(new RefreshRequestMessage(key, this.seqnoCache.get(key)), getSelf());
+    }
+
+    /**
+     * Handler of the RefreshResponseMessage
+     * Store the newer value sent by the parent, or mark the entry as fresh if the parent has confirmed it
+     *
+     * @param msg refresh response message
+     */
+    private void onRefreshResponseMessage(RefreshResponseMessage msg) {
+        Long requestedAt = this.refreshingKeys.remove(msg.key);
+        if (requestedAt != null) {
+            this.refreshDurations.put(msg.key, Simulation.currentTimeMillis() - requestedAt);
+        }
+        if (msg.seqno == null || !this.cachedDatabase.containsKey(msg.key) ||
+                this.criticalKeyValue.containsKey(msg.key)) {
+            return;
+        }
+        int currentSeqno = this.seqnoCache.get(msg.key);
+        if (msg.value != null && currentSeqno < msg.seqno) {
+            Logger.DEBUG.info(getSelf().path().name() + ": refreshed key " + msg.key + " with ID " + this.id);
+            this.cachedDatabase.put(msg.key, msg.value);
+            this.seqnoCache.put(msg.key, msg.seqno);
+            this.invalidateNearCaches(msg.key);
+            this.touchEntry(msg.key);
+        } else if (currentSeqno == msg.seqno) {
+            this.touchEntry(msg.key);
+        }
+    }
+
+    /**
+     * Handler of the HotKeysTickMessage
+     * Update the hot keys and let the older accesses cool down. An L1 cache pushes the hot keys it stores to
+     * the children which are not thought to store them yet, and tells all the children which keys to pin
+     *
+     * @param msg hot keys tick message
+     */
+    private void onHotKeysTickMessage(HotKeysTickMessage msg) {
+        List<Integer> previousHotKeys = this.hotKeys;
+        this.hotKeys = this.hotKeyTracker.hotKeys(Config.HOT_KEY_THRESHOLD);
+        this.hotKeyTracker.decay();
+        if (!this.hotKeys.equals(previousHotKeys)) {
+            Logger.DEBUG.info(getSelf().path().name() + ": hot keys " + this.hotKeys + " with ID " + this.id);
+        }
+        if (!this.isL1) {
+            return;
+        }
+
+        for (ActorRef child : this.caches) {
+            Map<Integer, Integer> values = new HashMap<>();
+            Map<Integer, Integer> seqnos = new HashMap<>();
+            for (Integer key : this.hotKeys) {
+                if (!this.cachedDatabase.containsKey(key) || this.criticalKeyValue.containsKey(key) ||
+                        this.childKeys.getOrDefault(child, Collections.emptySet()).contains(key)) {
+                    continue;
+                }
+                values.put(key, this.cachedDatabase.get(key));
+                seqnos.put(key, this.seqnoCache.get(key));
+                // The push carries the newest value of the key
+                this.discardBatchedUpdate(child, key, this.seqnoCache.get(key));
+                this.recordChildKey(child, key);
+                this.logPushedValue(child, key, this.cachedDatabase.get(key), this.seqnoCache.get(key),
+                        "Hot key push");
+            }
+            if (values.isEmpty() && this.hotKeys.equals(previousHotKeys)) {
+                continue;
+            }
+
+            // Network delay
+            this.delay();
+            child.tell(new HotKeysPushMessage(values, seqnos, this.hotKeys), getSelf());
+        }
+    }
+
+    /**
+     * Handler of the HotKeysPushMessage
+     * Store the hot values pushed by the parent, unless a newer version is stored, and pin the hot keys
+     * Keys in the middle of a critical write are left untouched
+     *
+     * @param msg hot keys push message
+     */
+    private void onHotKeysPushMessage(HotKeysPushMessage msg) {
+        if (!getSender().equals(this.parent)) {
+            return;
+        }
+        for (Map.Entry<Integer, Integer> entry : msg.values.entrySet()) {
+            int key = entry.getKey();
+            Integer currentSeqno = this.seqnoCache.get(key);
+            if (!this.criticalKeyValue.containsKey(key) &&
+                    (currentSeqno == null || currentSeqno < msg.seqnos.get(key))) {
+                this.cachedDatabase.put(key, entry.getValue());
+                this.seqnoCache.put(key, msg.seqnos.get(key));
+                this.invalidateNearCaches(key);
+                this.touchEntry(key);
+            }
+        }
+        this.pinnedKeys = new HashSet<>(msg.hotKeys);
+        Logger.DEBUG.info(getSelf().path().name() + " got the hot keys " + msg.values.keySet() +
+                ", pinned keys: " + this.pinnedKeys);
+    }
+
+    /**
+     * Handler of the HotKeysRequestMessage
+     * Answer with the current hot keys
+     *
+     * @param msg hot keys request message
+     */
+    private void onHotKeysRequestMessage(HotKeysRequestMessage msg) {
+        getSender().tell(new HotKeysResponseMessage(this.id, this.hotKeys), getSelf());
     }
 
     /**
@@ -163,6 +524,69 @@ public class Cache extends Actor {
         this.criticalSessionKey.remove(requestId);
         this.criticalKeyValue.remove(oldKey);
         this.receivedAcksForCritWrite.remove(requestId);
+        this.criticalSessionCaches.remove(requestId);
+    }
+
+    /**
+     * Start the periodic timers of every cache, since L2 caches do not receive a JoinCachesMessage
+     */
+    @Override
+    public void preStart() {
+        super.preStart();
+        // Every cache tracks its hot keys, L1 caches push them to their children
+        if (Config.HOT_KEYS_INTERVAL_MS > 0) {
+            this.schedulePeriodicTimer(new HotKeysTickMessage(), Config.HOT_KEYS_INTERVAL_MS);
+        }
+        // Every cache detects the crashes of its parent and of its children through heartbeats
+        if (this.heartbeatIntervalMs > 0) {
+            this.schedulePeriodicTimer(new HeartbeatTickMessage(), this.heartbeatIntervalMs);
+        }
+    }
+
+    /**
+     * Role of the cache, which changes when an L2 cache gives up its parent
+     *
+     * @return L1, L2 or unavailable
+     */
+    @Override
+    protected String role() {
+        if (this.unavailable) {
+            return "unavailable";
+        }
+        return this.isL1 ? "L1" : "L2";
+    }
+
+    /**
+     * Number of cached entries
+     *
+     * @return number of entries
+     */
+    @Override
+    protected int storedEntries() {
+        return this.cachedDatabase.size();
+    }
+
+    /**
+     * Number of requests forwarded to the parent and not answered yet
+     *
+     * @return number of pending queries
+     */
+    @Override
+    protected int pendingRequests() {
+        return this.pendingQueries.size();
+    }
+
+    /**
+     * Sample the forwarded requests and the critical write sessions, besides the state of every actor
+     *
+     * @param snapshot copy of the metrics to be sent
+     */
+    @Override
+    protected void sampleGauges(Metrics snapshot) {
+        super.sampleGauges(snapshot);
+        snapshot.set(Metrics.Gauge.PENDING_QUERIES, this.pendingQueries.size());
+        snapshot.set(Metrics.Gauge.CRITICAL_SESSIONS, this.criticalSessionKey.size() +
+                this.receivedAcksForCritWrite.size() + this.criticalSessionCaches.size());
     }
 
     /**
@@ -175,10 +599,220 @@ public class Cache extends Actor {
     protected void onJoinCachesMessage(JoinCachesMessage msg) {
         this.caches.addAll(msg.caches);
         this.isL1 = !this.caches.isEmpty();
+        // L1 caches periodically check their children
+        if (this.isL1 && Config.ANTI_ENTROPY_INTERVAL_MS > 0) {
+            this.schedulePeriodicTimer(new AntiEntropyTickMessage(), Config.ANTI_ENTROPY_INTERVAL_MS);
+        }
         Logger.DEBUG.info(getSelf().path().name() + ": joining a the distributed cache with " +
                 this.caches.size() + " children peers with ID " + this.id);
     }
 
+    /**
+     * Handler of the MerkleDigestMessage
+     * Compare the digests of the parent with the ones of the stored keys and report to the parent the
+     * stored keys in the divergent key ranges
+     *
+     * @param msg Merkle digest message
+     */
+    private void onMerkleDigestMessage(MerkleDigestMessage msg) {
+        // A recovering cache would report as missing the keys it is about to resync
+        if (!getSender().equals(this.parent) || this.resyncing) {
+            return;
+        }
+        Map<Integer, Integer> stored = new HashMap<>();
+        for (Integer key : this.cachedDatabase.keySet()) {
+            stored.put(key, this.seqnoCache.get(key));
+        }
+        Set<Integer> divergent = new MerkleTree(stored, Config.ANTI_ENTROPY_LEAVES).divergentLeaves(msg.nodes);
+        if (divergent.isEmpty()) {
+            return;
+        }
+
+        // Only the keys in the divergent ranges are sent
+        Map<Integer, Integer> reported = new HashMap<>();
+        for (Map.Entry<Integer, Integer> entry : stored.entrySet()) {
+            if (divergent.contains(MerkleTree.leafOf(entry.getKey(), Config.ANTI_ENTROPY_LEAVES))) {
+                reported.put(entry.getKey(), entry.getValue());
+            }
+        }
+        Logger.DEBUG.info(getSelf().path().name() + " diverges from " + getSender().path().name() + " in " +
+                divergent.size() + " key ranges");
+
+        // Network delay
+        this.delay();
+        getSender().tell(new AntiEntropyKeysMessage(divergent, reported), getSelf());
+    }
+
+    /**
+     * Handler of the AntiEntropyTickMessage, relevant only for L1 caches
+     * Evict the expired entries and retract from the database summary the keys the subtree does not store anymore,
+     * then start an anti-entropy round with the children, which evicts from them the entries the cache has evicted
+     *
+     * @param msg anti-entropy tick message
+     */
+    private void onAntiEntropyTickMessage(AntiEntropyTickMessage msg) {
+        this.evictExpiredEntries();
+        this.retractForgottenKeys();
+        this.onAntiEntropyTick(msg, this.seqnoCache, this.caches);
+    }
+
+    /**
+     * Evict the entries which have expired, unless they are pinned, in the middle of a critical write or requested
+     * to the parent
+     */
+    private void evictExpiredEntries() {
+        Set<Integer> pendingKeys = this.pendingKeys();
+        for (Integer key : new ArrayList<>(this.cachedDatabase.keySet())) {
+            if (this.pinnedKeys.contains(key) || this.criticalKeyValue.containsKey(key) ||
+                    pendingKeys.contains(key) || !this.freshnessPolicy.isExpired(this.entryAge(key))) {
+                continue;
+            }
+            this.cachedDatabase.remove(key);
+            this.seqnoCache.remove(key);
+            this.storedAt.remove(key);
+            this.refreshingKeys.remove(key);
+            this.invalidateNearCaches(key);
+        }
+    }
+
+    /**
+     * Retract from the database summary the announced keys which are not stored by the cache anymore, and which
+     * no child may store, relevant only for L1 caches
+     * Keys in the middle of a critical write or requested to the parent are kept, since the cache may store them
+     * once the request is over
+     */
+    private void retractForgottenKeys() {
+        // A recovering cache stores nothing until the resync is over
+        if (this.resyncing) {
+            return;
+        }
+        Set<Integer> pendingKeys = this.pendingKeys();
+        Set<Integer> removedKeys = new HashSet<>();
+        for (Integer key : this.summarizedKeys) {
+            if (this.cachedDatabase.containsKey(key) || this.criticalKeyValue.containsKey(key) ||
+                    pendingKeys.contains(key)) {
+                continue;
+            }
+            boolean storedByChildren = false;
+            for (ActorRef child : this.caches) {
+                storedByChildren |= this.childKeys.getOrDefault(child, Collections.emptySet()).contains(key);
+            }
+            if (!storedByChildren) {
+                removedKeys.add(key);
+            }
+        }
+        if (removedKeys.isEmpty()) {
+            return;
+        }
+        this.summarizedKeys.removeAll(removedKeys);
+        Logger.DEBUG.info(getSelf().path().name() + ": retracting " + removedKeys + " from the summary with ID " +
+                this.id);
+        this.parent.tell(new SummaryUpdateMessage(Collections.emptySet(), removedKeys), getSelf());
+    }
+
+    /**
+     * Keys of the requests forwarded to the parent and still waiting for a response
+     *
+     * @return keys of the pending requests
+     */
+    private Set<Integer> pendingKeys() {
+        Set<Integer> keys = new HashSet<>();
+        for (Message query : this.pendingQueries.values()) {
+            if (query instanceof ReadMessage) {
+                keys.add(((ReadMessage) query).requestKey);
+            } else if (query instanceof WriteMessage) {
+                keys.add(((WriteMessage) query).requestKey);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Handler of the AntiEntropyRepairMessage
+     * Apply the newer values sent by the parent and evict the keys the parent does not store anymore
+     * Keys in the middle of a critical write are left untouched
+     *
+     * @param msg anti-entropy repair message
+     */
+    private void onAntiEntropyRepairMessage(AntiEntropyRepairMessage msg) {
+        for (Map.Entry<Integer, Integer> entry : msg.values.entrySet()) {
+            int key = entry.getKey();
+            Integer currentSeqno = this.seqnoCache.get(key);
+            if (this.cachedDatabase.containsKey(key) && !this.criticalKeyValue.containsKey(key) &&
+                    currentSeqno != null && currentSeqno < msg.seqnos.get(key)) {
+                this.cachedDatabase.put(key, entry.getValue());
+                this.seqnoCache.put(key, msg.seqnos.get(key));
+                this.invalidateNearCaches(key);
+                this.touchEntry(key);
+            }
+        }
+        for (Integer key : msg.evictedKeys) {
+            if (!this.criticalKeyValue.containsKey(key)) {
+                this.cachedDatabase.remove(key);
+                this.seqnoCache.remove(key);
+                this.invalidateNearCaches(key);
+            }
+        }
+        Logger.DEBUG.info(getSelf().path().name() + " repaired " + msg.values.keySet() + " and evicted " +
+                msg.evictedKeys);
+        if (this.isL1 && !msg.evictedKeys.isEmpty()) {
+            this.retractForgottenKeys();
+        }
+
+        // Save the message in the snapshot if it is in transit
+        this.capureTransitMessages(msg.values, msg.seqnos, getSender());
+    }
+
+    /**
+     * Whether the cache holds a valid read lease on the key
+     *
+     * @param key key
+     * @return true if the cache can answer CRITREADs on the key
+     */
+    private boolean hasReadLease(int key) {
+        Long expiresAt = this.readLeases.get(key);
+        return expiresAt != null && Simulation.currentTimeMillis() < expiresAt;
+    }
+
+    /**
+     * Handler of the LeaseGrantMessage
+     * The lease is kept only if the cache stores the leased value
+     *
+     * @param msg lease grant message
+     */
+    private void onLeaseGrantMessage(LeaseGrantMessage msg) {
+        if (Objects.equals(this.seqnoCache.get(msg.key), msg.seqno)) {
+            this.readLeases.put(msg.key, msg.expiresAt);
+            Logger.DEBUG.info(getSelf().path().name() + ": got a read lease on key " + msg.key);
+        }
+    }
+
+    /**
+     * Handler of the LeaseRecallMessage
+     * Give up the read lease on the key, since the database is going to write it
+     *
+     * @param msg lease recall message
+     */
+    private void onLeaseRecallMessage(LeaseRecallMessage msg) {
+        this.readLeases.remove(msg.key);
+        Logger.DEBUG.info(getSelf().path().name() + ": giving up the read lease on key " + msg.key);
+
+        // Network delay
+        this.delay();
+        getSender().tell(new LeaseRecallResponseMessage(msg.key), getSelf());
+    }
+
+    /**
+     * Get the adaptive timeout for a request to the parent
+     *
+     * @param requestType type of the request
+     * @return timeout in milliseconds
+     */
+    private int parentTimeout(Config.RequestType requestType) {
+        return this.adaptiveTimeout(this.parent, requestType, Config.L2_TIMEOUT, Config.L2_TIMEOUT_MIN,
+                Config.L2_TIMEOUT_MAX);
+    }
+
     /**
      * Handler of the ReadMessage message
      * If the Cache has the message then it returns it otherwise, it asks to the
@@ -196,6 +830,7 @@ public class Cache extends Actor {
      */
     @Override
     protected void onReadMessage(ReadMessage msg) {
+        long receivedAt = Simulation.currentTimeMillis();
         // Check if the node should crash before read L1 and L2
         if ((this.isL1 && this.nextCrash == Config.CrashType.L1_BEFORE_READ) ||
                 (!this.isL1 && this.nextCrash == Config.CrashType.L2_BEFORE_READ)) {
@@ -238,9 +873,22 @@ public class Cache extends Actor {
             return;
         }
 
+        // Every read served or forwarded counts towards the hotness of its key
+        this.hotKeyTracker.record(msg.requestKey);
+
+        // An expired entry is not served anymore, it is fetched again from the parent, unless it is pinned
+        if (this.cachedDatabase.containsKey(msg.requestKey) && !this.pinnedKeys.contains(msg.requestKey) &&
+                this.freshnessPolicy.isExpired(this.entryAge(msg.requestKey))) {
+            Logger.DEBUG.info(getSelf().path().name() + ": key " + msg.requestKey + " expired with ID " + this.id);
+            this.cachedDatabase.remove(msg.requestKey);
+            this.seqnoCache.remove(msg.requestKey);
+            this.refreshingKeys.remove(msg.requestKey);
+            this.invalidateNearCaches(msg.requestKey);
+        }
+
         // Case of a cache hit
-        // IF IS CRITICAL DO NOT RETURN THE CACHED RESULT
-        if (!msg.isCritical && this.cachedDatabase.containsKey(msg.requestKey)) {
+        // IF IS CRITICAL DO NOT RETURN THE CACHED RESULT, unless the cache holds a read lease on the key
+        if ((!msg.isCritical || this.hasReadLease(msg.requestKey)) && this.cachedDatabase.containsKey(msg.requestKey)) {
             // Compare the sequence number we got
             int currentSeqno = this.seqnoCache.get(msg.requestKey);
             // I do not answer with older value
@@ -260,18 +908,31 @@ public class Cache extends Actor {
             // Generate a new response message which contains the cached data and the new hops
             ResponseMessage responseMessage = new ResponseMessage(
                     Collections.singletonMap(msg.requestKey, this.cachedDatabase.get(msg.requestKey)),
-                    newHops, msg.queryUUID, Config.RequestType.READ, false, currentSeqno
+                    newHops, msg.queryUUID, msg.isCritical ? Config.RequestType.CRITREAD : Config.RequestType.READ,
+                    msg.isCritical, currentSeqno
             );
 
-            Logger.logCheck(Level.FINE, this.id, this.getIdFromName(getSender().path().name()), Config.RequestType.READ,
+            Logger.logCheck(Level.FINE, this.id, this.getIdFromName(getSender().path().name()),
+                    msg.isCritical ? Config.RequestType.CRITREAD : Config.RequestType.READ,
                     true, msg.requestKey, this.cachedDatabase.get(msg.requestKey), msg.seqno,
-                    "Response read for key [CRIT: " + false + "]", msg.queryUUID
+                    "Response read for key [CRIT: " + msg.isCritical + "]", msg.queryUUID
             );
 
+            // The child must not receive an older batched value after this one
+            this.discardBatchedUpdate(getSender(), msg.requestKey, currentSeqno);
+            this.recordChildKey(getSender(), msg.requestKey);
+            this.recordNearCacheReader(getSender(), msg.requestKey);
+
             // Network delay
             this.delay();
             // Send the message to the sender of the read message
             getSender().tell(responseMessage, getSelf());
+            this.metrics.increment(Metrics.Counter.HITS);
+            this.metrics.recordLatency(msg.isCritical ? Config.RequestType.CRITREAD : Config.RequestType.READ,
+                    Simulation.currentTimeMillis() - receivedAt);
+
+            // The stale value has been served right away, the refresh happens in the background
+            this.refreshIfStale(msg.requestKey);
         } else {
 
             // Cache miss
@@ -283,7 +944,7 @@ public class Cache extends Actor {
             // Generate a new request UUID
             UUID uuid;
             if (msg.queryUUID == null) {
-                uuid = UUID.randomUUID();
+                uuid = Simulation.randomUUID();
             } else {
                 uuid = msg.queryUUID;
             }
@@ -300,6 +961,15 @@ public class Cache extends Actor {
                     "Request read for key [CRIT: " + msg.isCritical + "]", uuid
             );
 
+            // An L1 cache announces the key to the database summary before asking for it:
+            // messages between two actors are delivered in order, hence the database never skips this cache
+            // for a write on a key it is storing
+            if (this.isL1 && !this.summarizedKeys.contains(msg.requestKey)) {
+                this.summarizedKeys.add(msg.requestKey);
+                this.parent.tell(new SummaryUpdateMessage(Collections.singleton(msg.requestKey),
+                        Collections.emptySet()), getSelf());
+            }
+
             // Network delay
             this.delay();
             // Send the request to the parent
@@ -307,9 +977,13 @@ public class Cache extends Actor {
 
             // This message is pending, thus I add the message and the UUID in the setting
             this.pendingQueries.put(uuid, newReadMessage);
+            this.metrics.increment(Metrics.Counter.MISSES);
+            this.startRequest(uuid);
             if (!this.isL1) {
                 // Setting a scheduler for a possible timeout associated to that request uuid
-                this.scheduleTimer(new TimeoutMessage(newReadMessage, this.parent), Config.L2_TIMEOUT, uuid);
+                this.scheduleTimer(new TimeoutMessage(newReadMessage, this.parent),
+                        this.parentTimeout(msg.isCritical ? Config.RequestType.CRITREAD : Config.RequestType.READ),
+                        uuid);
             }
         }
 
@@ -352,6 +1026,7 @@ public class Cache extends Actor {
         this.pendingQueries.remove(msg.queryUUID);
         if (!this.isL1) {
             // If there was a timer associated with the pending request I cancel it
+            this.sampleRtt(getSender(), msg.requestType, msg.queryUUID);
             this.cancelTimer(msg.queryUUID);
         }
 
@@ -376,6 +1051,8 @@ public class Cache extends Actor {
                     // Update cache
                     this.seqnoCache.remove(updatedKey);
                     this.seqnoCache.put(updatedKey, msg.seqno);
+                    this.invalidateNearCaches(updatedKey);
+                    this.touchEntry(updatedKey);
                 } else if (msg.requestType != Config.RequestType.READ && msg.requestType != Config.RequestType.CRITREAD) {
                     Logger.DEBUG.severe(getSelf().path().name() + ": not updating the cached value for key " +
                             updatedKey + " value: " + value + " since I got a bigger sequence number " + "current " +
@@ -399,7 +1076,7 @@ public class Cache extends Actor {
         ResponseMessage newResponseMessage = new ResponseMessage(msg.values, newHops, msg.queryUUID, msg.requestType,
                 msg.isCritical, msg.seqno);
 
-        // WRITE -> perform the multicast to all the peers interested
+        // WRITE -> propagate the update to all the children
         if (this.isL1 && msg.requestType == Config.RequestType.WRITE) {
 
             // Crash before
@@ -411,21 +1088,39 @@ public class Cache extends Actor {
             // Whether it has to crash
             boolean hasToCrash = this.nextCrash == Config.CrashType.L1_DOING_WRITEVALUE_MULTICAST;
 
-            // Check whether it has to crash
-            this.multicastAndCheck(newResponseMessage, this.caches, msg.requestType,
-                    msg.values == null ? null : (int) msg.values.keySet().toArray()[0],
-                    msg.values == null ? null : (int) msg.values.values().toArray()[0],
-                    msg.seqno, msg.isCritical, msg.queryUUID,
-                    hasToCrash
+            // The child on the path of the request receives the response right away, since it has to answer
+            // the client, while the other children receive the update within the next batch
+            Integer updatedKey = msg.values == null ? null : (Integer) msg.values.keySet().toArray()[0];
+            Integer updatedValue = msg.values == null ? null : (Integer) msg.values.values().toArray()[0];
+            if (updatedKey != null) {
+                this.discardBatchedUpdate(sendTo, updatedKey, msg.seqno);
+            }
+            this.multicastAndCheck(newResponseMessage, Collections.singletonList(sendTo), msg.requestType,
+                    updatedKey, updatedValue, msg.seqno, msg.isCritical, msg.queryUUID, hasToCrash
             );
-            Logger.DEBUG.info(getSelf().path().name() + " is multicasting " + msg.values + " to children");
 
             if (hasToCrash) {
                 return;
             }
+            if (isPendingQuery) {
+                if (updatedKey != null) {
+                    this.endRequest(msg.queryUUID, msg.requestType);
+                } else {
+                    this.abandonRequest(msg.queryUUID);
+                }
+            }
 
-            // Crash before
-            if (this.nextCrash == Config.CrashType.L1_DOING_WRITEVALUE_MULTICAST) {
+            if (updatedKey != null) {
+                for (ActorRef child : this.caches) {
+                    if (!child.equals(sendTo)) {
+                        this.batchUpdate(child, updatedKey, updatedValue, msg.seqno, msg.queryUUID);
+                    }
+                }
+            }
+            Logger.DEBUG.info(getSelf().path().name() + " is propagating " + msg.values + " to children");
+
+            // Crash after
+            if (this.nextCrash == Config.CrashType.L1_AFTER_WRITEVALUE_MULTICAST) {
                 this.crash(this.recoverIn);
                 return;
             }
@@ -443,11 +1138,26 @@ public class Cache extends Actor {
                     "Response for key [CRIT: " + msg.isCritical + "]", msg.queryUUID
             );
 
+            // The child must not receive an older batched value after this one
+            if (msg.values != null) {
+                this.discardBatchedUpdate(sendTo, (Integer) msg.values.keySet().toArray()[0], msg.seqno);
+                this.recordChildKey(sendTo, (Integer) msg.values.keySet().toArray()[0]);
+                if (msg.requestType == Config.RequestType.READ || msg.requestType == Config.RequestType.CRITREAD) {
+                    this.recordNearCacheReader(sendTo, (Integer) msg.values.keySet().toArray()[0]);
+                }
+            }
+
             // Network delay
             this.delay();
             // Send the newly created response to the next hop we previously saved
             sendTo.tell(newResponseMessage, getSelf());
             Logger.DEBUG.info(getSelf().path().name() + " is answering " + msg.values + " to " + sendTo.path().name());
+            this.metrics.increment(Metrics.Counter.FORWARDS);
+            if (msg.values != null) {
+                this.endRequest(msg.queryUUID, msg.requestType);
+            } else {
+                this.abandonRequest(msg.queryUUID);
+            }
         }
 
         // Check if the node should crash after response L1 and L2
@@ -458,6 +1168,50 @@ public class Cache extends Actor {
         }
     }
 
+    /**
+     * Handler of the WriteBatchMessage
+     * <p>
+     * Applies the updates of the keys which are stored in the cache, then an L1 cache queues them
+     * for all its children
+     *
+     * @param msg write batch message
+     */
+    protected void onWriteBatchMessage(WriteBatchMessage msg) {
+        // Check if the node should crash before response L1 and L2
+        if ((this.isL1 && this.nextCrash == Config.CrashType.L1_BEFORE_RESPONSE) ||
+                (!this.isL1 && this.nextCrash == Config.CrashType.L2_BEFORE_RESPONSE)) {
+            this.crash(this.recoverIn);
+            return;
+        }
+
+        for (Map.Entry<Integer, Integer> update : msg.values.entrySet()) {
+            int updatedKey = update.getKey();
+            int seqno = msg.seqnos.get(updatedKey);
+
+            // Only the values already stored are updated, as for a single WRITE
+            if (this.cachedDatabase.containsKey(updatedKey)) {
+                Integer currentSeqno = this.seqnoCache.get(updatedKey);
+                if (currentSeqno == null || currentSeqno < seqno) {
+                    this.cachedDatabase.put(updatedKey, update.getValue());
+                    this.seqnoCache.put(updatedKey, seqno);
+                    this.invalidateNearCaches(updatedKey);
+                    this.touchEntry(updatedKey);
+                }
+            }
+
+            if (this.isL1) {
+                for (ActorRef child : this.caches) {
+                    this.batchUpdate(child, updatedKey, update.getValue(), seqno, msg.queryUUIDs.get(updatedKey));
+                }
+            }
+        }
+        Logger.DEBUG.info(getSelf().path().name() + ": got a batch of " + msg.values.size() +
+                " updates with ID " + this.id);
+
+        // For eventual snapshots
+        capureTransitMessages(msg.values, msg.seqnos, getSender());
+    }
+
     /**
      * Handler of the WriteMessage message
      * The request is forwarded to the database, that applies the write and sends the notification of
@@ -514,7 +1268,7 @@ public class Cache extends Actor {
         // Generate a new request UUID
         UUID uuid = null;
         if (msg.queryUUID == null) {
-            uuid = UUID.randomUUID();
+            uuid = Simulation.randomUUID();
         } else {
             uuid = msg.queryUUID;
         }
@@ -536,9 +1290,12 @@ public class Cache extends Actor {
 
         // This message is pending
         this.pendingQueries.put(uuid, newWriteMessage);
+        this.startRequest(uuid);
         if (!this.isL1) {
             // Setting a scheduler for a possible timeout associated with uuid
-            this.scheduleTimer(new TimeoutMessage(newWriteMessage, this.parent), Config.L2_TIMEOUT, uuid);
+            this.scheduleTimer(new TimeoutMessage(newWriteMessage, this.parent),
+                    this.parentTimeout(msg.isCritical ? Config.RequestType.CRITWRITE : Config.RequestType.WRITE),
+                    uuid);
         }
 
         // For eventual snapshots
@@ -563,7 +1320,7 @@ public class Cache extends Actor {
 
     /**
      * Handler of critical update message
-     * L1 caches send the new value to L2 caches
+     * L1 caches send the new value to the L2 caches which may store the key, or answer OK right away if none does
      * L2 caches sends OK message to L1 caches
      *
      * @param msg CriticalUpdateMessage
@@ -582,14 +1339,29 @@ public class Cache extends Actor {
                 return;
             }
 
+            // Only the children which may store the key take part in the critical write, all of them while the
+            // cache is resyncing, since it does not know yet which keys they store
+            List<ActorRef> involvedCaches = new ArrayList<>();
+            for (ActorRef cache : this.caches) {
+                if (this.resyncing ||
+                        this.childKeys.getOrDefault(cache, Collections.emptySet()).contains(msg.updatedKey)) {
+                    involvedCaches.add(cache);
+                }
+            }
+            this.criticalSessionCaches.put(msg.queryUUID, involvedCaches);
+
             // Whether it has to crash
             boolean hasToCrash = this.nextCrash == Config.CrashType.L1_DOING_CRITICALUPDATE_MULTICAST;
 
             // Check whether it has to crash
+            if (hasToCrash && involvedCaches.isEmpty()) {
+                this.crash(this.recoverIn);
+                return;
+            }
 
             this.multicast(
                     new CriticalUpdateMessage(msg.updatedKey, msg.updatedValue, msg.queryUUID, msg.hops),
-                    this.caches,
+                    involvedCaches,
                     hasToCrash
             );
 
@@ -608,10 +1380,18 @@ public class Cache extends Actor {
                 return;
             }
 
+            // No child stores the key, send OK to the database right away
+            if (involvedCaches.isEmpty()) {
+                // Network delay
+                this.delay();
+                this.parent.tell(new CriticalUpdateResponseMessage(Config.CUResponse.OK, msg.queryUUID, msg.hops),
+                        getSelf());
+                return;
+            }
+
             // If the L1 cache doesn't receive an acknowledgement within a given timeout, abort the write and return error
-            this.scheduleTimer(
-                    new CriticalUpdateTimeoutMessage(msg.queryUUID, msg.hops), Config.CRIT_WRITE_TIME_OUT, msg.queryUUID
-            );
+            this.scheduleTimer(new CriticalUpdateTimeoutMessage(msg.queryUUID, msg.hops),
+                    this.criticalUpdateTimeout(involvedCaches), msg.queryUUID);
         } else {
             Logger.DEBUG.info(getSelf().path().name() + " sending the OK message to the parent " + msg.updatedKey +
                     " value:" + msg.updatedValue
@@ -638,9 +1418,19 @@ public class Cache extends Actor {
         if (!this.criticalSessionKey.containsKey(msg.queryUUID)) {
             return;
         }
+        // The timer has fired, forget it
+        this.cancelTimer(msg.queryUUID);
 
         Logger.DEBUG.info(getSelf().path().name() + " timed out for key " +
                 this.criticalSessionKey.get(msg.queryUUID) + ", sending NO response to the database");
+        this.metrics.increment(Metrics.Counter.TIMEOUTS);
+        // The children which have not answered in time will be waited longer next time
+        Set<ActorRef> acks = this.receivedAcksForCritWrite.getOrDefault(msg.queryUUID, Collections.emptySet());
+        for (ActorRef cache : this.criticalSessionCaches.getOrDefault(msg.queryUUID, Collections.emptyList())) {
+            if (!acks.contains(cache)) {
+                this.backoffTimeout(cache, Config.RequestType.CRITWRITE);
+            }
+        }
         // Network delay
         this.delay();
         // If the L2 cache didn't respond in time, send abort to the database
@@ -661,14 +1451,21 @@ public class Cache extends Actor {
         // Got an OK -> voted yes
         // I got OK from an L2 cache
         if (msg.response == Config.CUResponse.OK && this.isL1) {
+            // The critical write has already been decided
+            if (!this.criticalSessionCaches.containsKey(msg.queryUUID)) {
+                return;
+            }
+            this.sampleRtt(getSender(), Config.RequestType.CRITWRITE, msg.queryUUID);
+
             // Add the sender to the list of received acknowledgements
             if (!this.receivedAcksForCritWrite.containsKey(msg.queryUUID)) {
-                this.receivedAcksForCritWrite.put(msg.queryUUID, new HashSet<>());
+                this.receivedAcksForCritWrite.put(msg.queryUUID, new LinkedHashSet<>());
             }
             this.receivedAcksForCritWrite.get(msg.queryUUID).add(getSender());
 
             // If the L1 cache has received all acknowledgements, proceed with the protocol's flow
-            if (this.receivedAcksForCritWrite.get(msg.queryUUID).containsAll(this.caches)) {
+            if (this.receivedAcksForCritWrite.get(msg.queryUUID).containsAll(
+                    this.criticalSessionCaches.get(msg.queryUUID))) {
                 // Network delay
                 this.delay();
                 // Send OK to the database, since all children L2 caches have sent an acknowledged
@@ -699,16 +1496,20 @@ public class Cache extends Actor {
     /**
      * Critical Write Response Message handler
      * <p>
-     * L1 cache forwards COMMIT or ABORT decisions to L2 caches
+     * L1 cache forwards COMMIT or ABORT decisions to the involved L2 caches and to the one on the path of the request
      *
      * @param msg CriticalWriteResponseMessage
      */
     protected void onCriticalWriteResponseMessage(CriticalWriteResponseMessage msg) {
-        if (!this.criticalSessionKey.containsKey(msg.queryUUID)) {
+        // Check if it's a pending query for the current cache
+        boolean isPendingQuery = this.pendingQueries.containsKey(msg.queryUUID);
+
+        // Caches which have not taken part in the critical write only forward the decision towards the client
+        if (!this.criticalSessionKey.containsKey(msg.queryUUID) && !isPendingQuery) {
             return;
         }
-        int keyToUpdate = this.criticalSessionKey.get(msg.queryUUID);
-        int newValue = this.criticalKeyValue.get(keyToUpdate);
+        int keyToUpdate = msg.updatedKey;
+        Integer newValue = msg.updatedValue;
 
         // Generate a new ArrayList from the message hops
         List<ActorRef> newHops = new ArrayList<>(msg.hops);
@@ -717,7 +1518,27 @@ public class Cache extends Actor {
         // Remove the next hop from the new hops (basically it is the actor to which we are sending the response)
         newHops.remove(newHops.size() - 1);
 
+        // Children receiving the decision
+        List<ActorRef> notifiedCaches = new ArrayList<>(
+                this.criticalSessionCaches.getOrDefault(msg.queryUUID, Collections.emptyList()));
+        if (this.isL1) {
+            // The vote of the children is over
+            this.cancelTimer(msg.queryUUID);
+        }
+        if (this.isL1 && isPendingQuery) {
+            this.pendingQueries.remove(msg.queryUUID);
+            if (!notifiedCaches.contains(sendTo)) {
+                notifiedCaches.add(sendTo);
+            }
+            if (msg.finalDecision == Config.ACResponse.COMMIT) {
+                this.endRequest(msg.queryUUID, Config.RequestType.CRITWRITE);
+            } else {
+                this.abandonRequest(msg.queryUUID);
+            }
+        }
+
         if (msg.finalDecision == Config.ACResponse.COMMIT) {
+            this.metrics.increment(Metrics.Counter.COMMITS);
             // Got COMMIT
             Logger.DEBUG.info(getSelf().path().name() + " got COMMIT decision from parent and key " + keyToUpdate);
             // If the key was already inside the cachedDatabase, update it
@@ -730,6 +1551,8 @@ public class Cache extends Actor {
                 // Override the value in the sequence number cache
                 this.seqnoCache.remove(keyToUpdate);
                 this.seqnoCache.put(keyToUpdate, msg.seqno);
+                this.invalidateNearCaches(keyToUpdate);
+                this.touchEntry(keyToUpdate);
             }
 
             // Clear critical writes value
@@ -746,12 +1569,14 @@ public class Cache extends Actor {
             boolean hasToCrash = (this.isL1 && this.nextCrash == Config.CrashType.L1_DOING_COMMIT_MULTICAST) ||
                     (!this.isL1 && this.nextCrash == Config.CrashType.L1_DOING_COMMIT_MULTICAST);
 
-            // Check whether it has to crash
+            // The commit carries a newer value than any batched update of the key
+            notifiedCaches.forEach(cache -> this.discardBatchedUpdate(cache, keyToUpdate, msg.seqno));
 
             // Send commit to the caches with the new sequence number to be updated
             this.multicastAndCheck(
-                    new CriticalWriteResponseMessage(Config.ACResponse.COMMIT, msg.queryUUID, newHops, msg.seqno),
-                    this.caches, Config.RequestType.CRITWRITE, keyToUpdate, newValue, msg.seqno, true,
+                    new CriticalWriteResponseMessage(Config.ACResponse.COMMIT, msg.queryUUID, newHops, keyToUpdate,
+                            newValue, msg.seqno),
+                    notifiedCaches, Config.RequestType.CRITWRITE, keyToUpdate, newValue, msg.seqno, true,
                     msg.queryUUID,
                     hasToCrash
             );
@@ -770,6 +1595,7 @@ public class Cache extends Actor {
         } else {
             // Got ABORT
             Logger.DEBUG.info(getSelf().path().name() + " got ABORT decision from parent and key " + keyToUpdate);
+            this.metrics.increment(Metrics.Counter.ABORTS);
             this.clearCriticalWrite(msg.queryUUID);
 
             // Crash before
@@ -786,8 +1612,9 @@ public class Cache extends Actor {
             // Check whether it has to crash
 
             this.multicastAndCheck(
-                    new CriticalWriteResponseMessage(Config.ACResponse.ABORT, msg.queryUUID, newHops, null),
-                    this.caches, Config.RequestType.CRITWRITE, keyToUpdate, null, -1, true, msg.queryUUID
+                    new CriticalWriteResponseMessage(Config.ACResponse.ABORT, msg.queryUUID, newHops, keyToUpdate,
+                            null, null),
+                    notifiedCaches, Config.RequestType.CRITWRITE, keyToUpdate, null, -1, true, msg.queryUUID
             );
 
             // Has to crash
@@ -803,13 +1630,12 @@ public class Cache extends Actor {
             }
         }
 
-        // Check if it's a pending query for the current cache
-        boolean isPendingQuery = this.pendingQueries.containsKey(msg.queryUUID);
-
         // Send final response to the client if the cache is L2
         if (!this.isL1 && isPendingQuery) {
             // Now that we got the response, remove the request from pendingQueries
             this.pendingQueries.remove(msg.queryUUID);
+            this.sampleRtt(getSender(), Config.RequestType.CRITWRITE, msg.queryUUID);
+            this.cancelTimer(msg.queryUUID);
 
             // Create the response message with the new hops
             HashMap<Integer, Integer> responseMap = new HashMap<>();
@@ -827,6 +1653,12 @@ public class Cache extends Actor {
             this.delay();
             // Send the newly created response to the next hop we previously saved
             sendTo.tell(newResponseMessage, getSelf());
+            this.metrics.increment(Metrics.Counter.FORWARDS);
+            if (msg.finalDecision == Config.ACResponse.COMMIT) {
+                this.endRequest(msg.queryUUID, Config.RequestType.CRITWRITE);
+            } else {
+                this.abandonRequest(msg.queryUUID);
+            }
         }
     }
 
@@ -839,29 +1671,19 @@ public class Cache extends Actor {
     @Override
     protected void onTimeoutMessage(TimeoutMessage msg) {
         // or simply become unavailable
-        int requestKey = 0;
         UUID queryUUID = null;
-        List<ActorRef> hops = null;
         Config.RequestType requestType = null;
         boolean isCritical = false;
         if (msg.msg instanceof ReadMessage) {
-            requestKey = ((ReadMessage) (msg.msg)).requestKey;
             queryUUID = ((ReadMessage) (msg.msg)).queryUUID;
-            hops = ((ReadMessage) (msg.msg)).hops;
             requestType = Config.RequestType.READ;
             isCritical = ((ReadMessage) (msg.msg)).isCritical;
         } else if (msg.msg instanceof WriteMessage) {
-            requestKey = ((WriteMessage) (msg.msg)).requestKey;
             queryUUID = ((WriteMessage) (msg.msg)).queryUUID;
-            hops = ((WriteMessage) (msg.msg)).hops;
             requestType = Config.RequestType.WRITE;
             isCritical = ((WriteMessage) (msg.msg)).isCritical;
         }
 
-        // Remove self from the hops, only the client will remain
-        hops = new ArrayList<>(hops);
-        hops.remove(hops.size() - 1);
-
         /**
          * Remember that the timeout is started from the L2 which is waiting for a response
          *
@@ -871,6 +1693,38 @@ public class Cache extends Actor {
          */
         if (!this.pendingQueries.containsKey(queryUUID)) return;
 
+        // The parent has not answered in time, wait longer for it next time
+        if (isCritical) {
+            this.backoffTimeout(msg.whoCrashed, requestType == Config.RequestType.READ ?
+                    Config.RequestType.CRITREAD : Config.RequestType.CRITWRITE);
+        } else {
+            this.backoffTimeout(msg.whoCrashed, requestType);
+        }
+
+        this.pendingQueries.remove(queryUUID);
+        this.cancelTimer(queryUUID);
+        this.abandonRequest(queryUUID);
+        this.metrics.increment(Metrics.Counter.TIMEOUTS);
+        Logger.DEBUG.info("Cache timed-out: " + msg.whoCrashed.path().name() + " has probably crashed");
+        this.becomeUnavailable();
+
+        // Send the error message, or let the client ask another cache if this one can return to its parent
+        if (this.heartbeatIntervalMs > 0) {
+            this.sendUnavailableMessage(msg.msg, true);
+        } else {
+            this.sendErrorResponse(msg.msg);
+        }
+    }
+
+    /**
+     * Give up the parent, since it has probably crashed
+     */
+    private void becomeUnavailable() {
+        // The clients cannot trust the values read from this cache anymore
+        for (Integer key : new ArrayList<>(this.nearCacheReaders.keySet())) {
+            this.invalidateNearCaches(key);
+        }
+
         // To avoid consistency problem, this cache will not have the data updated as the L1 cache has
         // crashed, therefore we clear the cache
         // It is possible that, during the time in which the L1 cache was crashed,
@@ -880,16 +1734,45 @@ public class Cache extends Actor {
         // Degenerate case of L2 -> L1 cache
         this.parent = this.database;
         this.isL1 = true;
-        this.pendingQueries.remove(queryUUID);
 
         // The cache has become an L1 without assigned L2 caches
         // It won't be able to answer queries if we don't recreate the tree structure
         // However for the scope of the project we are not asked to recreate it,
         // so the cache can just become unavailable
         getContext().become(unavailable());
-        Logger.DEBUG.info("Cache timed-out: " + msg.whoCrashed.path().name() + " has probably crashed");
+    }
+
+    /**
+     * Answer a query forwarded to the parent with an error, since the parent has probably crashed
+     *
+     * @param query read or write message forwarded to the parent
+     */
+    private void sendErrorResponse(Serializable query) {
+        int requestKey = 0;
+        UUID queryUUID = null;
+        List<ActorRef> hops = null;
+        Config.RequestType requestType = null;
+        boolean isCritical = false;
+        if (query instanceof ReadMessage) {
+            requestKey = ((ReadMessage) query).requestKey;
+            queryUUID = ((ReadMessage) query).queryUUID;
+            hops = ((ReadMessage) query).hops;
+            requestType = Config.RequestType.READ;
+            isCritical = ((ReadMessage) query).isCritical;
+        } else if (query instanceof WriteMessage) {
+            requestKey = ((WriteMessage) query).requestKey;
+            queryUUID = ((WriteMessage) query).queryUUID;
+            hops = ((WriteMessage) query).hops;
+            requestType = Config.RequestType.WRITE;
+            isCritical = ((WriteMessage) query).isCritical;
+        } else {
+            return;
+        }
+
+        // Remove self from the hops, only the client will remain
+        hops = new ArrayList<>(hops);
+        hops.remove(hops.size() - 1);
 
-        // Send the error message
         Logger.DEBUG.info("Sending error message");
         ResponseMessage responseMessage = new ResponseMessage(null, hops, queryUUID,       // Encapsulating the query UUID
                 requestType, isCritical, -1);
@@ -905,11 +1788,103 @@ public class Cache extends Actor {
         hops.get(hops.size() - 1).tell(responseMessage, getSelf());
     }
 
+    /**
+     * Handler of the HeartbeatTickMessage
+     * Send the heartbeats to the parent and to the children, then check the parent: an L2 cache which suspects
+     * its parent gives it up right away, without waiting for a request to time out
+     *
+     * @param msg heartbeat tick message
+     */
+    private void onHeartbeatTickMessage(HeartbeatTickMessage msg) {
+        List<ActorRef> peers = new ArrayList<>(this.caches);
+        peers.add(this.parent);
+        this.sendHeartbeats(peers);
+
+        if (this.isL1 || !this.isSuspected(this.parent)) {
+            return;
+        }
+        Logger.DEBUG.info(getSelf().path().name() + " suspects " + this.parent.path().name() +
+                " has crashed, becoming unavailable");
+
+        // The pending queries would time out anyway, hence the clients ask another cache right away
+        List<Serializable> queries = new ArrayList<>(this.pendingQueries.values());
+        for (UUID queryUUID : new ArrayList<>(this.pendingQueries.keySet())) {
+            this.cancelTimer(queryUUID);
+            this.abandonRequest(queryUUID);
+        }
+        this.becomeUnavailable();
+        for (Serializable query : queries) {
+            this.sendUnavailableMessage(query, true);
+        }
+    }
+
+    /**
+     * Tell the client that a query will not be served, since the parent has probably crashed
+     *
+     * @param query     read or write message
+     * @param forwarded whether the query has been forwarded to the parent, hence it carries the cache as last hop
+     */
+    private void sendUnavailableMessage(Serializable query, boolean forwarded) {
+        List<ActorRef> hops;
+        if (query instanceof ReadMessage) {
+            hops = ((ReadMessage) query).hops;
+        } else if (query instanceof WriteMessage) {
+            hops = ((WriteMessage) query).hops;
+        } else {
+            return;
+        }
+
+        // The client is the last hop, once the cache is removed
+        ActorRef client = hops.get(hops.size() - (forwarded ? 2 : 1));
+        // Network delay
+        this.delay();
+        client.tell(new UnavailableMessage(query), getSelf());
+    }
+
+    /**
+     * Handler of the ReadMessage and of the WriteMessage while unavailable
+     * The cache has no parent to forward them to: with heartbeats it may return to its parent, hence it lets
+     * the client ask another cache right away, otherwise it drops them and the client relies on its timeout
+     *
+     * @param msg read or write message
+     */
+    private void onUnavailableRequestMessage(Serializable msg) {
+        if (this.heartbeatIntervalMs <= 0) {
+            return;
+        }
+        Logger.DEBUG.info(getSelf().path().name() + ": unavailable, refusing a request with ID " + this.id);
+        this.sendUnavailableMessage(msg, false);
+    }
+
+    /**
+     * Handler of the HeartbeatMessage while unavailable
+     * A heartbeat of the original parent means that it is alive again, hence the cache can return an L2 cache
+     *
+     * @param msg heartbeat message
+     */
+    private void onUnavailableHeartbeatMessage(HeartbeatMessage msg) {
+        if (getSender().equals(this.originalParent)) {
+            this.returnToOriginalParent();
+        }
+    }
+
+    /**
+     * Return an L2 cache of the original parent, since it is alive again
+     * The cache has been emptied when it became unavailable, hence it holds no stale entry
+     */
+    private void returnToOriginalParent() {
+        Logger.DEBUG.info(getSelf().path().name() + ": degenerate L1 cache returns L2 with id: " + this.id);
+        getContext().become(this.createReceive());
+        this.isL1 = false;
+        this.unavailable = false;
+        this.parent = this.originalParent;
+    }
+
     /**
      * Handler of the Recovery message
      * In order to avoid issues, when one node recovers from crashes he forgot
-     * all its data. Moreover, when the L1 node crashes, it communicates the L2
-     * caches to flush
+     * all its data. Moreover, when the L1 node recovers, it asks the database for the current
+     * values of the keys of its subtree, in order to resync its children
      *
      * @param msg write message
      */
@@ -921,61 +1896,102 @@ public class Cache extends Actor {
         getContext().become(this.createReceive());
 
         /**
-         * If the cache is an L1, all the children could have inconsistent values, thus it is better to clear children
-         * caches
+         * If the cache is an L1, all the children could have inconsistent values, thus they have to be resynced
+         * with the current sequence numbers of the database
          */
         if (this.isL1) {
-            // Crash before
-            if (this.nextCrash == Config.CrashType.L1_BEFORE_FLUSH_MULTICAST) {
-                this.crash(this.recoverIn);
-                return;
+            this.resyncing = true;
+            Logger.DEBUG.info(getSelf().path().name() + " L1 recovery: asking the database to resync with ID " +
+                    this.id);
+
+            // Network delay
+            this.delay();
+            this.database.tell(new ResyncRequestMessage(this.summarizedKeys), getSelf());
+        } else {
+            Logger.DEBUG.info(getSelf().path().name() + " L2 recovery: flushing the cache with ID " + this.id);
+        }
+    }
+
+    /**
+     * Handler of the ResyncResponseMessage
+     * Store the current values sent by the database and multicast their sequence numbers to the children,
+     * which drop only the stale entries
+     *
+     * @param msg resync response message
+     */
+    private void onResyncResponseMessage(ResyncResponseMessage msg) {
+        this.resyncing = false;
+        for (Map.Entry<Integer, Integer> entry : msg.values.entrySet()) {
+            int key = entry.getKey();
+            Integer currentSeqno = this.seqnoCache.get(key);
+            if (!this.criticalKeyValue.containsKey(key) &&
+                    (currentSeqno == null || currentSeqno < msg.seqnos.get(key))) {
+                this.cachedDatabase.put(key, entry.getValue());
+                this.seqnoCache.put(key, msg.seqnos.get(key));
+                this.touchEntry(key);
             }
+        }
 
-            // Whether it has to crash
-            boolean hasToCrash = this.nextCrash == Config.CrashType.L1_DOING_FLUSH_MULTICAST;
+        // Crash before
+        if (this.nextCrash == Config.CrashType.L1_BEFORE_FLUSH_MULTICAST) {
+            this.crash(this.recoverIn);
+            return;
+        }
 
-            // Multicast with possible crashes
-            this.multicast(new FlushMessage(), this.caches, hasToCrash);
-            Logger.DEBUG.info(getSelf().path().name() +
-                    " L1 recovery: flushing the cache and multicast flush with ID " + this.id);
+        // The children may store only the resynced keys
+        for (ActorRef child : this.caches) {
+            this.childKeys.put(child, new HashSet<>(msg.seqnos.keySet()));
+        }
+        // The keys the database has not resynced are dropped by the whole subtree
+        this.retractForgottenKeys();
 
-            // Has to crash
-            if (hasToCrash) {
-                return;
-            }
+        // Whether it has to crash
+        boolean hasToCrash = this.nextCrash == Config.CrashType.L1_DOING_FLUSH_MULTICAST;
 
-            // Crash after
-            if (this.nextCrash == Config.CrashType.L1_AFTER_FLUSH_MULTICAST) {
-                this.crash(this.recoverIn);
-                return;
-            }
+        // Multicast with possible crashes
+        this.multicast(new ResyncMessage(msg.seqnos), this.caches, hasToCrash);
+        Logger.DEBUG.info(getSelf().path().name() + " L1 recovery: resynced " + msg.values.size() +
+                " keys and multicast resync with ID " + this.id);
 
-        } else {
-            Logger.DEBUG.info(getSelf().path().name() + " L2 recovery: flushing the cache with ID " + this.id);
+        // Has to crash
+        if (hasToCrash) {
+            return;
+        }
+
+        // Crash after
+        if (this.nextCrash == Config.CrashType.L1_AFTER_FLUSH_MULTICAST) {
+            this.crash(this.recoverIn);
         }
     }
 
     /**
-     * When a flush message is received
-     * Just empties the local cache
+     * When a resync message is received
+     * Drop the entries whose sequence number is older than the current one, or which the parent does not know
+     * Entries in the middle of a critical write are left untouched
      *
-     * @param msg flush message
+     * @param msg resync message
      *            <p>
-     *            Note that this message is sent only when a cache recovers from crashes
+     *            Note that this message is sent only when an L1 cache recovers from crashes
      */
-    private void onFlushMessage(FlushMessage msg) {
-        // Empty the local cache
-        this.clearCache();
-        Logger.DEBUG.info(getSelf().path().name() + ": flushing the cache with ID " + this.id);
+    private void onResyncMessage(ResyncMessage msg) {
+        int dropped = 0;
+        for (Integer key : new ArrayList<>(this.cachedDatabase.keySet())) {
+            Integer currentSeqno = msg.seqnos.get(key);
+            if (!this.criticalKeyValue.containsKey(key) &&
+                    (currentSeqno == null || this.seqnoCache.get(key) < currentSeqno)) {
+                this.cachedDatabase.remove(key);
+                this.seqnoCache.remove(key);
+                this.invalidateNearCaches(key);
+                dropped++;
+            }
+        }
+        Logger.DEBUG.info(getSelf().path().name() + ": resync dropped " + dropped + " stale entries with ID " +
+                this.id);
 
         // if I am unavailable, then it means that my father is back to life
         // So I can return an L2
         if (this.unavailable) {
-            Logger.DEBUG.info(getSelf().path().name() + ": degenerate L1 cache returns L2 with id: " + this.id);
-            getContext().become(this.createReceive());
-            this.isL1 = false;
-            this.unavailable = false;
-            this.parent = this.originalParent;
+            this.returnToOriginalParent();
         }
     }
 
@@ -989,6 +2005,7 @@ public class Cache extends Actor {
         this.nextCrash = Config.CrashType.NONE;
         this.recoverIn = 0;
         Logger.DEBUG.severe(getSelf().path().name() + " crashed");
+        this.metrics.increment(Metrics.Counter.CRASHES);
         getContext().become(crashed());
 
         // Schedule recovery timer
@@ -1037,11 +2054,7 @@ public class Cache extends Actor {
                 }
 
                 // simulate network delays using sleep
-                try {
-                    Thread.sleep(Config.RANDOM.nextInt(Config.NETWORK_DELAY_MS));
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
+                this.delay();
                 iteration++;
             }
         }
@@ -1070,11 +2083,7 @@ public class Cache extends Actor {
                 }
 
                 // simulate network delays using sleep
-                try {
-                    Thread.sleep(Config.RANDOM.nextInt(Config.NETWORK_DELAY_MS));
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
+                this.delay();
                 iteration++;
             }
         }
@@ -1101,14 +2110,36 @@ public class Cache extends Actor {
                 .match(JoinCachesMessage.class, this::onJoinCachesMessage)
                 .match(ReadMessage.class, this::onReadMessage)
                 .match(ResponseMessage.class, this::onResponseMessage)
+                .match(WriteBatchMessage.class, this::onWriteBatchMessage)
+                .match(WriteBatchTimeoutMessage.class, this::onWriteBatchTimeoutMessage)
                 .match(WriteMessage.class, this::onWriteMessage)
-                .match(FlushMessage.class, this::onFlushMessage)
+                .match(ResyncMessage.class, this::onResyncMessage)
+                .match(ResyncResponseMessage.class, this::onResyncResponseMessage)
+                .match(LeaseGrantMessage.class, this::onLeaseGrantMessage)
+                .match(LeaseRecallMessage.class, this::onLeaseRecallMessage)
                 .match(RecoveryMessage.class, this::onRecoveryMessage)
                 .match(TimeoutMessage.class, this::onTimeoutMessage)
                 .match(CriticalUpdateMessage.class, this::onCriticalUpdateMessage)
                 .match(CriticalUpdateResponseMessage.class, this::onCriticalUpdateResponseMessage)
                 .match(CriticalUpdateTimeoutMessage.class, this::onCriticalUpdateTimeoutMessage)
                 .match(CriticalWriteResponseMessage.class, this::onCriticalWriteResponseMessage)
+                .match(AntiEntropyTickMessage.class, this::onAntiEntropyTickMessage)
+                .match(HeartbeatTickMessage.class, this::onHeartbeatTickMessage)
+                .match(HeartbeatMessage.class, this::onHeartbeatMessage)
+                .match(MerkleDigestMessage.class, this::onMerkleDigestMessage)
+                .match(AntiEntropyKeysMessage.class, msg -> onAntiEntropyKeysMessage(
+                        msg, this.cachedDatabase, this.seqnoCache, this.criticalKeyValue.keySet()))
+                .match(AntiEntropyRepairMessage.class, this::onAntiEntropyRepairMessage)
+                .match(RefreshRequestMessage.class, msg -> onRefreshRequestMessage(
+                        msg, this.cachedDatabase, this.seqnoCache, this.criticalKeyValue.keySet()))
+                .match(RefreshResponseMessage.class, this::onRefreshResponseMessage)
+                .match(HotKeysTickMessage.class, this::onHotKeysTickMessage)
+                .match(HotKeysPushMessage.class, this::onHotKeysPushMessage)
+                .match(HotKeysRequestMessage.class, this::onHotKeysRequestMessage)
+                .match(StatsRequestMessage.class, msg -> onStatsRequestMessage(msg, this.caches))
+                .match(StatsResponseMessage.class, this::onStatsResponseMessage)
+                .match(StatsTimeoutMessage.class, this::onStatsTimeoutMessage)
+                .match(MetricsTickMessage.class, this::onMetricsTickMessage)
                 .match(CrashMessage.class, this::onCrashMessage).match(
                         TokenMessage.class, msg -> onToken(msg, this.cachedDatabase, this.seqnoCache,
                                 Stream.concat(this.caches.stream(), Collections.singletonList(this.parent).stream())
@@ -1144,8 +2175,16 @@ public class Cache extends Actor {
     public Receive unavailable() {
         this.unavailable = true;
         return receiveBuilder().match(ResponseMessage.class, this::onResponseMessage)
+                .match(WriteBatchMessage.class, this::onWriteBatchMessage)
                 .match(CrashMessage.class, this::onCrashMessage)
-                .match(FlushMessage.class, this::onFlushMessage)
+                .match(ResyncMessage.class, this::onResyncMessage)
+                .match(HeartbeatMessage.class, this::onUnavailableHeartbeatMessage)
+                .match(ReadMessage.class, this::onUnavailableRequestMessage)
+                .match(WriteMessage.class, this::onUnavailableRequestMessage)
+                .match(MetricsTickMessage.class, this::onMetricsTickMessage)
+                .match(StatsRequestMessage.class, msg -> onStatsRequestMessage(msg, this.caches))
+                .match(StatsResponseMessage.class, this::onStatsResponseMessage)
+                .match(StatsTimeoutMessage.class, this::onStatsTimeoutMessage)
                 .match(TokenMessage.class, msg -> onToken(
                         msg, this.cachedDatabase, this.seqnoCache,
                         Stream.concat(this.caches.stream(), Collections.singletonList(this.originalParent).stream())
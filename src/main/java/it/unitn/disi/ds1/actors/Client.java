@@ -4,17 +4,33 @@ import akka.actor.ActorRef;
 import akka.actor.Props;
 import it.unitn.disi.ds1.Config;
 import it.unitn.disi.ds1.Logger;
+import it.unitn.disi.ds1.RequestRecorder;
+import it.unitn.disi.ds1.Simulation;
+import it.unitn.disi.ds1.messages.HedgeMessage;
 import it.unitn.disi.ds1.messages.JoinCachesMessage;
 import it.unitn.disi.ds1.messages.Message;
+import it.unitn.disi.ds1.messages.MetricsTickMessage;
+import it.unitn.disi.ds1.messages.NearCacheInvalidationMessage;
+import it.unitn.disi.ds1.messages.OperationCompletedMessage;
 import it.unitn.disi.ds1.messages.ReadMessage;
 import it.unitn.disi.ds1.messages.RecoveryMessage;
 import it.unitn.disi.ds1.messages.ResponseMessage;
+import it.unitn.disi.ds1.messages.StatsRequestMessage;
 import it.unitn.disi.ds1.messages.TimeoutMessage;
+import it.unitn.disi.ds1.messages.UnavailableMessage;
 import it.unitn.disi.ds1.messages.WriteMessage;
+import it.unitn.disi.ds1.structures.LatencyWindow;
+import it.unitn.disi.ds1.structures.Metrics;
+import it.unitn.disi.ds1.structures.NearCache;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
 import java.util.logging.Level;
 
@@ -26,6 +42,12 @@ import java.util.logging.Level;
  * If the L2 cache server crashes and/or the client doesn't receive a response within a given timeout,
  * it will ask the same thing to another L2 cache server
  * <p>
+ * A read which is slower than usual is hedged: a duplicate of it is sent to another L2 cache server,
+ * and the first response is taken
+ * <p>
+ * The values read are kept in a small near cache, which serves the repeated reads until the L2 cache server
+ * which provided them invalidates them
+ * <p>
  * We can safely assume a client won't perform concurrent requests
  */
 public class Client extends Actor {
@@ -44,15 +66,72 @@ public class Client extends Actor {
      */
     private UUID requestUUID;
 
+    /**
+     * Caches which have refused the current operation, since they have given up their parent
+     */
+    private final Set<ActorRef> refusingCaches;
+
+    /**
+     * Requests sent for the current operation: the first one, its retries and its hedged duplicate
+     */
+    private final Set<UUID> operationRequests;
+
+    /**
+     * Type of the current operation
+     */
+    private Config.RequestType operationType;
+
+    /**
+     * Time at which the current operation has started
+     */
+    private long operationStart;
+
+    /**
+     * Actor which has requested the current operation, it is told when the operation ends
+     */
+    private ActorRef operationRequester;
+
+    /**
+     * Identifier of the current operation given by its requester
+     */
+    private UUID operationUUID;
+
+    /**
+     * Last latencies observed for each operation type
+     */
+    private final Map<Config.RequestType, LatencyWindow> latencies;
+
+    /**
+     * Whether the client hedges the reads which are slower than usual
+     */
+    private final boolean hedgedReads;
+
+    /**
+     * Hedged reads which can still be sent, earned by the reads performed
+     */
+    private double hedgeBudget;
+
+    /**
+     * Values read so far, serving the repeated non critical reads
+     */
+    private final NearCache nearCache;
+
     /**
      * Client constructor
      * Initialize the target cache servers with an empty array
-     * @param id    identifier
+     * @param id          identifier
+     * @param hedgedReads whether the client hedges the slow reads
      */
-    public Client(int id) {
+    public Client(int id, boolean hedgedReads) {
         super(id);
+        this.hedgedReads = hedgedReads;
         this.caches = new ArrayList<>();
         this.shouldReceiveResponse = false;
+        this.refusingCaches = new HashSet<>();
+        this.operationRequests = new HashSet<>();
+        this.latencies = new HashMap<>();
+        this.hedgeBudget = 0;
+        this.nearCache = new NearCache(Config.NEAR_CACHE_SIZE, Config.NEAR_CACHE_TTL_MS);
     }
 
     /**
@@ -62,7 +141,59 @@ public class Client extends Actor {
      * @return Client instance
      */
     static public Props props(int id) {
-        return Props.create(Client.class, () -> new Client(id));
+        return props(id, Config.HEDGED_READS);
+    }
+
+    /**
+     * Client static builder
+     *
+     * @param id          identifier of the client
+     * @param hedgedReads whether the client hedges the slow reads
+     * @return Client instance
+     */
+    static public Props props(int id, boolean hedgedReads) {
+        return Props.create(Client.class, () -> new Client(id, hedgedReads));
+    }
+
+    /**
+     * Role of the client
+     *
+     * @return client
+     */
+    @Override
+    protected String role() {
+        return "client";
+    }
+
+    /**
+     * Number of values in the near cache
+     *
+     * @return number of entries
+     */
+    @Override
+    protected int storedEntries() {
+        return this.nearCache.size();
+    }
+
+    /**
+     * Number of operations waiting for a response, at most one
+     *
+     * @return number of pending operations
+     */
+    @Override
+    protected int pendingRequests() {
+        return this.shouldReceiveResponse ? 1 : 0;
+    }
+
+    /**
+     * Sample the operations whose response is expected, besides the state of every actor
+     *
+     * @param snapshot copy of the metrics to be sent
+     */
+    @Override
+    protected void sampleGauges(Metrics snapshot) {
+        super.sampleGauges(snapshot);
+        snapshot.set(Metrics.Gauge.OPERATIONS, this.operationRequests.size());
     }
 
     /**
@@ -85,28 +216,61 @@ public class Client extends Actor {
      */
     @Override
     protected void onReadMessage(ReadMessage msg) {
+        RequestRecorder.record(this.id, msg.isCritical ? Config.RequestType.CRITREAD : Config.RequestType.READ,
+                msg.requestKey, null);
+
         // If it is waiting for a response, then it does not send anything
         // This comes from the assumptions that clients cannot send multiple request at a time, but they are blocked
         // until the response is received
-        if (this.shouldReceiveResponse)
+        if (this.shouldReceiveResponse) {
+            this.notifyRequester(getSender(), msg.queryUUID,
+                    msg.isCritical ? Config.RequestType.CRITREAD : Config.RequestType.READ, false);
             return;
+        }
+
+        // A non critical read is served by the near cache, as long as it does not go back in time
+        if (!msg.isCritical) {
+            NearCache.Entry entry = this.nearCache.get(msg.requestKey, Simulation.currentTimeMillis());
+            Integer knownSeqno = this.seqnoCache.get(msg.requestKey);
+            if (entry != null && (knownSeqno == null || entry.seqno >= knownSeqno)) {
+                Logger.DEBUG.info(getSelf().path().name() + " read " + entry.value + " for key " + msg.requestKey +
+                        " from its near cache, sequence number: " + entry.seqno);
+                // The hit is logged as a read served by the cache which provided the value, so that the
+                // consistency check covers it
+                UUID hitUUID = Simulation.randomUUID();
+                Logger.logCheck(Level.FINE, this.id, entry.source, Config.RequestType.READ, false, msg.requestKey,
+                        null, entry.seqno, "Near cache request read for key [CRIT: false]", hitUUID);
+                Logger.logCheck(Level.FINE, entry.source, this.id, Config.RequestType.READ, true, msg.requestKey,
+                        entry.value, entry.seqno, "Near cache response read for key [CRIT: false]", hitUUID);
+                this.metrics.increment(Metrics.Counter.HITS);
+                this.metrics.recordLatency(Config.RequestType.READ, 0);
+                this.notifyRequester(getSender(), msg.queryUUID, Config.RequestType.READ, true);
+                return;
+            }
+        }
 
         // Generate the new request
+        if (!msg.isCritical) {
+            this.metrics.increment(Metrics.Counter.MISSES);
+        }
         this.shouldReceiveResponse = true;
+        this.startOperation(msg.isCritical ? Config.RequestType.CRITREAD : Config.RequestType.READ, msg.queryUUID);
+        // Every read earns a fraction of a hedged read
+        this.hedgeBudget = Math.min(1.0, this.hedgeBudget + Config.HEDGE_BUDGET);
 
         // Find the sequence number associated to the request key
         Integer seqNo = this.seqnoCache.get(msg.requestKey);
         seqNo = seqNo == null ? -1 : seqNo;
 
         // New UUID
-        this.requestUUID = UUID.randomUUID();
+        this.requestUUID = Simulation.randomUUID();
 
         // Put the seqNo inside the request
         ReadMessage newRequest = new ReadMessage(msg.requestKey, Collections.singletonList(getSelf()), requestUUID,
                 msg.isCritical, seqNo.intValue());
 
         // Take a random client to send the request
-        int cacheToAskTo = (int) (Math.random() * (this.caches.size()));
+        int cacheToAskTo = Simulation.random().nextInt(this.caches.size());
 
         Logger.DEBUG.info(getSelf().path().name() + " is sending read request for key " + msg.requestKey + " to " +
                 this.caches.get(cacheToAskTo).path().name());
@@ -119,10 +283,119 @@ public class Client extends Actor {
         this.delay();
         // Forward the request
         this.caches.get(cacheToAskTo).tell(newRequest, getSelf());
+        this.operationRequests.add(this.requestUUID);
 
         // Schedule the timer for a possible timeout
-        this.scheduleTimer(new TimeoutMessage(newRequest, this.caches.get(cacheToAskTo)), Config.CLIENT_TIMEOUT,
+        this.scheduleTimer(new TimeoutMessage(newRequest, this.caches.get(cacheToAskTo)),
+                this.clientTimeout(this.caches.get(cacheToAskTo),
+                        msg.isCritical ? Config.RequestType.CRITREAD : Config.RequestType.READ),
                 this.requestUUID);
+
+        // Hedge the read if it is slower than usual
+        if (this.hedgedReads && this.caches.size() > 1) {
+            LatencyWindow window = this.latencies.get(this.operationType);
+            if (window != null && window.size() >= Config.HEDGE_MIN_SAMPLES) {
+                this.scheduleDetatchedTimer(new HedgeMessage(newRequest, this.caches.get(cacheToAskTo)),
+                        (int) window.percentile(Config.HEDGE_PERCENTILE));
+            }
+        }
+    }
+
+    /**
+     * Start a new operation, forgetting the requests of the previous one
+     *
+     * @param type          type of the operation
+     * @param operationUUID identifier of the operation given by its requester, namely the sender of the message
+     */
+    private void startOperation(Config.RequestType type, UUID operationUUID) {
+        this.operationRequests.clear();
+        this.refusingCaches.clear();
+        this.operationType = type;
+        this.operationStart = Simulation.currentTimeMillis();
+        this.operationRequester = getSender();
+        this.operationUUID = operationUUID;
+    }
+
+    /**
+     * End the current operation, telling its requester
+     *
+     * @param succeeded whether the operation has succeeded
+     */
+    private void completeOperation(boolean succeeded) {
+        this.notifyRequester(this.operationRequester, this.operationUUID, this.operationType, succeeded);
+        this.operationRequester = null;
+        this.operationUUID = null;
+    }
+
+    /**
+     * Tell the requester of an operation that it has ended
+     * Nothing is sent for the operations without a sender, nor for the ones scheduled on behalf of the client itself
+     *
+     * @param requester     requester of the operation
+     * @param operationUUID identifier of the operation given by the requester
+     * @param type          type of the operation
+     * @param succeeded     whether the operation has succeeded
+     */
+    private void notifyRequester(ActorRef requester, UUID operationUUID, Config.RequestType type,
+                                 boolean succeeded) {
+        if (requester == null || requester.equals(getSelf()) ||
+                requester.equals(getContext().getSystem().deadLetters())) {
+            return;
+        }
+        requester.tell(new OperationCompletedMessage(operationUUID, type, succeeded), getSelf());
+    }
+
+    /**
+     * Handler of the HedgeMessage
+     * If the read has not been answered nor retried yet, and the budget allows it,
+     * send a duplicate of it to another cache
+     *
+     * @param msg hedge message
+     */
+    private void onHedgeMessage(HedgeMessage msg) {
+        // The read has already been answered or retried
+        if (!this.shouldReceiveResponse || !Objects.equals(msg.request.queryUUID, this.requestUUID)) {
+            return;
+        }
+        List<ActorRef> otherCaches = new ArrayList<>(this.caches);
+        otherCaches.remove(msg.cache);
+        otherCaches.removeAll(this.refusingCaches);
+        if (this.hedgeBudget < 1.0 || otherCaches.isEmpty()) {
+            return;
+        }
+        this.hedgeBudget -= 1.0;
+        this.metrics.increment(Metrics.Counter.HEDGES);
+
+        ActorRef cacheToAskTo = otherCaches.get(Simulation.random().nextInt(otherCaches.size()));
+        UUID hedgeUUID = Simulation.randomUUID();
+        ReadMessage hedgedRequest = new ReadMessage(msg.request.requestKey, Collections.singletonList(getSelf()),
+                hedgeUUID, msg.request.isCritical, msg.request.seqno);
+
+        Logger.DEBUG.info(getSelf().path().name() + " is hedging the read request for key " +
+                msg.request.requestKey + " to " + cacheToAskTo.path().name());
+        Logger.logCheck(Level.FINE, this.id, this.getIdFromName(cacheToAskTo.path().name()),
+                msg.request.isCritical ? Config.RequestType.CRITREAD : Config.RequestType.READ, false,
+                msg.request.requestKey, null, msg.request.seqno,
+                "Hedged request read for key [CRIT: " + msg.request.isCritical + "]", hedgeUUID
+        );
+
+        // Network delay
+        this.delay();
+        // The timer of the first request still covers the operation
+        cacheToAskTo.tell(hedgedRequest, getSelf());
+        this.operationRequests.add(hedgeUUID);
+    }
+
+    /**
+     * Get the adaptive timeout for a request to a cache
+     *
+     * @param cache       cache the request is sent to
+     * @param requestType type of the request
+     * @return timeout in milliseconds
+     */
+    private int clientTimeout(ActorRef cache, Config.RequestType requestType) {
+        return this.adaptiveTimeout(cache, requestType, Config.CLIENT_TIMEOUT, Config.CLIENT_TIMEOUT_MIN,
+                Config.CLIENT_TIMEOUT_MAX);
     }
 
     /**
@@ -132,20 +405,28 @@ public class Client extends Actor {
      */
     @Override
     protected void onWriteMessage(WriteMessage msg) {
+        RequestRecorder.record(this.id, msg.isCritical ? Config.RequestType.CRITWRITE : Config.RequestType.WRITE,
+                msg.requestKey, msg.modifiedValue);
+
         // Only one request at a time
-        if (this.shouldReceiveResponse)
+        if (this.shouldReceiveResponse) {
+            this.notifyRequester(getSender(), msg.queryUUID,
+                    msg.isCritical ? Config.RequestType.CRITWRITE : Config.RequestType.WRITE, false);
             return;
+        }
 
         this.shouldReceiveResponse = true;
+        this.startOperation(msg.isCritical ? Config.RequestType.CRITWRITE : Config.RequestType.WRITE,
+                msg.queryUUID);
 
         // New UUID
-        this.requestUUID = UUID.randomUUID();
+        this.requestUUID = Simulation.randomUUID();
 
         // Generate the new request message
         WriteMessage newRequest = new WriteMessage(msg.requestKey, msg.modifiedValue,
                 Collections.singletonList(getSelf()), requestUUID, msg.isCritical);
         // Selects a new cache to ask to
-        int cacheToAskTo = (int) (Math.random() * (this.caches.size()));
+        int cacheToAskTo = Simulation.random().nextInt(this.caches.size());
 
         Logger.DEBUG.info(getSelf().path().name() + " is sending write request for key " + msg.requestKey +
                 " and value " + msg.modifiedValue + " to " + this.caches.get(cacheToAskTo).path().name());
@@ -159,10 +440,14 @@ public class Client extends Actor {
         this.delay();
         // Forward the write request to the cache
         this.caches.get(cacheToAskTo).tell(newRequest, getSelf());
+        this.operationRequests.add(this.requestUUID);
 
         // Schedule the timer for a possible timeout
         this.scheduleTimer(
-                new TimeoutMessage(newRequest, this.caches.get(cacheToAskTo)), Config.CLIENT_TIMEOUT, this.requestUUID
+                new TimeoutMessage(newRequest, this.caches.get(cacheToAskTo)),
+                this.clientTimeout(this.caches.get(cacheToAskTo),
+                        msg.isCritical ? Config.RequestType.CRITWRITE : Config.RequestType.WRITE),
+                this.requestUUID
         );
     }
 
@@ -179,10 +464,10 @@ public class Client extends Actor {
             return;
 
         // New UUID
-        this.requestUUID = UUID.randomUUID();
+        this.requestUUID = Simulation.randomUUID();
 
         // Ask to another cache the same thing asked before
-        int cacheToAskTo = (int) (Math.random() * (this.caches.size()));
+        int cacheToAskTo = Simulation.random().nextInt(this.caches.size());
 
         // Tell to another cache
         int requestKey = -1, modifiedValue = -1;
@@ -216,9 +501,16 @@ public class Client extends Actor {
         // If the timeout scheduler doesn't contain the oldUUID, it means we cancelled the timer. We can return
         if (!this.timeoutScheduler.containsKey(oldUUID)) {
             this.shouldReceiveResponse = false;
+            // The operation is over, hence the timer of its latest request is useless
+            this.cancelTimers();
+            this.completeOperation(false);
             return;
         }
-        this.timeoutScheduler.remove(oldUUID);
+        this.cancelTimer(oldUUID);
+        // The cache has not answered in time, wait longer for it next time
+        this.backoffTimeout(msg.whoCrashed, reqType);
+        this.metrics.increment(Metrics.Counter.TIMEOUTS);
+        this.metrics.increment(Metrics.Counter.RETRIES);
 
         Logger.DEBUG.info(getSelf().path().name() + " is sending a " + type +
                 " request to another cache for key " + requestKey + " to " +
@@ -234,9 +526,81 @@ public class Client extends Actor {
 
         // Forward the message to a new cache
         this.caches.get(cacheToAskTo).tell(newMessage, getSelf());
+        this.operationRequests.add(this.requestUUID);
+
+        // Schedule the timer
+        this.scheduleTimer(new TimeoutMessage(msg.msg, this.caches.get(cacheToAskTo)),
+                this.clientTimeout(this.caches.get(cacheToAskTo), reqType), this.requestUUID);
+    }
+
+    /**
+     * Handler of the UnavailableMessage
+     * The cache has given up its parent, but it may return to it later on, hence the client keeps it and asks
+     * another cache the same thing, the operation failing only once every cache has refused it
+     *
+     * @param msg unavailable message
+     */
+    private void onUnavailableMessage(UnavailableMessage msg) {
+        int requestKey = -1, modifiedValue = -1;
+        int seqno = -1;
+        boolean critical = false;
+        UUID oldUUID = null;
+        Config.RequestType reqType = Config.RequestType.READ;
+        if (msg.request instanceof ReadMessage) {
+            requestKey = ((ReadMessage) msg.request).requestKey;
+            seqno = ((ReadMessage) msg.request).seqno;
+            critical = ((ReadMessage) msg.request).isCritical;
+            oldUUID = ((ReadMessage) msg.request).queryUUID;
+            reqType = critical ? Config.RequestType.CRITREAD : Config.RequestType.READ;
+        } else if (msg.request instanceof WriteMessage) {
+            requestKey = ((WriteMessage) msg.request).requestKey;
+            modifiedValue = ((WriteMessage) msg.request).modifiedValue;
+            critical = ((WriteMessage) msg.request).isCritical;
+            oldUUID = ((WriteMessage) msg.request).queryUUID;
+            reqType = critical ? Config.RequestType.CRITWRITE : Config.RequestType.WRITE;
+        }
+
+        if (!this.shouldReceiveResponse || !this.operationRequests.remove(oldUUID))
+            return;
+        this.refusingCaches.add(getSender());
+        // Only the refusal of the latest request is retried, the timer of which covers a refused hedged read
+        if (!Objects.equals(oldUUID, this.requestUUID))
+            return;
+        this.cancelTimer(this.requestUUID);
+
+        List<ActorRef> availableCaches = new ArrayList<>(this.caches);
+        availableCaches.removeAll(this.refusingCaches);
+        if (availableCaches.isEmpty()) {
+            Logger.DEBUG.info(getSelf().path().name() + ": every cache refused the operation on key " + requestKey);
+            this.shouldReceiveResponse = false;
+            this.completeOperation(false);
+            return;
+        }
+
+        // New UUID
+        this.requestUUID = Simulation.randomUUID();
+        ActorRef cacheToAskTo = availableCaches.get(Simulation.random().nextInt(availableCaches.size()));
+        Message newMessage = msg.request instanceof ReadMessage ?
+                new ReadMessage(requestKey, Collections.singletonList(getSelf()), this.requestUUID, critical, seqno) :
+                new WriteMessage(requestKey, modifiedValue, Collections.singletonList(getSelf()), this.requestUUID,
+                        critical);
+
+        Logger.DEBUG.info(getSelf().path().name() + " is asking " + cacheToAskTo.path().name() + " for key " +
+                requestKey + ", since " + getSender().path().name() + " is unavailable");
+        Logger.logCheck(Level.FINE, this.id, this.getIdFromName(cacheToAskTo.path().name()), reqType,
+                false, requestKey, msg.request instanceof WriteMessage ? modifiedValue : null, seqno,
+                "Request to another cache for key [CRIT: " + critical + "]", this.requestUUID
+        );
+
+        this.metrics.increment(Metrics.Counter.RETRIES);
+
+        // Network delay
+        this.delay();
+        cacheToAskTo.tell(newMessage, getSelf());
+        this.operationRequests.add(this.requestUUID);
 
         // Schedule the timer
-        this.scheduleTimer(new TimeoutMessage(msg.msg, this.caches.get(cacheToAskTo)), Config.CLIENT_TIMEOUT,
+        this.scheduleTimer(new TimeoutMessage(newMessage, cacheToAskTo), this.clientTimeout(cacheToAskTo, reqType),
                 this.requestUUID);
     }
 
@@ -257,6 +621,24 @@ public class Client extends Actor {
      */
     @Override
     protected void onResponseMessage(ResponseMessage msg) {
+        // Only the first response to the current operation matters, e.g. not the one to the slower hedged read
+        if (!this.operationRequests.contains(msg.queryUUID)) {
+            return;
+        }
+        // A failed duplicate is not the end of the operation, the timer of the last request still covers it
+        if (msg.values == null && !Objects.equals(msg.queryUUID, this.requestUUID)) {
+            this.operationRequests.remove(msg.queryUUID);
+            if (msg.requestType == Config.RequestType.READ) {
+                this.caches.remove(getSender());
+            }
+            return;
+        }
+        this.operationRequests.clear();
+
+        // Sample the round trip time, only for the response to the last request sent
+        if (Objects.equals(msg.queryUUID, this.requestUUID)) {
+            this.sampleRtt(getSender(), msg.requestType, this.requestUUID);
+        }
         // Cancel eventual timeout timer
         this.cancelTimer(this.requestUUID);
         this.shouldReceiveResponse = false;
@@ -266,10 +648,26 @@ public class Client extends Actor {
                     msg.values.keySet().toArray()[0] + " got " + msg.values.values().toArray()[0] +
                     " sequence number:" + msg.seqno);
 
+            long latency = Simulation.currentTimeMillis() - this.operationStart;
+            this.latencies.computeIfAbsent(this.operationType, type -> new LatencyWindow(Config.HEDGE_LATENCY_WINDOW))
+                    .add(latency);
+            this.metrics.recordLatency(this.operationType, latency);
+            if (this.operationType == Config.RequestType.CRITWRITE) {
+                this.metrics.increment(Metrics.Counter.COMMITS);
+            }
+
             int requestKey = (Integer) msg.values.keySet().toArray()[0];
             // Override the value in the sequence number cache
             this.seqnoCache.remove(requestKey);
             this.seqnoCache.put(requestKey, msg.seqno);
+
+            // The value read is kept for the next reads, while the one written is known only by the caches
+            if (msg.requestType == Config.RequestType.READ || msg.requestType == Config.RequestType.CRITREAD) {
+                this.nearCache.put(requestKey, (Integer) msg.values.values().toArray()[0], msg.seqno,
+                        this.getIdFromName(getSender().path().name()), Simulation.currentTimeMillis());
+            } else {
+                this.nearCache.invalidate(requestKey);
+            }
         } else {
             // If the L1 cache crashed, the L2 cache became L1, so we remove it from the caches the client can communicate with
             if (msg.requestType == Config.RequestType.READ) {
@@ -281,8 +679,20 @@ public class Client extends Actor {
                 Logger.DEBUG.info("CritRead operation failed");
             } else if (msg.requestType == Config.RequestType.CRITWRITE) {
                 Logger.DEBUG.info("CritWrite operation failed");
+                this.metrics.increment(Metrics.Counter.ABORTS);
             }
         }
+        this.completeOperation(msg.values != null);
+    }
+
+    /**
+     * Handler of the NearCacheInvalidationMessage
+     * Drop the key from the near cache, since the cache which provided it has a different value now
+     *
+     * @param msg near cache invalidation message
+     */
+    private void onNearCacheInvalidationMessage(NearCacheInvalidationMessage msg) {
+        this.nearCache.invalidate(msg.key);
     }
 
     /**
@@ -298,6 +708,11 @@ public class Client extends Actor {
                 .match(WriteMessage.class, this::onWriteMessage)
                 .match(ResponseMessage.class, this::onResponseMessage)
                 .match(TimeoutMessage.class, this::onTimeoutMessage)
+                .match(UnavailableMessage.class, this::onUnavailableMessage)
+                .match(HedgeMessage.class, this::onHedgeMessage)
+                .match(NearCacheInvalidationMessage.class, this::onNearCacheInvalidationMessage)
+                .match(StatsRequestMessage.class, msg -> onStatsRequestMessage(msg, Collections.emptyList()))
+                .match(MetricsTickMessage.class, this::onMetricsTickMessage)
                 .build();
     }
 }
@@ -4,23 +4,46 @@ import akka.actor.ActorRef;
 import akka.actor.Props;
 import it.unitn.disi.ds1.Config;
 import it.unitn.disi.ds1.Logger;
+import it.unitn.disi.ds1.Simulation;
+import it.unitn.disi.ds1.messages.AntiEntropyKeysMessage;
+import it.unitn.disi.ds1.messages.AntiEntropyTickMessage;
 import it.unitn.disi.ds1.messages.CriticalUpdateMessage;
 import it.unitn.disi.ds1.messages.CriticalUpdateResponseMessage;
 import it.unitn.disi.ds1.messages.CriticalUpdateTimeoutMessage;
 import it.unitn.disi.ds1.messages.CriticalWriteResponseMessage;
+import it.unitn.disi.ds1.messages.HeartbeatMessage;
+import it.unitn.disi.ds1.messages.HeartbeatTickMessage;
 import it.unitn.disi.ds1.messages.JoinCachesMessage;
+import it.unitn.disi.ds1.messages.LeaseExpiredMessage;
+import it.unitn.disi.ds1.messages.LeaseGrantMessage;
+import it.unitn.disi.ds1.messages.LeaseRecallMessage;
+import it.unitn.disi.ds1.messages.LeaseRecallResponseMessage;
+import it.unitn.disi.ds1.messages.MetricsTickMessage;
 import it.unitn.disi.ds1.messages.ReadMessage;
+import it.unitn.disi.ds1.messages.RefreshRequestMessage;
 import it.unitn.disi.ds1.messages.RecoveryMessage;
 import it.unitn.disi.ds1.messages.ResponseMessage;
+import it.unitn.disi.ds1.messages.ResyncRequestMessage;
+import it.unitn.disi.ds1.messages.ResyncResponseMessage;
 import it.unitn.disi.ds1.messages.StartSnapshotMessage;
+import it.unitn.disi.ds1.messages.StatsRequestMessage;
+import it.unitn.disi.ds1.messages.StatsResponseMessage;
+import it.unitn.disi.ds1.messages.StatsTimeoutMessage;
+import it.unitn.disi.ds1.messages.SummaryUpdateMessage;
 import it.unitn.disi.ds1.messages.TimeoutMessage;
 import it.unitn.disi.ds1.messages.TokenMessage;
+import it.unitn.disi.ds1.messages.WriteBatchTimeoutMessage;
 import it.unitn.disi.ds1.messages.WriteMessage;
+import it.unitn.disi.ds1.structures.CountingBloomFilter;
+import it.unitn.disi.ds1.structures.Metrics;
 
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -68,16 +91,48 @@ public class Database extends Actor {
      */
     private final Map<UUID, Set<ActorRef>> receivedAcksForCritWrite;
 
+    /**
+     * L1 caches involved in each critical write, namely the ones which may store the key
+     */
+    private final Map<UUID, List<ActorRef>> criticalSessionCaches;
+
+    /**
+     * L1 cache which has forwarded each critical write, it receives the decision even if it is not involved
+     */
+    private final Map<UUID, ActorRef> criticalSessionRequesters;
+
+    /**
+     * Read leases granted to the L1 caches on each key, with their expiration time
+     */
+    private final Map<Integer, Map<ActorRef, Long>> readLeases;
+
+    /**
+     * Writes waiting for the read leases on their key to be recalled, together with their senders
+     */
+    private final Map<Integer, List<AbstractMap.SimpleImmutableEntry<WriteMessage, ActorRef>>> deferredWrites;
+
+    /**
+     * Summary of the keys cached under each L1 cache, namely in the L1 cache and in its L2 caches
+     */
+    private final Map<ActorRef, CountingBloomFilter> summaries;
+
+    /**
+     * Duration in milliseconds of the read leases granted to the L1 caches, 0 disables leases
+     */
+    private final int readLeaseMs;
+
     /**
      * Database Constructor
      * Initialize variables
      *
-     * @param id       database identifier
-     * @param database A Map containing the entries of our database
+     * @param id          database identifier
+     * @param database    A Map containing the entries of our database
+     * @param readLeaseMs duration of the read leases, 0 disables them
      */
-    public Database(int id, Map<Integer, Integer> database) {
+    public Database(int id, Map<Integer, Integer> database, int readLeaseMs) {
         super(id);
         this.database = database;
+        this.readLeaseMs = readLeaseMs;
         this.caches = new ArrayList<>();
         // Initialize the sequence numbers at zero
         this.database.forEach((k, v) -> this.seqnoCache.put(k, 0));
@@ -85,6 +140,11 @@ public class Database extends Actor {
         this.criticalSessionKey = new HashMap<>();
         this.criticalKeyValue = new HashMap<>();
         this.receivedAcksForCritWrite = new HashMap<>();
+        this.criticalSessionCaches = new HashMap<>();
+        this.criticalSessionRequesters = new HashMap<>();
+        this.summaries = new LinkedHashMap<>();
+        this.readLeases = new HashMap<>();
+        this.deferredWrites = new HashMap<>();
     }
 
     /**
@@ -95,7 +155,67 @@ public class Database extends Actor {
      * @return Database instance
      */
     static public Props props(int id, Map<Integer, Integer> database) {
-        return Props.create(Database.class, () -> new Database(id, database));
+        return props(id, database, Config.READ_LEASE_MS);
+    }
+
+    /**
+     * Database static builder
+     *
+     * @param id          database identifier
+     * @param database    database values
+     * @param readLeaseMs duration of the read leases, 0 disables them
+     * @return Database instance
+     * @throws IllegalArgumentException if the leases are longer than Config.READ_LEASE_MAX_MS
+     */
+    static public Props props(int id, Map<Integer, Integer> database, int readLeaseMs) {
+        if (readLeaseMs > Config.READ_LEASE_MAX_MS) {
+            throw new IllegalArgumentException("Read leases of " + readLeaseMs + " ms would make the L2 caches " +
+                    "time out, the limit is " + Config.READ_LEASE_MAX_MS + " ms");
+        }
+        return Props.create(Database.class, () -> new Database(id, database, readLeaseMs));
+    }
+
+    /**
+     * Role of the database
+     *
+     * @return database
+     */
+    @Override
+    protected String role() {
+        return "database";
+    }
+
+    /**
+     * Number of entries of the database
+     *
+     * @return number of entries
+     */
+    @Override
+    protected int storedEntries() {
+        return this.database.size();
+    }
+
+    /**
+     * Number of critical writes waiting for the votes of the caches
+     *
+     * @return number of pending critical writes
+     */
+    @Override
+    protected int pendingRequests() {
+        return this.criticalSessionKey.size();
+    }
+
+    /**
+     * Sample the critical write sessions, besides the state of every actor
+     *
+     * @param snapshot copy of the metrics to be sent
+     */
+    @Override
+    protected void sampleGauges(Metrics snapshot) {
+        super.sampleGauges(snapshot);
+        snapshot.set(Metrics.Gauge.CRITICAL_SESSIONS, this.criticalSessionKey.size() +
+                this.receivedAcksForCritWrite.size() + this.criticalSessionCaches.size() +
+                this.criticalSessionRequesters.size());
     }
 
     /**
@@ -107,10 +227,123 @@ public class Database extends Actor {
     @Override
     protected void onJoinCachesMessage(JoinCachesMessage msg) {
         this.caches.addAll(msg.caches);
+        // Every L1 cache starts with an empty summary
+        for (ActorRef cache : msg.caches) {
+            this.summaries.put(cache, new CountingBloomFilter(Config.SUMMARY_FILTER_SIZE, Config.SUMMARY_FILTER_HASHES));
+        }
+        // The database periodically checks the L1 caches
+        if (Config.ANTI_ENTROPY_INTERVAL_MS > 0) {
+            this.schedulePeriodicTimer(new AntiEntropyTickMessage(), Config.ANTI_ENTROPY_INTERVAL_MS);
+        }
+        // The L1 caches detect the crashes of the database, and vice versa, through heartbeats
+        if (Config.HEARTBEAT_INTERVAL_MS > 0) {
+            this.schedulePeriodicTimer(new HeartbeatTickMessage(), Config.HEARTBEAT_INTERVAL_MS);
+        }
         Logger.DEBUG.info(getSelf().path().name() + ": joining a the distributed cache with " +
                 this.caches.size() + " visible peers with ID " + this.id);
     }
 
+    /**
+     * Handler of the SummaryUpdateMessage
+     * Update the summary of the keys cached under the L1 cache which has sent the message
+     *
+     * @param msg summary update message
+     */
+    protected void onSummaryUpdateMessage(SummaryUpdateMessage msg) {
+        CountingBloomFilter summary = this.summaries.get(getSender());
+        if (summary == null) {
+            return;
+        }
+        msg.addedKeys.forEach(summary::add);
+        msg.removedKeys.forEach(summary::remove);
+        Logger.DEBUG.finer(getSelf().path().name() + ": summary of " + getSender().path().name() + " updated, added " +
+                msg.addedKeys + " removed " + msg.removedKeys);
+    }
+
+    /**
+     * Keys the L1 cache may store according to its summary, which are the ones checked by the anti-entropy protocol
+     * The database keeps no exact copy of the keys of each L1 cache, hence a false positive of the summary is
+     * checked as well, while the L1 cache never reports it
+     *
+     * @param child L1 cache
+     * @return keys of the database which the summary of the L1 cache may contain
+     */
+    @Override
+    protected Set<Integer> keysOf(ActorRef child) {
+        Set<Integer> keys = new HashSet<>();
+        CountingBloomFilter summary = this.summaries.get(child);
+        if (summary == null) {
+            return keys;
+        }
+        for (Integer key : this.database.keySet()) {
+            if (summary.mightContain(key)) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * The summary of an L1 cache is refined by the L1 cache itself, which retracts the keys its subtree does not
+     * store anymore, hence the keys reported during anti-entropy are ignored
+     *
+     * @param child  L1 cache
+     * @param leaves divergent key ranges
+     * @param keys   keys the L1 cache stores within the divergent ranges
+     */
+    @Override
+    protected void refineKeysOf(ActorRef child, Set<Integer> leaves, Set<Integer> keys) {
+    }
+
+    /**
+     * Handler of the ResyncRequestMessage
+     * Send to the recovering L1 cache the current values of the keys it has announced in its summary,
+     * which are the keys stored in its subtree and are listed by the request, since the summary itself may
+     * contain other keys. Keys in the middle of a critical write are not sent.
+     *
+     * @param msg resync request message
+     */
+    protected void onResyncRequestMessage(ResyncRequestMessage msg) {
+        Map<Integer, Integer> values = new HashMap<>();
+        Map<Integer, Integer> seqnos = new HashMap<>();
+        for (Integer key : msg.keys) {
+            if (!this.database.containsKey(key) || this.criticalKeyValue.containsKey(key)) {
+                continue;
+            }
+            values.put(key, this.database.get(key));
+            seqnos.put(key, this.seqnoCache.get(key));
+            // The resync carries the newest value of the key
+            this.discardBatchedUpdate(getSender(), key, this.seqnoCache.get(key));
+            this.logPushedValue(getSender(), key, this.database.get(key), this.seqnoCache.get(key), "Resync");
+        }
+        Logger.DEBUG.info(getSelf().path().name() + ": resyncing " + values.size() + " keys of " +
+                getSender().path().name());
+
+        // Network delay
+        this.delay();
+        getSender().tell(new ResyncResponseMessage(values, seqnos), getSelf());
+    }
+
+    /**
+     * Get the L1 caches which may store the given key, according to their summaries
+     * The L1 cache which has forwarded the request is always included, since the response to the client travels
+     * through it
+     *
+     * @param key       key of the request
+     * @param requester L1 cache which has forwarded the request, null to get only the caches which may store the key
+     * @return list of L1 caches to contact
+     */
+    private List<ActorRef> interestedCaches(int key, ActorRef requester) {
+        List<ActorRef> interested = new ArrayList<>();
+        for (ActorRef cache : this.caches) {
+            CountingBloomFilter summary = this.summaries.get(cache);
+            if (cache.equals(requester) || summary == null || summary.mightContain(key)) {
+                interested.add(cache);
+            }
+        }
+        return interested;
+    }
+
     /**
      * Handler of the ReadMessage message.
      * Get the value for the specified key and send back the response to the sender
@@ -121,6 +354,7 @@ public class Database extends Actor {
      */
     @Override
     protected void onReadMessage(ReadMessage msg) {
+        long receivedAt = Simulation.currentTimeMillis();
         // Generate a new ArrayList from the message hops
         List<ActorRef> newHops = new ArrayList<>(msg.hops);
 
@@ -152,6 +386,9 @@ public class Database extends Actor {
         this.delay();
         // Send the response back to the sender
         getSender().tell(responseMessage, getSelf());
+        this.metrics.increment(Metrics.Counter.HITS);
+        this.metrics.recordLatency(msg.isCritical ? Config.RequestType.CRITREAD : Config.RequestType.READ,
+                Simulation.currentTimeMillis() - receivedAt);
 
         Logger.logCheck(Level.FINE, this.id, getIdFromName(getSender().path().name()),
                 msg.isCritical ? Config.RequestType.CRITREAD : Config.RequestType.READ,
@@ -160,6 +397,110 @@ public class Database extends Actor {
         );
         Logger.DEBUG.info(getSelf().path().name() + " is answering " + msg.requestKey + " to: " +
                 getSender().path().name() + " sequence number: " + seqno + " [CRITICAL] = " + msg.isCritical);
+
+        // Grant a read lease to the L1 cache, unless a write is waiting for the leases on the key to be recalled
+        if (msg.isCritical && valueToReturn != null && this.readLeaseMs > 0 &&
+                this.caches.contains(getSender()) && !this.deferredWrites.containsKey(msg.requestKey)) {
+            long expiresAt = Simulation.currentTimeMillis() + this.readLeaseMs;
+            this.readLeases.computeIfAbsent(msg.requestKey, key -> new LinkedHashMap<>()).put(getSender(), expiresAt);
+            // Sent after the response, so that the L1 cache stores the leased value first
+            getSender().tell(new LeaseGrantMessage(msg.requestKey, seqno, expiresAt), getSelf());
+        }
+    }
+
+    /**
+     * Defer a write on a key with valid read leases, recalling the leases
+     * The write is processed again once all the leases have been given up or have expired
+     *
+     * @param msg    write message
+     * @param sender L1 cache which has forwarded the write
+     * @return whether the write has been deferred
+     */
+    private boolean deferWrite(WriteMessage msg, ActorRef sender) {
+        // A recall is already in progress
+        List<AbstractMap.SimpleImmutableEntry<WriteMessage, ActorRef>> deferred = this.deferredWrites.get(msg.requestKey);
+        if (deferred != null) {
+            deferred.add(new AbstractMap.SimpleImmutableEntry<>(msg, sender));
+            return true;
+        }
+
+        Map<ActorRef, Long> leases = this.readLeases.get(msg.requestKey);
+        if (leases == null) {
+            return false;
+        }
+        long now = Simulation.currentTimeMillis();
+        leases.values().removeIf(expiresAt -> expiresAt <= now);
+        if (leases.isEmpty()) {
+            this.readLeases.remove(msg.requestKey);
+            return false;
+        }
+
+        deferred = new ArrayList<>();
+        deferred.add(new AbstractMap.SimpleImmutableEntry<>(msg, sender));
+        this.deferredWrites.put(msg.requestKey, deferred);
+        Logger.DEBUG.info(getSelf().path().name() + ": recalling " + leases.size() + " read leases on key " +
+                msg.requestKey);
+
+        // Recall the leases, and stop waiting for the caches which do not answer once the leases expire
+        this.multicast(new LeaseRecallMessage(msg.requestKey), new ArrayList<>(leases.keySet()));
+        long lastExpiration = Collections.max(leases.values());
+        this.scheduleDetatchedTimer(new LeaseExpiredMessage(msg.requestKey), (int) (lastExpiration - now) + 1);
+        return true;
+    }
+
+    /**
+     * Handler of the LeaseRecallResponseMessage
+     * Once all the leases on the key have been given up, the deferred writes are processed
+     *
+     * @param msg lease recall response message
+     */
+    protected void onLeaseRecallResponseMessage(LeaseRecallResponseMessage msg) {
+        Map<ActorRef, Long> leases = this.readLeases.get(msg.key);
+        if (leases == null) {
+            return;
+        }
+        leases.remove(getSender());
+        if (leases.isEmpty()) {
+            this.releaseDeferredWrites(msg.key);
+        }
+    }
+
+    /**
+     * Handler of the LeaseExpiredMessage
+     * The leases which have not been given up have expired, hence the deferred writes can be processed
+     *
+     * @param msg lease expired message
+     */
+    protected void onLeaseExpiredMessage(LeaseExpiredMessage msg) {
+        Map<ActorRef, Long> leases = this.readLeases.get(msg.key);
+        if (leases == null) {
+            return;
+        }
+        long now = Simulation.currentTimeMillis();
+        leases.values().removeIf(expiresAt -> expiresAt <= now);
+        if (leases.isEmpty()) {
+            this.releaseDeferredWrites(msg.key);
+        } else {
+            this.scheduleDetatchedTimer(msg, (int) (Collections.max(leases.values()) - now) + 1);
+        }
+    }
+
+    /**
+     * Process, in their arrival order, the writes deferred on a key whose leases are over
+     * They are processed right away rather than sent again to the database, so that no message handled in between
+     * can overtake them, or be granted a new lease on the key
+     *
+     * @param key key
+     */
+    private void releaseDeferredWrites(int key) {
+        this.readLeases.remove(key);
+        List<AbstractMap.SimpleImmutableEntry<WriteMessage, ActorRef>> deferred = this.deferredWrites.remove(key);
+        if (deferred == null) {
+            return;
+        }
+        Logger.DEBUG.info(getSelf().path().name() + ": leases on key " + key + " are over, processing " +
+                deferred.size() + " deferred writes");
+        deferred.forEach(write -> this.processWrite(write.getKey(), write.getValue()));
     }
 
     /**
@@ -171,6 +512,16 @@ public class Database extends Actor {
      */
     @Override
     protected void onWriteMessage(WriteMessage msg) {
+        this.processWrite(msg, getSender());
+    }
+
+    /**
+     * Process a write, either as soon as it arrives or once the read leases on its key are over
+     *
+     * @param msg    write message
+     * @param sender L1 cache which has forwarded the write
+     */
+    private void processWrite(WriteMessage msg, ActorRef sender) {
         // Value on CRITWRITE
         if (criticalKeyValue.containsKey(msg.requestKey)) {
             Logger.DEBUG.severe(getSelf().path().name() + " cannot write a message which is on critical update " +
@@ -186,11 +537,11 @@ public class Database extends Actor {
             // Network delay
             this.delay();
             // Send the message
-            getSender().tell(
+            sender.tell(
                     new ResponseMessage(null, newHops, msg.queryUUID, Config.RequestType.WRITE, msg.isCritical, seqno),
                     getSelf()
             );
-            Logger.logCheck(Level.INFO, this.id, getIdFromName(getSender().path().name()),
+            Logger.logCheck(Level.INFO, this.id, getIdFromName(sender.path().name()),
                     msg.isCritical ? Config.RequestType.CRITWRITE : Config.RequestType.WRITE,
                     true, msg.requestKey, null, seqno,
                     "Write request for key [CRIT: " + msg.isCritical + "]", msg.queryUUID
@@ -198,6 +549,11 @@ public class Database extends Actor {
             return;
         }
 
+        // The L1 caches holding a read lease on the key have to give it up before the write
+        if (this.deferWrite(msg, sender)) {
+            return;
+        }
+
         // Generate a new ArrayList from the message hops
         // The hops contain the nodes which have been traveled to reach the database
         List<ActorRef> newHops = new ArrayList<>(msg.hops);
@@ -207,24 +563,36 @@ public class Database extends Actor {
 
         // Handle critical write in a different way, using a protocol devised from 2PC
         if (msg.isCritical) {
+            this.startRequest(msg.queryUUID);
+            // Only the L1 caches which may store the key take part in the critical write
+            List<ActorRef> involvedCaches = this.interestedCaches(msg.requestKey, null);
+            if (involvedCaches.isEmpty()) {
+                Logger.DEBUG.info(getSelf().path().name() + " No cache stores " + msg.requestKey +
+                        ", committing the critical write right away, value: " + msg.modifiedValue);
+                // Nothing has to be locked, only the L1 cache on the path of the request has to know the decision
+                this.commitCriticalWrite(msg.requestKey, msg.modifiedValue, msg.queryUUID, newHops,
+                        Collections.singletonList(sender));
+                return;
+            }
+
             this.criticalSessionKey.put(msg.queryUUID, msg.requestKey);
             this.criticalKeyValue.put(msg.requestKey, msg.modifiedValue);
+            this.criticalSessionCaches.put(msg.queryUUID, involvedCaches);
+            this.criticalSessionRequesters.put(msg.queryUUID, sender);
             Logger.DEBUG.info(getSelf().path().name() +
-                    " Sending the request for critical write to all the caches, hope to receive all OK! for " +
+                    " Sending the request for critical write to the interested caches, hope to receive all OK! for " +
                     msg.requestKey + " value: " + msg.modifiedValue
             );
 
             // Send the critical update message to L1 caches - we expect an acknowledgement containing COMMIT/ABORT
             this.multicast(
                     new CriticalUpdateMessage(msg.requestKey, msg.modifiedValue, msg.queryUUID, newHops),
-                    this.caches
+                    this.criticalSessionCaches.get(msg.queryUUID)
             );
 
             // If the database doesn't receive an acknowledgement within a given timeout, abort the write and return error
-            this.scheduleTimer(
-                    new CriticalUpdateTimeoutMessage(msg.queryUUID, newHops),
-                    Config.CRIT_WRITE_TIME_OUT, msg.queryUUID
-            );
+            this.scheduleTimer(new CriticalUpdateTimeoutMessage(msg.queryUUID, newHops),
+                    this.criticalUpdateTimeout(involvedCaches), msg.queryUUID);
             return;
         }
 
@@ -239,16 +607,27 @@ public class Database extends Actor {
         // Override the value in the sequence number cache
         this.seqnoCache.remove(msg.requestKey);
         this.seqnoCache.put(msg.requestKey, newSeqno);
+        this.metrics.increment(Metrics.Counter.WRITES);
 
         Logger.DEBUG.info(getSelf().path().name() + ": forwarding the new value for " + msg.requestKey + " to: " +
-                getSender().path().name() + " sequence number " + newSeqno);
-
-        // Multicast to the cache the update
-        this.multicastAndCheck(
-                new ResponseMessage(Collections.singletonMap(msg.requestKey, msg.modifiedValue), newHops, msg.queryUUID,
-                        Config.RequestType.WRITE, false, newSeqno), this.caches, Config.RequestType.WRITE,
-                msg.requestKey, msg.modifiedValue, newSeqno, false, msg.queryUUID
-        );
+                sender.path().name() + " sequence number " + newSeqno);
+
+        // Propagate the update to the caches which may store the key:
+        // the L1 cache which forwarded the write receives it right away, since the response to the client travels
+        // through it, while the other ones receive it within the next batch
+        for (ActorRef cache : this.interestedCaches(msg.requestKey, sender)) {
+            if (cache.equals(sender)) {
+                this.discardBatchedUpdate(cache, msg.requestKey, newSeqno);
+                this.multicastAndCheck(
+                        new ResponseMessage(Collections.singletonMap(msg.requestKey, msg.modifiedValue), newHops,
+                                msg.queryUUID, Config.RequestType.WRITE, false, newSeqno),
+                        Collections.singletonList(cache), Config.RequestType.WRITE,
+                        msg.requestKey, msg.modifiedValue, newSeqno, false, msg.queryUUID
+                );
+            } else {
+                this.batchUpdate(cache, msg.requestKey, msg.modifiedValue, newSeqno, msg.queryUUID);
+            }
+        }
     }
 
     /**
@@ -270,9 +649,23 @@ public class Database extends Actor {
         Integer key = this.criticalSessionKey.get(msg.queryUUID);
         Integer value = this.criticalKeyValue.get(key);
         Logger.DEBUG.info(getSelf().path().name() + " Aborting the critical write for " + key + " value " + value);
+        this.metrics.increment(Metrics.Counter.TIMEOUTS);
+        this.metrics.increment(Metrics.Counter.ABORTS);
+        this.abandonRequest(msg.queryUUID);
+        // The caches which have not answered in time will be waited longer next time
+        Set<ActorRef> acks = this.receivedAcksForCritWrite.getOrDefault(msg.queryUUID, Collections.emptySet());
+        for (ActorRef cache : this.criticalSessionCaches.get(msg.queryUUID)) {
+            if (!acks.contains(cache)) {
+                this.backoffTimeout(cache, Config.RequestType.CRITWRITE);
+            }
+        }
+        List<ActorRef> notifiedCaches = this.decisionCaches(msg.queryUUID);
+        // The session is over, otherwise the key would stay locked and the session would never be freed
+        this.cancelTimer(msg.queryUUID);
+        this.clearCriticalWrite(msg.queryUUID);
         this.multicast(
-                new CriticalWriteResponseMessage(Config.ACResponse.ABORT, msg.queryUUID, msg.hops, null),
-                this.caches
+                new CriticalWriteResponseMessage(Config.ACResponse.ABORT, msg.queryUUID, msg.hops, key, null, null),
+                notifiedCaches
         );
     }
 
@@ -295,30 +688,21 @@ public class Database extends Actor {
         if (msg.response == Config.CUResponse.OK) {
             // Add the sender to the list of received acknowledgements
             if (!this.receivedAcksForCritWrite.containsKey(msg.queryUUID)) {
-                this.receivedAcksForCritWrite.put(msg.queryUUID, new HashSet<>());
+                this.receivedAcksForCritWrite.put(msg.queryUUID, new LinkedHashSet<>());
             }
             this.receivedAcksForCritWrite.get(msg.queryUUID).add(getSender());
+            this.sampleRtt(getSender(), Config.RequestType.CRITWRITE, msg.queryUUID);
 
             // If the database has received all acknowledgements, proceed with the protocol's flow
-            if (this.receivedAcksForCritWrite.get(msg.queryUUID).containsAll(this.caches)) {
+            if (this.receivedAcksForCritWrite.get(msg.queryUUID).containsAll(
+                    this.criticalSessionCaches.get(msg.queryUUID))) {
                 // Cancel the timer
                 this.cancelTimer(msg.queryUUID);
 
                 // Commit by replacing the value with the updated one
                 int keyToUpdate = this.criticalSessionKey.get(msg.queryUUID);
                 int newValue = this.criticalKeyValue.get(keyToUpdate);
-
-                // Update new value
-                this.database.remove(keyToUpdate);
-                this.database.put(keyToUpdate, newValue);
-
-                // Update the sequence number
-                Integer newSeqno = this.seqnoCache.get(keyToUpdate);
-                newSeqno++;
-
-                // Override the value in the sequence number cache
-                this.seqnoCache.remove(keyToUpdate);
-                this.seqnoCache.put(keyToUpdate, newSeqno);
+                List<ActorRef> notifiedCaches = this.decisionCaches(msg.queryUUID);
 
                 // Clear critical writes value
                 this.clearCriticalWrite(msg.queryUUID);
@@ -327,28 +711,79 @@ public class Database extends Actor {
                         " Committing since all answers OK! the critical write for " + keyToUpdate + " value " +
                         newValue
                 );
-
-                // Send commit to the caches with the new sequence number to be updated
-                this.multicastAndCheck(
-                        new CriticalWriteResponseMessage(Config.ACResponse.COMMIT, msg.queryUUID, msg.hops, newSeqno),
-                        this.caches, Config.RequestType.CRITWRITE, keyToUpdate, newValue, newSeqno,
-                        true, msg.queryUUID
-                );
+                this.commitCriticalWrite(keyToUpdate, newValue, msg.queryUUID, msg.hops, notifiedCaches);
             }
         } else {
             // Got NO, I can abort
             Integer key = this.criticalSessionKey.get(msg.queryUUID);
             Integer value = this.criticalKeyValue.get(key);
+            List<ActorRef> notifiedCaches = this.decisionCaches(msg.queryUUID);
             Logger.DEBUG.info(getSelf().path().name() + " Aborting, someone answered NO the critical write for " +
                     key + " value " + value);
+            this.cancelTimer(msg.queryUUID);
             this.clearCriticalWrite(msg.queryUUID);
+            this.metrics.increment(Metrics.Counter.ABORTS);
+            this.abandonRequest(msg.queryUUID);
             this.multicastAndCheck(
-                    new CriticalWriteResponseMessage(Config.ACResponse.ABORT, msg.queryUUID, msg.hops, null),
-                    this.caches, Config.RequestType.CRITWRITE, key, null, -1, true, msg.queryUUID
+                    new CriticalWriteResponseMessage(Config.ACResponse.ABORT, msg.queryUUID, msg.hops, key, null, null),
+                    notifiedCaches, Config.RequestType.CRITWRITE, key, null, -1, true, msg.queryUUID
             );
         }
     }
 
+    /**
+     * Commit a critical write, replacing the value and sending the decision with the new sequence number
+     *
+     * @param key            key of the critical write
+     * @param value          new value
+     * @param queryUUID      UUID of the critical write
+     * @param hops           hops of the critical write
+     * @param notifiedCaches L1 caches which have to receive the decision
+     */
+    private void commitCriticalWrite(int key, int value, UUID queryUUID, List<ActorRef> hops,
+                                     List<ActorRef> notifiedCaches) {
+        // Update new value
+        this.database.remove(key);
+        this.database.put(key, value);
+
+        // Update the sequence number
+        Integer newSeqno = this.seqnoCache.get(key);
+        newSeqno++;
+
+        // Override the value in the sequence number cache
+        this.seqnoCache.remove(key);
+        this.seqnoCache.put(key, newSeqno);
+
+        // The commit carries a newer value than any batched update of the key
+        for (ActorRef cache : notifiedCaches) {
+            this.discardBatchedUpdate(cache, key, newSeqno);
+        }
+
+        // Send commit to the caches with the new sequence number to be updated
+        this.multicastAndCheck(
+                new CriticalWriteResponseMessage(Config.ACResponse.COMMIT, queryUUID, hops, key, value, newSeqno),
+                notifiedCaches, Config.RequestType.CRITWRITE, key, value, newSeqno, true, queryUUID
+        );
+        this.metrics.increment(Metrics.Counter.COMMITS);
+        this.endRequest(queryUUID, Config.RequestType.CRITWRITE);
+    }
+
+    /**
+     * Get the L1 caches which have to receive the decision of a critical write:
+     * the involved ones and the one on the path of the request
+     *
+     * @param queryUUID UUID of the critical write
+     * @return list of L1 caches
+     */
+    private List<ActorRef> decisionCaches(UUID queryUUID) {
+        List<ActorRef> notifiedCaches = new ArrayList<>(this.criticalSessionCaches.get(queryUUID));
+        ActorRef requester = this.criticalSessionRequesters.get(queryUUID);
+        if (!notifiedCaches.contains(requester)) {
+            notifiedCaches.add(requester);
+        }
+        return notifiedCaches;
+    }
+
     /**
      * Clear for critical write
      *
@@ -360,6 +795,8 @@ public class Database extends Actor {
         this.criticalSessionKey.remove(requestId);
         this.criticalKeyValue.remove(oldKey);
         this.receivedAcksForCritWrite.remove(requestId);
+        this.criticalSessionCaches.remove(requestId);
+        this.criticalSessionRequesters.remove(requestId);
     }
 
     /**
@@ -408,6 +845,22 @@ public class Database extends Actor {
                 .match(StartSnapshotMessage.class, msg -> onStartSnapshot(msg, this.database, this.seqnoCache, this.caches))
                 .match(CriticalUpdateResponseMessage.class, this::onCriticalUpdateResponseMessage)
                 .match(CriticalUpdateTimeoutMessage.class, this::onCriticalUpdateTimeoutMessage)
+                .match(SummaryUpdateMessage.class, this::onSummaryUpdateMessage)
+                .match(WriteBatchTimeoutMessage.class, this::onWriteBatchTimeoutMessage)
+                .match(ResyncRequestMessage.class, this::onResyncRequestMessage)
+                .match(LeaseRecallResponseMessage.class, this::onLeaseRecallResponseMessage)
+                .match(LeaseExpiredMessage.class, this::onLeaseExpiredMessage)
+                .match(AntiEntropyTickMessage.class, msg -> onAntiEntropyTick(msg, this.seqnoCache, this.caches))
+                .match(HeartbeatTickMessage.class, msg -> sendHeartbeats(this.caches))
+                .match(HeartbeatMessage.class, this::onHeartbeatMessage)
+                .match(StatsRequestMessage.class, msg -> onStatsRequestMessage(msg, this.caches))
+                .match(StatsResponseMessage.class, this::onStatsResponseMessage)
+                .match(StatsTimeoutMessage.class, this::onStatsTimeoutMessage)
+                .match(MetricsTickMessage.class, this::onMetricsTickMessage)
+                .match(RefreshRequestMessage.class, msg -> onRefreshRequestMessage(
+                        msg, this.database, this.seqnoCache, this.criticalKeyValue.keySet()))
+                .match(AntiEntropyKeysMessage.class, msg -> onAntiEntropyKeysMessage(
+                        msg, this.database, this.seqnoCache, this.criticalKeyValue.keySet()))
                 .match(ReadMessage.class, this::onReadMessage)
                 .match(WriteMessage.class, this::onWriteMessage)
                 .build();
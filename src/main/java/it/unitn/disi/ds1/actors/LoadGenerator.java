@@ -0,0 +1,352 @@
+package it.unitn.disi.ds1.actors;
+
+import akka.actor.AbstractActor;
+import akka.actor.ActorRef;
+import akka.actor.Cancellable;
+import akka.actor.Props;
+import it.unitn.disi.ds1.Config;
+import it.unitn.disi.ds1.Logger;
+import it.unitn.disi.ds1.messages.LoadReportMessage;
+import it.unitn.disi.ds1.messages.LoadTickMessage;
+import it.unitn.disi.ds1.messages.OperationCompletedMessage;
+import it.unitn.disi.ds1.messages.ReadMessage;
+import it.unitn.disi.ds1.messages.StartLoadMessage;
+import it.unitn.disi.ds1.messages.WriteMessage;
+import it.unitn.disi.ds1.structures.KeyDistribution;
+import it.unitn.disi.ds1.structures.LoadReport;
+import it.unitn.disi.ds1.structures.OperationMix;
+import scala.concurrent.duration.Duration;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Open-loop load generator
+ * <p>
+ * The operations are scheduled at the target rate, regardless of how fast the system answers: the i-th operation
+ * is intended to be sent i / rate seconds after the start. Since a client performs one operation at a time, each
+ * operation is sent to an idle client, waiting in a queue while all the clients are busy. The latency of an
+ * operation is measured from its intended send time, hence it includes the time spent in the queue.
+ */
+public class LoadGenerator extends AbstractActor {
+    /**
+     * Operation scheduled by the generator
+     */
+    private static class Operation {
+        /**
+         * Identifier of the operation, sent to the client as query UUID
+         */
+        final UUID uuid = UUID.randomUUID();
+
+        /**
+         * Type of the operation
+         */
+        final Config.RequestType type;
+
+        /**
+         * Requested key
+         */
+        final int key;
+
+        /**
+         * Intended send time in nanoseconds, of the monotonic clock
+         */
+        final long intendedAt;
+
+        /**
+         * Time at which the operation has been sent to a client, in nanoseconds
+         */
+        long sentAt;
+
+        Operation(Config.RequestType type, int key, long intendedAt) {
+            this.type = type;
+            this.key = key;
+            this.intendedAt = intendedAt;
+        }
+    }
+
+    /**
+     * Clients performing the operations
+     */
+    private final List<ActorRef> clients;
+
+    /**
+     * Distribution of the requested keys
+     */
+    private final KeyDistribution keys;
+
+    /**
+     * Mix of the operations
+     */
+    private final OperationMix mix;
+
+    /**
+     * Target rate in operations per second
+     */
+    private final double rate;
+
+    /**
+     * Number of operations to schedule
+     */
+    private final long operations;
+
+    /**
+     * Random number generator of the keys, of the operations and of the written values
+     */
+    private final Random random;
+
+    /**
+     * Report of the run
+     */
+    private final LoadReport report;
+
+    /**
+     * Operations whose intended time has passed, waiting for an idle client
+     */
+    private final Deque<Operation> queued;
+
+    /**
+     * Operation each busy client is performing
+     */
+    private final Map<ActorRef, Operation> outstanding;
+
+    /**
+     * Clients which are not performing any operation
+     */
+    private final Deque<ActorRef> idleClients;
+
+    /**
+     * Actor which has started the generator, it receives the report
+     */
+    private ActorRef requester;
+
+    /**
+     * Start time of the run in nanoseconds
+     */
+    private long startedAt;
+
+    /**
+     * End time of the last operation in nanoseconds
+     */
+    private long lastEndedAt;
+
+    /**
+     * Periodic timer of the generator
+     */
+    private Cancellable ticker;
+
+    /**
+     * Constructor of the load generator
+     *
+     * @param clients         clients performing the operations
+     * @param keys            distribution of the requested keys
+     * @param mix             mix of the operations
+     * @param rate            target rate in operations per second
+     * @param durationSeconds seconds during which the operations are scheduled
+     * @param random          random number generator
+     */
+    public LoadGenerator(List<ActorRef> clients, KeyDistribution keys, OperationMix mix, double rate,
+                         int durationSeconds, Random random) {
+        this.clients = new ArrayList<>(clients);
+        this.keys = keys;
+        this.mix = mix;
+        this.rate = rate;
+        this.operations = (long) Math.ceil(rate * durationSeconds);
+        this.random = random;
+        this.report = new LoadReport(rate, durationSeconds, keys.type, mix);
+        this.queued = new ArrayDeque<>();
+        this.outstanding = new HashMap<>();
+        this.idleClients = new ArrayDeque<>(this.clients);
+    }
+
+    /**
+     * Load generator static builder
+     *
+     * @param clients         clients performing the operations
+     * @param keys            distribution of the requested keys
+     * @param mix             mix of the operations
+     * @param rate            target rate in operations per second
+     * @param durationSeconds seconds during which the operations are scheduled
+     * @param random          random number generator
+     * @return LoadGenerator instance
+     */
+    static public Props props(List<ActorRef> clients, KeyDistribution keys, OperationMix mix, double rate,
+                              int durationSeconds, Random random) {
+        return Props.create(LoadGenerator.class,
+                () -> new LoadGenerator(clients, keys, mix, rate, durationSeconds, random));
+    }
+
+    /**
+     * Stop the periodic timer
+     */
+    @Override
+    public void postStop() {
+        if (this.ticker != null) {
+            this.ticker.cancel();
+        }
+    }
+
+    /**
+     * Handler of the StartLoadMessage
+     * Start scheduling the operations
+     *
+     * @param msg start load message
+     */
+    private void onStartLoadMessage(StartLoadMessage msg) {
+        if (this.requester != null) {
+            return;
+        }
+        this.requester = getSender();
+        this.startedAt = System.nanoTime();
+        this.lastEndedAt = this.startedAt;
+        Logger.DEBUG.info("Generating " + this.operations + " operations at " + this.rate + " per second");
+        this.ticker = getContext().system().scheduler().scheduleWithFixedDelay(
+                Duration.Zero(),
+                Duration.create(Config.LOAD_TICK_MS, TimeUnit.MILLISECONDS),
+                getSelf(),
+                new LoadTickMessage(),
+                getContext().system().dispatcher(),
+                getSelf()
+        );
+    }
+
+    /**
+     * Handler of the LoadTickMessage
+     * Queue the operations whose intended time has passed, give up on the ones which have been pending for too
+     * long and send the queued ones to the idle clients
+     *
+     * @param msg load tick message
+     */
+    private void onLoadTickMessage(LoadTickMessage msg) {
+        long now = System.nanoTime();
+
+        // Open loop: the operations are scheduled regardless of the ones still pending
+        while (this.report.scheduled() < this.operations && this.intendedAt(this.report.scheduled()) <= now) {
+            Config.RequestType type = this.mix.next(this.random);
+            this.queued.addLast(new Operation(type, this.keys.next(this.random),
+                    this.intendedAt(this.report.scheduled())));
+            this.report.schedule();
+        }
+
+        // A client may be stuck on an operation, e.g. retrying towards crashed caches
+        long timeout = TimeUnit.MILLISECONDS.toNanos(Config.LOAD_OPERATION_TIMEOUT_MS);
+        for (Map.Entry<ActorRef, Operation> entry : new ArrayList<>(this.outstanding.entrySet())) {
+            if (now - entry.getValue().sentAt > timeout) {
+                this.end(entry.getKey(), LoadReport.Outcome.TIMED_OUT, now);
+            }
+        }
+
+        // The run ends once every operation has ended, or when the drain period is over
+        long drainedAt = this.intendedAt(this.operations) + TimeUnit.MILLISECONDS.toNanos(Config.LOAD_DRAIN_MS);
+        if (now > drainedAt) {
+            for (ActorRef client : new ArrayList<>(this.outstanding.keySet())) {
+                this.end(client, LoadReport.Outcome.TIMED_OUT, now);
+            }
+            while (!this.queued.isEmpty()) {
+                Operation operation = this.queued.removeFirst();
+                this.report.record(operation.type, now - operation.intendedAt, LoadReport.Outcome.TIMED_OUT,
+                        TimeUnit.NANOSECONDS.toMillis(now - this.startedAt));
+            }
+        }
+        this.dispatch();
+        if (this.report.scheduled() == this.operations && this.queued.isEmpty() && this.outstanding.isEmpty()) {
+            this.finish();
+        }
+    }
+
+    /**
+     * Handler of the OperationCompletedMessage
+     * Record the latency of the operation and give a new one to the client
+     *
+     * @param msg operation completed message
+     */
+    private void onOperationCompletedMessage(OperationCompletedMessage msg) {
+        Operation operation = this.outstanding.get(getSender());
+        // The generator may have already given up on the operation
+        if (operation == null || !operation.uuid.equals(msg.operationUUID)) {
+            return;
+        }
+        this.end(getSender(), msg.succeeded ? LoadReport.Outcome.SUCCEEDED : LoadReport.Outcome.FAILED,
+                System.nanoTime());
+        this.dispatch();
+    }
+
+    /**
+     * Send the queued operations to the idle clients, in order of intended time
+     */
+    private void dispatch() {
+        while (!this.queued.isEmpty() && !this.idleClients.isEmpty()) {
+            Operation operation = this.queued.removeFirst();
+            ActorRef client = this.idleClients.removeFirst();
+            operation.sentAt = System.nanoTime();
+            this.outstanding.put(client, operation);
+            switch (operation.type) {
+                case READ:
+                case CRITREAD:
+                    client.tell(new ReadMessage(operation.key, new ArrayList<>(), operation.uuid,
+                            operation.type == Config.RequestType.CRITREAD, -1), getSelf());
+                    break;
+                default:
+                    this.keys.recordWrite(operation.key);
+                    client.tell(new WriteMessage(operation.key, this.random.nextInt(100), new ArrayList<>(),
+                            operation.uuid, operation.type == Config.RequestType.CRITWRITE), getSelf());
+                    break;
+            }
+        }
+    }
+
+    /**
+     * End the operation of a client, which becomes idle
+     *
+     * @param client  client of the operation
+     * @param outcome outcome of the operation
+     * @param now     current time in nanoseconds
+     */
+    private void end(ActorRef client, LoadReport.Outcome outcome, long now) {
+        Operation operation = this.outstanding.remove(client);
+        this.report.record(operation.type, now - operation.intendedAt, outcome,
+                TimeUnit.NANOSECONDS.toMillis(now - this.startedAt));
+        this.lastEndedAt = Math.max(this.lastEndedAt, now);
+        this.idleClients.addLast(client);
+    }
+
+    /**
+     * Send the report to the requester and stop the generator
+     */
+    private void finish() {
+        this.report.finish(TimeUnit.NANOSECONDS.toMillis(this.lastEndedAt - this.startedAt));
+        this.requester.tell(new LoadReportMessage(this.report), getSelf());
+        getContext().stop(getSelf());
+    }
+
+    /**
+     * Intended send time of an operation
+     *
+     * @param index index of the operation
+     * @return time in nanoseconds
+     */
+    private long intendedAt(long index) {
+        return this.startedAt + (long) (index * 1_000_000_000.0 / this.rate);
+    }
+
+    /**
+     * Create receive method
+     *
+     * @return receiveBuilder
+     */
+    @Override
+    public Receive createReceive() {
+        return receiveBuilder()
+                .match(StartLoadMessage.class, this::onStartLoadMessage)
+                .match(LoadTickMessage.class, this::onLoadTickMessage)
+                .match(OperationCompletedMessage.class, this::onOperationCompletedMessage)
+                .build();
+    }
+}
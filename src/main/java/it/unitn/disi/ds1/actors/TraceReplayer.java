@@ -0,0 +1,337 @@
+package it.unitn.disi.ds1.actors;
+
+import akka.actor.AbstractActor;
+import akka.actor.ActorRef;
+import akka.actor.Cancellable;
+import akka.actor.Props;
+import it.unitn.disi.ds1.Config;
+import it.unitn.disi.ds1.Logger;
+import it.unitn.disi.ds1.messages.LoadReportMessage;
+import it.unitn.disi.ds1.messages.LoadTickMessage;
+import it.unitn.disi.ds1.messages.OperationCompletedMessage;
+import it.unitn.disi.ds1.messages.ReadMessage;
+import it.unitn.disi.ds1.messages.StartLoadMessage;
+import it.unitn.disi.ds1.messages.WriteMessage;
+import it.unitn.disi.ds1.structures.LoadReport;
+import it.unitn.disi.ds1.structures.RequestTrace;
+import scala.concurrent.duration.Duration;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replay driver of a {@link RequestTrace request trace}
+ * <p>
+ * Each request is sent to the client which has received it in the trace, at its original time divided by the
+ * speedup. The clients of the trace are mapped onto the clients of the architecture in order of id, wrapping around
+ * when the architecture has fewer clients. Since a client performs one operation at a time, a request waits while
+ * its client is busy: as with the {@link LoadGenerator load generator}, the latency of a request is measured from
+ * its intended send time, hence it includes the time spent waiting.
+ */
+public class TraceReplayer extends AbstractActor {
+    /**
+     * Request being replayed
+     */
+    private static class Operation {
+        /**
+         * Identifier of the operation, sent to the client as query UUID
+         */
+        final UUID uuid = UUID.randomUUID();
+
+        /**
+         * Request of the trace
+         */
+        final RequestTrace.Entry entry;
+
+        /**
+         * Intended send time in nanoseconds, of the monotonic clock
+         */
+        final long intendedAt;
+
+        /**
+         * Time at which the operation has been sent to its client, in nanoseconds
+         */
+        long sentAt;
+
+        Operation(RequestTrace.Entry entry, long intendedAt) {
+            this.entry = entry;
+            this.intendedAt = intendedAt;
+        }
+    }
+
+    /**
+     * Requests of the trace
+     */
+    private final List<RequestTrace.Entry> entries;
+
+    /**
+     * Milliseconds from the start of the trace to its last request
+     */
+    private final long durationMillis;
+
+    /**
+     * Client of the architecture replaying the requests of each client of the trace
+     */
+    private final Map<Integer, ActorRef> clientOf;
+
+    /**
+     * Factor by which the trace is accelerated
+     */
+    private final double speedup;
+
+    /**
+     * Report of the replay
+     */
+    private final LoadReport report;
+
+    /**
+     * Requests whose intended time has passed, waiting for their client
+     */
+    private final Map<ActorRef, Deque<Operation>> queued;
+
+    /**
+     * Operation each busy client is performing
+     */
+    private final Map<ActorRef, Operation> outstanding;
+
+    /**
+     * Index of the next request of the trace to schedule
+     */
+    private int next;
+
+    /**
+     * Actor which has started the replay, it receives the report
+     */
+    private ActorRef requester;
+
+    /**
+     * Start time of the replay in nanoseconds
+     */
+    private long startedAt;
+
+    /**
+     * End time of the last operation in nanoseconds
+     */
+    private long lastEndedAt;
+
+    /**
+     * Periodic timer of the replay
+     */
+    private Cancellable ticker;
+
+    /**
+     * Constructor of the replay driver
+     *
+     * @param clients clients of the architecture
+     * @param trace   trace to replay
+     * @param speedup factor by which the trace is accelerated, 1 to replay it at its original speed
+     */
+    public TraceReplayer(List<ActorRef> clients, RequestTrace trace, double speedup) {
+        this.entries = trace.entries();
+        this.durationMillis = trace.durationMillis();
+        this.speedup = speedup;
+        this.clientOf = new HashMap<>();
+        TreeSet<Integer> traceClients = new TreeSet<>();
+        for (RequestTrace.Entry entry : this.entries) {
+            traceClients.add(entry.client);
+        }
+        int index = 0;
+        for (Integer client : traceClients) {
+            this.clientOf.put(client, clients.get(index++ % clients.size()));
+        }
+        this.report = new LoadReport(this.entries.size() * 1000.0 * speedup / Math.max(1, this.durationMillis),
+                (int) Math.ceil(this.durationMillis / 1000.0 / speedup), null, trace.mix());
+        this.queued = new HashMap<>();
+        this.outstanding = new HashMap<>();
+    }
+
+    /**
+     * Trace replayer static builder
+     *
+     * @param clients clients of the architecture
+     * @param trace   trace to replay
+     * @param speedup factor by which the trace is accelerated, 1 to replay it at its original speed
+     * @return TraceReplayer instance
+     */
+    static public Props props(List<ActorRef> clients, RequestTrace trace, double speedup) {
+        return Props.create(TraceReplayer.class, () -> new TraceReplayer(clients, trace, speedup));
+    }
+
+    /**
+     * Stop the periodic timer
+     */
+    @Override
+    public void postStop() {
+        if (this.ticker != null) {
+            this.ticker.cancel();
+        }
+    }
+
+    /**
+     * Handler of the StartLoadMessage
+     * Start replaying the trace
+     *
+     * @param msg start load message
+     */
+    private void onStartLoadMessage(StartLoadMessage msg) {
+        if (this.requester != null) {
+            return;
+        }
+        this.requester = getSender();
+        this.startedAt = System.nanoTime();
+        this.lastEndedAt = this.startedAt;
+        Logger.DEBUG.info("Replaying " + this.entries.size() + " requests " + this.speedup + " times faster");
+        this.ticker = getContext().system().scheduler().scheduleWithFixedDelay(
+                Duration.Zero(),
+                Duration.create(Config.LOAD_TICK_MS, TimeUnit.MILLISECONDS),
+                getSelf(),
+                new LoadTickMessage(),
+                getContext().system().dispatcher(),
+                getSelf()
+        );
+    }
+
+    /**
+     * Handler of the LoadTickMessage
+     * Queue the requests whose intended time has passed, give up on the ones which have been pending for too
+     * long and send the queued ones to their idle clients
+     *
+     * @param msg load tick message
+     */
+    private void onLoadTickMessage(LoadTickMessage msg) {
+        long now = System.nanoTime();
+
+        while (this.next < this.entries.size() && this.intendedAt(this.entries.get(this.next)) <= now) {
+            RequestTrace.Entry entry = this.entries.get(this.next++);
+            this.queued.computeIfAbsent(this.clientOf.get(entry.client), client -> new ArrayDeque<>())
+                    .addLast(new Operation(entry, this.intendedAt(entry)));
+            this.report.schedule();
+        }
+
+        // A client may be stuck on an operation, e.g. retrying towards crashed caches
+        long timeout = TimeUnit.MILLISECONDS.toNanos(Config.LOAD_OPERATION_TIMEOUT_MS);
+        for (Map.Entry<ActorRef, Operation> entry : new ArrayList<>(this.outstanding.entrySet())) {
+            if (now - entry.getValue().sentAt > timeout) {
+                this.end(entry.getKey(), LoadReport.Outcome.TIMED_OUT, now);
+            }
+        }
+
+        // The replay ends once every operation has ended, or when the drain period is over
+        long drainedAt = this.startedAt + TimeUnit.MILLISECONDS.toNanos(
+                (long) (this.durationMillis / this.speedup) + Config.LOAD_DRAIN_MS);
+        if (now > drainedAt) {
+            for (ActorRef client : new ArrayList<>(this.outstanding.keySet())) {
+                this.end(client, LoadReport.Outcome.TIMED_OUT, now);
+            }
+            for (Deque<Operation> operations : this.queued.values()) {
+                while (!operations.isEmpty()) {
+                    Operation operation = operations.removeFirst();
+                    this.report.record(operation.entry.type, now - operation.intendedAt,
+                            LoadReport.Outcome.TIMED_OUT, TimeUnit.NANOSECONDS.toMillis(now - this.startedAt));
+                }
+            }
+        }
+        for (ActorRef client : new ArrayList<>(this.queued.keySet())) {
+            this.dispatch(client);
+        }
+        if (this.next == this.entries.size() && this.outstanding.isEmpty() &&
+                this.queued.values().stream().allMatch(Deque::isEmpty)) {
+            this.finish();
+        }
+    }
+
+    /**
+     * Handler of the OperationCompletedMessage
+     * Record the latency of the operation and give the next request to the client
+     *
+     * @param msg operation completed message
+     */
+    private void onOperationCompletedMessage(OperationCompletedMessage msg) {
+        Operation operation = this.outstanding.get(getSender());
+        // The replayer may have already given up on the operation
+        if (operation == null || !operation.uuid.equals(msg.operationUUID)) {
+            return;
+        }
+        this.end(getSender(), msg.succeeded ? LoadReport.Outcome.SUCCEEDED : LoadReport.Outcome.FAILED,
+                System.nanoTime());
+        this.dispatch(getSender());
+    }
+
+    /**
+     * Send the next queued request of a client, if the client is idle
+     *
+     * @param client client of the architecture
+     */
+    private void dispatch(ActorRef client) {
+        Deque<Operation> operations = this.queued.get(client);
+        if (this.outstanding.containsKey(client) || operations == null || operations.isEmpty()) {
+            return;
+        }
+        Operation operation = operations.removeFirst();
+        operation.sentAt = System.nanoTime();
+        this.outstanding.put(client, operation);
+        RequestTrace.Entry entry = operation.entry;
+        if (entry.isWrite()) {
+            client.tell(new WriteMessage(entry.key, entry.value == null ? 0 : entry.value, new ArrayList<>(),
+                    operation.uuid,
+                    entry.type == Config.RequestType.CRITWRITE), getSelf());
+        } else {
+            client.tell(new ReadMessage(entry.key, new ArrayList<>(), operation.uuid,
+                    entry.type == Config.RequestType.CRITREAD, -1), getSelf());
+        }
+    }
+
+    /**
+     * End the operation of a client, which becomes idle
+     *
+     * @param client  client of the operation
+     * @param outcome outcome of the operation
+     * @param now     current time in nanoseconds
+     */
+    private void end(ActorRef client, LoadReport.Outcome outcome, long now) {
+        Operation operation = this.outstanding.remove(client);
+        this.report.record(operation.entry.type, now - operation.intendedAt, outcome,
+                TimeUnit.NANOSECONDS.toMillis(now - this.startedAt));
+        this.lastEndedAt = Math.max(this.lastEndedAt, now);
+    }
+
+    /**
+     * Send the report to the requester and stop the replayer
+     */
+    private void finish() {
+        this.report.finish(TimeUnit.NANOSECONDS.toMillis(this.lastEndedAt - this.startedAt));
+        this.requester.tell(new LoadReportMessage(this.report), getSelf());
+        getContext().stop(getSelf());
+    }
+
+    /**
+     * Intended send time of a request
+     *
+     * @param entry request of the trace
+     * @return time in nanoseconds
+     */
+    private long intendedAt(RequestTrace.Entry entry) {
+        return this.startedAt + (long) (entry.offsetMillis * 1_000_000.0 / this.speedup);
+    }
+
+    /**
+     * Create receive method
+     *
+     * @return receiveBuilder
+     */
+    @Override
+    public Receive createReceive() {
+        return receiveBuilder()
+                .match(StartLoadMessage.class, this::onStartLoadMessage)
+                .match(LoadTickMessage.class, this::onLoadTickMessage)
+                .match(OperationCompletedMessage.class, this::onOperationCompletedMessage)
+                .build();
+    }
+}
@@ -0,0 +1,36 @@
+package it.unitn.disi.ds1.messages;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Anti-entropy keys message
+ * <p>
+ * Sent by a child to its parent, it contains the sequence numbers of all the keys the child stores
+ * in the key ranges where its Merkle tree differs from the parent's one
+ */
+public class AntiEntropyKeysMessage extends Message {
+    /**
+     * Divergent key ranges, namely leaves of the Merkle tree
+     */
+    public final Set<Integer> leaves;
+
+    /**
+     * Sequence numbers of the keys stored by the child within the divergent ranges
+     */
+    public final Map<Integer, Integer> seqnos;
+
+    /**
+     * Constructor of the anti-entropy keys message
+     *
+     * @param leaves divergent leaves
+     * @param seqnos sequence numbers of the child within the divergent leaves
+     */
+    public AntiEntropyKeysMessage(Set<Integer> leaves, Map<Integer, Integer> seqnos) {
+        this.leaves = Collections.unmodifiableSet(new HashSet<>(leaves));
+        this.seqnos = Collections.unmodifiableMap(new HashMap<>(seqnos));
+    }
+}
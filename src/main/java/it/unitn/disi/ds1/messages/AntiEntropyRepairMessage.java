@@ -0,0 +1,44 @@
+package it.unitn.disi.ds1.messages;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Anti-entropy repair message
+ * <p>
+ * Sent by a parent to a child at the end of an anti-entropy round, it contains the newer values of the
+ * divergent keys and the keys the parent cannot vouch for anymore, which the child has to evict
+ */
+public class AntiEntropyRepairMessage extends Message {
+    /**
+     * Newer values of the divergent keys
+     */
+    public final Map<Integer, Integer> values;
+
+    /**
+     * Sequence numbers of the newer values
+     */
+    public final Map<Integer, Integer> seqnos;
+
+    /**
+     * Keys to evict
+     */
+    public final Set<Integer> evictedKeys;
+
+    /**
+     * Constructor of the anti-entropy repair message
+     *
+     * @param values      newer values
+     * @param seqnos      sequence numbers of the newer values
+     * @param evictedKeys keys to evict
+     */
+    public AntiEntropyRepairMessage(Map<Integer, Integer> values, Map<Integer, Integer> seqnos,
+                                    Set<Integer> evictedKeys) {
+        this.values = Collections.unmodifiableMap(new HashMap<>(values));
+        this.seqnos = Collections.unmodifiableMap(new HashMap<>(seqnos));
+        this.evictedKeys = Collections.unmodifiableSet(new HashSet<>(evictedKeys));
+    }
+}
@@ -0,0 +1,7 @@
+package it.unitn.disi.ds1.messages;
+
+/**
+ * Message a parent sends periodically to itself in order to start an anti-entropy round with its children
+ */
+public class AntiEntropyTickMessage extends Message {
+};
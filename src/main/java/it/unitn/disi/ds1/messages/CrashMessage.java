@@ -1,6 +1,7 @@
 package it.unitn.disi.ds1.messages;
 
 import it.unitn.disi.ds1.Config;
+import it.unitn.disi.ds1.Simulation;
 
 /**
  * Crash Message
@@ -26,7 +27,18 @@ public class CrashMessage extends Message {
     public CrashMessage(Config.CrashType nextCrash) {
         this.nextCrash = nextCrash;
         // The last number is not included, thus we have to add 1
-        this.recoverIn = Config.RANDOM.nextInt(Config.MAX_RECOVERY_IN - Config.MIN_RECOVERY_IN + 1) +
+        this.recoverIn = Simulation.random().nextInt(Config.MAX_RECOVERY_IN - Config.MIN_RECOVERY_IN + 1) +
                 Config.MIN_RECOVERY_IN;
     }
+
+    /**
+     * Config.CrashType nextCrash constructor with a given recovery time
+     *
+     * @param nextCrash next crash
+     * @param recoverIn after how many milliseconds the node should recover after the crash
+     */
+    public CrashMessage(Config.CrashType nextCrash, int recoverIn) {
+        this.nextCrash = nextCrash;
+        this.recoverIn = recoverIn;
+    }
 }
@@ -1,6 +1,8 @@
 package it.unitn.disi.ds1.messages;
 
 import akka.actor.ActorRef;
+import it.unitn.disi.ds1.Tracer;
+import it.unitn.disi.ds1.structures.TraceContext;
 
 import java.util.Collections;
 import java.util.List;
@@ -9,7 +11,7 @@ import java.util.UUID;
 /**
  * CriticalUpdateMessage message
  */
-public class CriticalUpdateMessage extends Message {
+public class CriticalUpdateMessage extends Message implements Traced, RequestPath {
 
     /**
      * Value and Key of the critical update
@@ -26,6 +28,11 @@ public class CriticalUpdateMessage extends Message {
      */
     public final List<ActorRef> hops;
 
+    /**
+     * Trace context of the span which has created the message
+     */
+    public final TraceContext trace;
+
     /**
      * CriticalUpdateMessage constructor
      *
@@ -39,5 +46,16 @@ public class CriticalUpdateMessage extends Message {
         this.updatedValue = updatedValue;
         this.queryUUID = new UUID(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
         this.hops = Collections.unmodifiableList(hops);
+        this.trace = Tracer.currentContext();
+    }
+
+    /**
+     * Get the trace context of the message
+     *
+     * @return trace context, null if the message has been created outside of a trace
+     */
+    @Override
+    public TraceContext traceContext() {
+        return this.trace;
     }
 }
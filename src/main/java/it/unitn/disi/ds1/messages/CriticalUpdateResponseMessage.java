@@ -2,12 +2,14 @@ package it.unitn.disi.ds1.messages;
 
 import akka.actor.ActorRef;
 import it.unitn.disi.ds1.Config;
+import it.unitn.disi.ds1.Tracer;
+import it.unitn.disi.ds1.structures.TraceContext;
 
 import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
 
-public class CriticalUpdateResponseMessage extends Message {
+public class CriticalUpdateResponseMessage extends Message implements Traced, RequestPath {
     /**
      * Either agree or no
      */
@@ -23,10 +25,26 @@ public class CriticalUpdateResponseMessage extends Message {
      */
     public final List<ActorRef> hops;
 
+    /**
+     * Trace context of the span which has created the message
+     */
+    public final TraceContext trace;
+
     public CriticalUpdateResponseMessage(Config.CUResponse response, UUID uuid, List<ActorRef> hops) {
         this.response = response;
 
         this.queryUUID = new UUID(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
         this.hops = Collections.unmodifiableList(hops);
+        this.trace = Tracer.currentContext();
+    }
+
+    /**
+     * Get the trace context of the message
+     *
+     * @return trace context, null if the message has been created outside of a trace
+     */
+    @Override
+    public TraceContext traceContext() {
+        return this.trace;
     }
 }
@@ -2,6 +2,8 @@ package it.unitn.disi.ds1.messages;
 
 import akka.actor.ActorRef;
 import it.unitn.disi.ds1.Config;
+import it.unitn.disi.ds1.Tracer;
+import it.unitn.disi.ds1.structures.TraceContext;
 
 import java.util.Collections;
 import java.util.List;
@@ -10,7 +12,7 @@ import java.util.UUID;
 /**
  * CriticalWriteResponseMessage message
  */
-public class CriticalWriteResponseMessage extends Message {
+public class CriticalWriteResponseMessage extends Message implements Traced, RequestPath {
     /**
      * Final decision enumerator
      */
@@ -26,23 +28,55 @@ public class CriticalWriteResponseMessage extends Message {
      */
     public final List<ActorRef> hops;
 
+    /**
+     * Key of the critical write
+     */
+    public final int updatedKey;
+
+    /**
+     * Value for the commit, carried since the caches on the path of the request may not have taken part
+     * in the critical write
+     */
+    public final Integer updatedValue;
+
     /**
      * Sequence number of the value for the commit
      */
     public final Integer seqno;
 
+    /**
+     * Trace context of the span which has created the message
+     */
+    public final TraceContext trace;
+
     /**
      * Critical Response Message
      *
      * @param finalDecision final decision enum
      * @param uuid          uuid
      * @param hops          hops
+     * @param updatedKey    key of the critical write
+     * @param updatedValue  value for the commit
      * @param seqno         sequence number
      */
-    public CriticalWriteResponseMessage(Config.ACResponse finalDecision, UUID uuid, List<ActorRef> hops, Integer seqno) {
+    public CriticalWriteResponseMessage(Config.ACResponse finalDecision, UUID uuid, List<ActorRef> hops,
+                                        int updatedKey, Integer updatedValue, Integer seqno) {
         this.finalDecision = finalDecision;
         this.queryUUID = new UUID(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
         this.hops = Collections.unmodifiableList(hops);
+        this.updatedKey = updatedKey;
+        this.updatedValue = updatedValue;
         this.seqno = seqno;
+        this.trace = Tracer.currentContext();
+    }
+
+    /**
+     * Get the trace context of the message
+     *
+     * @return trace context, null if the message has been created outside of a trace
+     */
+    @Override
+    public TraceContext traceContext() {
+        return this.trace;
     }
 }
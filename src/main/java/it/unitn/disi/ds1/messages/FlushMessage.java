@@ -1,7 +0,0 @@
-package it.unitn.disi.ds1.messages;
-
-/**
- * Message used in order to tell the caches to flush their buffers
- */
-public class FlushMessage extends Message {
-};
\ No newline at end of file
@@ -0,0 +1,7 @@
+package it.unitn.disi.ds1.messages;
+
+/**
+ * Message a node sends periodically to its parent and to its children, to let them detect its crashes
+ */
+public class HeartbeatMessage extends Message {
+};
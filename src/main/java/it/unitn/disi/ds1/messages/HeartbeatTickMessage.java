@@ -0,0 +1,7 @@
+package it.unitn.disi.ds1.messages;
+
+/**
+ * Message a node sends periodically to itself in order to send its heartbeats and check its parent
+ */
+public class HeartbeatTickMessage extends Message {
+};
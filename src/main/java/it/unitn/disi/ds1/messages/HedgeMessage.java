@@ -0,0 +1,30 @@
+package it.unitn.disi.ds1.messages;
+
+import akka.actor.ActorRef;
+
+/**
+ * Message a client sends to itself when a read has not been answered within the usual latency,
+ * in order to send a duplicate of it to another cache
+ */
+public class HedgeMessage extends Message {
+    /**
+     * Read request which may be duplicated
+     */
+    public final ReadMessage request;
+
+    /**
+     * Cache the read request has been sent to
+     */
+    public final ActorRef cache;
+
+    /**
+     * Constructor of the hedge message
+     *
+     * @param request read request which may be duplicated
+     * @param cache   cache the read request has been sent to
+     */
+    public HedgeMessage(ReadMessage request, ActorRef cache) {
+        this.request = request;
+        this.cache = cache;
+    }
+}
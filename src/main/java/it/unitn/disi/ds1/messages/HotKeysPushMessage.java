@@ -0,0 +1,43 @@
+package it.unitn.disi.ds1.messages;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hot keys push message
+ * <p>
+ * Sent by an L1 cache to its children, it contains the current hot keys, which the children have to pin,
+ * and the values of the hot keys the child is not thought to store yet
+ */
+public class HotKeysPushMessage extends Message {
+    /**
+     * Values of the hot keys pushed to the child
+     */
+    public final Map<Integer, Integer> values;
+
+    /**
+     * Sequence numbers of the pushed values
+     */
+    public final Map<Integer, Integer> seqnos;
+
+    /**
+     * Current hot keys, the most accessed first
+     */
+    public final List<Integer> hotKeys;
+
+    /**
+     * Constructor of the hot keys push message
+     *
+     * @param values  values of the hot keys pushed to the child
+     * @param seqnos  sequence numbers of the pushed values
+     * @param hotKeys current hot keys
+     */
+    public HotKeysPushMessage(Map<Integer, Integer> values, Map<Integer, Integer> seqnos, List<Integer> hotKeys) {
+        this.values = Collections.unmodifiableMap(new HashMap<>(values));
+        this.seqnos = Collections.unmodifiableMap(new HashMap<>(seqnos));
+        this.hotKeys = Collections.unmodifiableList(new ArrayList<>(hotKeys));
+    }
+}
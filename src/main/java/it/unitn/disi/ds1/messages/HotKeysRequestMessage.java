@@ -0,0 +1,7 @@
+package it.unitn.disi.ds1.messages;
+
+/**
+ * Message asking a cache for its current hot keys
+ */
+public class HotKeysRequestMessage extends Message {
+};
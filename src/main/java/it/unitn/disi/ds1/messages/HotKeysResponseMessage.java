@@ -0,0 +1,31 @@
+package it.unitn.disi.ds1.messages;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Message a cache sends in answer to a {@link HotKeysRequestMessage hot keys request}
+ */
+public class HotKeysResponseMessage extends Message {
+    /**
+     * Identifier of the cache
+     */
+    public final int id;
+
+    /**
+     * Current hot keys of the cache, the most accessed first
+     */
+    public final List<Integer> hotKeys;
+
+    /**
+     * Constructor of the hot keys response message
+     *
+     * @param id      identifier of the cache
+     * @param hotKeys current hot keys of the cache
+     */
+    public HotKeysResponseMessage(int id, List<Integer> hotKeys) {
+        this.id = id;
+        this.hotKeys = Collections.unmodifiableList(new ArrayList<>(hotKeys));
+    }
+}
@@ -0,0 +1,7 @@
+package it.unitn.disi.ds1.messages;
+
+/**
+ * Message a cache sends periodically to itself in order to update its hot keys
+ */
+public class HotKeysTickMessage extends Message {
+};
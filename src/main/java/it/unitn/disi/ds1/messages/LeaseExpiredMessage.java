@@ -0,0 +1,20 @@
+package it.unitn.disi.ds1.messages;
+
+/**
+ * Message the database sends to itself when the recalled read leases on a key have expired
+ */
+public class LeaseExpiredMessage extends Message {
+    /**
+     * Leased key
+     */
+    public final int key;
+
+    /**
+     * Constructor of the lease expired message
+     *
+     * @param key leased key
+     */
+    public LeaseExpiredMessage(int key) {
+        this.key = key;
+    }
+}
@@ -0,0 +1,38 @@
+package it.unitn.disi.ds1.messages;
+
+/**
+ * Lease grant message
+ * <p>
+ * Sent by the database to an L1 cache right after the response to a CRITREAD. Until the lease expires the
+ * database does not change the value of the key without recalling the lease first, hence the L1 cache
+ * can answer CRITREADs on the key by itself.
+ */
+public class LeaseGrantMessage extends Message implements RequestPath {
+    /**
+     * Leased key
+     */
+    public final int key;
+
+    /**
+     * Sequence number of the value the lease refers to
+     */
+    public final int seqno;
+
+    /**
+     * Expiration time of the lease, in milliseconds since the epoch
+     */
+    public final long expiresAt;
+
+    /**
+     * Constructor of the lease grant message
+     *
+     * @param key       leased key
+     * @param seqno     sequence number of the leased value
+     * @param expiresAt expiration time of the lease
+     */
+    public LeaseGrantMessage(int key, int seqno, long expiresAt) {
+        this.key = key;
+        this.seqno = seqno;
+        this.expiresAt = expiresAt;
+    }
+}
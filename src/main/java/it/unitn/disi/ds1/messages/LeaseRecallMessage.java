@@ -0,0 +1,20 @@
+package it.unitn.disi.ds1.messages;
+
+/**
+ * Message sent by the database to the L1 caches holding a read lease on a key which is going to be written
+ */
+public class LeaseRecallMessage extends Message implements RequestPath {
+    /**
+     * Leased key
+     */
+    public final int key;
+
+    /**
+     * Constructor of the lease recall message
+     *
+     * @param key leased key
+     */
+    public LeaseRecallMessage(int key) {
+        this.key = key;
+    }
+}
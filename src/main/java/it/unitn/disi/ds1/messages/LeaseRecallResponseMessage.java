@@ -0,0 +1,20 @@
+package it.unitn.disi.ds1.messages;
+
+/**
+ * Message sent by an L1 cache to the database once it has given up a recalled read lease
+ */
+public class LeaseRecallResponseMessage extends Message implements RequestPath {
+    /**
+     * Leased key
+     */
+    public final int key;
+
+    /**
+     * Constructor of the lease recall response message
+     *
+     * @param key leased key
+     */
+    public LeaseRecallResponseMessage(int key) {
+        this.key = key;
+    }
+}
@@ -0,0 +1,22 @@
+package it.unitn.disi.ds1.messages;
+
+import it.unitn.disi.ds1.structures.LoadReport;
+
+/**
+ * Message the load generator or the trace replayer sends at the end of its run to the actor which has started it
+ */
+public class LoadReportMessage extends Message {
+    /**
+     * Report of the run
+     */
+    public final LoadReport report;
+
+    /**
+     * Constructor of the load report message
+     *
+     * @param report report of the run
+     */
+    public LoadReportMessage(LoadReport report) {
+        this.report = report;
+    }
+}
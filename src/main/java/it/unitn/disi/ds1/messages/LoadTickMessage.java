@@ -0,0 +1,8 @@
+package it.unitn.disi.ds1.messages;
+
+/**
+ * Message the load generator or the trace replayer sends to itself periodically to send the operations whose
+ * intended time has passed
+ */
+public class LoadTickMessage extends Message {
+}
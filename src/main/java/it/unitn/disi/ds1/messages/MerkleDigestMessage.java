@@ -0,0 +1,23 @@
+package it.unitn.disi.ds1.messages;
+
+/**
+ * Merkle digest message
+ * <p>
+ * Sent by a parent to a child at the beginning of an anti-entropy round. It contains the digests of the
+ * Merkle tree built over the parent's sequence numbers of the keys the parent thinks the child stores.
+ */
+public class MerkleDigestMessage extends Message {
+    /**
+     * Digests of the Merkle tree in heap layout
+     */
+    public final long[] nodes;
+
+    /**
+     * Constructor of the Merkle digest message
+     *
+     * @param nodes digests of the Merkle tree
+     */
+    public MerkleDigestMessage(long[] nodes) {
+        this.nodes = nodes.clone();
+    }
+}
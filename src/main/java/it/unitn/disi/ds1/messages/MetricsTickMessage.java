@@ -0,0 +1,7 @@
+package it.unitn.disi.ds1.messages;
+
+/**
+ * Message an actor sends to itself periodically to publish its statistics to the exporters
+ */
+public class MetricsTickMessage extends Message {
+};
@@ -0,0 +1,21 @@
+package it.unitn.disi.ds1.messages;
+
+/**
+ * Message an L2 cache sends to the clients which have read a key from it, when its value changes
+ * or it is not stored anymore, so that the clients drop it from their near caches
+ */
+public class NearCacheInvalidationMessage extends Message implements RequestPath {
+    /**
+     * Key to drop
+     */
+    public final int key;
+
+    /**
+     * Constructor of the near cache invalidation message
+     *
+     * @param key key to drop
+     */
+    public NearCacheInvalidationMessage(int key) {
+        this.key = key;
+    }
+}
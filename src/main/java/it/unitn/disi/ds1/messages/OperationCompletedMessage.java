@@ -0,0 +1,40 @@
+package it.unitn.disi.ds1.messages;
+
+import it.unitn.disi.ds1.Config;
+
+import java.util.UUID;
+
+/**
+ * Message a client sends to the actor which has requested an operation, e.g. the load generator, once the
+ * operation has ended
+ */
+public class OperationCompletedMessage extends Message {
+    /**
+     * Identifier of the operation, the query UUID of the request the client has received
+     */
+    public final UUID operationUUID;
+
+    /**
+     * Type of the operation
+     */
+    public final Config.RequestType requestType;
+
+    /**
+     * Whether the operation has succeeded, it fails e.g. when a critical write is aborted or when the client is
+     * busy with another operation
+     */
+    public final boolean succeeded;
+
+    /**
+     * Constructor of the operation completed message
+     *
+     * @param operationUUID identifier of the operation
+     * @param requestType   type of the operation
+     * @param succeeded     whether the operation has succeeded
+     */
+    public OperationCompletedMessage(UUID operationUUID, Config.RequestType requestType, boolean succeeded) {
+        this.operationUUID = operationUUID;
+        this.requestType = requestType;
+        this.succeeded = succeeded;
+    }
+}
@@ -1,6 +1,8 @@
 package it.unitn.disi.ds1.messages;
 
 import akka.actor.ActorRef;
+import it.unitn.disi.ds1.Tracer;
+import it.unitn.disi.ds1.structures.TraceContext;
 
 import java.util.Collections;
 import java.util.List;
@@ -17,7 +19,7 @@ import java.util.UUID;
  * caches save the item for future requests.
  * Client timeouts should take into account the time for the request to reach the database.
  */
-public class ReadMessage extends Message {
+public class ReadMessage extends Message implements Traced, RequestPath {
     /**
      * Request key
      */
@@ -40,6 +42,11 @@ public class ReadMessage extends Message {
      */
     public final int seqno;
 
+    /**
+     * Trace context of the span which has created the message
+     */
+    public final TraceContext trace;
+
     /**
      * Constructor of the message
      *
@@ -59,5 +66,16 @@ public class ReadMessage extends Message {
             this.queryUUID = new UUID(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
         else
             this.queryUUID = null;
+        this.trace = Tracer.currentContext();
+    }
+
+    /**
+     * Get the trace context of the message
+     *
+     * @return trace context, null if the message has been created outside of a trace
+     */
+    @Override
+    public TraceContext traceContext() {
+        return this.trace;
     }
 }
@@ -0,0 +1,27 @@
+package it.unitn.disi.ds1.messages;
+
+/**
+ * Message a cache sends to its parent to refresh a stale entry, while it keeps serving it
+ */
+public class RefreshRequestMessage extends Message implements RequestPath {
+    /**
+     * Key to refresh
+     */
+    public final int key;
+
+    /**
+     * Sequence number of the stale entry
+     */
+    public final int seqno;
+
+    /**
+     * Constructor of the refresh request message
+     *
+     * @param key   key to refresh
+     * @param seqno sequence number of the stale entry
+     */
+    public RefreshRequestMessage(int key, int seqno) {
+        this.key = key;
+        this.seqno = seqno;
+    }
+}
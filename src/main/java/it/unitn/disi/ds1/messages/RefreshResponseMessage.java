@@ -0,0 +1,38 @@
+package it.unitn.disi.ds1.messages;
+
+/**
+ * Message a parent sends to a child answering a refresh request
+ * <p>
+ * It carries the newer value of the key if the parent has one. If the parent stores the same version
+ * the value is null and the sequence number confirms that the entry is still fresh, while if the parent
+ * cannot tell both are null.
+ */
+public class RefreshResponseMessage extends Message implements RequestPath {
+    /**
+     * Refreshed key
+     */
+    public final int key;
+
+    /**
+     * Newer value of the key, null if the parent has no newer value
+     */
+    public final Integer value;
+
+    /**
+     * Sequence number of the parent for the key, null if the parent cannot tell
+     */
+    public final Integer seqno;
+
+    /**
+     * Constructor of the refresh response message
+     *
+     * @param key   refreshed key
+     * @param value newer value of the key
+     * @param seqno sequence number of the parent for the key
+     */
+    public RefreshResponseMessage(int key, Integer value, Integer seqno) {
+        this.key = key;
+        this.value = value;
+        this.seqno = seqno;
+    }
+}
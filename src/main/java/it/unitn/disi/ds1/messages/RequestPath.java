@@ -0,0 +1,10 @@
+package it.unitn.disi.ds1.messages;
+
+/**
+ * Message exchanged while serving the requests of the clients
+ * <p>
+ * The requests, their responses and the messages they cause along the tree, as opposed to the ones of the periodic
+ * protocols, such as the heartbeats, the anti-entropy and the statistics, which are sent regardless of the load
+ */
+public interface RequestPath {
+}
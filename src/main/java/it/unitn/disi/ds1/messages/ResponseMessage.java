@@ -2,6 +2,8 @@ package it.unitn.disi.ds1.messages;
 
 import akka.actor.ActorRef;
 import it.unitn.disi.ds1.Config;
+import it.unitn.disi.ds1.Tracer;
+import it.unitn.disi.ds1.structures.TraceContext;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -15,7 +17,7 @@ import java.util.UUID;
  * The message will contain the value of the message either retrieved or written if the operation went well
  * Otherwise the message will contain null, in this case the operation has failed.
  */
-public class ResponseMessage extends Message {
+public class ResponseMessage extends Message implements Traced, RequestPath {
     /**
      * Map of value passed
      * <p>
@@ -51,6 +53,11 @@ public class ResponseMessage extends Message {
      */
     public final int seqno;
 
+    /**
+     * Trace context of the span which has created the message
+     */
+    public final TraceContext trace;
+
     /**
      * Constructor of the response message
      *
@@ -85,5 +92,16 @@ public class ResponseMessage extends Message {
             this.queryUUID = null;
         this.hops = Collections.unmodifiableList(new ArrayList<>(hops));
         this.requestType = requestType;
+        this.trace = Tracer.currentContext();
+    }
+
+    /**
+     * Get the trace context of the message
+     *
+     * @return trace context, null if the message has been created outside of a trace
+     */
+    @Override
+    public TraceContext traceContext() {
+        return this.trace;
     }
 }
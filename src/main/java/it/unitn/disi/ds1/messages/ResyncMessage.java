@@ -0,0 +1,27 @@
+package it.unitn.disi.ds1.messages;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Resync message
+ * <p>
+ * Sent by a recovering L1 cache to its children, it contains the current sequence numbers of the keys
+ * the subtree may store. The children keep the entries which are still current and drop the others.
+ */
+public class ResyncMessage extends Message {
+    /**
+     * Current sequence numbers of the keys
+     */
+    public final Map<Integer, Integer> seqnos;
+
+    /**
+     * Constructor of the resync message
+     *
+     * @param seqnos current sequence numbers
+     */
+    public ResyncMessage(Map<Integer, Integer> seqnos) {
+        this.seqnos = Collections.unmodifiableMap(new HashMap<>(seqnos));
+    }
+}
@@ -0,0 +1,24 @@
+package it.unitn.disi.ds1.messages;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Message sent by a recovering L1 cache to the database, asking for the current values of the keys it stores
+ */
+public class ResyncRequestMessage extends Message {
+    /**
+     * Keys the L1 cache has announced in its summary, which are the keys stored in its subtree
+     */
+    public final Set<Integer> keys;
+
+    /**
+     * Constructor of the resync request message
+     *
+     * @param keys keys announced by the L1 cache
+     */
+    public ResyncRequestMessage(Set<Integer> keys) {
+        this.keys = Collections.unmodifiableSet(new HashSet<>(keys));
+    }
+}
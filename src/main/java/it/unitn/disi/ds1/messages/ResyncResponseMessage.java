@@ -0,0 +1,34 @@
+package it.unitn.disi.ds1.messages;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Resync response message
+ * <p>
+ * Sent by the database to a recovering L1 cache, it contains the current values and sequence numbers
+ * of the keys the L1 cache has announced in its summary
+ */
+public class ResyncResponseMessage extends Message {
+    /**
+     * Current values of the keys
+     */
+    public final Map<Integer, Integer> values;
+
+    /**
+     * Sequence numbers of the current values
+     */
+    public final Map<Integer, Integer> seqnos;
+
+    /**
+     * Constructor of the resync response message
+     *
+     * @param values current values
+     * @param seqnos sequence numbers of the current values
+     */
+    public ResyncResponseMessage(Map<Integer, Integer> values, Map<Integer, Integer> seqnos) {
+        this.values = Collections.unmodifiableMap(new HashMap<>(values));
+        this.seqnos = Collections.unmodifiableMap(new HashMap<>(seqnos));
+    }
+}
@@ -0,0 +1,8 @@
+package it.unitn.disi.ds1.messages;
+
+/**
+ * Message which starts the load generator or the trace replayer, the sender receives the
+ * {@link LoadReportMessage report} at the end
+ */
+public class StartLoadMessage extends Message {
+}
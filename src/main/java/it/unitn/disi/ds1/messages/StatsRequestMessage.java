@@ -0,0 +1,63 @@
+package it.unitn.disi.ds1.messages;
+
+import akka.actor.ActorRef;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Message asking a node for the metrics of its subtree
+ * <p>
+ * The node forwards it to its children, merges their metrics with its own ones and answers with a
+ * {@link StatsResponseMessage stats response}. Sent to the database, it returns a cluster-wide view.
+ * A non-recursive request is answered right away with the metrics of the node alone
+ */
+public class StatsRequestMessage extends Message {
+    /**
+     * Identifier of the query
+     */
+    public final UUID queryUUID;
+
+    /**
+     * Clients to query besides the children, since they are not part of the tree of caches
+     */
+    public final List<ActorRef> clients;
+
+    /**
+     * Milliseconds the node waits for the answers of its children, which wait for half of it
+     */
+    public final int timeoutMillis;
+
+    /**
+     * Whether the metrics of the subtree are requested, or only the ones of the node
+     */
+    public final boolean recursive;
+
+    /**
+     * Constructor of the stats request message, asking for the metrics of the whole subtree
+     *
+     * @param queryUUID     identifier of the query
+     * @param clients       clients to query besides the children
+     * @param timeoutMillis milliseconds the node waits for the answers of its children
+     */
+    public StatsRequestMessage(UUID queryUUID, List<ActorRef> clients, int timeoutMillis) {
+        this(queryUUID, clients, timeoutMillis, true);
+    }
+
+    /**
+     * Constructor of the stats request message
+     *
+     * @param queryUUID     identifier of the query
+     * @param clients       clients to query besides the children
+     * @param timeoutMillis milliseconds the node waits for the answers of its children
+     * @param recursive     whether the metrics of the subtree are requested, or only the ones of the node
+     */
+    public StatsRequestMessage(UUID queryUUID, List<ActorRef> clients, int timeoutMillis, boolean recursive) {
+        this.queryUUID = queryUUID;
+        this.clients = Collections.unmodifiableList(new ArrayList<>(clients));
+        this.timeoutMillis = timeoutMillis;
+        this.recursive = recursive;
+    }
+}
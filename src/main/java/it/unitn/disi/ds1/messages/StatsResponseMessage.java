@@ -0,0 +1,31 @@
+package it.unitn.disi.ds1.messages;
+
+import it.unitn.disi.ds1.structures.Metrics;
+
+import java.util.UUID;
+
+/**
+ * Message a node sends in answer to a {@link StatsRequestMessage stats request}
+ */
+public class StatsResponseMessage extends Message {
+    /**
+     * Identifier of the query
+     */
+    public final UUID queryUUID;
+
+    /**
+     * Metrics of the subtree of the node, null if the node has already been queried through another parent
+     */
+    public final Metrics metrics;
+
+    /**
+     * Constructor of the stats response message
+     *
+     * @param queryUUID identifier of the query
+     * @param metrics   metrics of the subtree of the node
+     */
+    public StatsResponseMessage(UUID queryUUID, Metrics metrics) {
+        this.queryUUID = queryUUID;
+        this.metrics = metrics == null ? null : metrics.copy();
+    }
+}
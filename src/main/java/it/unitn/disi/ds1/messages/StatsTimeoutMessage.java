@@ -0,0 +1,22 @@
+package it.unitn.disi.ds1.messages;
+
+import java.util.UUID;
+
+/**
+ * Message a node sends to itself to stop waiting for the metrics of the children which have not answered
+ */
+public class StatsTimeoutMessage extends Message {
+    /**
+     * Identifier of the query
+     */
+    public final UUID queryUUID;
+
+    /**
+     * Constructor of the stats timeout message
+     *
+     * @param queryUUID identifier of the query
+     */
+    public StatsTimeoutMessage(UUID queryUUID) {
+        this.queryUUID = queryUUID;
+    }
+}
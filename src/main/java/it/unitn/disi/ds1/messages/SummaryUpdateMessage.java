@@ -0,0 +1,35 @@
+package it.unitn.disi.ds1.messages;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Summary update message
+ * <p>
+ * Sent by an L1 cache to the database in order to keep the summary of the keys cached in its subtree
+ * up to date. The database employs the summary to skip the L1 caches which are not interested in a write.
+ */
+public class SummaryUpdateMessage extends Message implements RequestPath {
+    /**
+     * Keys which the subtree may store from now on
+     */
+    public final Set<Integer> addedKeys;
+
+    /**
+     * Keys announced earlier which the subtree does not store anymore, the only ones the database may remove
+     * from its filter
+     */
+    public final Set<Integer> removedKeys;
+
+    /**
+     * Constructor of the summary update message
+     *
+     * @param addedKeys   keys added to the subtree
+     * @param removedKeys keys removed from the subtree
+     */
+    public SummaryUpdateMessage(Set<Integer> addedKeys, Set<Integer> removedKeys) {
+        this.addedKeys = Collections.unmodifiableSet(new HashSet<>(addedKeys));
+        this.removedKeys = Collections.unmodifiableSet(new HashSet<>(removedKeys));
+    }
+}
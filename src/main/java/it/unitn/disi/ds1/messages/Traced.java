@@ -0,0 +1,18 @@
+package it.unitn.disi.ds1.messages;
+
+import it.unitn.disi.ds1.structures.TraceContext;
+
+/**
+ * Message carrying the trace context of the span which has sent it
+ * <p>
+ * The context is captured when the message is created, hence a message created while an actor handles a traced
+ * message continues the same trace
+ */
+public interface Traced {
+    /**
+     * Get the trace context of the message
+     *
+     * @return trace context, null if the message has been created outside of a trace
+     */
+    TraceContext traceContext();
+}
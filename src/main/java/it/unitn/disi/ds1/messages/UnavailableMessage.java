@@ -0,0 +1,24 @@
+package it.unitn.disi.ds1.messages;
+
+import java.io.Serializable;
+
+/**
+ * Message an L2 cache which has given up its parent sends to the client instead of serving a request
+ * <p>
+ * The cache may return to its parent later on, hence the client asks another cache without forgetting this one
+ */
+public class UnavailableMessage extends Message implements RequestPath {
+    /**
+     * Read or write message the cache has not served
+     */
+    public final Serializable request;
+
+    /**
+     * Unavailable message constructor
+     *
+     * @param request read or write message the cache has not served
+     */
+    public UnavailableMessage(Serializable request) {
+        this.request = request;
+    }
+}
@@ -0,0 +1,42 @@
+package it.unitn.disi.ds1.messages;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Write batch message
+ * <p>
+ * Carries the updates of many WRITEs from a parent to one of its children.
+ * Only the latest update of each key is carried, together with its sequence number and the UUID of the write.
+ */
+public class WriteBatchMessage extends Message implements RequestPath {
+    /**
+     * Updated values
+     */
+    public final Map<Integer, Integer> values;
+
+    /**
+     * Sequence numbers of the updated values
+     */
+    public final Map<Integer, Integer> seqnos;
+
+    /**
+     * UUID of the write which produced each updated value
+     */
+    public final Map<Integer, UUID> queryUUIDs;
+
+    /**
+     * Constructor of the write batch message
+     *
+     * @param values     updated values
+     * @param seqnos     sequence numbers of the updated values
+     * @param queryUUIDs UUID of the write of each updated value
+     */
+    public WriteBatchMessage(Map<Integer, Integer> values, Map<Integer, Integer> seqnos, Map<Integer, UUID> queryUUIDs) {
+        this.values = Collections.unmodifiableMap(new HashMap<>(values));
+        this.seqnos = Collections.unmodifiableMap(new HashMap<>(seqnos));
+        this.queryUUIDs = Collections.unmodifiableMap(new HashMap<>(queryUUIDs));
+    }
+}
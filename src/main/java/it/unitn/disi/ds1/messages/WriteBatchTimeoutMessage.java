@@ -0,0 +1,7 @@
+package it.unitn.disi.ds1.messages;
+
+/**
+ * Message an actor sends to itself when the write batching window is over
+ */
+public class WriteBatchTimeoutMessage extends Message {
+};
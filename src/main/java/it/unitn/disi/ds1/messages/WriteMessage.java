@@ -1,6 +1,8 @@
 package it.unitn.disi.ds1.messages;
 
 import akka.actor.ActorRef;
+import it.unitn.disi.ds1.Tracer;
+import it.unitn.disi.ds1.structures.TraceContext;
 
 import java.util.Collections;
 import java.util.List;
@@ -14,7 +16,7 @@ import java.util.UUID;
  * way, the update is potentially applied at all caches, which is necessary for eventual consistency. Note that
  * only those caches that were already storing the written item will update their local values.
  */
-public class WriteMessage extends Message {
+public class WriteMessage extends Message implements Traced, RequestPath {
     /**
      * Request key
      */
@@ -40,6 +42,11 @@ public class WriteMessage extends Message {
      */
     public final boolean isCritical;
 
+    /**
+     * Trace context of the span which has created the message
+     */
+    public final TraceContext trace;
+
     /**
      * Constructor of the message
      *
@@ -59,6 +66,16 @@ public class WriteMessage extends Message {
         else
             this.queryUUID = null;
         this.isCritical = isCritical;
+        this.trace = Tracer.currentContext();
     }
-}
 
+    /**
+     * Get the trace context of the message
+     *
+     * @return trace context, null if the message has been created outside of a trace
+     */
+    @Override
+    public TraceContext traceContext() {
+        return this.trace;
+    }
+}
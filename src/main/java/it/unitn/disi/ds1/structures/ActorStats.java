@@ -0,0 +1,145 @@
+package it.unitn.disi.ds1.structures;
+
+import it.unitn.disi.ds1.Config;
+
+/**
+ * Statistics of an actor, published periodically by the actor itself and read by the exporters
+ * <p>
+ * The exporters run on their own threads, hence they never touch the state of the actor: the actor publishes
+ * a copy of its metrics and of its gauges, which is replaced as a whole at each publication
+ */
+public class ActorStats implements ActorStatsMBean {
+    /**
+     * Name of the actor
+     */
+    public final String name;
+
+    /**
+     * Last published snapshot
+     */
+    private volatile Snapshot snapshot;
+
+    /**
+     * Values published at once by the actor
+     */
+    private static class Snapshot {
+        private final String role;
+        private final Metrics metrics;
+        private final int entries;
+        private final int pendingQueries;
+        private final int timers;
+
+        private Snapshot(String role, Metrics metrics, int entries, int pendingQueries, int timers) {
+            this.role = role;
+            this.metrics = metrics;
+            this.entries = entries;
+            this.pendingQueries = pendingQueries;
+            this.timers = timers;
+        }
+    }
+
+    /**
+     * Constructor of the statistics of an actor, empty until the first publication
+     *
+     * @param name name of the actor
+     * @param role role of the actor
+     */
+    public ActorStats(String name, String role) {
+        this.name = name;
+        this.snapshot = new Snapshot(role, new Metrics(), 0, 0, 0);
+    }
+
+    /**
+     * Publish new statistics, called by the actor only
+     *
+     * @param role           current role of the actor
+     * @param metrics        metrics of the actor, copied
+     * @param entries        entries stored by the actor
+     * @param pendingQueries requests waiting for an answer
+     * @param timers         cancellable timers scheduled
+     */
+    public void publish(String role, Metrics metrics, int entries, int pendingQueries, int timers) {
+        this.snapshot = new Snapshot(role, metrics.copy(), entries, pendingQueries, timers);
+    }
+
+    /**
+     * Get the last published metrics
+     *
+     * @return metrics, which must not be modified
+     */
+    public Metrics metrics() {
+        return this.snapshot.metrics;
+    }
+
+    @Override
+    public String getRole() {
+        return this.snapshot.role;
+    }
+
+    @Override
+    public long getHits() {
+        return this.snapshot.metrics.count(Metrics.Counter.HITS);
+    }
+
+    @Override
+    public long getMisses() {
+        return this.snapshot.metrics.count(Metrics.Counter.MISSES);
+    }
+
+    @Override
+    public double getHitRatio() {
+        Metrics metrics = this.snapshot.metrics;
+        long reads = metrics.count(Metrics.Counter.HITS) + metrics.count(Metrics.Counter.MISSES);
+        return reads == 0 ? 0 : (double) metrics.count(Metrics.Counter.HITS) / reads;
+    }
+
+    @Override
+    public long getForwards() {
+        return this.snapshot.metrics.count(Metrics.Counter.FORWARDS);
+    }
+
+    @Override
+    public long getCommits() {
+        return this.snapshot.metrics.count(Metrics.Counter.COMMITS);
+    }
+
+    @Override
+    public long getAborts() {
+        return this.snapshot.metrics.count(Metrics.Counter.ABORTS);
+    }
+
+    @Override
+    public long getTimeouts() {
+        return this.snapshot.metrics.count(Metrics.Counter.TIMEOUTS);
+    }
+
+    @Override
+    public int getEntries() {
+        return this.snapshot.entries;
+    }
+
+    @Override
+    public int getPendingQueries() {
+        return this.snapshot.pendingQueries;
+    }
+
+    @Override
+    public int getTimers() {
+        return this.snapshot.timers;
+    }
+
+    @Override
+    public long getReadLatencyP50Ms() {
+        return this.snapshot.metrics.latency(Config.RequestType.READ).getValueAtPercentile(50);
+    }
+
+    @Override
+    public long getReadLatencyP99Ms() {
+        return this.snapshot.metrics.latency(Config.RequestType.READ).getValueAtPercentile(99);
+    }
+
+    @Override
+    public long getWriteLatencyP99Ms() {
+        return this.snapshot.metrics.latency(Config.RequestType.WRITE).getValueAtPercentile(99);
+    }
+}
@@ -0,0 +1,76 @@
+package it.unitn.disi.ds1.structures;
+
+/**
+ * Management interface of the statistics of an actor, exposed through JMX
+ */
+public interface ActorStatsMBean {
+    /**
+     * @return role of the actor: database, L1 cache, L2 cache or client
+     */
+    String getRole();
+
+    /**
+     * @return reads served from the local storage
+     */
+    long getHits();
+
+    /**
+     * @return reads sent to the next level
+     */
+    long getMisses();
+
+    /**
+     * @return fraction of the reads served from the local storage, 0 if no read has been handled yet
+     */
+    double getHitRatio();
+
+    /**
+     * @return responses forwarded towards the requesters
+     */
+    long getForwards();
+
+    /**
+     * @return critical writes committed
+     */
+    long getCommits();
+
+    /**
+     * @return critical writes aborted
+     */
+    long getAborts();
+
+    /**
+     * @return requests timed out
+     */
+    long getTimeouts();
+
+    /**
+     * @return entries stored by the actor
+     */
+    int getEntries();
+
+    /**
+     * @return requests the actor is waiting an answer for
+     */
+    int getPendingQueries();
+
+    /**
+     * @return cancellable timers scheduled by the actor
+     */
+    int getTimers();
+
+    /**
+     * @return median latency of the reads in milliseconds
+     */
+    long getReadLatencyP50Ms();
+
+    /**
+     * @return 99th percentile of the latency of the reads in milliseconds
+     */
+    long getReadLatencyP99Ms();
+
+    /**
+     * @return 99th percentile of the latency of the writes in milliseconds
+     */
+    long getWriteLatencyP99Ms();
+}
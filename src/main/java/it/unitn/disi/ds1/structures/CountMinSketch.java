@@ -0,0 +1,107 @@
+package it.unitn.disi.ds1.structures;
+
+import java.util.Arrays;
+
+/**
+ * Count-min sketch over integer keys
+ * <p>
+ * It estimates how many times each key has been added with a fixed amount of memory: every key increments
+ * one counter per row, and its estimate is the smallest of its counters. The estimate is never lower than
+ * the actual count, while it may be higher because of the collisions with other keys.
+ */
+public class CountMinSketch {
+    /**
+     * Counters of the sketch, one row per hash function
+     */
+    private final long[][] counters;
+
+    /**
+     * Constructor of the count-min sketch
+     *
+     * @param width number of counters per row
+     * @param depth number of rows, namely of hash functions
+     */
+    public CountMinSketch(int width, int depth) {
+        this.counters = new long[depth][width];
+    }
+
+    /**
+     * Count an occurrence of a key
+     * Only the smallest counters are incremented (conservative update), which reduces the overestimation
+     *
+     * @param key key to count
+     * @return new estimate of the key
+     */
+    public long add(int key) {
+        long estimate = this.estimate(key) + 1;
+        for (int row = 0; row < this.counters.length; row++) {
+            int index = this.index(key, row);
+            this.counters[row][index] = Math.max(this.counters[row][index], estimate);
+        }
+        return estimate;
+    }
+
+    /**
+     * Estimate the occurrences of a key
+     *
+     * @param key key to look for
+     * @return estimated occurrences, never lower than the actual ones
+     */
+    public long estimate(int key) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < this.counters.length; row++) {
+            estimate = Math.min(estimate, this.counters[row][this.index(key, row)]);
+        }
+        return estimate;
+    }
+
+    /**
+     * Halve all the counters, so that the estimates reflect the recent occurrences
+     */
+    public void decay() {
+        for (long[] row : this.counters) {
+            for (int i = 0; i < row.length; i++) {
+                row[i] >>= 1;
+            }
+        }
+    }
+
+    /**
+     * Forget all the occurrences
+     */
+    public void clear() {
+        for (long[] row : this.counters) {
+            Arrays.fill(row, 0);
+        }
+    }
+
+    /**
+     * Position of the counter of the given row for the given key
+     * It employs double hashing, namely h1(key) + row * h2(key)
+     *
+     * @param key key to hash
+     * @param row row of the counter
+     * @return index of the counter within the row
+     */
+    private int index(int key, int row) {
+        int h1 = mix(key);
+        // The second hash has to be odd in order not to collapse on the same counters
+        int h2 = mix(h1 ^ key) | 1;
+        return Math.floorMod(h1 + row * h2, this.counters[row].length);
+    }
+
+    /**
+     * Integer mixing function (murmur3 finalizer)
+     *
+     * @param x value to mix
+     * @return mixed value
+     */
+    private static int mix(int x) {
+        x ^= x >>> 16;
+        x *= 0x85ebca6b;
+        x ^= x >>> 13;
+        x *= 0xc2b2ae35;
+        x ^= x >>> 16;
+        return x;
+    }
+}
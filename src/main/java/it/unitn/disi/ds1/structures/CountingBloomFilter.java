@@ -0,0 +1,114 @@
+package it.unitn.disi.ds1.structures;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Counting Bloom filter over integer keys
+ * <p>
+ * Each slot holds a counter instead of a single bit, therefore keys can be removed as well as added.
+ * The filter never answers no for a key which has been added and not removed yet,
+ * while it may answer yes for a key which has never been added (false positive).
+ */
+public class CountingBloomFilter implements Serializable {
+    /**
+     * Counters of the filter
+     */
+    private final int[] counters;
+
+    /**
+     * Number of hash functions applied to each key
+     */
+    private final int hashes;
+
+    /**
+     * Constructor of the counting Bloom filter
+     *
+     * @param size   number of counters
+     * @param hashes number of hash functions
+     */
+    public CountingBloomFilter(int size, int hashes) {
+        this.counters = new int[size];
+        this.hashes = hashes;
+    }
+
+    /**
+     * Add a key to the filter
+     *
+     * @param key key to add
+     */
+    public void add(int key) {
+        for (int i = 0; i < this.hashes; i++) {
+            this.counters[this.index(key, i)]++;
+        }
+    }
+
+    /**
+     * Remove a key from the filter
+     * Only keys which have been added may be removed: removing any other key which the filter may contain
+     * decrements the counters of the keys sharing them, hence the filter may answer no for those keys.
+     * Keys which are surely not in the filter are ignored, so that the counters never become negative
+     *
+     * @param key key to remove
+     */
+    public void remove(int key) {
+        if (!this.mightContain(key)) {
+            return;
+        }
+        for (int i = 0; i < this.hashes; i++) {
+            this.counters[this.index(key, i)]--;
+        }
+    }
+
+    /**
+     * Tells whether the key may have been added to the filter
+     *
+     * @param key key to look for
+     * @return false if the key is surely not in the filter, true otherwise
+     */
+    public boolean mightContain(int key) {
+        for (int i = 0; i < this.hashes; i++) {
+            if (this.counters[this.index(key, i)] == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Remove all the keys from the filter
+     */
+    public void clear() {
+        Arrays.fill(this.counters, 0);
+    }
+
+    /**
+     * Position of the counter of the i-th hash function for the given key
+     * It employs double hashing, namely h1(key) + i * h2(key)
+     *
+     * @param key key to hash
+     * @param i   index of the hash function
+     * @return index of the counter
+     */
+    private int index(int key, int i) {
+        int h1 = mix(key);
+        // The second hash has to be odd in order not to collapse on the same counters
+        int h2 = mix(h1 ^ key) | 1;
+        return Math.floorMod(h1 + i * h2, this.counters.length);
+    }
+
+    /**
+     * Integer mixing function (murmur3 finalizer)
+     *
+     * @param x value to mix
+     * @return mixed value
+     */
+    private static int mix(int x) {
+        x ^= x >>> 16;
+        x *= 0x85ebca6b;
+        x ^= x >>> 13;
+        x *= 0xc2b2ae35;
+        x ^= x >>> 16;
+        return x;
+    }
+}
@@ -0,0 +1,396 @@
+package it.unitn.disi.ds1.structures;
+
+import it.unitn.disi.ds1.Config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Report of the failover benchmark: for each crash type, how long the clients are degraded by the crash of a cache
+ * under steady load, how many operations are lost and how long the caches take to warm up again
+ * <p>
+ * The times are in milliseconds from the injection of the crash, with the resolution of the timeline of the load
+ * report. The cache crashes when it reaches the crash point, hence some time after the injection, or never if the
+ * load does not reach that point before the end of the run.
+ */
+public class FailoverReport {
+    /**
+     * Sample of the hit ratio of the caches
+     */
+    public static class Sample {
+        /**
+         * Milliseconds from the injection of the crash to the sample, negative before it
+         */
+        public final long millis;
+
+        /**
+         * Share of the reads missed by the near caches of the clients which the L1 and L2 caches have served
+         * within the window before the sample, NaN if there has not been any
+         */
+        public final double hitRatio;
+
+        /**
+         * Constructor of the sample
+         *
+         * @param millis   milliseconds from the injection of the crash to the sample
+         * @param hitRatio hit ratio of the caches within the window before the sample
+         */
+        public Sample(long millis, double hitRatio) {
+            this.millis = millis;
+            this.hitRatio = hitRatio;
+        }
+    }
+
+    /**
+     * Run of the load with the crash of a cache
+     */
+    public static class Scenario {
+        /**
+         * Type of the crash
+         */
+        public final Config.CrashType crashType;
+
+        /**
+         * Name of the crashed cache
+         */
+        public final String target;
+
+        /**
+         * Whether the cache has actually crashed
+         */
+        public final boolean crashed;
+
+        /**
+         * Milliseconds from the start of the load to the injection of the crash
+         */
+        public final long injectedAtMillis;
+
+        /**
+         * Report of the load generator
+         */
+        public final LoadReport load;
+
+        /**
+         * Hit ratio of the caches over time
+         */
+        public final List<Sample> samples;
+
+        /**
+         * Constructor of the scenario
+         *
+         * @param crashType        type of the crash
+         * @param target           name of the crashed cache
+         * @param crashed          whether the cache has actually crashed
+         * @param injectedAtMillis milliseconds from the start of the load to the injection of the crash
+         * @param load             report of the load generator
+         * @param samples          hit ratio of the caches over time
+         */
+        public Scenario(Config.CrashType crashType, String target, boolean crashed, long injectedAtMillis,
+                        LoadReport load, List<Sample> samples) {
+            this.crashType = crashType;
+            this.target = target;
+            this.crashed = crashed;
+            this.injectedAtMillis = injectedAtMillis;
+            this.load = load;
+            this.samples = Collections.unmodifiableList(new ArrayList<>(samples));
+        }
+
+        /**
+         * Time until the clients see the first error, either a failed or a timed out operation
+         *
+         * @return milliseconds from the injection, -1 if there has not been any error
+         */
+        public long firstErrorMillis() {
+            int interval = this.nextInterval(this.firstInterval(), LoadReport.Outcome.FAILED,
+                    LoadReport.Outcome.TIMED_OUT);
+            return this.millis(interval);
+        }
+
+        /**
+         * Time until the first successful operation after the first error
+         *
+         * @return milliseconds from the injection, -1 if there has not been any error or no operation has
+         * succeeded after it
+         */
+        public long firstSuccessMillis() {
+            int error = this.nextInterval(this.firstInterval(), LoadReport.Outcome.FAILED,
+                    LoadReport.Outcome.TIMED_OUT);
+            return error < 0 ? -1 : this.millis(this.nextInterval(error + 1, LoadReport.Outcome.SUCCEEDED));
+        }
+
+        /**
+         * Time until the last error, after which the clients are no longer degraded
+         *
+         * @return milliseconds from the injection, -1 if there has not been any error
+         */
+        public long lastErrorMillis() {
+            long[] failed = this.load.timeline(LoadReport.Outcome.FAILED);
+            long[] timedOut = this.load.timeline(LoadReport.Outcome.TIMED_OUT);
+            for (int i = Math.max(failed.length, timedOut.length) - 1; i >= this.firstInterval(); i--) {
+                if (count(failed, i) + count(timedOut, i) > 0) {
+                    return this.millis(i);
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Operations with an outcome ended after the injection
+         *
+         * @param outcome outcome of the operations
+         * @return number of operations
+         */
+        public long count(LoadReport.Outcome outcome) {
+            long[] timeline = this.load.timeline(outcome);
+            long count = 0;
+            for (int i = this.firstInterval(); i < timeline.length; i++) {
+                count += timeline[i];
+            }
+            return count;
+        }
+
+        /**
+         * Availability after the injection
+         *
+         * @return share of the operations ended after the injection which have succeeded, NaN if there are none
+         */
+        public double availability() {
+            long succeeded = this.count(LoadReport.Outcome.SUCCEEDED);
+            long ended = succeeded + this.count(LoadReport.Outcome.FAILED) + this.count(LoadReport.Outcome.TIMED_OUT);
+            return ended == 0 ? Double.NaN : (double) succeeded / ended;
+        }
+
+        /**
+         * Hit ratio of the caches right before the injection, the ones of the previous samples being lower since
+         * the caches start empty
+         *
+         * @return hit ratio of the last sample before the injection, NaN if there is none
+         */
+        public double baselineHitRatio() {
+            double baseline = Double.NaN;
+            for (Sample sample : this.samples) {
+                if (sample.millis <= 0) {
+                    baseline = sample.hitRatio;
+                }
+            }
+            return baseline;
+        }
+
+        /**
+         * Lowest hit ratio of the caches after the injection
+         *
+         * @return hit ratio, NaN if there are no samples after the injection
+         */
+        public double minHitRatio() {
+            double min = Double.NaN;
+            for (Sample sample : this.samples) {
+                if (sample.millis > 0 && !Double.isNaN(sample.hitRatio) && !(sample.hitRatio >= min)) {
+                    min = sample.hitRatio;
+                }
+            }
+            return min;
+        }
+
+        /**
+         * Time until the hit ratio of the caches is back to {@link Config#FAILOVER_HIT_RATIO_RECOVERED} of the
+         * baseline, after its lowest point
+         *
+         * @return milliseconds from the injection, 0 if it has never dropped below the threshold, -1 if it has not
+         * recovered before the end of the run or if it is unknown
+         */
+        public long hitRatioRecoveredMillis() {
+            double threshold = Config.FAILOVER_HIT_RATIO_RECOVERED * this.baselineHitRatio();
+            double min = this.minHitRatio();
+            if (Double.isNaN(threshold) || Double.isNaN(min)) {
+                return -1;
+            }
+            if (min >= threshold) {
+                return 0;
+            }
+            boolean dropped = false;
+            for (Sample sample : this.samples) {
+                if (sample.millis <= 0 || Double.isNaN(sample.hitRatio)) {
+                    continue;
+                }
+                dropped = dropped || sample.hitRatio == min;
+                if (dropped && sample.hitRatio >= threshold) {
+                    return sample.millis;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * First interval of the timeline after the injection
+         *
+         * @return index of the interval
+         */
+        private int firstInterval() {
+            return (int) (this.injectedAtMillis / Config.LOAD_TIMELINE_MS);
+        }
+
+        /**
+         * Next interval of the timeline in which some operations have ended with some outcomes
+         *
+         * @param from     index of the first interval to look at
+         * @param outcomes outcomes of the operations
+         * @return index of the interval, -1 if there is none
+         */
+        private int nextInterval(int from, LoadReport.Outcome... outcomes) {
+            List<long[]> timelines = new ArrayList<>();
+            int length = 0;
+            for (LoadReport.Outcome outcome : outcomes) {
+                timelines.add(this.load.timeline(outcome));
+                length = Math.max(length, timelines.get(timelines.size() - 1).length);
+            }
+            for (int i = Math.max(0, from); i < length; i++) {
+                for (long[] timeline : timelines) {
+                    if (count(timeline, i) > 0) {
+                        return i;
+                    }
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Time from the injection to the end of an interval of the timeline
+         *
+         * @param interval index of the interval, -1 if missing
+         * @return milliseconds, -1 if the interval is missing
+         */
+        private long millis(int interval) {
+            return interval < 0 ? -1 :
+                    Math.max(0, (interval + 1L) * Config.LOAD_TIMELINE_MS - this.injectedAtMillis);
+        }
+
+        /**
+         * Count of an interval of a timeline
+         *
+         * @param timeline timeline
+         * @param interval index of the interval
+         * @return count, 0 if the timeline ends before the interval
+         */
+        private static long count(long[] timeline, int interval) {
+            return interval < timeline.length ? timeline[interval] : 0;
+        }
+    }
+
+    /**
+     * Scenarios of the report, in order of execution
+     */
+    private final List<Scenario> scenarios = new ArrayList<>();
+
+    /**
+     * Add a scenario to the report
+     *
+     * @param scenario run with the crash of a cache
+     */
+    public void add(Scenario scenario) {
+        this.scenarios.add(scenario);
+    }
+
+    /**
+     * Scenarios of the report
+     *
+     * @return scenarios, in order of execution
+     */
+    public List<Scenario> scenarios() {
+        return Collections.unmodifiableList(this.scenarios);
+    }
+
+    /**
+     * Print the report as a table with a row for each scenario
+     *
+     * @return table of the report
+     */
+    public String toTable() {
+        StringBuilder table = new StringBuilder(String.format(Locale.ROOT,
+                "%-36s%8s%10s%12s%10s%8s%10s%13s%10s%10s%12s%n", "crash", "crashed", "error ms", "success ms",
+                "until ms", "failed", "timed out", "availability", "hit ratio", "min hit", "warm ms"));
+        for (Scenario scenario : this.scenarios) {
+            table.append(String.format(Locale.ROOT, "%-36s%8s%10s%12s%10s%8d%10d%13s%10s%10s%12s%n",
+                    scenario.crashType, scenario.crashed ? "yes" : "no", millis(scenario.firstErrorMillis()),
+                    millis(scenario.firstSuccessMillis()), millis(scenario.lastErrorMillis()),
+                    scenario.count(LoadReport.Outcome.FAILED), scenario.count(LoadReport.Outcome.TIMED_OUT),
+                    format(scenario.availability()), format(scenario.baselineHitRatio()),
+                    format(scenario.minHitRatio()), millis(scenario.hitRatioRecoveredMillis())));
+        }
+        return table.toString();
+    }
+
+    /**
+     * Encode the report in JSON, as an array with an object for each scenario
+     *
+     * @return JSON array of the scenarios
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder("[");
+        for (Scenario scenario : this.scenarios) {
+            json.append(json.length() > 1 ? "," : "")
+                    .append("{\"crash\":\"").append(scenario.crashType).append('"')
+                    .append(",\"target\":\"").append(scenario.target).append('"')
+                    .append(",\"crashed\":").append(scenario.crashed)
+                    .append(",\"injectedAtMillis\":").append(scenario.injectedAtMillis)
+                    .append(",\"firstErrorMillis\":").append(jsonMillis(scenario.firstErrorMillis()))
+                    .append(",\"firstSuccessMillis\":").append(jsonMillis(scenario.firstSuccessMillis()))
+                    .append(",\"lastErrorMillis\":").append(jsonMillis(scenario.lastErrorMillis()))
+                    .append(",\"failed\":").append(scenario.count(LoadReport.Outcome.FAILED))
+                    .append(",\"timedOut\":").append(scenario.count(LoadReport.Outcome.TIMED_OUT))
+                    .append(",\"availability\":").append(jsonNumber(scenario.availability()))
+                    .append(",\"hitRatio\":{\"baseline\":").append(jsonNumber(scenario.baselineHitRatio()))
+                    .append(",\"min\":").append(jsonNumber(scenario.minHitRatio()))
+                    .append(",\"recoveredMillis\":").append(jsonMillis(scenario.hitRatioRecoveredMillis()))
+                    .append(",\"curve\":[");
+            for (int i = 0; i < scenario.samples.size(); i++) {
+                Sample sample = scenario.samples.get(i);
+                json.append(i > 0 ? "," : "").append("[").append(sample.millis).append(',')
+                        .append(jsonNumber(sample.hitRatio)).append(']');
+            }
+            json.append("]},\"load\":").append(scenario.load.toJson()).append('}');
+        }
+        return json.append(']').toString();
+    }
+
+    /**
+     * Format a time for the table
+     *
+     * @param millis milliseconds, -1 if unknown
+     * @return milliseconds, or - if unknown
+     */
+    private static String millis(long millis) {
+        return millis < 0 ? "-" : String.valueOf(millis);
+    }
+
+    /**
+     * Format a number for the table
+     *
+     * @param value number
+     * @return number with two decimals, or - if unknown
+     */
+    private static String format(double value) {
+        return Double.isNaN(value) ? "-" : String.format(Locale.ROOT, "%.2f", value);
+    }
+
+    /**
+     * Format a time for JSON
+     *
+     * @param millis milliseconds, -1 if unknown
+     * @return milliseconds, or null if unknown
+     */
+    private static String jsonMillis(long millis) {
+        return millis < 0 ? "null" : String.valueOf(millis);
+    }
+
+    /**
+     * Format a number for JSON
+     *
+     * @param value number
+     * @return number with three decimals, or null if unknown
+     */
+    private static String jsonNumber(double value) {
+        return Double.isNaN(value) ? "null" : String.format(Locale.ROOT, "%.3f", value);
+    }
+}
@@ -0,0 +1,160 @@
+package it.unitn.disi.ds1.structures;
+
+import it.unitn.disi.ds1.Config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Report of the memory footprint benchmark: bytes of heap retained by each entry of an L1 and of an L2 cache, by
+ * each pending request and by each in-flight response, checked against the baselines in {@link Config}
+ */
+public class FootprintReport {
+    /**
+     * Measures at a number of keys
+     */
+    public static class Point {
+        /**
+         * Number of cached entries
+         */
+        public final int keys;
+
+        /**
+         * Number of pending requests and of in-flight responses
+         */
+        public final int inFlight;
+
+        /**
+         * Bytes per entry of an L1 cache
+         */
+        public final double l1EntryBytes;
+
+        /**
+         * Bytes per entry of an L2 cache
+         */
+        public final double l2EntryBytes;
+
+        /**
+         * Bytes per pending request
+         */
+        public final double pendingBytes;
+
+        /**
+         * Bytes per in-flight response
+         */
+        public final double messageBytes;
+
+        /**
+         * Constructor of the point
+         *
+         * @param keys         number of cached entries
+         * @param inFlight     number of pending requests and of in-flight responses
+         * @param l1EntryBytes bytes per entry of an L1 cache
+         * @param l2EntryBytes bytes per entry of an L2 cache
+         * @param pendingBytes bytes per pending request
+         * @param messageBytes bytes per in-flight response
+         */
+        public Point(int keys, int inFlight, double l1EntryBytes, double l2EntryBytes, double pendingBytes,
+                     double messageBytes) {
+            this.keys = keys;
+            this.inFlight = inFlight;
+            this.l1EntryBytes = l1EntryBytes;
+            this.l2EntryBytes = l2EntryBytes;
+            this.pendingBytes = pendingBytes;
+            this.messageBytes = messageBytes;
+        }
+    }
+
+    /**
+     * Points of the report, in order of execution
+     */
+    private final List<Point> points = new ArrayList<>();
+
+    /**
+     * Numbers of keys which have been skipped, since the heap is too small
+     */
+    private final List<Integer> skipped = new ArrayList<>();
+
+    /**
+     * Add a point to the report
+     *
+     * @param point measures at a number of keys
+     */
+    public void add(Point point) {
+        this.points.add(point);
+    }
+
+    /**
+     * Record a number of keys which has been skipped
+     *
+     * @param keys number of keys
+     */
+    public void skip(int keys) {
+        this.skipped.add(keys);
+    }
+
+    /**
+     * Points of the report
+     *
+     * @return points, in order of execution
+     */
+    public List<Point> points() {
+        return Collections.unmodifiableList(this.points);
+    }
+
+    /**
+     * Measures above their baseline by more than {@link Config#FOOTPRINT_TOLERANCE}
+     *
+     * @return description of each regression, empty if there are none
+     */
+    public List<String> regressions() {
+        List<String> regressions = new ArrayList<>();
+        for (Point point : this.points) {
+            check(regressions, point.keys, "L1 entry", point.l1EntryBytes, Config.FOOTPRINT_L1_ENTRY_BYTES);
+            check(regressions, point.keys, "L2 entry", point.l2EntryBytes, Config.FOOTPRINT_L2_ENTRY_BYTES);
+            check(regressions, point.keys, "pending request", point.pendingBytes, Config.FOOTPRINT_PENDING_BYTES);
+            check(regressions, point.keys, "in-flight response", point.messageBytes, Config.FOOTPRINT_MESSAGE_BYTES);
+        }
+        return regressions;
+    }
+
+    /**
+     * Print the report as a table with a row for each number of keys
+     *
+     * @return table of the report
+     */
+    public String toTable() {
+        StringBuilder table = new StringBuilder(String.format(Locale.ROOT, "%12s%12s%14s%14s%16s%16s%n",
+                "keys", "in flight", "B/L1 entry", "B/L2 entry", "B/pending", "B/response"));
+        for (Point point : this.points) {
+            table.append(String.format(Locale.ROOT, "%12d%12d%14.1f%14.1f%16.1f%16.1f%n", point.keys,
+                    point.inFlight, point.l1EntryBytes, point.l2EntryBytes, point.pendingBytes, point.messageBytes));
+        }
+        for (int keys : this.skipped) {
+            table.append(String.format(Locale.ROOT, "%12d%12s%14s%14s%16s%16s%n", keys, "-", "skipped", "-", "-",
+                    "-"));
+        }
+        table.append(String.format(Locale.ROOT, "%12s%12s%14d%14d%16d%16d%n", "baseline", "",
+                Config.FOOTPRINT_L1_ENTRY_BYTES, Config.FOOTPRINT_L2_ENTRY_BYTES, Config.FOOTPRINT_PENDING_BYTES,
+                Config.FOOTPRINT_MESSAGE_BYTES));
+        return table.toString();
+    }
+
+    /**
+     * Check a measure against its baseline
+     *
+     * @param regressions descriptions of the regressions found so far
+     * @param keys        number of keys of the measure
+     * @param what        what has been measured
+     * @param bytes       measured bytes
+     * @param baseline    baseline bytes
+     */
+    private static void check(List<String> regressions, int keys, String what, double bytes, int baseline) {
+        if (bytes > baseline * (1 + Config.FOOTPRINT_TOLERANCE)) {
+            regressions.add(String.format(Locale.ROOT, "%.1f bytes per %s at %d keys, the baseline is %d", bytes,
+                    what, keys, baseline));
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package it.unitn.disi.ds1.structures;
+
+/**
+ * Freshness policy of the cached entries, based on their age
+ * <p>
+ * An entry older than the soft time to live is stale: it is still served, but it has to be refreshed.
+ * The refresh may start earlier, with a probability growing with the age and with the time a refresh takes,
+ * as in the XFetch probabilistic early expiration, so that the refreshes of the entries stored together
+ * are spread over time. An entry older than the hard time to live is expired and it is not served anymore.
+ */
+public class FreshnessPolicy {
+    /**
+     * Age in milliseconds after which an entry is refreshed, 0 disables the refreshes
+     */
+    private final long softTtl;
+
+    /**
+     * Age in milliseconds after which an entry is not served anymore, 0 disables the expiry
+     */
+    private final long hardTtl;
+
+    /**
+     * Eagerness of the early refreshes, 0 disables them
+     */
+    private final double beta;
+
+    /**
+     * Constructor of the policy
+     *
+     * @param softTtl age after which an entry is refreshed
+     * @param hardTtl age after which an entry is not served anymore
+     * @param beta    eagerness of the early refreshes
+     */
+    public FreshnessPolicy(long softTtl, long hardTtl, double beta) {
+        this.softTtl = softTtl;
+        this.hardTtl = hardTtl;
+        this.beta = beta;
+    }
+
+    /**
+     * Whether an entry cannot be served anymore
+     *
+     * @param age age of the entry in milliseconds
+     * @return true if the entry is older than the hard time to live
+     */
+    public boolean isExpired(long age) {
+        return this.hardTtl > 0 && age > this.hardTtl;
+    }
+
+    /**
+     * Whether an entry has to be refreshed
+     *
+     * @param age          age of the entry in milliseconds
+     * @param refreshDelta time a refresh of the entry takes in milliseconds
+     * @param random       uniform random number in (0, 1]
+     * @return true if the entry is stale, or if it has been drawn for an early refresh
+     */
+    public boolean shouldRefresh(long age, long refreshDelta, double random) {
+        if (this.softTtl <= 0) {
+            return false;
+        }
+        // -log(random) is exponentially distributed, hence the early refreshes become likelier with the age
+        return age - refreshDelta * this.beta * Math.log(random) >= this.softTtl;
+    }
+}
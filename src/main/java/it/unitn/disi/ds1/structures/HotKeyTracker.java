@@ -0,0 +1,109 @@
+package it.unitn.disi.ds1.structures;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Tracker of the most accessed keys
+ * <p>
+ * The accesses of every key are estimated by a {@link CountMinSketch count-min sketch}, while a min-heap keeps
+ * the k keys with the highest estimates. The counts decay over time, hence the keys which are not accessed
+ * anymore leave the top k.
+ */
+public class HotKeyTracker {
+    /**
+     * Estimates of the accesses of every key
+     */
+    private final CountMinSketch sketch;
+
+    /**
+     * Number of keys kept in the top k
+     */
+    private final int k;
+
+    /**
+     * Estimated accesses of the keys in the top k
+     */
+    private final Map<Integer, Long> topK;
+
+    /**
+     * Keys in the top k, the least accessed one at the head
+     */
+    private final PriorityQueue<Integer> heap;
+
+    /**
+     * Constructor of the tracker
+     *
+     * @param k     number of keys kept in the top k
+     * @param width number of counters per row of the sketch
+     * @param depth number of rows of the sketch
+     */
+    public HotKeyTracker(int k, int width, int depth) {
+        this.sketch = new CountMinSketch(width, depth);
+        this.k = k;
+        this.topK = new HashMap<>();
+        this.heap = new PriorityQueue<>((a, b) -> Long.compare(this.topK.get(a), this.topK.get(b)));
+    }
+
+    /**
+     * Record an access to a key
+     *
+     * @param key accessed key
+     */
+    public void record(int key) {
+        long estimate = this.sketch.add(key);
+        if (this.topK.containsKey(key)) {
+            // Re-insert the key, since its position in the heap has changed
+            this.heap.remove(key);
+            this.topK.put(key, estimate);
+            this.heap.add(key);
+        } else if (this.topK.size() < this.k) {
+            this.topK.put(key, estimate);
+            this.heap.add(key);
+        } else if (this.k > 0 && estimate > this.topK.get(this.heap.peek())) {
+            this.topK.remove(this.heap.poll());
+            this.topK.put(key, estimate);
+            this.heap.add(key);
+        }
+    }
+
+    /**
+     * Halve the access counts, so that the keys which are not accessed anymore cool down
+     */
+    public void decay() {
+        this.sketch.decay();
+        this.heap.clear();
+        this.topK.replaceAll((key, count) -> count >> 1);
+        this.topK.values().removeIf(count -> count == 0);
+        this.heap.addAll(this.topK.keySet());
+    }
+
+    /**
+     * Get the keys in the top k whose estimated accesses reach the threshold
+     *
+     * @param threshold minimum estimated accesses of a hot key
+     * @return hot keys, the most accessed first
+     */
+    public List<Integer> hotKeys(long threshold) {
+        List<Integer> hotKeys = new ArrayList<>();
+        for (Map.Entry<Integer, Long> entry : this.topK.entrySet()) {
+            if (entry.getValue() >= threshold) {
+                hotKeys.add(entry.getKey());
+            }
+        }
+        hotKeys.sort((a, b) -> Long.compare(this.topK.get(b), this.topK.get(a)));
+        return hotKeys;
+    }
+
+    /**
+     * Forget all the accesses
+     */
+    public void clear() {
+        this.sketch.clear();
+        this.topK.clear();
+        this.heap.clear();
+    }
+}
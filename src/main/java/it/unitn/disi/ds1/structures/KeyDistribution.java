@@ -0,0 +1,137 @@
+package it.unitn.disi.ds1.structures;
+
+import it.unitn.disi.ds1.Config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Distribution of the keys requested by the load generator
+ * <p>
+ * The keys are ranked in their natural order: with the Zipfian distribution the probability of the key of rank i
+ * is proportional to 1 / (i + 1)^theta, while with the hotspot distribution the first keys are the hot ones.
+ * The latest distribution is Zipfian as well, but the keys are ranked from the most recently written one.
+ * The Zipfian keys are drawn in constant time as described by Gray et al. in "Quickly generating billion-record
+ * synthetic databases", as YCSB does.
+ */
+public class KeyDistribution {
+    /**
+     * Available distributions
+     */
+    public enum Type {
+        UNIFORM,
+        ZIPFIAN,
+        HOTSPOT,
+        LATEST
+    }
+
+    /**
+     * Type of the distribution
+     */
+    public final Type type;
+
+    /**
+     * Keys, sorted by rank: in their natural order or, with the latest distribution, from the most recently written
+     */
+    private final List<Integer> keys;
+
+    /**
+     * Zipfian constants: zeta(n, theta), 1 / (1 - theta) and eta
+     */
+    private final double zetaN, alpha, eta;
+
+    /**
+     * Number of hot keys of the hotspot distribution
+     */
+    private final int hotKeys;
+
+    /**
+     * Constructor of the distribution
+     *
+     * @param type type of the distribution
+     * @param keys keys to draw from
+     */
+    public KeyDistribution(Type type, Iterable<Integer> keys) {
+        this.type = type;
+        this.keys = new ArrayList<>();
+        for (Integer key : keys) {
+            this.keys.add(key);
+        }
+        Collections.sort(this.keys);
+
+        int n = this.keys.size();
+        double theta = Config.ZIPFIAN_THETA;
+        this.zetaN = zeta(n, theta);
+        this.alpha = 1.0 / (1.0 - theta);
+        this.eta = (1 - Math.pow(2.0 / n, 1 - theta)) / (1 - zeta(2, theta) / this.zetaN);
+        this.hotKeys = Math.max(1, (int) Math.round(n * Config.HOTSPOT_KEY_FRACTION));
+    }
+
+    /**
+     * Record that a key has been written, so that the latest distribution ranks it first
+     *
+     * @param key written key
+     */
+    public void recordWrite(int key) {
+        if (this.type == Type.LATEST && this.keys.remove(Integer.valueOf(key))) {
+            this.keys.add(0, key);
+        }
+    }
+
+    /**
+     * Draw a key
+     *
+     * @param random random number generator
+     * @return key
+     */
+    public int next(Random random) {
+        return this.keys.get(this.nextRank(random));
+    }
+
+    /**
+     * Draw the rank of a key
+     *
+     * @param random random number generator
+     * @return rank, from 0 to the number of keys - 1
+     */
+    int nextRank(Random random) {
+        int n = this.keys.size();
+        switch (this.type) {
+            case ZIPFIAN:
+            case LATEST:
+                double u = random.nextDouble();
+                double uz = u * this.zetaN;
+                if (uz < 1.0) {
+                    return 0;
+                }
+                if (uz < 1.0 + Math.pow(0.5, Config.ZIPFIAN_THETA)) {
+                    return Math.min(1, n - 1);
+                }
+                return Math.min((int) (n * Math.pow(this.eta * u - this.eta + 1, this.alpha)), n - 1);
+            case HOTSPOT:
+                if (this.hotKeys == n || random.nextDouble() < Config.HOTSPOT_OPERATION_FRACTION) {
+                    return random.nextInt(this.hotKeys);
+                }
+                return this.hotKeys + random.nextInt(n - this.hotKeys);
+            default:
+                return random.nextInt(n);
+        }
+    }
+
+    /**
+     * Generalized harmonic number
+     *
+     * @param n     number of terms
+     * @param theta exponent
+     * @return sum of 1 / i^theta for i from 1 to n
+     */
+    private static double zeta(int n, double theta) {
+        double sum = 0;
+        for (int i = 1; i <= n; i++) {
+            sum += 1 / Math.pow(i, theta);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,64 @@
+package it.unitn.disi.ds1.structures;
+
+import java.util.Arrays;
+
+/**
+ * Sliding window of the last observed latencies, employed to compute their percentiles
+ */
+public class LatencyWindow {
+    /**
+     * Last latencies in milliseconds, in circular order
+     */
+    private final long[] latencies;
+
+    /**
+     * Number of latencies observed so far, the window holds the last ones
+     */
+    private long count;
+
+    /**
+     * Constructor of the window
+     *
+     * @param capacity number of latencies remembered
+     */
+    public LatencyWindow(int capacity) {
+        this.latencies = new long[capacity];
+        this.count = 0;
+    }
+
+    /**
+     * Add a latency, forgetting the oldest one if the window is full
+     *
+     * @param latency latency in milliseconds
+     */
+    public void add(long latency) {
+        this.latencies[(int) (this.count % this.latencies.length)] = latency;
+        this.count++;
+    }
+
+    /**
+     * Get the number of latencies in the window
+     *
+     * @return number of latencies
+     */
+    public int size() {
+        return (int) Math.min(this.count, this.latencies.length);
+    }
+
+    /**
+     * Get a percentile of the latencies in the window, with the nearest-rank method
+     *
+     * @param percentile percentile between 0 and 1
+     * @return latency in milliseconds, 0 if the window is empty
+     */
+    public long percentile(double percentile) {
+        int size = this.size();
+        if (size == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(this.latencies, size);
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile * size);
+        return sorted[Math.max(0, Math.min(size, rank) - 1)];
+    }
+}
@@ -0,0 +1,287 @@
+package it.unitn.disi.ds1.structures;
+
+import it.unitn.disi.ds1.Config;
+import org.HdrHistogram.Histogram;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Report of a run of the load generator: throughput and latency percentiles of the operations
+ * <p>
+ * The latencies are measured from the intended send time of each operation, not from the time it has actually
+ * been sent, so that an operation delayed by the slower ones before it is not reported as fast (coordinated
+ * omission). Failed operations and the ones the generator has given up on are recorded as well, the latter with
+ * the time waited so far.
+ */
+public class LoadReport implements Serializable {
+    /**
+     * Outcome of an operation
+     */
+    public enum Outcome {
+        SUCCEEDED,
+        FAILED,
+        TIMED_OUT
+    }
+
+    /**
+     * Percentiles of the latencies in the report
+     */
+    private final static double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    /**
+     * Target rate in operations per second
+     */
+    public final double targetRate;
+
+    /**
+     * Seconds during which the operations have been scheduled
+     */
+    public final int durationSeconds;
+
+    /**
+     * Key distribution, null for a replayed trace
+     */
+    public final KeyDistribution.Type distribution;
+
+    /**
+     * Operation mix, null if there are no operations
+     */
+    public final OperationMix mix;
+
+    /**
+     * Latencies in microseconds of each operation type
+     */
+    private final Map<Config.RequestType, Histogram> latencies;
+
+    /**
+     * Number of operations for each outcome
+     */
+    private final Map<Outcome, Long> outcomes;
+
+    /**
+     * Number of operations for each outcome ended in each interval of {@link Config#LOAD_TIMELINE_MS} from the start
+     * of the run, indexed by the ordinal of the outcome
+     */
+    private final List<long[]> timeline;
+
+    /**
+     * Number of operations scheduled
+     */
+    private long scheduled;
+
+    /**
+     * Milliseconds from the start of the run to the end of the last operation
+     */
+    private long elapsedMillis;
+
+    /**
+     * Constructor of the report
+     *
+     * @param targetRate      target rate in operations per second
+     * @param durationSeconds seconds during which the operations are scheduled
+     * @param distribution    key distribution, null for a replayed trace
+     * @param mix             operation mix, null if there are no operations
+     */
+    public LoadReport(double targetRate, int durationSeconds, KeyDistribution.Type distribution, OperationMix mix) {
+        this.targetRate = targetRate;
+        this.durationSeconds = durationSeconds;
+        this.distribution = distribution;
+        this.mix = mix;
+        this.latencies = new EnumMap<>(Config.RequestType.class);
+        this.outcomes = new EnumMap<>(Outcome.class);
+        for (Outcome outcome : Outcome.values()) {
+            this.outcomes.put(outcome, 0L);
+        }
+        this.timeline = new ArrayList<>();
+    }
+
+    /**
+     * Count a scheduled operation
+     */
+    public void schedule() {
+        this.scheduled++;
+    }
+
+    /**
+     * Record the end of an operation
+     *
+     * @param type          type of the operation
+     * @param latencyNanos  nanoseconds from the intended send time to the end of the operation
+     * @param outcome       outcome of the operation
+     * @param endedAtMillis milliseconds from the start of the run to the end of the operation
+     */
+    public void record(Config.RequestType type, long latencyNanos, Outcome outcome, long endedAtMillis) {
+        // Auto-resizing histograms, an operation may wait for the whole run
+        this.latencies.computeIfAbsent(type, t -> new Histogram(3))
+                .recordValue(Math.max(0, latencyNanos / 1000));
+        this.outcomes.merge(outcome, 1L, Long::sum);
+
+        int interval = (int) (Math.max(0, endedAtMillis) / Config.LOAD_TIMELINE_MS);
+        while (this.timeline.size() <= interval) {
+            this.timeline.add(new long[Outcome.values().length]);
+        }
+        this.timeline.get(interval)[outcome.ordinal()]++;
+    }
+
+    /**
+     * Close the report
+     *
+     * @param elapsedMillis milliseconds from the start of the run to the end of the last operation
+     */
+    public void finish(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * Number of operations scheduled
+     *
+     * @return scheduled operations
+     */
+    public long scheduled() {
+        return this.scheduled;
+    }
+
+    /**
+     * Milliseconds from the start of the run to the end of the last operation
+     *
+     * @return elapsed milliseconds, 0 until the report is closed
+     */
+    public long elapsedMillis() {
+        return this.elapsedMillis;
+    }
+
+    /**
+     * Number of operations with an outcome
+     *
+     * @param outcome outcome of the operations
+     * @return number of operations
+     */
+    public long count(Outcome outcome) {
+        return this.outcomes.get(outcome);
+    }
+
+    /**
+     * Timeline of the operations with an outcome
+     *
+     * @param outcome outcome of the operations
+     * @return number of operations ended in each interval of {@link Config#LOAD_TIMELINE_MS} from the start of the
+     * run, up to the last interval in which an operation has ended
+     */
+    public long[] timeline(Outcome outcome) {
+        long[] counts = new long[this.timeline.size()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = this.timeline.get(i)[outcome.ordinal()];
+        }
+        return counts;
+    }
+
+    /**
+     * Achieved throughput, namely the operations which have succeeded or failed per second
+     *
+     * @return operations per second
+     */
+    public double throughput() {
+        if (this.elapsedMillis <= 0) {
+            return 0;
+        }
+        return (this.count(Outcome.SUCCEEDED) + this.count(Outcome.FAILED)) * 1000.0 / this.elapsedMillis;
+    }
+
+    /**
+     * Latencies of the operations of a type
+     *
+     * @param type type of the operations
+     * @return histogram of the latencies in microseconds, empty if no operation of the type has ended
+     */
+    public Histogram latency(Config.RequestType type) {
+        Histogram histogram = this.latencies.get(type);
+        return histogram == null ? new Histogram(3) : histogram.copy();
+    }
+
+    /**
+     * Latencies of all the operations
+     *
+     * @return histogram of the latencies in microseconds
+     */
+    public Histogram latency() {
+        Histogram all = new Histogram(3);
+        for (Histogram histogram : this.latencies.values()) {
+            all.add(histogram);
+        }
+        return all;
+    }
+
+    /**
+     * Encode the report in JSON, with the latencies in milliseconds
+     *
+     * @return JSON object of the report
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder("{");
+        json.append("\"targetRate\":").append(format(this.targetRate))
+                .append(",\"durationSeconds\":").append(this.durationSeconds)
+                .append(",\"distribution\":")
+                .append(this.distribution == null ? "null" : "\"" + this.distribution + "\"")
+                .append(",\"mix\":");
+        if (this.mix == null) {
+            json.append("null");
+        } else {
+            boolean first = true;
+            for (Config.RequestType type : Config.RequestType.values()) {
+                if (type == Config.RequestType.FLUSH) {
+                    continue;
+                }
+                json.append(first ? "{" : ",").append('"').append(type).append("\":")
+                        .append(format(this.mix.fraction(type)));
+                first = false;
+            }
+            json.append('}');
+        }
+        json.append(",\"scheduled\":").append(this.scheduled);
+        for (Outcome outcome : Outcome.values()) {
+            json.append(",\"").append(outcome.name().toLowerCase(Locale.ROOT)).append("\":")
+                    .append(this.count(outcome));
+        }
+        json.append(",\"elapsedMillis\":").append(this.elapsedMillis)
+                .append(",\"throughput\":").append(format(this.throughput()))
+                .append(",\"latencyMs\":{\"ALL\":").append(latencyJson(this.latency()));
+        for (Map.Entry<Config.RequestType, Histogram> entry : this.latencies.entrySet()) {
+            json.append(",\"").append(entry.getKey()).append("\":").append(latencyJson(entry.getValue()));
+        }
+        return json.append("}}").toString();
+    }
+
+    /**
+     * Encode the summary of a histogram in JSON
+     *
+     * @param histogram latencies in microseconds
+     * @return JSON object with the count, the mean, the percentiles and the maximum in milliseconds
+     */
+    private static String latencyJson(Histogram histogram) {
+        StringBuilder json = new StringBuilder("{\"count\":").append(histogram.getTotalCount());
+        if (histogram.getTotalCount() > 0) {
+            json.append(",\"mean\":").append(format(histogram.getMean() / 1000));
+            for (double percentile : PERCENTILES) {
+                json.append(",\"p").append(format(percentile).replace(".", "")).append("\":")
+                        .append(format(histogram.getValueAtPercentile(percentile) / 1000.0));
+            }
+            json.append(",\"max\":").append(format(histogram.getMaxValue() / 1000.0));
+        }
+        return json.append('}').toString();
+    }
+
+    /**
+     * Format a number with at most three decimals
+     *
+     * @param value number
+     * @return formatted number
+     */
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.3f", value).replaceAll("\\.?0+$", "");
+    }
+}
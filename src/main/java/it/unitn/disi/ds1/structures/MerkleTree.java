@@ -0,0 +1,110 @@
+package it.unitn.disi.ds1.structures;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Merkle tree over (key, sequence number) pairs
+ * <p>
+ * Keys are partitioned into a fixed number of ranges by hashing them, each range is a leaf of the tree.
+ * The digest of a leaf does not depend on the order in which keys are added, while each inner node
+ * combines the digests of its two children. Two trees built over the same pairs are equal, and the
+ * ranges where two trees differ can be found by descending only the subtrees whose digests differ.
+ * <p>
+ * The tree is stored as an array in heap layout: the root is at index 1 and the leaves are at the
+ * indexes [leaves, 2 * leaves)
+ */
+public class MerkleTree {
+    /**
+     * Number of leaves, namely of key ranges
+     */
+    private final int leaves;
+
+    /**
+     * Digests of the nodes
+     */
+    private final long[] nodes;
+
+    /**
+     * Build the tree over the given pairs
+     *
+     * @param seqnos pairs of key and sequence number
+     * @param leaves number of leaves, it has to be a power of two
+     */
+    public MerkleTree(Map<Integer, Integer> seqnos, int leaves) {
+        this.leaves = leaves;
+        this.nodes = new long[2 * leaves];
+
+        // Leaves digests
+        for (Map.Entry<Integer, Integer> entry : seqnos.entrySet()) {
+            long pair = ((long) entry.getKey() << 32) | (entry.getValue() & 0xffffffffL);
+            this.nodes[leaves + leafOf(entry.getKey(), leaves)] += mix(pair);
+        }
+
+        // Inner nodes digests
+        for (int i = leaves - 1; i > 0; i--) {
+            this.nodes[i] = mix(this.nodes[2 * i] * 31 + this.nodes[2 * i + 1]);
+        }
+    }
+
+    /**
+     * Get the digests of the nodes of the tree
+     *
+     * @return array of digests in heap layout
+     */
+    public long[] getNodes() {
+        return this.nodes.clone();
+    }
+
+    /**
+     * Get the leaves (key ranges) where this tree differs from another one with the same number of leaves
+     *
+     * @param other digests of the other tree in heap layout
+     * @return set of leaves indexes
+     */
+    public Set<Integer> divergentLeaves(long[] other) {
+        Set<Integer> divergent = new HashSet<>();
+        Deque<Integer> toVisit = new ArrayDeque<>();
+        toVisit.push(1);
+        while (!toVisit.isEmpty()) {
+            int node = toVisit.pop();
+            // Same digest, the whole subtree is equal
+            if (this.nodes[node] == other[node]) {
+                continue;
+            }
+            if (node >= this.leaves) {
+                divergent.add(node - this.leaves);
+            } else {
+                toVisit.push(2 * node);
+                toVisit.push(2 * node + 1);
+            }
+        }
+        return divergent;
+    }
+
+    /**
+     * Get the leaf (key range) a key belongs to
+     *
+     * @param key    key
+     * @param leaves number of leaves, it has to be a power of two
+     * @return leaf index
+     */
+    public static int leafOf(int key, int leaves) {
+        return (int) (mix(key) & (leaves - 1));
+    }
+
+    /**
+     * Mixing function (splitmix64 finalizer)
+     *
+     * @param x value to mix
+     * @return mixed value
+     */
+    private static long mix(long x) {
+        x = (x ^ (x >>> 30)) * 0xbf58476d1ce4e5b9L;
+        x = (x ^ (x >>> 27)) * 0x94d049bb133111ebL;
+        return x ^ (x >>> 31);
+    }
+}
@@ -0,0 +1,280 @@
+package it.unitn.disi.ds1.structures;
+
+import it.unitn.disi.ds1.Config;
+import org.HdrHistogram.Histogram;
+
+import java.io.Serializable;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Metrics registry of an actor, or of a group of actors once merged
+ * <p>
+ * It counts the main events of the protocols, and it records the latencies of each request type
+ * in HDR histograms, which keep a fixed relative precision over the whole range of values.
+ */
+public class Metrics implements Serializable {
+    /**
+     * Events counted by the registry
+     */
+    public enum Counter {
+        /**
+         * Reads served from the local storage (cache, near cache of a client or database)
+         */
+        HITS,
+        /**
+         * Reads which had to be sent to the next level
+         */
+        MISSES,
+        /**
+         * Responses forwarded towards the requester
+         */
+        FORWARDS,
+        /**
+         * Non critical writes applied by the database
+         */
+        WRITES,
+        /**
+         * Critical writes committed
+         */
+        COMMITS,
+        /**
+         * Critical writes aborted
+         */
+        ABORTS,
+        /**
+         * Requests timed out
+         */
+        TIMEOUTS,
+        /**
+         * Requests sent again to another cache after a timeout or a refusal
+         */
+        RETRIES,
+        /**
+         * Reads duplicated to another cache since slower than usual
+         */
+        HEDGES,
+        /**
+         * Caches emptied, after a crash or after giving up the parent
+         */
+        FLUSHES,
+        /**
+         * Messages received from the other actors, the timers of the actor excluded
+         */
+        MESSAGES,
+        /**
+         * Messages of the requests of the clients received from the other actors, the periodic protocols excluded
+         */
+        REQUEST_MESSAGES,
+        /**
+         * Simulated crashes of the cache
+         */
+        CRASHES
+    }
+
+    /**
+     * Sizes of the state kept by the actors for the requests in progress, sampled when the metrics are collected
+     * Once the requests are over they should drop back, hence a gauge which keeps growing reveals a leak
+     */
+    public enum Gauge {
+        /**
+         * Cancellable timers of the requests
+         */
+        TIMERS,
+        /**
+         * Start times of the cancellable timers, employed to sample the round trip times
+         */
+        TIMER_STARTS,
+        /**
+         * Start times of the requests whose latency is measured
+         */
+        REQUEST_STARTS,
+        /**
+         * Requests forwarded by the caches to their parent and not answered yet
+         */
+        PENDING_QUERIES,
+        /**
+         * Entries of the critical write sessions, namely their keys, their acknowledgements, their caches and
+         * their requesters
+         */
+        CRITICAL_SESSIONS,
+        /**
+         * Sequence numbers known by the caches and by the clients
+         */
+        SEQNOS,
+        /**
+         * Values and sequence numbers in transit recorded by the distributed snapshot
+         */
+        IN_TRANSIT,
+        /**
+         * Operations of the clients whose response is still expected, the hedged ones included
+         */
+        OPERATIONS,
+        /**
+         * Stats queries waiting for the answers of the children
+         */
+        STATS_QUERIES
+    }
+
+    /**
+     * Number of significant decimal digits of the latency histograms
+     */
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    /**
+     * Counters of the events
+     */
+    private final EnumMap<Counter, Long> counters;
+
+    /**
+     * Latencies in milliseconds of each request type
+     */
+    private final EnumMap<Config.RequestType, Histogram> latencies;
+
+    /**
+     * Last sampled value of the gauges
+     */
+    private final EnumMap<Gauge, Long> gauges;
+
+    /**
+     * Number of actors whose metrics are included
+     */
+    private int actors;
+
+    /**
+     * Constructor of the metrics of a single actor
+     */
+    public Metrics() {
+        this.counters = new EnumMap<>(Counter.class);
+        this.latencies = new EnumMap<>(Config.RequestType.class);
+        this.gauges = new EnumMap<>(Gauge.class);
+        this.actors = 1;
+        for (Counter counter : Counter.values()) {
+            this.counters.put(counter, 0L);
+        }
+        for (Gauge gauge : Gauge.values()) {
+            this.gauges.put(gauge, 0L);
+        }
+    }
+
+    /**
+     * Count an event
+     *
+     * @param counter event to count
+     */
+    public void increment(Counter counter) {
+        this.counters.merge(counter, 1L, Long::sum);
+    }
+
+    /**
+     * Record the latency of a request
+     * Latencies above the highest trackable value are recorded as the highest trackable value
+     *
+     * @param requestType type of the request
+     * @param latency     latency in milliseconds
+     */
+    public void recordLatency(Config.RequestType requestType, long latency) {
+        this.latencies.computeIfAbsent(requestType, type -> new Histogram(Config.METRICS_MAX_LATENCY_MS,
+                SIGNIFICANT_DIGITS)).recordValue(Math.max(0, Math.min(latency, Config.METRICS_MAX_LATENCY_MS)));
+    }
+
+    /**
+     * Set the value of a gauge
+     *
+     * @param gauge gauge to set
+     * @param value sampled value
+     */
+    public void set(Gauge gauge, long value) {
+        this.gauges.put(gauge, value);
+    }
+
+    /**
+     * Get the count of an event
+     *
+     * @param counter event
+     * @return number of times the event has been counted
+     */
+    public long count(Counter counter) {
+        return this.counters.get(counter);
+    }
+
+    /**
+     * Get the value of a gauge
+     *
+     * @param gauge gauge
+     * @return last sampled value, summed over the actors
+     */
+    public long gauge(Gauge gauge) {
+        return this.gauges.get(gauge);
+    }
+
+    /**
+     * Get the latency histogram of a request type
+     *
+     * @param requestType type of the request
+     * @return latency histogram in milliseconds, empty if no latency has been recorded
+     */
+    public Histogram latency(Config.RequestType requestType) {
+        Histogram histogram = this.latencies.get(requestType);
+        return histogram == null ? new Histogram(Config.METRICS_MAX_LATENCY_MS, SIGNIFICANT_DIGITS) : histogram;
+    }
+
+    /**
+     * Get the number of actors whose metrics are included
+     *
+     * @return number of actors
+     */
+    public int actors() {
+        return this.actors;
+    }
+
+    /**
+     * Add the metrics of other actors to these ones
+     *
+     * @param other metrics to add
+     */
+    public void merge(Metrics other) {
+        for (Map.Entry<Counter, Long> entry : other.counters.entrySet()) {
+            this.counters.merge(entry.getKey(), entry.getValue(), Long::sum);
+        }
+        for (Map.Entry<Gauge, Long> entry : other.gauges.entrySet()) {
+            this.gauges.merge(entry.getKey(), entry.getValue(), Long::sum);
+        }
+        for (Map.Entry<Config.RequestType, Histogram> entry : other.latencies.entrySet()) {
+            this.latencies.computeIfAbsent(entry.getKey(), type -> new Histogram(Config.METRICS_MAX_LATENCY_MS,
+                    SIGNIFICANT_DIGITS)).add(entry.getValue());
+        }
+        this.actors += other.actors;
+    }
+
+    /**
+     * Get a copy of the metrics, which can be sent to another actor
+     *
+     * @return copy of the metrics
+     */
+    public Metrics copy() {
+        Metrics copy = new Metrics();
+        copy.merge(this);
+        copy.actors = this.actors;
+        return copy;
+    }
+
+    /**
+     * Prints the counters and the latency percentiles
+     *
+     * @return metrics to string
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("METRICS of " + this.actors + " actors\n" + this.counters + "\n");
+        for (Map.Entry<Config.RequestType, Histogram> entry : this.latencies.entrySet()) {
+            Histogram histogram = entry.getValue();
+            builder.append(entry.getKey()).append(": count=").append(histogram.getTotalCount())
+                    .append(" p50=").append(histogram.getValueAtPercentile(50))
+                    .append(" p95=").append(histogram.getValueAtPercentile(95))
+                    .append(" p99=").append(histogram.getValueAtPercentile(99))
+                    .append(" max=").append(histogram.getMaxValue()).append(" ms\n");
+        }
+        return builder.toString();
+    }
+}
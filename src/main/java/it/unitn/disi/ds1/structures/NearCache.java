@@ -0,0 +1,128 @@
+package it.unitn.disi.ds1.structures;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded near cache of a client, storing the values it has read together with their sequence numbers
+ * <p>
+ * When full, the least recently used entry is evicted. Entries older than the time to live are not served,
+ * since the invalidation of the cache which served them may have been lost with a crash of that cache.
+ */
+public class NearCache {
+    /**
+     * Entry of the near cache
+     */
+    public static class Entry {
+        /**
+         * Cached value
+         */
+        public final int value;
+
+        /**
+         * Sequence number of the cached value
+         */
+        public final int seqno;
+
+        /**
+         * Identifier of the cache which served the value
+         */
+        public final int source;
+
+        /**
+         * Time at which the value has been stored
+         */
+        public final long storedAt;
+
+        /**
+         * Constructor of the entry
+         *
+         * @param value    cached value
+         * @param seqno    sequence number of the value
+         * @param source   identifier of the cache which served the value
+         * @param storedAt time at which the value has been stored
+         */
+        public Entry(int value, int seqno, int source, long storedAt) {
+            this.value = value;
+            this.seqno = seqno;
+            this.source = source;
+            this.storedAt = storedAt;
+        }
+    }
+
+    /**
+     * Milliseconds during which an entry can be served
+     */
+    private final long timeToLive;
+
+    /**
+     * Entries by key, in access order
+     */
+    private final LinkedHashMap<Integer, Entry> entries;
+
+    /**
+     * Constructor of the near cache
+     *
+     * @param capacity   maximum number of entries
+     * @param timeToLive milliseconds during which an entry can be served
+     */
+    public NearCache(int capacity, long timeToLive) {
+        this.timeToLive = timeToLive;
+        this.entries = new LinkedHashMap<Integer, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, NearCache.Entry> eldest) {
+                return this.size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Get the entry of a key, if it can still be served
+     *
+     * @param key key
+     * @param now current time in milliseconds
+     * @return entry, or null if the key is not cached or its entry has expired
+     */
+    public Entry get(int key, long now) {
+        Entry entry = this.entries.get(key);
+        if (entry != null && now - entry.storedAt > this.timeToLive) {
+            this.entries.remove(key);
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Store a value, unless a newer one is already cached
+     *
+     * @param key    key
+     * @param value  value
+     * @param seqno  sequence number of the value
+     * @param source identifier of the cache which served the value
+     * @param now    current time in milliseconds
+     */
+    public void put(int key, int value, int seqno, int source, long now) {
+        Entry entry = this.entries.get(key);
+        if (entry == null || entry.seqno <= seqno) {
+            this.entries.put(key, new Entry(value, seqno, source, now));
+        }
+    }
+
+    /**
+     * Remove the entry of a key
+     *
+     * @param key key
+     */
+    public void invalidate(int key) {
+        this.entries.remove(key);
+    }
+
+    /**
+     * Get the number of entries
+     *
+     * @return number of entries
+     */
+    public int size() {
+        return this.entries.size();
+    }
+}
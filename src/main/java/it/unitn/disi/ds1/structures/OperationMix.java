@@ -0,0 +1,121 @@
+package it.unitn.disi.ds1.structures;
+
+import it.unitn.disi.ds1.Config;
+
+import java.io.Serializable;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Mix of the operations sent by the load generator, namely the share of reads, writes, critical reads and
+ * critical writes
+ */
+public class OperationMix implements Serializable {
+    /**
+     * Types of the operations, in the order of the shares
+     */
+    private final static Config.RequestType[] TYPES = {Config.RequestType.READ, Config.RequestType.WRITE,
+            Config.RequestType.CRITREAD, Config.RequestType.CRITWRITE};
+
+    /**
+     * Fraction of the operations of each type, summing up to 1
+     */
+    private final Map<Config.RequestType, Double> fractions;
+
+    /**
+     * Constructor of the mix
+     *
+     * @param read      share of the reads
+     * @param write     share of the writes
+     * @param critRead  share of the critical reads
+     * @param critWrite share of the critical writes
+     */
+    public OperationMix(double read, double write, double critRead, double critWrite) {
+        double[] shares = {read, write, critRead, critWrite};
+        double total = 0;
+        for (double share : shares) {
+            if (share < 0) {
+                throw new IllegalArgumentException("Negative share of operations: " + share);
+            }
+            total += share;
+        }
+        if (total <= 0) {
+            throw new IllegalArgumentException("The mix has no operations");
+        }
+        this.fractions = new EnumMap<>(Config.RequestType.class);
+        for (int i = 0; i < TYPES.length; i++) {
+            this.fractions.put(TYPES[i], shares[i] / total);
+        }
+    }
+
+    /**
+     * Parse a mix given as the comma separated shares of reads, writes, critical reads and critical writes,
+     * e.g. 80,15,4,1
+     *
+     * @param mix shares of the operations
+     * @return parsed mix
+     * @throws IllegalArgumentException if the mix is not valid
+     */
+    public static OperationMix parse(String mix) {
+        String[] shares = mix.split(",");
+        if (shares.length != TYPES.length) {
+            throw new IllegalArgumentException("The mix needs " + TYPES.length + " shares: " + mix);
+        }
+        try {
+            return new OperationMix(Double.parseDouble(shares[0].trim()), Double.parseDouble(shares[1].trim()),
+                    Double.parseDouble(shares[2].trim()), Double.parseDouble(shares[3].trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid share in the mix: " + mix);
+        }
+    }
+
+    /**
+     * Fraction of the operations of a type
+     *
+     * @param type type of the operations
+     * @return fraction, from 0 to 1
+     */
+    public double fraction(Config.RequestType type) {
+        return this.fractions.getOrDefault(type, 0.0);
+    }
+
+    /**
+     * Draw the type of an operation
+     *
+     * @param random random number generator
+     * @return type of the operation
+     */
+    public Config.RequestType next(Random random) {
+        double u = random.nextDouble();
+        Config.RequestType last = Config.RequestType.READ;
+        for (Config.RequestType type : TYPES) {
+            if (this.fractions.get(type) > 0) {
+                last = type;
+            }
+            u -= this.fractions.get(type);
+            if (u < 0 && this.fractions.get(type) > 0) {
+                return type;
+            }
+        }
+        // Rounding errors
+        return last;
+    }
+
+    /**
+     * Mix as the comma separated shares of the operations
+     *
+     * @return string of the mix
+     */
+    @Override
+    public String toString() {
+        StringBuilder mix = new StringBuilder();
+        for (Config.RequestType type : TYPES) {
+            if (mix.length() > 0) {
+                mix.append(',');
+            }
+            mix.append(Math.round(this.fractions.get(type) * 1000) / 10.0);
+        }
+        return mix.toString();
+    }
+}
@@ -0,0 +1,222 @@
+package it.unitn.disi.ds1.structures;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Report of the performance gate: the metrics of a fixed workload, checked against a baseline
+ * <p>
+ * The baseline holds, for each metric, its expected value under the lower case name of the metric and the relative
+ * change it tolerates under the same name followed by ".tolerance". A metric regresses when it is worse than its
+ * expected value by more than its tolerance, namely lower for the throughput and higher for the others, while the
+ * improvements are never reported, hence the baseline is meant to be lowered along with the changes which make the
+ * protocol faster. The expected values and the tolerances are derived from {@link #baseline(List, double, double)
+ * calibration runs}, each tolerance covering a number of standard deviations of its metric.
+ */
+public class PerformanceReport {
+    /**
+     * Metric of the performance gate
+     */
+    public enum Metric {
+        /**
+         * Operations which have succeeded or failed per second, while offered more than the clients can serve
+         */
+        THROUGHPUT("ops/s", true),
+        /**
+         * 99th percentile of the latencies of all the operations, in milliseconds
+         */
+        P99_LATENCY_MS("ms", false),
+        /**
+         * Messages of the requests received by all the actors per operation sent, the periodic ones excluded
+         */
+        MESSAGES_PER_OPERATION("msg/op", false),
+        /**
+         * Bytes allocated by the threads running the actors per operation sent
+         */
+        ALLOCATED_BYTES_PER_OPERATION("B/op", false);
+
+        /**
+         * Unit of the metric
+         */
+        public final String unit;
+
+        /**
+         * Whether the higher values are the better ones
+         */
+        public final boolean higherIsBetter;
+
+        /**
+         * Constructor of the metric
+         *
+         * @param unit           unit of the metric
+         * @param higherIsBetter whether the higher values are the better ones
+         */
+        Metric(String unit, boolean higherIsBetter) {
+            this.unit = unit;
+            this.higherIsBetter = higherIsBetter;
+        }
+
+        /**
+         * Name of the metric in the baseline
+         *
+         * @return lower case name
+         */
+        public String key() {
+            return this.name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * Measured values, NaN for the metrics which cannot be measured by this JVM
+     */
+    private final Map<Metric, Double> values = new EnumMap<>(Metric.class);
+
+    /**
+     * Constructor of the report
+     *
+     * @param throughput            operations which have succeeded or failed per second
+     * @param p99LatencyMs          99th percentile of the latencies in milliseconds
+     * @param messagesPerOperation  messages received per operation
+     * @param allocatedPerOperation bytes allocated per operation, NaN if they cannot be measured
+     */
+    public PerformanceReport(double throughput, double p99LatencyMs, double messagesPerOperation,
+                             double allocatedPerOperation) {
+        this.values.put(Metric.THROUGHPUT, throughput);
+        this.values.put(Metric.P99_LATENCY_MS, p99LatencyMs);
+        this.values.put(Metric.MESSAGES_PER_OPERATION, messagesPerOperation);
+        this.values.put(Metric.ALLOCATED_BYTES_PER_OPERATION, allocatedPerOperation);
+    }
+
+    /**
+     * Measured value of a metric
+     *
+     * @param metric metric
+     * @return measured value, NaN if it cannot be measured
+     */
+    public double value(Metric metric) {
+        return this.values.get(metric);
+    }
+
+    /**
+     * Metrics worse than their baseline by more than their tolerance
+     *
+     * @param baseline expected values and tolerances
+     * @return description of each regression, empty if there are none
+     * @throws IllegalArgumentException if a metric has no expected value or no tolerance
+     */
+    public List<String> regressions(Properties baseline) {
+        List<String> regressions = new ArrayList<>();
+        for (Metric metric : Metric.values()) {
+            double expected = parse(baseline, metric.key());
+            double tolerance = parse(baseline, metric.key() + ".tolerance");
+            double value = this.value(metric);
+            // The metrics which cannot be measured are not compared
+            if (Double.isNaN(value)) {
+                continue;
+            }
+            double change = expected == 0 ? 0 : (value - expected) / expected;
+            if ((metric.higherIsBetter ? -change : change) > tolerance) {
+                regressions.add(String.format(Locale.ROOT, "%s is %.2f %s, %+.1f%% from the baseline of %.2f " +
+                        "(tolerance %.0f%%)", metric.key(), value, metric.unit, change * 100, expected,
+                        tolerance * 100));
+            }
+        }
+        return regressions;
+    }
+
+    /**
+     * Print the report as a table with a row for each metric
+     *
+     * @param baseline expected values and tolerances
+     * @return table of the report
+     */
+    public String toTable(Properties baseline) {
+        StringBuilder table = new StringBuilder(String.format(Locale.ROOT, "%32s%14s%14s%12s%n", "metric",
+                "measured", "baseline", "tolerance"));
+        for (Metric metric : Metric.values()) {
+            table.append(String.format(Locale.ROOT, "%32s%14.2f%14s%11s%%%n", metric.key(), this.value(metric),
+                    baseline.getProperty(metric.key(), "-"),
+                    baseline.containsKey(metric.key() + ".tolerance") ?
+                            String.format(Locale.ROOT, "%.0f",
+                                    parse(baseline, metric.key() + ".tolerance") * 100) : "-"));
+        }
+        return table.toString();
+    }
+
+    /**
+     * Print the measured values as a baseline, keeping the tolerances of the current one
+     *
+     * @param baseline current expected values and tolerances
+     * @return content of the new baseline file
+     */
+    public String toBaseline(Properties baseline) {
+        StringBuilder properties = new StringBuilder();
+        for (Metric metric : Metric.values()) {
+            properties.append(String.format(Locale.ROOT, "%s=%.2f%n%s.tolerance=%s%n", metric.key(),
+                    this.value(metric), metric.key(), baseline.getProperty(metric.key() + ".tolerance", "0.25")));
+        }
+        return properties.toString();
+    }
+
+    /**
+     * Derive a baseline from calibration runs: the expected value of each metric is its mean, and its tolerance the
+     * given number of standard deviations relative to the mean, rounded up to a hundredth
+     *
+     * @param runs         reports of the calibration runs
+     * @param sigmas       standard deviations tolerated
+     * @param minTolerance minimum tolerance, for the metrics which barely vary
+     * @return content of the baseline file
+     * @throws IllegalArgumentException if there are no runs
+     */
+    public static String baseline(List<PerformanceReport> runs, double sigmas, double minTolerance) {
+        if (runs.isEmpty()) {
+            throw new IllegalArgumentException("No calibration runs");
+        }
+        StringBuilder properties = new StringBuilder();
+        for (Metric metric : Metric.values()) {
+            double mean = runs.stream().mapToDouble(run -> run.value(metric)).average().orElse(Double.NaN);
+            double variance = runs.size() < 2 ? 0 : runs.stream()
+                    .mapToDouble(run -> (run.value(metric) - mean) * (run.value(metric) - mean)).sum() /
+                    (runs.size() - 1);
+            double tolerance = mean == 0 || Double.isNaN(mean) ? minTolerance :
+                    Math.max(minTolerance, roundUp(sigmas * Math.sqrt(variance) / Math.abs(mean)));
+            properties.append(String.format(Locale.ROOT, "%s=%.2f%n%s.tolerance=%.2f%n", metric.key(), mean,
+                    metric.key(), tolerance));
+        }
+        return properties.toString();
+    }
+
+    /**
+     * Round a tolerance up to a hundredth, ignoring the rounding errors of the floating point
+     *
+     * @param tolerance relative tolerance
+     * @return tolerance rounded up
+     */
+    private static double roundUp(double tolerance) {
+        return Math.ceil(tolerance * 100 - 1e-9) / 100;
+    }
+
+    /**
+     * Parse a number of the baseline
+     *
+     * @param baseline expected values and tolerances
+     * @param key      key of the number
+     * @return number
+     * @throws IllegalArgumentException if the number is missing or malformed
+     */
+    private static double parse(Properties baseline, String key) {
+        String value = baseline.getProperty(key);
+        if (value == null) {
+            throw new IllegalArgumentException("The baseline has no " + key);
+        }
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("The baseline has a malformed " + key + ": " + value);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package it.unitn.disi.ds1.structures;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Phi-accrual failure detector of a peer, as described by Hayashibara et al.
+ * <p>
+ * Instead of a boolean verdict, the detector outputs the suspicion level phi of the peer, computed from the time
+ * elapsed since its last heartbeat and from the distribution of the last inter-arrival times, which is approximated
+ * by a normal distribution. A phi of 1 means that the probability of being wrong when suspecting the peer is 10%,
+ * a phi of 2 that it is 1%, and so on. The peer is suspected when phi exceeds the threshold.
+ */
+public class PhiAccrualFailureDetector {
+    /**
+     * Suspicion level above which the peer is suspected
+     */
+    private final double threshold;
+
+    /**
+     * Maximum number of inter-arrival times kept in the history
+     */
+    private final int windowSize;
+
+    /**
+     * Floor of the standard deviation, to avoid suspecting a peer which sends very regular heartbeats
+     */
+    private final double minStdDeviation;
+
+    /**
+     * Delay of the heartbeats which is tolerated without increasing the suspicion, e.g. due to a busy peer
+     */
+    private final long acceptablePause;
+
+    /**
+     * Last inter-arrival times in milliseconds
+     */
+    private final Deque<Long> intervals;
+
+    /**
+     * Sum of the inter-arrival times in the history
+     */
+    private double sum;
+
+    /**
+     * Sum of the squares of the inter-arrival times in the history
+     */
+    private double squaredSum;
+
+    /**
+     * Time of the last heartbeat, -1 if no heartbeat has been received yet
+     */
+    private long lastHeartbeat;
+
+    /**
+     * Constructor of the detector
+     *
+     * @param threshold       phi above which the peer is suspected
+     * @param windowSize      number of inter-arrival times kept in the history
+     * @param minStdDeviation floor of the standard deviation in milliseconds
+     * @param acceptablePause tolerated delay of the heartbeats in milliseconds
+     */
+    public PhiAccrualFailureDetector(double threshold, int windowSize, double minStdDeviation, long acceptablePause) {
+        this.threshold = threshold;
+        this.windowSize = windowSize;
+        this.minStdDeviation = minStdDeviation;
+        this.acceptablePause = acceptablePause;
+        this.intervals = new ArrayDeque<>();
+        this.lastHeartbeat = -1;
+    }
+
+    /**
+     * Record a heartbeat of the peer
+     * A heartbeat received while the peer is suspected starts a new history, since the peer has recovered
+     *
+     * @param now arrival time in milliseconds
+     */
+    public void heartbeat(long now) {
+        if (this.lastHeartbeat >= 0) {
+            if (this.isSuspected(now)) {
+                this.intervals.clear();
+                this.sum = 0;
+                this.squaredSum = 0;
+            } else {
+                this.addInterval(now - this.lastHeartbeat);
+            }
+        }
+        this.lastHeartbeat = now;
+    }
+
+    /**
+     * Get the suspicion level of the peer
+     *
+     * @param now current time in milliseconds
+     * @return phi, 0 if the history is still empty
+     */
+    public double phi(long now) {
+        if (this.intervals.isEmpty()) {
+            return 0.0;
+        }
+        double mean = this.sum / this.intervals.size();
+        double variance = this.squaredSum / this.intervals.size() - mean * mean;
+        double stdDeviation = Math.max(Math.sqrt(Math.max(variance, 0)), this.minStdDeviation);
+
+        // Logistic approximation of the cumulative distribution function of the normal distribution
+        double y = (now - this.lastHeartbeat - mean - this.acceptablePause) / stdDeviation;
+        double e = Math.exp(-y * (1.5976 + 0.070566 * y * y));
+        if (y > 0) {
+            return -Math.log10(e / (1.0 + e));
+        }
+        return -Math.log10(1.0 - 1.0 / (1.0 + e));
+    }
+
+    /**
+     * Whether the peer is suspected to have crashed
+     *
+     * @param now current time in milliseconds
+     * @return true if phi exceeds the threshold
+     */
+    public boolean isSuspected(long now) {
+        return this.phi(now) > this.threshold;
+    }
+
+    /**
+     * Add an inter-arrival time to the history, forgetting the oldest one if the window is full
+     *
+     * @param interval inter-arrival time in milliseconds
+     */
+    private void addInterval(long interval) {
+        if (this.intervals.size() == this.windowSize) {
+            long oldest = this.intervals.removeFirst();
+            this.sum -= oldest;
+            this.squaredSum -= (double) oldest * oldest;
+        }
+        this.intervals.addLast(interval);
+        this.sum += interval;
+        this.squaredSum += (double) interval * interval;
+    }
+}
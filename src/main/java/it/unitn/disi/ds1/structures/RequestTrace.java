@@ -0,0 +1,415 @@
+package it.unitn.disi.ds1.structures;
+
+import it.unitn.disi.ds1.Config;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Stream of the requests sent to the clients: time, client, operation, key and written value of each request
+ * <p>
+ * The compact file format is a header made of a magic number, a version and the start time of the stream in
+ * milliseconds since the epoch, followed by a record per request: the milliseconds since the previous request, the
+ * id of the client and the key as variable-length integers, the ordinal of the request type as a byte and, for the
+ * writes, the written value as a variable-length integer. A record of a read is usually 4 bytes long.
+ */
+public class RequestTrace {
+    /**
+     * Request of the stream
+     */
+    public static class Entry {
+        /**
+         * Milliseconds since the start of the stream
+         */
+        public final long offsetMillis;
+
+        /**
+         * Id of the client which has received the request
+         */
+        public final int client;
+
+        /**
+         * Type of the request
+         */
+        public final Config.RequestType type;
+
+        /**
+         * Requested key
+         */
+        public final int key;
+
+        /**
+         * Written value, null for the reads
+         */
+        public final Integer value;
+
+        /**
+         * Constructor of the entry
+         *
+         * @param offsetMillis milliseconds since the start of the stream
+         * @param client       id of the client which has received the request
+         * @param type         type of the request
+         * @param key          requested key
+         * @param value        written value, null for the reads
+         */
+        public Entry(long offsetMillis, int client, Config.RequestType type, int key, Integer value) {
+            this.offsetMillis = offsetMillis;
+            this.client = client;
+            this.type = type;
+            this.key = key;
+            this.value = value;
+        }
+
+        /**
+         * Whether the request is a write
+         *
+         * @return true for the writes and the critical writes
+         */
+        public boolean isWrite() {
+            return this.type == Config.RequestType.WRITE || this.type == Config.RequestType.CRITWRITE;
+        }
+    }
+
+    /**
+     * Writer appending the requests to a trace file as they happen
+     */
+    public static class Writer implements Closeable {
+        /**
+         * Output stream of the file
+         */
+        private final DataOutputStream out;
+
+        /**
+         * Start time of the stream in milliseconds since the epoch
+         */
+        private final long startMillis;
+
+        /**
+         * Offset of the last written request
+         */
+        private long lastOffsetMillis;
+
+        /**
+         * Constructor of the writer, which writes the header of the file
+         *
+         * @param file        trace file, overwritten
+         * @param startMillis start time of the stream in milliseconds since the epoch
+         * @throws IOException if the file cannot be written
+         */
+        public Writer(String file, long startMillis) throws IOException {
+            this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            this.startMillis = startMillis;
+            this.out.writeInt(MAGIC);
+            this.out.writeByte(VERSION);
+            this.out.writeLong(startMillis);
+        }
+
+        /**
+         * Append a request received at a given time
+         *
+         * @param timeMillis time of the request in milliseconds since the epoch
+         * @param client     id of the client which has received the request
+         * @param type       type of the request
+         * @param key        requested key
+         * @param value      written value, null for the reads
+         * @throws IOException if the file cannot be written
+         */
+        public void append(long timeMillis, int client, Config.RequestType type, int key, Integer value)
+                throws IOException {
+            this.append(new Entry(timeMillis - this.startMillis, client, type, key, value));
+        }
+
+        /**
+         * Append a request
+         *
+         * @param entry request, not older than the previous one
+         * @throws IOException if the file cannot be written
+         */
+        public void append(Entry entry) throws IOException {
+            long offset = Math.max(entry.offsetMillis, this.lastOffsetMillis);
+            writeVarLong(this.out, offset - this.lastOffsetMillis);
+            writeVarLong(this.out, entry.client);
+            this.out.writeByte(entry.type.ordinal());
+            writeVarLong(this.out, entry.key);
+            if (entry.isWrite()) {
+                writeVarLong(this.out, entry.value == null ? 0 : entry.value);
+            }
+            this.lastOffsetMillis = offset;
+        }
+
+        /**
+         * Flush the requests written so far and close the file
+         *
+         * @throws IOException if the file cannot be written
+         */
+        @Override
+        public void close() throws IOException {
+            this.out.close();
+        }
+    }
+
+    /**
+     * Magic number at the beginning of a trace file, "DS1T"
+     */
+    private final static int MAGIC = 0x44533154;
+
+    /**
+     * Version of the file format
+     */
+    private final static int VERSION = 1;
+
+    /**
+     * Format of the timestamps of the log file
+     */
+    private final static String LOG_TIMESTAMP_FORMAT = "yyyyMMdd_HHmmss";
+
+    /**
+     * Start time of the stream in milliseconds since the epoch
+     */
+    public final long startMillis;
+
+    /**
+     * Requests, in order of time
+     */
+    private final List<Entry> entries;
+
+    /**
+     * Constructor of the trace
+     *
+     * @param startMillis start time of the stream in milliseconds since the epoch
+     * @param entries     requests, in order of time
+     */
+    public RequestTrace(long startMillis, List<Entry> entries) {
+        this.startMillis = startMillis;
+        this.entries = new ArrayList<>(entries);
+    }
+
+    /**
+     * Requests of the trace
+     *
+     * @return requests, in order of time
+     */
+    public List<Entry> entries() {
+        return Collections.unmodifiableList(this.entries);
+    }
+
+    /**
+     * Milliseconds from the start of the stream to the last request
+     *
+     * @return duration of the stream
+     */
+    public long durationMillis() {
+        return this.entries.isEmpty() ? 0 : this.entries.get(this.entries.size() - 1).offsetMillis;
+    }
+
+    /**
+     * Mix of the requests of the trace
+     *
+     * @return operation mix, null if the trace is empty
+     */
+    public OperationMix mix() {
+        if (this.entries.isEmpty()) {
+            return null;
+        }
+        long[] counts = new long[Config.RequestType.values().length];
+        for (Entry entry : this.entries) {
+            counts[entry.type.ordinal()]++;
+        }
+        return new OperationMix(counts[Config.RequestType.READ.ordinal()],
+                counts[Config.RequestType.WRITE.ordinal()], counts[Config.RequestType.CRITREAD.ordinal()],
+                counts[Config.RequestType.CRITWRITE.ordinal()]);
+    }
+
+    /**
+     * Write the trace to a file in the compact format
+     *
+     * @param file trace file, overwritten
+     * @throws IOException if the file cannot be written
+     */
+    public void write(String file) throws IOException {
+        try (Writer writer = new Writer(file, this.startMillis)) {
+            for (Entry entry : this.entries) {
+                writer.append(entry);
+            }
+        }
+    }
+
+    /**
+     * Read a trace file in the compact format
+     *
+     * @param file trace file
+     * @return trace
+     * @throws IOException if the file cannot be read or it is not a trace file
+     */
+    public static RequestTrace read(String file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+                throw new IOException(file + " is not a trace file");
+            }
+            long startMillis = in.readLong();
+            List<Entry> entries = new ArrayList<>();
+            Config.RequestType[] types = Config.RequestType.values();
+            long offset = 0;
+            while (true) {
+                long delta;
+                try {
+                    delta = readVarLong(in);
+                } catch (EOFException e) {
+                    // End of the stream, possibly recorded until a crash
+                    break;
+                }
+                try {
+                    offset += delta;
+                    int client = (int) readVarLong(in);
+                    int type = in.readUnsignedByte();
+                    if (type >= types.length) {
+                        throw new IOException("Unknown request type " + type + " in " + file);
+                    }
+                    int key = (int) readVarLong(in);
+                    Entry entry = new Entry(offset, client, types[type], key, null);
+                    if (entry.isWrite()) {
+                        entry = new Entry(offset, client, types[type], key, (int) readVarLong(in));
+                    }
+                    entries.add(entry);
+                } catch (EOFException e) {
+                    // The last record has been truncated
+                    break;
+                }
+            }
+            return new RequestTrace(startMillis, entries);
+        }
+    }
+
+    /**
+     * Convert the requests the clients have sent in a log file of the consistency checks into a trace
+     * <p>
+     * Only the first request of each operation is converted, the retries and the hedged reads are not, nor are the
+     * reads served by the near caches of the clients, which are not logged. The timestamps of the log file have
+     * a resolution of one second, hence the requests logged within the same second are spread evenly over it.
+     *
+     * @param logFile log file of the consistency checks
+     * @return trace of the requests of the clients
+     * @throws IOException if the file cannot be read or it is not a log file
+     */
+    public static RequestTrace fromLog(String logFile) throws IOException {
+        // Requests logged in each second, before spreading them
+        List<Long> seconds = new ArrayList<>();
+        List<List<Entry>> requests = new ArrayList<>();
+        int firstClient = -1;
+        SimpleDateFormat timestamps = new SimpleDateFormat(LOG_TIMESTAMP_FORMAT);
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(logFile))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split("\t");
+                if (line.startsWith("CONFIG:")) {
+                    // Shape of the architecture, the clients come after the database and the caches
+                    if (parts.length == 4 && !parts[1].contains("-")) {
+                        int countL1 = parseInt(parts[1]);
+                        firstClient = 1 + countL1 + countL1 * parseInt(parts[2]);
+                    }
+                    continue;
+                }
+                if (parts.length < 11 || firstClient < 0 || Boolean.parseBoolean(parts[5]) ||
+                        parseInt(parts[2]) < firstClient ||
+                        !(parts[10].startsWith("Request read") || parts[10].startsWith("Request write"))) {
+                    continue;
+                }
+                Config.RequestType type = Config.RequestType.valueOf(parts[4]);
+                if (type == Config.RequestType.FLUSH) {
+                    continue;
+                }
+                long second;
+                try {
+                    second = timestamps.parse(parts[1]).getTime();
+                } catch (ParseException e) {
+                    throw new IOException("Invalid timestamp in " + logFile + ": " + parts[1]);
+                }
+                Entry entry = new Entry(second, parseInt(parts[2]), type, parseInt(parts[6]),
+                        parts[7].equals("null") ? null : parseInt(parts[7]));
+                if (seconds.isEmpty() || seconds.get(seconds.size() - 1) != second) {
+                    seconds.add(second);
+                    requests.add(new ArrayList<>());
+                }
+                requests.get(requests.size() - 1).add(entry);
+            }
+        }
+
+        if (seconds.isEmpty()) {
+            return new RequestTrace(0, Collections.emptyList());
+        }
+        long startMillis = seconds.get(0);
+        List<Entry> entries = new ArrayList<>();
+        for (int i = 0; i < seconds.size(); i++) {
+            List<Entry> inSecond = requests.get(i);
+            for (int j = 0; j < inSecond.size(); j++) {
+                Entry entry = inSecond.get(j);
+                entries.add(new Entry(seconds.get(i) - startMillis + j * 1000L / inSecond.size(), entry.client,
+                        entry.type, entry.key, entry.value));
+            }
+        }
+        return new RequestTrace(startMillis, entries);
+    }
+
+    /**
+     * Parse an integer of the log file, which may be formatted with grouping separators
+     *
+     * @param value formatted integer
+     * @return integer
+     */
+    private static int parseInt(String value) {
+        return Integer.parseInt(value.replace(",", "").trim());
+    }
+
+    /**
+     * Write a non negative integer with 7 bits per byte, the most significant bit telling whether more bytes follow
+     *
+     * @param out   output stream
+     * @param value non negative integer
+     * @throws IOException if the stream cannot be written
+     */
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    /**
+     * Read a non negative integer written by {@link #writeVarLong(DataOutputStream, long)}
+     *
+     * @param in input stream
+     * @return integer
+     * @throws IOException if the stream cannot be read
+     */
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+            if (shift > 63) {
+                throw new IOException("Malformed variable-length integer");
+            }
+        }
+    }
+}
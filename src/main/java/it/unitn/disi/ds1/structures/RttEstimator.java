@@ -0,0 +1,114 @@
+package it.unitn.disi.ds1.structures;
+
+/**
+ * Round trip time estimator of a peer, computing an adaptive timeout as TCP computes its retransmission timeout
+ * <p>
+ * The smoothed round trip time and its variation are exponentially weighted moving averages of the samples,
+ * and the timeout is the smoothed round trip time plus four times the variation. Each expired timeout doubles
+ * the timeout until the next sample. The timeout is always kept between a floor and a ceiling.
+ */
+public class RttEstimator {
+    /**
+     * Weight of a new sample in the smoothed round trip time
+     */
+    private static final double ALPHA = 0.125;
+
+    /**
+     * Weight of a new sample in the round trip time variation
+     */
+    private static final double BETA = 0.25;
+
+    /**
+     * Multiplier of the variation in the timeout
+     */
+    private static final int K = 4;
+
+    /**
+     * Maximum factor applied by consecutive back-offs
+     */
+    private static final int MAX_BACKOFF = 64;
+
+    /**
+     * Timeout employed before any sample is collected
+     */
+    private final int initialTimeout;
+
+    /**
+     * Floor of the timeout
+     */
+    private final int minTimeout;
+
+    /**
+     * Ceiling of the timeout
+     */
+    private final int maxTimeout;
+
+    /**
+     * Smoothed round trip time
+     */
+    private double srtt;
+
+    /**
+     * Round trip time variation
+     */
+    private double rttvar;
+
+    /**
+     * Whether a sample has already been collected
+     */
+    private boolean hasSample;
+
+    /**
+     * Factor applied to the timeout by the back-offs
+     */
+    private int backoff;
+
+    /**
+     * Constructor of the estimator
+     *
+     * @param initialTimeout timeout before any sample
+     * @param minTimeout     floor of the timeout
+     * @param maxTimeout     ceiling of the timeout
+     */
+    public RttEstimator(int initialTimeout, int minTimeout, int maxTimeout) {
+        this.initialTimeout = initialTimeout;
+        this.minTimeout = minTimeout;
+        this.maxTimeout = maxTimeout;
+        this.backoff = 1;
+    }
+
+    /**
+     * Add a round trip time sample
+     *
+     * @param rtt round trip time in milliseconds
+     */
+    public void sample(long rtt) {
+        if (!this.hasSample) {
+            this.srtt = rtt;
+            this.rttvar = rtt / 2.0;
+            this.hasSample = true;
+        } else {
+            this.rttvar = (1 - BETA) * this.rttvar + BETA * Math.abs(this.srtt - rtt);
+            this.srtt = (1 - ALPHA) * this.srtt + ALPHA * rtt;
+        }
+        this.backoff = 1;
+    }
+
+    /**
+     * Double the timeout, since a timeout has expired
+     */
+    public void backoff() {
+        this.backoff = Math.min(this.backoff * 2, MAX_BACKOFF);
+    }
+
+    /**
+     * Get the current timeout
+     *
+     * @return timeout in milliseconds
+     */
+    public int timeout() {
+        double timeout = this.hasSample ? this.srtt + K * this.rttvar : this.initialTimeout;
+        timeout *= this.backoff;
+        return (int) Math.max(this.minTimeout, Math.min(this.maxTimeout, Math.ceil(timeout)));
+    }
+}
@@ -0,0 +1,173 @@
+package it.unitn.disi.ds1.structures;
+
+import org.HdrHistogram.Histogram;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Results of a scalability sweep: throughput, latency percentiles, load of the database and heap usage of the same
+ * workload against architectures of different shapes
+ */
+public class ScalabilityReport {
+    /**
+     * Header of the CSV file
+     */
+    private final static String CSV_HEADER = "l1,l2,clients,actors,target_rate,throughput,p50_ms,p99_ms," +
+            "db_messages_per_s,heap_mb,failed,timed_out";
+
+    /**
+     * Run of the workload against an architecture of the grid
+     */
+    public static class Point {
+        /**
+         * Number of L1 caches
+         */
+        public final int countL1;
+
+        /**
+         * Number of L2 caches of each L1 cache
+         */
+        public final int countL2;
+
+        /**
+         * Number of clients
+         */
+        public final int countClients;
+
+        /**
+         * Report of the load generator
+         */
+        public final LoadReport load;
+
+        /**
+         * Metrics of the database, null if missing
+         */
+        public final Metrics database;
+
+        /**
+         * Bytes of heap in use at the end of the run, after a garbage collection
+         */
+        public final long heapBytes;
+
+        /**
+         * Constructor of the point
+         *
+         * @param countL1      number of L1 caches
+         * @param countL2      number of L2 caches of each L1 cache
+         * @param countClients number of clients
+         * @param load         report of the load generator
+         * @param database     metrics of the database
+         * @param heapBytes    bytes of heap in use at the end of the run
+         */
+        public Point(int countL1, int countL2, int countClients, LoadReport load, Metrics database, long heapBytes) {
+            this.countL1 = countL1;
+            this.countL2 = countL2;
+            this.countClients = countClients;
+            this.load = load;
+            this.database = database;
+            this.heapBytes = heapBytes;
+        }
+
+        /**
+         * Number of actors of the architecture
+         *
+         * @return database, caches and clients
+         */
+        public int actors() {
+            return 1 + this.countL1 + this.countL1 * this.countL2 + this.countClients;
+        }
+
+        /**
+         * Messages received by the database per second
+         *
+         * @return messages per second, NaN if the metrics of the database are missing
+         */
+        public double databaseMessages() {
+            if (this.database == null || this.load.elapsedMillis() <= 0) {
+                return Double.NaN;
+            }
+            return this.database.count(Metrics.Counter.MESSAGES) * 1000.0 / this.load.elapsedMillis();
+        }
+
+        /**
+         * Row of the CSV file
+         *
+         * @return comma separated values, in the order of the header
+         */
+        public String toCsv() {
+            return String.join(",",
+                    String.valueOf(this.countL1),
+                    String.valueOf(this.countL2),
+                    String.valueOf(this.countClients),
+                    String.valueOf(this.actors()),
+                    format(this.load.targetRate),
+                    format(this.load.throughput()),
+                    format(percentile(this.load.latency(), 50)),
+                    format(percentile(this.load.latency(), 99)),
+                    format(this.databaseMessages()),
+                    format(this.heapBytes / (1024.0 * 1024.0)),
+                    String.valueOf(this.load.count(LoadReport.Outcome.FAILED)),
+                    String.valueOf(this.load.count(LoadReport.Outcome.TIMED_OUT)));
+        }
+    }
+
+    /**
+     * Points of the sweep, in order of execution
+     */
+    private final List<Point> points = new ArrayList<>();
+
+    /**
+     * Add a point to the report
+     *
+     * @param point run against an architecture of the grid
+     */
+    public void add(Point point) {
+        this.points.add(point);
+    }
+
+    /**
+     * Points of the sweep
+     *
+     * @return points, in order of execution
+     */
+    public List<Point> points() {
+        return Collections.unmodifiableList(this.points);
+    }
+
+    /**
+     * Encode the report in CSV, with a header and a row for each point
+     *
+     * @return CSV content
+     */
+    public String toCsv() {
+        StringBuilder csv = new StringBuilder(CSV_HEADER).append('\n');
+        for (Point point : this.points) {
+            csv.append(point.toCsv()).append('\n');
+        }
+        return csv.toString();
+    }
+
+    /**
+     * Latency percentile in milliseconds
+     *
+     * @param histogram  latencies in microseconds
+     * @param percentile percentile
+     * @return latency in milliseconds, NaN if the histogram is empty
+     */
+    private static double percentile(Histogram histogram, double percentile) {
+        return histogram.getTotalCount() == 0 ? Double.NaN : histogram.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    /**
+     * Format a number for the CSV file
+     *
+     * @param value number
+     * @return number with three decimals, or an empty value if unknown
+     */
+    private static String format(double value) {
+        return Double.isNaN(value) ? "" : String.format(Locale.ROOT, "%.3f", value);
+    }
+}
@@ -0,0 +1,235 @@
+package it.unitn.disi.ds1.structures;
+
+import it.unitn.disi.ds1.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Report of the soak test: the state kept by the actors for the requests in progress and the heap in use, sampled
+ * over time while the load runs and the caches crash
+ * <p>
+ * The first quarter of the samples is the warm up, during which the caches and the clients fill up with the keys of
+ * the database. The rest is split in two halves: a gauge leaks if its median in the second half exceeds its median
+ * in the first half by more than {@link Config#SOAK_LEAK_MIN_ENTRIES}, namely if it has kept growing instead of
+ * settling, and the same holds for the heap with {@link Config#SOAK_LEAK_MIN_HEAP_BYTES}. The medians are not
+ * affected by the drops of the gauges of the caches which crash, nor by the samples taken during a burst. The
+ * sequence numbers are sampled but not checked, since they are bounded by the keys of the database.
+ */
+public class SoakReport {
+    /**
+     * State of the architecture at a point of the soak test
+     */
+    public static class Sample {
+        /**
+         * Milliseconds since the soak test has started
+         */
+        public final long millis;
+
+        /**
+         * Operations completed since the previous sample
+         */
+        public final long operations;
+
+        /**
+         * Operations failed or timed out since the previous sample
+         */
+        public final long failed;
+
+        /**
+         * Crashes counted so far by the caches which have answered
+         */
+        public final long crashes;
+
+        /**
+         * Gauges summed over the actors which have answered
+         */
+        private final Map<Metrics.Gauge, Long> gauges;
+
+        /**
+         * Heap in use after a garbage collection
+         */
+        public final long heapBytes;
+
+        /**
+         * Constructor of the sample
+         *
+         * @param millis     milliseconds since the soak test has started
+         * @param operations operations completed since the previous sample
+         * @param failed     operations failed or timed out since the previous sample
+         * @param metrics    metrics collected from the architecture
+         * @param heapBytes  heap in use after a garbage collection
+         */
+        public Sample(long millis, long operations, long failed, Metrics metrics, long heapBytes) {
+            this.millis = millis;
+            this.operations = operations;
+            this.failed = failed;
+            this.crashes = metrics.count(Metrics.Counter.CRASHES);
+            this.gauges = new EnumMap<>(Metrics.Gauge.class);
+            for (Metrics.Gauge gauge : Metrics.Gauge.values()) {
+                this.gauges.put(gauge, metrics.gauge(gauge));
+            }
+            this.heapBytes = heapBytes;
+        }
+
+        /**
+         * Get the value of a gauge
+         *
+         * @param gauge gauge
+         * @return value summed over the actors
+         */
+        public long gauge(Metrics.Gauge gauge) {
+            return this.gauges.get(gauge);
+        }
+    }
+
+    /**
+     * Samples of the report, in order of time
+     */
+    private final List<Sample> samples = new ArrayList<>();
+
+    /**
+     * Add a sample to the report
+     *
+     * @param sample state of the architecture
+     */
+    public void add(Sample sample) {
+        this.samples.add(sample);
+    }
+
+    /**
+     * Samples of the report
+     *
+     * @return samples, in order of time
+     */
+    public List<Sample> samples() {
+        return Collections.unmodifiableList(this.samples);
+    }
+
+    /**
+     * Gauges and heap which have kept growing after the warm up
+     *
+     * @return description of each leak, empty if there are none or if there are too few samples to tell
+     */
+    public List<String> leaks() {
+        List<String> leaks = new ArrayList<>();
+        List<Sample> steady = this.samples.subList(this.samples.size() / 4, this.samples.size());
+        if (steady.size() < 2) {
+            return leaks;
+        }
+        List<Sample> first = steady.subList(0, steady.size() / 2);
+        List<Sample> second = steady.subList(steady.size() / 2, steady.size());
+        for (Metrics.Gauge gauge : Metrics.Gauge.values()) {
+            // The sequence numbers are bounded by the keys of the database, they grow as long as the caches warm up
+            if (gauge == Metrics.Gauge.SEQNOS) {
+                continue;
+            }
+            long growth = median(second, gauge) - median(first, gauge);
+            if (growth > Config.SOAK_LEAK_MIN_ENTRIES) {
+                leaks.add(String.format(Locale.ROOT, "%s has grown by %d entries, up to %d", gauge, growth,
+                        max(second, gauge)));
+            }
+        }
+        long heapGrowth = median(second, null) - median(first, null);
+        if (heapGrowth > Config.SOAK_LEAK_MIN_HEAP_BYTES) {
+            leaks.add(String.format(Locale.ROOT, "the heap has grown by %.1f MB, up to %.1f MB",
+                    heapGrowth / 1048576.0, max(second, null) / 1048576.0));
+        }
+        return leaks;
+    }
+
+    /**
+     * Print the report as a table with a row for each sample
+     *
+     * @return table of the report
+     */
+    public String toTable() {
+        StringBuilder table = new StringBuilder(String.format(Locale.ROOT, "%8s%8s%8s%8s", "s", "ops", "failed",
+                "crashes"));
+        for (Metrics.Gauge gauge : Metrics.Gauge.values()) {
+            table.append(String.format(Locale.ROOT, "%9s", abbreviate(gauge)));
+        }
+        table.append(String.format(Locale.ROOT, "%10s%n", "heap MB"));
+        for (Sample sample : this.samples) {
+            table.append(String.format(Locale.ROOT, "%8d%8d%8d%8d", sample.millis / 1000, sample.operations,
+                    sample.failed, sample.crashes));
+            for (Metrics.Gauge gauge : Metrics.Gauge.values()) {
+                table.append(String.format(Locale.ROOT, "%9d", sample.gauge(gauge)));
+            }
+            table.append(String.format(Locale.ROOT, "%10.1f%n", sample.heapBytes / 1048576.0));
+        }
+        return table.toString();
+    }
+
+    /**
+     * Print the report as CSV, with a row for each sample
+     *
+     * @return CSV of the report
+     */
+    public String toCsv() {
+        StringBuilder csv = new StringBuilder("millis,operations,failed,crashes");
+        for (Metrics.Gauge gauge : Metrics.Gauge.values()) {
+            csv.append(',').append(gauge.name().toLowerCase(Locale.ROOT));
+        }
+        csv.append(",heap_bytes\n");
+        for (Sample sample : this.samples) {
+            csv.append(sample.millis).append(',').append(sample.operations).append(',').append(sample.failed)
+                    .append(',').append(sample.crashes);
+            for (Metrics.Gauge gauge : Metrics.Gauge.values()) {
+                csv.append(',').append(sample.gauge(gauge));
+            }
+            csv.append(',').append(sample.heapBytes).append('\n');
+        }
+        return csv.toString();
+    }
+
+    /**
+     * Median value of a gauge, or of the heap, over some samples
+     *
+     * @param samples samples
+     * @param gauge   gauge, null for the heap
+     * @return median value, the lower one if the samples are even
+     */
+    private static long median(List<Sample> samples, Metrics.Gauge gauge) {
+        long[] values = new long[samples.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = gauge == null ? samples.get(i).heapBytes : samples.get(i).gauge(gauge);
+        }
+        Arrays.sort(values);
+        return values[(values.length - 1) / 2];
+    }
+
+    /**
+     * Highest value of a gauge, or of the heap, over some samples
+     *
+     * @param samples samples
+     * @param gauge   gauge, null for the heap
+     * @return highest value
+     */
+    private static long max(List<Sample> samples, Metrics.Gauge gauge) {
+        long max = Long.MIN_VALUE;
+        for (Sample sample : samples) {
+            max = Math.max(max, gauge == null ? sample.heapBytes : sample.gauge(gauge));
+        }
+        return max;
+    }
+
+    /**
+     * Short name of a gauge, which fits a column of the table
+     *
+     * @param gauge gauge
+     * @return short name
+     */
+    private static String abbreviate(Metrics.Gauge gauge) {
+        StringBuilder name = new StringBuilder();
+        for (String word : gauge.name().split("_")) {
+            name.append(word, 0, Math.min(word.length(), name.length() == 0 ? 5 : 3));
+        }
+        return name.toString().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,136 @@
+package it.unitn.disi.ds1.structures;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Span of a trace, namely the handling of a message by an actor
+ */
+public class Span {
+    /**
+     * Identifier of the trace
+     */
+    public final String traceId;
+
+    /**
+     * Identifier of the span
+     */
+    public final String spanId;
+
+    /**
+     * Identifier of the span which has sent the message, null for the root span of a trace
+     */
+    public final String parentSpanId;
+
+    /**
+     * Name of the span
+     */
+    public final String name;
+
+    /**
+     * Start time in nanoseconds since the epoch
+     */
+    public final long startNanos;
+
+    /**
+     * End time in nanoseconds since the epoch, 0 while the span is open
+     */
+    private long endNanos;
+
+    /**
+     * Attributes of the span, in insertion order
+     */
+    private final Map<String, Object> attributes;
+
+    /**
+     * Constructor of an open span
+     *
+     * @param traceId      identifier of the trace
+     * @param spanId       identifier of the span
+     * @param parentSpanId identifier of the parent span, null for a root span
+     * @param name         name of the span
+     * @param startNanos   start time in nanoseconds since the epoch
+     */
+    public Span(String traceId, String spanId, String parentSpanId, String name, long startNanos) {
+        this.traceId = traceId;
+        this.spanId = spanId;
+        this.parentSpanId = parentSpanId;
+        this.name = name;
+        this.startNanos = startNanos;
+        this.attributes = new LinkedHashMap<>();
+    }
+
+    /**
+     * Set an attribute of the span
+     *
+     * @param key   key of the attribute
+     * @param value string, long or double value
+     */
+    public void setAttribute(String key, Object value) {
+        this.attributes.put(key, value);
+    }
+
+    /**
+     * Add to a numeric attribute of the span
+     *
+     * @param key   key of the attribute
+     * @param delta value to add
+     */
+    public void addToAttribute(String key, long delta) {
+        this.attributes.merge(key, delta, (a, b) -> (Long) a + (Long) b);
+    }
+
+    /**
+     * Close the span
+     *
+     * @param endNanos end time in nanoseconds since the epoch
+     */
+    public void end(long endNanos) {
+        this.endNanos = endNanos;
+    }
+
+    /**
+     * Encode the span as an OpenTelemetry span in the OTLP/JSON format
+     *
+     * @return JSON object of the span
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder("{\"traceId\":\"").append(this.traceId)
+                .append("\",\"spanId\":\"").append(this.spanId).append('"');
+        if (this.parentSpanId != null) {
+            json.append(",\"parentSpanId\":\"").append(this.parentSpanId).append('"');
+        }
+        // Kind 1 is SPAN_KIND_INTERNAL, timestamps are strings since they do not fit a JSON number
+        json.append(",\"name\":\"").append(escape(this.name)).append("\",\"kind\":1")
+                .append(",\"startTimeUnixNano\":\"").append(this.startNanos)
+                .append("\",\"endTimeUnixNano\":\"").append(this.endNanos).append("\",\"attributes\":[");
+        boolean first = true;
+        for (Map.Entry<String, Object> attribute : this.attributes.entrySet()) {
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            json.append("{\"key\":\"").append(escape(attribute.getKey())).append("\",\"value\":{");
+            Object value = attribute.getValue();
+            if (value instanceof Long || value instanceof Integer) {
+                json.append("\"intValue\":\"").append(value).append('"');
+            } else if (value instanceof Double) {
+                json.append("\"doubleValue\":").append(value);
+            } else {
+                json.append("\"stringValue\":\"").append(escape(String.valueOf(value))).append('"');
+            }
+            json.append("}}");
+        }
+        return json.append("]}").toString();
+    }
+
+    /**
+     * Escape a string for JSON
+     *
+     * @param value string to escape
+     * @return escaped string
+     */
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
@@ -0,0 +1,36 @@
+package it.unitn.disi.ds1.structures;
+
+import java.io.Serializable;
+
+/**
+ * Trace context carried by a message, namely the span of the actor which has sent it
+ */
+public class TraceContext implements Serializable {
+    /**
+     * Identifier of the trace, 32 hexadecimal digits
+     */
+    public final String traceId;
+
+    /**
+     * Identifier of the span which has sent the message, 16 hexadecimal digits
+     */
+    public final String spanId;
+
+    /**
+     * Time in milliseconds at which the message has been created
+     */
+    public final long sentAt;
+
+    /**
+     * Constructor of the trace context
+     *
+     * @param traceId identifier of the trace
+     * @param spanId  identifier of the span which has sent the message
+     * @param sentAt  time in milliseconds at which the message has been created
+     */
+    public TraceContext(String traceId, String spanId, long sentAt) {
+        this.traceId = traceId;
+        this.spanId = spanId;
+        this.sentAt = sentAt;
+    }
+}
@@ -0,0 +1,89 @@
+package it.unitn.disi.ds1.structures;
+
+/**
+ * Workload profiles modelled on the core workloads of YCSB, mapped onto the operations of the caches
+ * <p>
+ * Each profile is a share of reads and of updates over a key distribution. In the eventual mode the reads and the
+ * updates are plain reads and writes, in the critical mode they are critical reads and critical writes, so that
+ * the same workload can be compared under the two protocols. Workload E is missing, since the caches have no scans.
+ */
+public enum WorkloadProfile {
+    /**
+     * Update heavy: 50% reads, 50% updates
+     */
+    A("update heavy", 50, 50, KeyDistribution.Type.ZIPFIAN),
+    /**
+     * Read mostly: 95% reads, 5% updates
+     */
+    B("read mostly", 95, 5, KeyDistribution.Type.ZIPFIAN),
+    /**
+     * Read only: 100% reads
+     */
+    C("read only", 100, 0, KeyDistribution.Type.ZIPFIAN),
+    /**
+     * Read latest: 95% reads, 5% updates, the most recently written keys are the most popular ones
+     */
+    D("read latest", 95, 5, KeyDistribution.Type.LATEST),
+    /**
+     * Read-modify-write: 50% reads, 50% read-modify-writes
+     * A client performs one operation at a time, hence each read-modify-write is issued as a read and an update,
+     * namely two reads every update
+     */
+    F("read-modify-write", 100, 50, KeyDistribution.Type.ZIPFIAN);
+
+    /**
+     * Protocol the operations of a profile are performed with
+     */
+    public enum Mode {
+        EVENTUAL,
+        CRITICAL
+    }
+
+    /**
+     * Description of the profile
+     */
+    public final String description;
+
+    /**
+     * Share of the reads
+     */
+    public final double reads;
+
+    /**
+     * Share of the updates
+     */
+    public final double updates;
+
+    /**
+     * Distribution of the requested keys
+     */
+    public final KeyDistribution.Type distribution;
+
+    /**
+     * Constructor of the profile
+     *
+     * @param description  description of the profile
+     * @param reads        share of the reads
+     * @param updates      share of the updates
+     * @param distribution distribution of the requested keys
+     */
+    WorkloadProfile(String description, double reads, double updates, KeyDistribution.Type distribution) {
+        this.description = description;
+        this.reads = reads;
+        this.updates = updates;
+        this.distribution = distribution;
+    }
+
+    /**
+     * Mix of the operations of the profile
+     *
+     * @param mode protocol the operations are performed with
+     * @return operation mix
+     */
+    public OperationMix mix(Mode mode) {
+        if (mode == Mode.CRITICAL) {
+            return new OperationMix(0, 0, this.reads, this.updates);
+        }
+        return new OperationMix(this.reads, this.updates, 0, 0);
+    }
+}
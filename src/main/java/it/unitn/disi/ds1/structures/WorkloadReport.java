@@ -0,0 +1,230 @@
+package it.unitn.disi.ds1.structures;
+
+import org.HdrHistogram.Histogram;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * Side-by-side report of runs of workload profiles: hit ratio at each level of the tree, load of the database and
+ * latency percentiles of each profile and protocol mode
+ */
+public class WorkloadReport {
+    /**
+     * Run of a profile
+     */
+    public static class Run {
+        /**
+         * Profile of the run
+         */
+        public final WorkloadProfile profile;
+
+        /**
+         * Protocol mode of the run
+         */
+        public final WorkloadProfile.Mode mode;
+
+        /**
+         * Report of the load generator
+         */
+        public final LoadReport load;
+
+        /**
+         * Merged metrics of the clients, of the L2 caches, of the L1 caches and of the database, null if missing
+         */
+        public final Metrics clients, l2, l1, database;
+
+        /**
+         * Constructor of the run
+         *
+         * @param profile  profile of the run
+         * @param mode     protocol mode of the run
+         * @param load     report of the load generator
+         * @param clients  merged metrics of the clients
+         * @param l2       merged metrics of the L2 caches
+         * @param l1       merged metrics of the L1 caches
+         * @param database metrics of the database
+         */
+        public Run(WorkloadProfile profile, WorkloadProfile.Mode mode, LoadReport load, Metrics clients, Metrics l2,
+                   Metrics l1, Metrics database) {
+            this.profile = profile;
+            this.mode = mode;
+            this.load = load;
+            this.clients = clients;
+            this.l2 = l2;
+            this.l1 = l1;
+            this.database = database;
+        }
+
+        /**
+         * Name of the run
+         *
+         * @return profile and mode
+         */
+        public String name() {
+            return this.profile + "/" + this.mode;
+        }
+
+        /**
+         * Reads served by the database per second
+         *
+         * @return reads per second, NaN if the metrics of the database are missing
+         */
+        public double databaseReads() {
+            return this.perSecond(this.database == null ? -1 : this.database.count(Metrics.Counter.HITS));
+        }
+
+        /**
+         * Writes handled by the database per second, either applied, committed or aborted
+         *
+         * @return writes per second, NaN if the metrics of the database are missing
+         */
+        public double databaseWrites() {
+            return this.perSecond(this.database == null ? -1 : this.database.count(Metrics.Counter.WRITES) +
+                    this.database.count(Metrics.Counter.COMMITS) + this.database.count(Metrics.Counter.ABORTS));
+        }
+
+        /**
+         * Rate of events over the run
+         *
+         * @param count number of events, negative if unknown
+         * @return events per second
+         */
+        private double perSecond(long count) {
+            if (count < 0 || this.load.elapsedMillis() <= 0) {
+                return Double.NaN;
+            }
+            return count * 1000.0 / this.load.elapsedMillis();
+        }
+    }
+
+    /**
+     * Runs of the report, in order of execution
+     */
+    private final List<Run> runs = new ArrayList<>();
+
+    /**
+     * Add a run to the report
+     *
+     * @param run run of a profile
+     */
+    public void add(Run run) {
+        this.runs.add(run);
+    }
+
+    /**
+     * Runs of the report
+     *
+     * @return runs, in order of execution
+     */
+    public List<Run> runs() {
+        return Collections.unmodifiableList(this.runs);
+    }
+
+    /**
+     * Hit ratio of a level of the tree
+     *
+     * @param metrics merged metrics of the level
+     * @return hits over the reads of the level, NaN if the level has not served any read
+     */
+    public static double hitRatio(Metrics metrics) {
+        if (metrics == null) {
+            return Double.NaN;
+        }
+        long reads = metrics.count(Metrics.Counter.HITS) + metrics.count(Metrics.Counter.MISSES);
+        return reads == 0 ? Double.NaN : (double) metrics.count(Metrics.Counter.HITS) / reads;
+    }
+
+    /**
+     * Print the report as a table with a column for each run
+     *
+     * @return table of the report
+     */
+    public String toTable() {
+        StringBuilder table = new StringBuilder();
+        this.row(table, "", Run::name);
+        this.row(table, "target rate (ops/s)", run -> format(run.load.targetRate));
+        this.row(table, "throughput (ops/s)", run -> format(run.load.throughput()));
+        this.row(table, "client hit ratio", run -> format(hitRatio(run.clients)));
+        this.row(table, "L2 hit ratio", run -> format(hitRatio(run.l2)));
+        this.row(table, "L1 hit ratio", run -> format(hitRatio(run.l1)));
+        this.row(table, "database reads/s", run -> format(run.databaseReads()));
+        this.row(table, "database writes/s", run -> format(run.databaseWrites()));
+        this.row(table, "latency p50 (ms)", run -> format(percentile(run.load.latency(), 50)));
+        this.row(table, "latency p99 (ms)", run -> format(percentile(run.load.latency(), 99)));
+        this.row(table, "latency p99.9 (ms)", run -> format(percentile(run.load.latency(), 99.9)));
+        this.row(table, "failed", run -> String.valueOf(run.load.count(LoadReport.Outcome.FAILED)));
+        this.row(table, "timed out", run -> String.valueOf(run.load.count(LoadReport.Outcome.TIMED_OUT)));
+        return table.toString();
+    }
+
+    /**
+     * Encode the report in JSON, as an array with an object for each run
+     *
+     * @return JSON array of the runs
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder("[");
+        for (Run run : this.runs) {
+            json.append(json.length() > 1 ? "," : "")
+                    .append("{\"profile\":\"").append(run.profile).append('"')
+                    .append(",\"mode\":\"").append(run.mode).append('"')
+                    .append(",\"hitRatio\":{\"client\":").append(jsonNumber(hitRatio(run.clients)))
+                    .append(",\"L2\":").append(jsonNumber(hitRatio(run.l2)))
+                    .append(",\"L1\":").append(jsonNumber(hitRatio(run.l1)))
+                    .append("},\"database\":{\"readsPerSecond\":").append(jsonNumber(run.databaseReads()))
+                    .append(",\"writesPerSecond\":").append(jsonNumber(run.databaseWrites()))
+                    .append("},\"load\":").append(run.load.toJson()).append('}');
+        }
+        return json.append(']').toString();
+    }
+
+    /**
+     * Append a row to the table
+     *
+     * @param table table
+     * @param label label of the row
+     * @param cell  value of the row for each run
+     */
+    private void row(StringBuilder table, String label, Function<Run, String> cell) {
+        table.append(String.format(Locale.ROOT, "%-20s", label));
+        for (Run run : this.runs) {
+            table.append(String.format(Locale.ROOT, "%14s", cell.apply(run)));
+        }
+        table.append('\n');
+    }
+
+    /**
+     * Latency percentile in milliseconds
+     *
+     * @param histogram  latencies in microseconds
+     * @param percentile percentile
+     * @return latency in milliseconds, NaN if the histogram is empty
+     */
+    private static double percentile(Histogram histogram, double percentile) {
+        return histogram.getTotalCount() == 0 ? Double.NaN : histogram.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    /**
+     * Format a number for the table
+     *
+     * @param value number
+     * @return number with two decimals, or - if unknown
+     */
+    private static String format(double value) {
+        return Double.isNaN(value) ? "-" : String.format(Locale.ROOT, "%.2f", value);
+    }
+
+    /**
+     * Format a number for JSON
+     *
+     * @param value number
+     * @return number with three decimals, or null if unknown
+     */
+    private static String jsonNumber(double value) {
+        return Double.isNaN(value) ? "null" : String.format(Locale.ROOT, "%.3f", value);
+    }
+}
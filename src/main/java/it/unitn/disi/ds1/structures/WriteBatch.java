@@ -0,0 +1,83 @@
+package it.unitn.disi.ds1.structures;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Write updates waiting to be propagated to a single child
+ * <p>
+ * Repeated updates of the same key collapse into the one with the highest sequence number
+ */
+public class WriteBatch {
+    /**
+     * Updated values
+     */
+    public final Map<Integer, Integer> values;
+
+    /**
+     * Sequence numbers of the updated values
+     */
+    public final Map<Integer, Integer> seqnos;
+
+    /**
+     * UUID of the write which produced each updated value
+     */
+    public final Map<Integer, UUID> queryUUIDs;
+
+    /**
+     * Constructor of an empty batch
+     */
+    public WriteBatch() {
+        this.values = new HashMap<>();
+        this.seqnos = new HashMap<>();
+        this.queryUUIDs = new HashMap<>();
+    }
+
+    /**
+     * Add an update to the batch, unless the batch already holds a newer one for the same key
+     *
+     * @param key       updated key
+     * @param value     updated value
+     * @param seqno     sequence number of the update
+     * @param queryUUID UUID of the write
+     */
+    public void put(int key, int value, int seqno, UUID queryUUID) {
+        Integer currentSeqno = this.seqnos.get(key);
+        if (currentSeqno != null && currentSeqno >= seqno) {
+            return;
+        }
+        this.values.put(key, value);
+        this.seqnos.put(key, seqno);
+        this.queryUUIDs.put(key, queryUUID);
+    }
+
+    /**
+     * Remove the update of a key from the batch
+     *
+     * @param key key to remove
+     */
+    public void remove(int key) {
+        this.values.remove(key);
+        this.seqnos.remove(key);
+        this.queryUUIDs.remove(key);
+    }
+
+    /**
+     * Number of updates in the batch
+     *
+     * @return number of distinct keys
+     */
+    public int size() {
+        return this.values.size();
+    }
+
+    /**
+     * Whether the batch is empty
+     *
+     * @return true if there is nothing to propagate
+     */
+    public boolean isEmpty() {
+        return this.values.isEmpty();
+    }
+}
@@ -0,0 +1,46 @@
+package it.unitn.disi.ds1;
+
+import it.unitn.disi.ds1.structures.CountingBloomFilter;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the counting Bloom filter employed for the database summaries
+ */
+public class CountingBloomFilterTest {
+
+    @DisplayName("Testing that added keys are never reported as missing")
+    @Test
+    void testNoFalseNegatives() {
+        CountingBloomFilter filter = new CountingBloomFilter(Config.SUMMARY_FILTER_SIZE, Config.SUMMARY_FILTER_HASHES);
+        for (int key = 0; key < 100; key++) {
+            filter.add(key);
+        }
+        for (int key = 0; key < 100; key++) {
+            assertTrue(filter.mightContain(key), "False negative for key " + key);
+        }
+    }
+
+    @DisplayName("Testing that removing a key keeps the other keys")
+    @Test
+    void testRemove() {
+        CountingBloomFilter filter = new CountingBloomFilter(Config.SUMMARY_FILTER_SIZE, Config.SUMMARY_FILTER_HASHES);
+        filter.add(1);
+        filter.add(2);
+        filter.add(2);
+        filter.remove(1);
+        filter.remove(2);
+        assertFalse(filter.mightContain(1), "Removed key still in the filter");
+        assertTrue(filter.mightContain(2), "Key added twice and removed once is missing");
+
+        // Removing keys which are not in the filter does not affect it
+        filter.remove(3);
+        assertTrue(filter.mightContain(2), "Removing a missing key affected the filter");
+
+        filter.clear();
+        assertFalse(filter.mightContain(2), "Cleared filter still contains keys");
+    }
+}
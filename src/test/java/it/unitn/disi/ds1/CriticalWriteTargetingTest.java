@@ -0,0 +1,145 @@
+package it.unitn.disi.ds1;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.testkit.javadsl.TestKit;
+import it.unitn.disi.ds1.actors.Cache;
+import it.unitn.disi.ds1.messages.CriticalUpdateMessage;
+import it.unitn.disi.ds1.messages.CriticalUpdateResponseMessage;
+import it.unitn.disi.ds1.messages.CriticalWriteResponseMessage;
+import it.unitn.disi.ds1.messages.JoinCachesMessage;
+import it.unitn.disi.ds1.messages.ReadMessage;
+import it.unitn.disi.ds1.messages.RecoveryMessage;
+import it.unitn.disi.ds1.messages.ResponseMessage;
+import it.unitn.disi.ds1.messages.ResyncRequestMessage;
+import it.unitn.disi.ds1.messages.SummaryUpdateMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests of the children of an L1 cache taking part in a critical write
+ * <p>
+ * The database and the L2 caches are probes, so that the messages of the L1 cache can be checked one by one
+ */
+public class CriticalWriteTargetingTest {
+    /**
+     * Time during which a probe must not receive anything
+     */
+    private static final Duration QUIET = Duration.ofMillis(300);
+
+    private ActorSystem system;
+    private TestKit database;
+    private TestKit firstChild;
+    private TestKit secondChild;
+    private ActorRef l1;
+    /**
+     * Hops of the critical writes, which come from another L1 cache
+     */
+    private List<ActorRef> hops;
+
+    @BeforeEach
+    void resetState() {
+        Helper.clearLogFile("logs.txt");
+        Utils.initializeLogger();
+        this.system = Utils.createActorSystem();
+        this.database = new TestKit(this.system);
+        this.firstChild = new TestKit(this.system);
+        this.secondChild = new TestKit(this.system);
+        this.database.ignoreMsg(msg -> !(msg instanceof SummaryUpdateMessage || msg instanceof ReadMessage ||
+                msg instanceof ResyncRequestMessage || msg instanceof CriticalUpdateResponseMessage));
+        this.firstChild.ignoreMsg(msg -> !(msg instanceof ResponseMessage || msg instanceof CriticalUpdateMessage ||
+                msg instanceof CriticalWriteResponseMessage));
+        this.secondChild.ignoreMsg(msg -> !(msg instanceof ResponseMessage || msg instanceof CriticalUpdateMessage ||
+                msg instanceof CriticalWriteResponseMessage));
+        this.hops = Collections.singletonList(new TestKit(this.system).getRef());
+
+        this.l1 = this.system.actorOf(Cache.props(1, this.database.getRef(), this.database.getRef()),
+                "l1-cache-0-1");
+        this.l1.tell(new JoinCachesMessage(Arrays.asList(this.firstChild.getRef(), this.secondChild.getRef())),
+                ActorRef.noSender());
+    }
+
+    @AfterEach
+    void shutdown() {
+        TestKit.shutdownActorSystem(this.system);
+    }
+
+    @DisplayName("Testing that the prepare and the commit of a critical write reach only the children storing the key")
+    @Test
+    void testTargetedCriticalWrite() {
+        Helper.readThroughL1(this.l1, this.database, this.firstChild, 1, 10, 0);
+
+        UUID uuid = UUID.randomUUID();
+        this.l1.tell(new CriticalUpdateMessage(1, 99, uuid, this.hops), this.database.getRef());
+        CriticalUpdateMessage prepare = this.firstChild.expectMsgClass(Helper.WAIT, CriticalUpdateMessage.class);
+        assertEquals(99, prepare.updatedValue, "Wrong value prepared");
+        this.secondChild.expectNoMessage(QUIET);
+
+        this.l1.tell(new CriticalUpdateResponseMessage(Config.CUResponse.OK, uuid, this.hops),
+                this.firstChild.getRef());
+        CriticalUpdateResponseMessage vote = this.database.expectMsgClass(Helper.WAIT,
+                CriticalUpdateResponseMessage.class);
+        assertEquals(Config.CUResponse.OK, vote.response, "Wrong vote of the L1 cache");
+
+        this.l1.tell(new CriticalWriteResponseMessage(Config.ACResponse.COMMIT, uuid, this.hops, 1, 99, 1),
+                this.database.getRef());
+        CriticalWriteResponseMessage commit = this.firstChild.expectMsgClass(Helper.WAIT,
+                CriticalWriteResponseMessage.class);
+        assertEquals(Config.ACResponse.COMMIT, commit.finalDecision, "Wrong decision");
+        this.secondChild.expectNoMessage(QUIET);
+    }
+
+    @DisplayName("Testing that an L1 cache votes right away for a critical write on a key no child stores")
+    @Test
+    void testUninvolvedChildren() {
+        UUID uuid = UUID.randomUUID();
+        this.l1.tell(new CriticalUpdateMessage(5, 99, uuid, this.hops), this.database.getRef());
+        CriticalUpdateResponseMessage vote = this.database.expectMsgClass(Helper.WAIT,
+                CriticalUpdateResponseMessage.class);
+        assertEquals(Config.CUResponse.OK, vote.response, "Wrong vote of the L1 cache");
+
+        this.l1.tell(new CriticalWriteResponseMessage(Config.ACResponse.COMMIT, uuid, this.hops, 5, 99, 1),
+                this.database.getRef());
+        this.firstChild.expectNoMessage(QUIET);
+        this.secondChild.expectNoMessage(QUIET);
+    }
+
+    @DisplayName("Testing that a resyncing L1 cache involves all its children in a critical write")
+    @Test
+    void testResyncingCriticalWrite() {
+        Helper.readThroughL1(this.l1, this.database, this.firstChild, 1, 10, 0);
+
+        // The database does not answer the resync yet
+        this.l1.tell(new RecoveryMessage(), ActorRef.noSender());
+        this.database.expectMsgClass(Helper.WAIT, ResyncRequestMessage.class);
+
+        UUID uuid = UUID.randomUUID();
+        this.l1.tell(new CriticalUpdateMessage(1, 99, uuid, this.hops), this.database.getRef());
+        this.firstChild.expectMsgClass(Helper.WAIT, CriticalUpdateMessage.class);
+        this.secondChild.expectMsgClass(Helper.WAIT, CriticalUpdateMessage.class);
+
+        this.l1.tell(new CriticalUpdateResponseMessage(Config.CUResponse.OK, uuid, this.hops),
+                this.firstChild.getRef());
+        this.database.expectNoMessage(QUIET);
+        this.l1.tell(new CriticalUpdateResponseMessage(Config.CUResponse.OK, uuid, this.hops),
+                this.secondChild.getRef());
+        CriticalUpdateResponseMessage vote = this.database.expectMsgClass(Helper.WAIT,
+                CriticalUpdateResponseMessage.class);
+        assertEquals(Config.CUResponse.OK, vote.response, "Wrong vote of the L1 cache");
+
+        this.l1.tell(new CriticalWriteResponseMessage(Config.ACResponse.COMMIT, uuid, this.hops, 1, 99, 1),
+                this.database.getRef());
+        this.firstChild.expectMsgClass(Helper.WAIT, CriticalWriteResponseMessage.class);
+        this.secondChild.expectMsgClass(Helper.WAIT, CriticalWriteResponseMessage.class);
+    }
+}
@@ -0,0 +1,99 @@
+package it.unitn.disi.ds1;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.testkit.javadsl.TestKit;
+import it.unitn.disi.ds1.actors.Database;
+import it.unitn.disi.ds1.messages.CriticalUpdateMessage;
+import it.unitn.disi.ds1.messages.CriticalWriteResponseMessage;
+import it.unitn.disi.ds1.messages.JoinCachesMessage;
+import it.unitn.disi.ds1.messages.ResponseMessage;
+import it.unitn.disi.ds1.messages.SummaryUpdateMessage;
+import it.unitn.disi.ds1.messages.WriteMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Tests of the critical writes the database aborts since an L1 cache has not voted in time
+ * <p>
+ * The L1 caches are probes, so that the messages of the database can be checked one by one
+ */
+public class CriticalWriteTimeoutTest {
+    /**
+     * Key of the tests
+     */
+    private static final int KEY = 3;
+
+    private ActorSystem system;
+    private TestKit voter;
+    private TestKit writer;
+    private ActorRef database;
+
+    @BeforeEach
+    void resetState() {
+        Helper.clearLogFile("logs.txt");
+        Utils.initializeLogger();
+        this.system = Utils.createActorSystem();
+        this.voter = new TestKit(this.system);
+        this.writer = new TestKit(this.system);
+        this.voter.ignoreMsg(msg -> !(msg instanceof CriticalUpdateMessage ||
+                msg instanceof CriticalWriteResponseMessage));
+        this.writer.ignoreMsg(msg -> !(msg instanceof ResponseMessage || msg instanceof CriticalUpdateMessage ||
+                msg instanceof CriticalWriteResponseMessage));
+
+        this.database = this.system.actorOf(Database.props(0, Utils.createDatabase()), "database-0");
+        this.database.tell(new JoinCachesMessage(Arrays.asList(this.voter.getRef(), this.writer.getRef())),
+                ActorRef.noSender());
+        // Both caches store the key, hence both take part in the critical writes on it
+        for (TestKit cache : Arrays.asList(this.voter, this.writer)) {
+            this.database.tell(new SummaryUpdateMessage(Collections.singleton(KEY), Collections.emptySet()),
+                    cache.getRef());
+        }
+    }
+
+    @AfterEach
+    void shutdown() {
+        TestKit.shutdownActorSystem(this.system);
+    }
+
+    @DisplayName("Testing that the key of a critical write aborted by a timeout can be written afterwards")
+    @Test
+    void testWriteAfterTimeoutAbort() {
+        this.write(true, 99);
+        this.voter.expectMsgClass(Helper.WAIT, CriticalUpdateMessage.class);
+        this.writer.expectMsgClass(Helper.WAIT, CriticalUpdateMessage.class);
+
+        // No cache votes, hence the database aborts once the critical write times out
+        Duration abortWait = Duration.ofMillis(2L * Config.CRIT_WRITE_TIME_OUT_MAX);
+        assertEquals(Config.ACResponse.ABORT,
+                this.voter.expectMsgClass(abortWait, CriticalWriteResponseMessage.class).finalDecision,
+                "Critical write not aborted");
+        this.writer.expectMsgClass(Helper.WAIT, CriticalWriteResponseMessage.class);
+
+        this.write(false, 42);
+        ResponseMessage response = this.writer.expectMsgClass(Helper.WAIT, ResponseMessage.class);
+        assertNotNull(response.values, "The key is still locked by the aborted critical write");
+        assertEquals(42, response.values.get(KEY), "Wrong value written");
+    }
+
+    /**
+     * Write the key of the tests on behalf of the writer L1 cache, without waiting for the response
+     *
+     * @param isCritical whether the write is critical
+     * @param value      value to write
+     */
+    private void write(boolean isCritical, int value) {
+        this.database.tell(new WriteMessage(KEY, value, Collections.singletonList(this.writer.getRef()),
+                UUID.randomUUID(), isCritical), this.writer.getRef());
+    }
+}
@@ -1,7 +1,9 @@
 package it.unitn.disi.ds1;
 
 import akka.actor.ActorSystem;
+import akka.testkit.javadsl.TestKit;
 import it.unitn.disi.ds1.structures.Architecture;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.RepeatedTest;
@@ -67,6 +69,11 @@ public class ECAutonomousExecution {
         Logger.logDatabase(this.database);
     }
 
+    @AfterEach
+    void shutdown() {
+        TestKit.shutdownActorSystem(this.system);
+    }
+
     @DisplayName("Testing the the program with random message exchanges without crashes for 5 times")
     @RepeatedTest(value = 5, name = "Repeat testMultipleRunWithoutCrash {currentRepetition} of {totalRepetitions}")
     void testMultipleRunWithoutCrash() {
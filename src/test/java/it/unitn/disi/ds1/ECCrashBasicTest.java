@@ -2,10 +2,12 @@ package it.unitn.disi.ds1;
 
 import akka.actor.ActorRef;
 import akka.actor.ActorSystem;
+import akka.testkit.javadsl.TestKit;
 import it.unitn.disi.ds1.messages.CrashMessage;
 import it.unitn.disi.ds1.messages.ReadMessage;
 import it.unitn.disi.ds1.messages.WriteMessage;
 import it.unitn.disi.ds1.structures.Architecture;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -47,6 +49,11 @@ public class ECCrashBasicTest {
         Logger.logDatabase(this.database);
     }
 
+    @AfterEach
+    void shutdown() {
+        TestKit.shutdownActorSystem(this.system);
+    }
+
     @DisplayName("Testing the READ functionality, crash L2 before read")
     @ParameterizedTest
     @ValueSource(ints = {2000})
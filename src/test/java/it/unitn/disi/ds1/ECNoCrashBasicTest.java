@@ -2,9 +2,11 @@ package it.unitn.disi.ds1;
 
 import akka.actor.ActorRef;
 import akka.actor.ActorSystem;
+import akka.testkit.javadsl.TestKit;
 import it.unitn.disi.ds1.messages.ReadMessage;
 import it.unitn.disi.ds1.messages.WriteMessage;
 import it.unitn.disi.ds1.structures.Architecture;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -45,6 +47,11 @@ public class ECNoCrashBasicTest {
         Logger.logDatabase(this.database);
     }
 
+    @AfterEach
+    void shutdown() {
+        TestKit.shutdownActorSystem(this.system);
+    }
+
     @DisplayName("Testing the READ functionality")
     @ParameterizedTest
     @ValueSource(ints = {500})
@@ -0,0 +1,74 @@
+package it.unitn.disi.ds1;
+
+import it.unitn.disi.ds1.structures.FailoverReport;
+import it.unitn.disi.ds1.structures.KeyDistribution;
+import it.unitn.disi.ds1.structures.LoadReport;
+import it.unitn.disi.ds1.structures.OperationMix;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the failover benchmark, run by the perfTest task instead of the test one
+ */
+@Tag("performance")
+public class FailoverBenchmarkTest {
+    @DisplayName("Testing the degradation and recovery times computed from the timeline of a scenario")
+    @Test
+    void testScenario() {
+        LoadReport load = new LoadReport(10, 4, KeyDistribution.Type.UNIFORM, OperationMix.parse("100,0,0,0"));
+        load.record(Config.RequestType.READ, 0, LoadReport.Outcome.FAILED, 500);
+        load.record(Config.RequestType.READ, 0, LoadReport.Outcome.SUCCEEDED, 1050);
+        load.record(Config.RequestType.READ, 0, LoadReport.Outcome.FAILED, 1250);
+        load.record(Config.RequestType.READ, 0, LoadReport.Outcome.SUCCEEDED, 1300);
+        load.record(Config.RequestType.READ, 0, LoadReport.Outcome.TIMED_OUT, 1720);
+        load.record(Config.RequestType.READ, 0, LoadReport.Outcome.SUCCEEDED, 2010);
+        assertEquals(1, load.timeline(LoadReport.Outcome.TIMED_OUT)[17], "Wrong interval of the timeline");
+
+        FailoverReport.Scenario scenario = new FailoverReport.Scenario(Config.CrashType.L2_BEFORE_READ,
+                "l2-cache", true, 1000, load, Arrays.asList(
+                new FailoverReport.Sample(-250, 0.5),
+                new FailoverReport.Sample(0, 0.8),
+                new FailoverReport.Sample(250, 0.2),
+                new FailoverReport.Sample(500, 0.7),
+                new FailoverReport.Sample(750, 0.75)));
+
+        // The error before the injection is not due to the crash
+        assertEquals(300, scenario.firstErrorMillis(), "Wrong time to the first error");
+        assertEquals(400, scenario.firstSuccessMillis(), "Wrong time to the first success");
+        assertEquals(800, scenario.lastErrorMillis(), "Wrong time to the last error");
+        assertEquals(1, scenario.count(LoadReport.Outcome.FAILED), "Wrong number of failed operations");
+        assertEquals(0.6, scenario.availability(), 1e-9, "Wrong availability");
+        assertEquals(0.8, scenario.baselineHitRatio(), 1e-9, "Wrong baseline hit ratio");
+        assertEquals(0.2, scenario.minHitRatio(), 1e-9, "Wrong lowest hit ratio");
+        assertEquals(750, scenario.hitRatioRecoveredMillis(), "Wrong time to warm up again");
+    }
+
+    @DisplayName("Testing that the benchmark crashes a cache under load for each crash type")
+    @Test
+    void testBenchmark() {
+        Helper.clearLogFile("logs.txt");
+        Utils.initializeLogger();
+        FailoverReport report = new FailoverBenchmark(1, 2, 2, 30, 5, KeyDistribution.Type.UNIFORM,
+                OperationMix.parse("100,0,0,0")).run(Arrays.asList(Config.CrashType.L1_BEFORE_READ,
+                Config.CrashType.L2_BEFORE_READ));
+        assertEquals(2, report.scenarios().size(), "Missing scenarios");
+
+        for (FailoverReport.Scenario scenario : report.scenarios()) {
+            assertTrue(scenario.crashed, scenario.crashType + " has not crashed");
+            assertEquals(150, scenario.load.scheduled(), "Wrong number of scheduled operations");
+            assertTrue(scenario.samples.get(0).millis < 0, "Missing samples before the crash");
+            assertTrue(scenario.samples.get(scenario.samples.size() - 1).millis > 0,
+                    "Missing samples after the crash");
+        }
+        assertTrue(report.scenarios().get(0).target.startsWith("l1-cache"), "Wrong crashed cache");
+        assertTrue(report.scenarios().get(1).target.startsWith("l2-cache"), "Wrong crashed cache");
+        assertTrue(report.toTable().contains("L2_BEFORE_READ"), "Missing scenario in the table");
+        assertTrue(report.toJson().startsWith("[{\"crash\":\"L1_BEFORE_READ\""), "Missing scenario in the JSON");
+    }
+}
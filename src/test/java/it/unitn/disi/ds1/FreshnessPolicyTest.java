@@ -0,0 +1,37 @@
+package it.unitn.disi.ds1;
+
+import it.unitn.disi.ds1.structures.FreshnessPolicy;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the freshness policy of the cached entries
+ */
+public class FreshnessPolicyTest {
+
+    @DisplayName("Testing that the entries are refreshed after the soft time to live and expire after the hard one")
+    @Test
+    void testTimeToLive() {
+        FreshnessPolicy policy = new FreshnessPolicy(1000, 5000, 1.0);
+        assertFalse(policy.shouldRefresh(999, 0, 0.5), "Fresh entry refreshed");
+        assertTrue(policy.shouldRefresh(1000, 0, 0.5), "Stale entry not refreshed");
+        assertFalse(policy.isExpired(5000), "Entry expired too early");
+        assertTrue(policy.isExpired(5001), "Entry not expired");
+    }
+
+    @DisplayName("Testing that the early refreshes become likelier with the age and the refresh time")
+    @Test
+    void testEarlyRefresh() {
+        FreshnessPolicy policy = new FreshnessPolicy(1000, 5000, 1.0);
+        // -ln(0.1) is about 2.3, hence the refresh starts 230 ms earlier
+        assertTrue(policy.shouldRefresh(800, 100, 0.1), "Unlucky draw not refreshed early");
+        assertFalse(policy.shouldRefresh(700, 100, 0.1), "Entry refreshed too early");
+        // A lucky draw does not refresh early
+        assertFalse(policy.shouldRefresh(990, 100, 1.0), "Lucky draw refreshed early");
+        // Slower refreshes start earlier
+        assertTrue(policy.shouldRefresh(700, 200, 0.1), "Slow refresh not started early");
+    }
+}
@@ -0,0 +1,254 @@
+package it.unitn.disi.ds1;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.testkit.TestActor;
+import akka.testkit.javadsl.TestKit;
+import it.unitn.disi.ds1.actors.Cache;
+import it.unitn.disi.ds1.actors.Client;
+import it.unitn.disi.ds1.messages.HeartbeatMessage;
+import it.unitn.disi.ds1.messages.JoinCachesMessage;
+import it.unitn.disi.ds1.messages.OperationCompletedMessage;
+import it.unitn.disi.ds1.messages.ReadMessage;
+import it.unitn.disi.ds1.messages.ResponseMessage;
+import it.unitn.disi.ds1.messages.UnavailableMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the failover of the clients when an L2 cache detects the crash of its parent through heartbeats
+ */
+public class HeartbeatFailoverTest {
+    /**
+     * Key of the tests
+     */
+    private static final int KEY = 3;
+
+    /**
+     * Milliseconds between two heartbeats, which are disabled by default
+     */
+    private static final int HEARTBEAT_INTERVAL_MS = 100;
+
+    /**
+     * Number of reads after which a cache chosen at random has been asked at least once, but for a negligible chance
+     */
+    private static final int READS = 20;
+
+    private ActorSystem system;
+
+    /**
+     * Request received by a probe cache
+     */
+    private static class Request {
+        final ActorRef cache;
+        final ReadMessage msg;
+
+        Request(ActorRef cache, ReadMessage msg) {
+            this.cache = cache;
+            this.msg = msg;
+        }
+    }
+
+    @BeforeEach
+    void resetState() {
+        Helper.clearLogFile("logs.txt");
+        Utils.initializeLogger();
+        this.system = Utils.createActorSystem();
+    }
+
+    @AfterEach
+    void shutdown() {
+        TestKit.shutdownActorSystem(this.system);
+    }
+
+    @DisplayName("Testing that an L2 cache suspecting its parent refuses the requests, and serves them once it is back")
+    @Test
+    void testRefuseAndReturnToParent() {
+        TestKit parent = new TestKit(this.system);
+        TestKit database = new TestKit(this.system);
+        TestKit client = new TestKit(this.system);
+        parent.ignoreMsg(msg -> !(msg instanceof ReadMessage));
+        database.ignoreMsg(msg -> true);
+        client.ignoreMsg(msg -> !(msg instanceof UnavailableMessage || msg instanceof ResponseMessage));
+        ActorRef l2 = this.system.actorOf(Cache.props(1, parent.getRef(), database.getRef(), HEARTBEAT_INTERVAL_MS),
+                "l2-cache-0-1");
+
+        // The parent heartbeats for a while, then it crashes and the cache suspects it within a few intervals
+        for (int i = 0; i < 10; i++) {
+            l2.tell(new HeartbeatMessage(), parent.getRef());
+            Utils.timeout(HEARTBEAT_INTERVAL_MS);
+        }
+        Utils.timeout(2 * Config.L2_TIMEOUT);
+
+        // The request is refused right away, without being forwarded to the parent
+        UUID uuid = this.read(l2, client);
+        UnavailableMessage refusal = client.expectMsgClass(Duration.ofMillis(Config.L2_TIMEOUT_MIN),
+                UnavailableMessage.class);
+        assertEquals(uuid, ((ReadMessage) refusal.request).queryUUID, "Wrong request refused");
+        parent.expectNoMessage(Duration.ofMillis(HEARTBEAT_INTERVAL_MS));
+
+        // Once the parent heartbeats again, the cache forwards the requests to it
+        l2.tell(new HeartbeatMessage(), parent.getRef());
+        uuid = this.read(l2, client);
+        assertEquals(uuid, parent.expectMsgClass(Helper.WAIT, ReadMessage.class).queryUUID,
+                "Request not forwarded to the original parent");
+        client.expectNoMessage(Duration.ofMillis(HEARTBEAT_INTERVAL_MS));
+    }
+
+    @DisplayName("Testing that a client asks another cache after a refusal, without forgetting the refusing cache")
+    @Test
+    void testClientFailover() {
+        BlockingQueue<Request> requests = new LinkedBlockingQueue<>();
+        AtomicBoolean refusing = new AtomicBoolean(true);
+        ActorRef unavailable = this.probeCache(requests, refusing);
+        ActorRef available = this.probeCache(requests, new AtomicBoolean(false));
+        ActorRef clientActor = this.system.actorOf(Client.props(0), "client-0");
+        clientActor.tell(new JoinCachesMessage(Arrays.asList(unavailable, available)), ActorRef.noSender());
+
+        int refusals = 0;
+        for (int i = 0; i < READS; i++) {
+            clientActor.tell(new ReadMessage(KEY, Collections.emptyList(), null, false, -1), ActorRef.noSender());
+            Request request = this.nextRequest(requests, Config.CLIENT_TIMEOUT_MIN);
+            if (request.cache.equals(unavailable)) {
+                refusals++;
+                // The refused read is sent to the other cache, well before the client times out
+                Request retry = this.nextRequest(requests, Config.CLIENT_TIMEOUT_MIN / 2);
+                assertEquals(available, retry.cache, "Refused read not sent to the other cache");
+                assertNotEquals(request.msg.queryUUID, retry.msg.queryUUID, "Retry with the same request ID");
+            }
+            // The response of the available cache completes the read
+            this.expectNoRequest(requests, HEARTBEAT_INTERVAL_MS);
+        }
+        assertTrue(refusals > 0, "The unavailable cache has never been asked");
+
+        // The cache is back to its parent, and the client still asks it
+        refusing.set(false);
+        boolean asked = false;
+        for (int i = 0; i < READS && !asked; i++) {
+            clientActor.tell(new ReadMessage(KEY, Collections.emptyList(), null, false, -1), ActorRef.noSender());
+            asked = this.nextRequest(requests, Config.CLIENT_TIMEOUT_MIN).cache.equals(unavailable);
+            this.expectNoRequest(requests, HEARTBEAT_INTERVAL_MS);
+        }
+        assertTrue(asked, "The client has forgotten the cache which refused a read");
+    }
+
+    @DisplayName("Testing that a read refused by every cache fails, instead of being retried endlessly")
+    @Test
+    void testEveryCacheRefuses() {
+        BlockingQueue<Request> requests = new LinkedBlockingQueue<>();
+        ActorRef first = this.probeCache(requests, new AtomicBoolean(true));
+        ActorRef second = this.probeCache(requests, new AtomicBoolean(true));
+        ActorRef clientActor = this.system.actorOf(Client.props(0), "client-0");
+        clientActor.tell(new JoinCachesMessage(Arrays.asList(first, second)), ActorRef.noSender());
+
+        TestKit requester = new TestKit(this.system);
+        UUID operationUUID = UUID.randomUUID();
+        clientActor.tell(new ReadMessage(KEY, Collections.emptyList(), operationUUID, false, -1),
+                requester.getRef());
+        ActorRef firstAsked = this.nextRequest(requests, Config.CLIENT_TIMEOUT_MIN).cache;
+        assertNotEquals(firstAsked, this.nextRequest(requests, Config.CLIENT_TIMEOUT_MIN).cache,
+                "The refusing cache has been asked twice");
+        // The requester is told right away that the operation has failed
+        OperationCompletedMessage completed = requester.expectMsgClass(
+                Duration.ofMillis(Config.CLIENT_TIMEOUT_MIN), OperationCompletedMessage.class);
+        assertEquals(operationUUID, completed.operationUUID, "Wrong operation completed");
+        assertFalse(completed.succeeded, "Refused operation reported as succeeded");
+        // Not even the timeout of the client makes it retry
+        this.expectNoRequest(requests, 2 * Config.CLIENT_TIMEOUT_MIN);
+
+        // The client is free to perform another operation
+        clientActor.tell(new ReadMessage(KEY, Collections.emptyList(), null, false, -1), ActorRef.noSender());
+        this.nextRequest(requests, Config.CLIENT_TIMEOUT_MIN);
+    }
+
+    /**
+     * Send a read of the key of the tests to a cache on behalf of a probe client
+     *
+     * @param cache  cache to ask to
+     * @param client probe client
+     * @return ID of the request
+     */
+    private UUID read(ActorRef cache, TestKit client) {
+        UUID uuid = UUID.randomUUID();
+        cache.tell(new ReadMessage(KEY, Collections.singletonList(client.getRef()), uuid, false, -1),
+                client.getRef());
+        return uuid;
+    }
+
+    /**
+     * Create a probe L2 cache, which records the reads and either refuses them or serves them
+     *
+     * @param requests reads received by the probe caches
+     * @param refusing whether the cache refuses the reads
+     * @return probe cache
+     */
+    private ActorRef probeCache(BlockingQueue<Request> requests, AtomicBoolean refusing) {
+        TestKit cache = new TestKit(this.system);
+        cache.setAutoPilot(new TestActor.AutoPilot() {
+            @Override
+            public TestActor.AutoPilot run(ActorRef sender, Object msg) {
+                if (msg instanceof ReadMessage) {
+                    ReadMessage read = (ReadMessage) msg;
+                    requests.add(new Request(cache.getRef(), read));
+                    if (refusing.get()) {
+                        sender.tell(new UnavailableMessage(read), cache.getRef());
+                    } else {
+                        sender.tell(new ResponseMessage(Collections.singletonMap(KEY, 0), read.hops, read.queryUUID,
+                                Config.RequestType.READ, false, 0), cache.getRef());
+                    }
+                }
+                return this;
+            }
+        });
+        return cache.getRef();
+    }
+
+    /**
+     * Wait for the next read received by a probe cache
+     *
+     * @param requests reads received by the probe caches
+     * @param waitMs   longest wait in milliseconds
+     * @return read, together with the cache which has received it
+     */
+    private Request nextRequest(BlockingQueue<Request> requests, int waitMs) {
+        try {
+            Request request = requests.poll(waitMs, TimeUnit.MILLISECONDS);
+            assertNotNull(request, "No read received in " + waitMs + " ms");
+            return request;
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Check that the probe caches do not receive any read for a while
+     *
+     * @param requests reads received by the probe caches
+     * @param waitMs   milliseconds to wait
+     */
+    private void expectNoRequest(BlockingQueue<Request> requests, int waitMs) {
+        try {
+            assertNull(requests.poll(waitMs, TimeUnit.MILLISECONDS), "Unexpected read");
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package it.unitn.disi.ds1;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.testkit.TestActor;
+import akka.testkit.javadsl.TestKit;
+import it.unitn.disi.ds1.actors.Client;
+import it.unitn.disi.ds1.messages.JoinCachesMessage;
+import it.unitn.disi.ds1.messages.Message;
+import it.unitn.disi.ds1.messages.ReadMessage;
+import it.unitn.disi.ds1.messages.ResponseMessage;
+import it.unitn.disi.ds1.messages.WriteMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Tests of the hedged reads of a client, which are disabled by default
+ * <p>
+ * The caches are probes answering every request, until the first one stops answering. The reads are critical, so
+ * that they are never served by a cache of the client
+ */
+public class HedgedReadTest {
+    /**
+     * Key of the tests
+     */
+    private static final int KEY = 3;
+
+    /**
+     * Most operations the client is asked for once the first cache has stopped answering
+     */
+    private static final int MAX_OPERATIONS = 50;
+
+    /**
+     * Milliseconds a request may take to reach a probe cache
+     */
+    private static final int REQUEST_WAIT_MS = 200;
+
+    /**
+     * Milliseconds the client is given to process a response before being asked for the next operation
+     */
+    private static final int RESPONSE_WAIT_MS = 50;
+
+    /**
+     * Milliseconds within which a request which is not hedged is not sent again, since the client has not timed out
+     */
+    private static final int NO_RETRY_MS = Config.CLIENT_TIMEOUT_MIN - 2 * REQUEST_WAIT_MS;
+
+    private ActorSystem system;
+    private ActorRef slowCache;
+    private ActorRef fastCache;
+    /**
+     * Requests received by the probe caches
+     */
+    private BlockingQueue<Request> requests;
+    /**
+     * Whether the first cache has stopped answering
+     */
+    private AtomicBoolean silent;
+    /**
+     * Operations completed by the last call to operateUntilSlowCache
+     */
+    private int completedOperations;
+
+    /**
+     * Request received by a probe cache
+     */
+    private static class Request {
+        final ActorRef cache;
+        final Message msg;
+
+        Request(ActorRef cache, Message msg) {
+            this.cache = cache;
+            this.msg = msg;
+        }
+    }
+
+    @BeforeEach
+    void resetState() {
+        Helper.clearLogFile("logs.txt");
+        Utils.initializeLogger();
+        this.system = Utils.createActorSystem();
+        this.requests = new LinkedBlockingQueue<>();
+        this.silent = new AtomicBoolean(false);
+        this.slowCache = this.probeCache(true);
+        this.fastCache = this.probeCache(false);
+    }
+
+    @AfterEach
+    void shutdown() {
+        TestKit.shutdownActorSystem(this.system);
+    }
+
+    @DisplayName("Testing that a read sent to a cache which does not answer is hedged to another cache")
+    @Test
+    void testHedgedRead() {
+        ActorRef client = this.createClient(true);
+        this.warmUp(client, false);
+
+        this.silent.set(true);
+        ReadMessage read = (ReadMessage) this.operateUntilSlowCache(client, false).msg;
+        // A read which is not hedged waits for the client timeout before asking the other cache
+        Request hedge = this.nextRequest(NO_RETRY_MS);
+        assertEquals(this.fastCache, hedge.cache, "Read not hedged to the other cache");
+        assertEquals(KEY, ((ReadMessage) hedge.msg).requestKey, "Hedged read of the wrong key");
+        assertNotEquals(read.queryUUID, ((ReadMessage) hedge.msg).queryUUID, "Hedged read with the same request ID");
+    }
+
+    @DisplayName("Testing that a hedged read spends the budget, which the following reads earn back slowly")
+    @Test
+    void testHedgeBudget() {
+        ActorRef client = this.createClient(true);
+        this.warmUp(client, false);
+
+        this.silent.set(true);
+        this.operateUntilSlowCache(client, false);
+        assertEquals(this.fastCache, this.nextRequest(NO_RETRY_MS).cache, "Read not hedged");
+        Utils.timeout(RESPONSE_WAIT_MS);
+
+        this.operateUntilSlowCache(client, false);
+        // Each read earns a fraction of a hedged read
+        Assumptions.assumeTrue(this.completedOperations < 1 / Config.HEDGE_BUDGET - 1,
+                "The reads have earned another hedged read");
+        this.expectNoRequest(NO_RETRY_MS);
+    }
+
+    @DisplayName("Testing that the writes are never hedged")
+    @Test
+    void testWritesNotHedged() {
+        ActorRef client = this.createClient(true);
+        this.warmUp(client, false);
+        this.warmUp(client, true);
+
+        this.silent.set(true);
+        this.operateUntilSlowCache(client, true);
+        this.expectNoRequest(NO_RETRY_MS);
+    }
+
+    @DisplayName("Testing that a client does not hedge the reads unless it is told to")
+    @Test
+    void testDisabledHedging() {
+        ActorRef client = this.createClient(Config.HEDGED_READS);
+        this.warmUp(client, false);
+
+        this.silent.set(true);
+        this.operateUntilSlowCache(client, false);
+        this.expectNoRequest(NO_RETRY_MS);
+    }
+
+    /**
+     * Create a client connected to the probe caches
+     *
+     * @param hedgedReads whether the client hedges the slow reads
+     * @return client
+     */
+    private ActorRef createClient(boolean hedgedReads) {
+        ActorRef client = this.system.actorOf(Client.props(1, hedgedReads), "client-0-1");
+        client.tell(new JoinCachesMessage(Arrays.asList(this.slowCache, this.fastCache)), ActorRef.noSender());
+        return client;
+    }
+
+    /**
+     * Let the client observe enough latencies to hedge, and earn the budget of a hedged read
+     *
+     * @param client client
+     * @param write  whether the operations are writes
+     */
+    private void warmUp(ActorRef client, boolean write) {
+        for (int i = 0; i < 2 * Config.HEDGE_MIN_SAMPLES; i++) {
+            this.operate(client, write);
+            this.nextRequest(REQUEST_WAIT_MS);
+            Utils.timeout(RESPONSE_WAIT_MS);
+        }
+    }
+
+    /**
+     * Ask the client for operations until one of them reaches the cache which does not answer, and leave it
+     * in progress
+     *
+     * @param client client
+     * @param write  whether the operations are writes
+     * @return request received by the cache which does not answer
+     */
+    private Request operateUntilSlowCache(ActorRef client, boolean write) {
+        for (this.completedOperations = 0; this.completedOperations < MAX_OPERATIONS; this.completedOperations++) {
+            this.operate(client, write);
+            Request request = this.nextRequest(REQUEST_WAIT_MS);
+            if (request.cache.equals(this.slowCache)) {
+                return request;
+            }
+            Utils.timeout(RESPONSE_WAIT_MS);
+        }
+        fail("No request reached the cache which does not answer");
+        return null;
+    }
+
+    /**
+     * Ask the client for a critical read or for a write of the key of the tests
+     *
+     * @param client client
+     * @param write  whether the operation is a write
+     */
+    private void operate(ActorRef client, boolean write) {
+        if (write) {
+            client.tell(new WriteMessage(KEY, 10, Collections.emptyList(), UUID.randomUUID(), false),
+                    ActorRef.noSender());
+        } else {
+            client.tell(new ReadMessage(KEY, Collections.emptyList(), UUID.randomUUID(), true, -1),
+                    ActorRef.noSender());
+        }
+    }
+
+    /**
+     * Create a probe cache, which records the requests and answers them
+     *
+     * @param stopWhenSilent whether the cache stops answering once the tests tell it to
+     * @return probe cache
+     */
+    private ActorRef probeCache(boolean stopWhenSilent) {
+        TestKit cache = new TestKit(this.system);
+        cache.setAutoPilot(new TestActor.AutoPilot() {
+            @Override
+            public TestActor.AutoPilot run(ActorRef sender, Object msg) {
+                if (!(msg instanceof ReadMessage || msg instanceof WriteMessage)) {
+                    return this;
+                }
+                requests.add(new Request(cache.getRef(), (Message) msg));
+                if (stopWhenSilent && silent.get()) {
+                    return this;
+                }
+                if (msg instanceof ReadMessage) {
+                    ReadMessage read = (ReadMessage) msg;
+                    sender.tell(new ResponseMessage(Collections.singletonMap(read.requestKey, 10), read.hops,
+                            read.queryUUID, Config.RequestType.CRITREAD, true, 0), cache.getRef());
+                } else {
+                    WriteMessage write = (WriteMessage) msg;
+                    sender.tell(new ResponseMessage(Collections.singletonMap(write.requestKey, write.modifiedValue),
+                            write.hops, write.queryUUID, Config.RequestType.WRITE, false, 0), cache.getRef());
+                }
+                return this;
+            }
+        });
+        return cache.getRef();
+    }
+
+    /**
+     * Wait for the next request received by a probe cache
+     *
+     * @param waitMs longest wait in milliseconds
+     * @return request, together with the cache which has received it
+     */
+    private Request nextRequest(int waitMs) {
+        try {
+            Request request = this.requests.poll(waitMs, TimeUnit.MILLISECONDS);
+            assertNotNull(request, "No request received in " + waitMs + " ms");
+            return request;
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Check that the probe caches do not receive any request for a while
+     *
+     * @param waitMs milliseconds to wait
+     */
+    private void expectNoRequest(int waitMs) {
+        try {
+            assertNull(this.requests.poll(waitMs, TimeUnit.MILLISECONDS), "Request hedged");
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -1,12 +1,28 @@
 package it.unitn.disi.ds1;
 
+import akka.actor.ActorRef;
+import akka.testkit.javadsl.TestKit;
+import it.unitn.disi.ds1.messages.ReadMessage;
+import it.unitn.disi.ds1.messages.ResponseMessage;
+import it.unitn.disi.ds1.messages.SummaryUpdateMessage;
+
 import java.io.File;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
 
 /**
  * Test helper class
  * It implements some functions which are useful for testing
  */
 public class Helper {
+    /**
+     * Longest time a probe waits for a message
+     */
+    public static final Duration WAIT = Duration.ofSeconds(3);
+
     /**
      * Clears the file at filename
      *
@@ -23,4 +39,26 @@ public class Helper {
             exception.printStackTrace();
         }
     }
+
+    /**
+     * Read a key which an L1 cache does not store, the database and the child asking for the key being probes
+     *
+     * @param l1       L1 cache
+     * @param database probe database, answering the read
+     * @param child    probe child, asking for the key
+     * @param key      key to read
+     * @param value    value of the key at the database
+     * @param seqno    sequence number of the key at the database
+     */
+    public static void readThroughL1(ActorRef l1, TestKit database, TestKit child, int key, int value, int seqno) {
+        l1.tell(new ReadMessage(key, Collections.singletonList(child.getRef()), UUID.randomUUID(), false, -1),
+                child.getRef());
+        // The key is announced before being asked for
+        SummaryUpdateMessage update = database.expectMsgClass(WAIT, SummaryUpdateMessage.class);
+        assertEquals(Collections.singleton(key), update.addedKeys, "Key not announced to the summary");
+        ReadMessage request = database.expectMsgClass(WAIT, ReadMessage.class);
+        l1.tell(new ResponseMessage(Collections.singletonMap(key, value), Collections.singletonList(child.getRef()),
+                request.queryUUID, Config.RequestType.READ, false, seqno), database.getRef());
+        assertEquals(value, child.expectMsgClass(WAIT, ResponseMessage.class).values.get(key), "Wrong value read");
+    }
 }
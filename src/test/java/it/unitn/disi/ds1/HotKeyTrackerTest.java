@@ -0,0 +1,54 @@
+package it.unitn.disi.ds1;
+
+import it.unitn.disi.ds1.structures.CountMinSketch;
+import it.unitn.disi.ds1.structures.HotKeyTracker;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the count-min sketch and of the hot keys tracker built on top of it
+ */
+public class HotKeyTrackerTest {
+
+    @DisplayName("Testing that the count-min sketch never underestimates a key")
+    @Test
+    void testSketch() {
+        CountMinSketch sketch = new CountMinSketch(Config.HOT_KEYS_SKETCH_WIDTH, Config.HOT_KEYS_SKETCH_DEPTH);
+        for (int key = 0; key < 1000; key++) {
+            for (int i = 0; i < key % 7; i++) {
+                sketch.add(key);
+            }
+        }
+        for (int key = 0; key < 1000; key++) {
+            assertTrue(sketch.estimate(key) >= key % 7, "Key " + key + " underestimated");
+        }
+
+        sketch.decay();
+        assertTrue(sketch.estimate(6) >= 3, "Decayed key underestimated");
+    }
+
+    @DisplayName("Testing that the most accessed keys are hot, and that they cool down")
+    @Test
+    void testHotKeys() {
+        HotKeyTracker tracker = new HotKeyTracker(2, Config.HOT_KEYS_SKETCH_WIDTH, Config.HOT_KEYS_SKETCH_DEPTH);
+        for (int i = 0; i < 20; i++) {
+            tracker.record(1);
+            tracker.record(1);
+            tracker.record(2);
+            // Rarely accessed keys
+            tracker.record(100 + i);
+        }
+        assertEquals(Arrays.asList(1, 2), tracker.hotKeys(Config.HOT_KEY_THRESHOLD), "Wrong hot keys");
+
+        // Key 2 cools down below the threshold first
+        tracker.decay();
+        tracker.decay();
+        assertEquals(Collections.singletonList(1), tracker.hotKeys(Config.HOT_KEY_THRESHOLD), "Keys not cooled down");
+    }
+}
@@ -0,0 +1,42 @@
+package it.unitn.disi.ds1;
+
+import it.unitn.disi.ds1.structures.LatencyWindow;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests of the latency window employed by the clients to decide when to hedge a read
+ */
+public class LatencyWindowTest {
+
+    @DisplayName("Testing the percentiles of the latencies in the window")
+    @Test
+    void testPercentile() {
+        LatencyWindow window = new LatencyWindow(100);
+        assertEquals(0, window.percentile(Config.HEDGE_PERCENTILE), "Wrong percentile of an empty window");
+
+        for (int latency = 100; latency >= 1; latency--) {
+            window.add(latency);
+        }
+        assertEquals(100, window.size(), "Wrong window size");
+        assertEquals(50, window.percentile(0.5), "Wrong median");
+        assertEquals(95, window.percentile(0.95), "Wrong 95th percentile");
+        assertEquals(100, window.percentile(1.0), "Wrong maximum");
+    }
+
+    @DisplayName("Testing that the window forgets the oldest latencies")
+    @Test
+    void testSliding() {
+        LatencyWindow window = new LatencyWindow(10);
+        for (int i = 0; i < 10; i++) {
+            window.add(1000);
+        }
+        for (int i = 0; i < 10; i++) {
+            window.add(10);
+        }
+        assertEquals(10, window.size(), "Window larger than its capacity");
+        assertEquals(10, window.percentile(1.0), "Old latencies not forgotten");
+    }
+}
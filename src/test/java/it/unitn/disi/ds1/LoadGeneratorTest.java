@@ -0,0 +1,112 @@
+package it.unitn.disi.ds1;
+
+import akka.actor.ActorSystem;
+import it.unitn.disi.ds1.structures.Architecture;
+import it.unitn.disi.ds1.structures.KeyDistribution;
+import it.unitn.disi.ds1.structures.LoadReport;
+import it.unitn.disi.ds1.structures.OperationMix;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the open-loop load generator and of its key and operation distributions
+ */
+public class LoadGeneratorTest {
+    /**
+     * Number of keys drawn in the distribution tests
+     */
+    private final static int DRAWS = 100000;
+
+    /**
+     * Draw keys from a distribution over the keys from 0 to 99
+     *
+     * @param type type of the distribution
+     * @return number of draws of each key
+     */
+    private Map<Integer, Integer> draw(KeyDistribution.Type type) {
+        KeyDistribution distribution = new KeyDistribution(type,
+                IntStream.range(0, 100).boxed().collect(Collectors.toList()));
+        Random random = new Random(42);
+        Map<Integer, Integer> draws = new TreeMap<>();
+        for (int i = 0; i < DRAWS; i++) {
+            draws.merge(distribution.next(random), 1, Integer::sum);
+        }
+        return draws;
+    }
+
+    @DisplayName("Testing the skew of the key distributions")
+    @Test
+    void testKeyDistributions() {
+        Map<Integer, Integer> uniform = this.draw(KeyDistribution.Type.UNIFORM);
+        assertEquals(100, uniform.size(), "Keys never drawn by the uniform distribution");
+        assertTrue(uniform.values().stream().allMatch(count -> Math.abs(count - DRAWS / 100) < DRAWS / 200),
+                "Uneven uniform distribution");
+
+        Map<Integer, Integer> zipfian = this.draw(KeyDistribution.Type.ZIPFIAN);
+        assertTrue(zipfian.get(0) > zipfian.get(1) && zipfian.get(1) > zipfian.get(10),
+                "Zipfian popularity not decreasing with the rank");
+        // With theta 0.99 the hottest of 100 keys is drawn about 19% of the times
+        assertEquals(0.19, zipfian.get(0) / (double) DRAWS, 0.02, "Wrong frequency of the hottest key");
+
+        Map<Integer, Integer> hotspot = this.draw(KeyDistribution.Type.HOTSPOT);
+        int hot = IntStream.range(0, 20).map(key -> hotspot.getOrDefault(key, 0)).sum();
+        assertEquals(Config.HOTSPOT_OPERATION_FRACTION, hot / (double) DRAWS, 0.01, "Wrong share of the hot keys");
+    }
+
+    @DisplayName("Testing the parsing and the draws of the operation mix")
+    @Test
+    void testOperationMix() {
+        OperationMix mix = OperationMix.parse("60, 30, 10, 0");
+        assertEquals(0.6, mix.fraction(Config.RequestType.READ), 1e-9, "Wrong share of reads");
+        assertEquals(0.0, mix.fraction(Config.RequestType.CRITWRITE), 1e-9, "Wrong share of critical writes");
+
+        Random random = new Random(42);
+        int writes = 0;
+        for (int i = 0; i < DRAWS; i++) {
+            Config.RequestType type = mix.next(random);
+            assertTrue(type != Config.RequestType.CRITWRITE, "Critical write drawn with a share of 0");
+            writes += type == Config.RequestType.WRITE ? 1 : 0;
+        }
+        assertEquals(0.3, writes / (double) DRAWS, 0.01, "Wrong share of writes");
+
+        assertThrows(IllegalArgumentException.class, () -> OperationMix.parse("1,2,3"), "Missing share accepted");
+        assertThrows(IllegalArgumentException.class, () -> OperationMix.parse("0,0,0,0"), "Empty mix accepted");
+    }
+
+    @DisplayName("Testing that the load generator sends the operations at the target rate and reports them")
+    @Test
+    void testLoadRun() {
+        Helper.clearLogFile("logs.txt");
+        Utils.initializeLogger();
+        ActorSystem system = Utils.createActorSystem();
+        Map<Integer, Integer> database = Utils.createDatabase();
+        Architecture architecture = Utils.createArchiteture(system, database, 2, 2, 4);
+        Logger.logConfig(2, 2, 4);
+        Logger.logDatabase(database);
+        Utils.timeout(200);
+
+        LoadReport report = Utils.runLoad(system, architecture, database, 40, 2, KeyDistribution.Type.ZIPFIAN,
+                OperationMix.parse("90,10,0,0"));
+        system.terminate();
+        assertNotNull(report, "No report of the run");
+        assertEquals(80, report.scheduled(), "Wrong number of scheduled operations");
+        assertEquals(80, report.count(LoadReport.Outcome.SUCCEEDED) + report.count(LoadReport.Outcome.FAILED) +
+                report.count(LoadReport.Outcome.TIMED_OUT), "Operations without an outcome");
+        assertEquals(80, report.latency().getTotalCount(), "Operations without a latency");
+        assertTrue(report.throughput() > 20 && report.throughput() < 60, "Throughput far from the target rate");
+        assertTrue(report.toJson().contains("\"distribution\":\"ZIPFIAN\""), "Missing settings in the report");
+
+        assertTrue(Checker.check(), "Not consistent");
+    }
+}
@@ -0,0 +1,47 @@
+package it.unitn.disi.ds1;
+
+import it.unitn.disi.ds1.structures.FootprintReport;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the memory footprint benchmark, run by the perfTest task instead of the test one
+ */
+@Tag("performance")
+public class MemoryFootprintTest {
+    @DisplayName("Testing that the footprint of 10K keys has not regressed past its baseline")
+    @Test
+    void testFootprint() {
+        FootprintReport report = new MemoryFootprint().run(Collections.singletonList(10000));
+        assertEquals(1, report.points().size(), "Missing measures");
+
+        FootprintReport.Point point = report.points().get(0);
+        assertEquals(10000, point.inFlight, "Wrong number of requests in flight");
+        // Two boxed keys and a boxed time, besides the three map entries
+        assertTrue(point.l1EntryBytes > 3 * 32, "L1 entries too small: " + point.l1EntryBytes);
+        assertTrue(point.l2EntryBytes > 3 * 32, "L2 entries too small: " + point.l2EntryBytes);
+        assertTrue(point.pendingBytes > point.messageBytes / 2, "Pending requests too small: " + point.pendingBytes);
+        assertTrue(point.messageBytes > 0, "Responses too small: " + point.messageBytes);
+        assertEquals(Collections.emptyList(), report.regressions(), "The footprint has regressed");
+    }
+
+    @DisplayName("Testing that the measures above their baseline are reported as regressions")
+    @Test
+    void testRegressions() {
+        FootprintReport report = new FootprintReport();
+        report.add(new FootprintReport.Point(1000, 1000, Config.FOOTPRINT_L1_ENTRY_BYTES,
+                Config.FOOTPRINT_L2_ENTRY_BYTES, Config.FOOTPRINT_PENDING_BYTES * (1 + Config.FOOTPRINT_TOLERANCE) + 1,
+                Config.FOOTPRINT_MESSAGE_BYTES));
+        report.skip(1000000000);
+
+        assertEquals(1, report.regressions().size(), "Wrong number of regressions");
+        assertTrue(report.regressions().get(0).contains("pending request"), "Wrong regression");
+        assertTrue(report.toTable().contains("skipped"), "Missing skipped number of keys");
+    }
+}
@@ -0,0 +1,55 @@
+package it.unitn.disi.ds1;
+
+import it.unitn.disi.ds1.structures.MerkleTree;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the Merkle tree employed by the anti-entropy protocol
+ */
+public class MerkleTreeTest {
+
+    @DisplayName("Testing that equal pairs produce no divergent key range")
+    @Test
+    void testEqualTrees() {
+        Map<Integer, Integer> seqnos = new HashMap<>();
+        for (int key = 0; key < 100; key++) {
+            seqnos.put(key, key % 7);
+        }
+        MerkleTree tree = new MerkleTree(seqnos, Config.ANTI_ENTROPY_LEAVES);
+        MerkleTree other = new MerkleTree(new HashMap<>(seqnos), Config.ANTI_ENTROPY_LEAVES);
+        assertTrue(tree.divergentLeaves(other.getNodes()).isEmpty(), "Equal trees are divergent");
+    }
+
+    @DisplayName("Testing that only the key ranges of the differing keys are divergent")
+    @Test
+    void testDivergentLeaves() {
+        Map<Integer, Integer> seqnos = new HashMap<>();
+        for (int key = 0; key < 100; key++) {
+            seqnos.put(key, 0);
+        }
+        MerkleTree tree = new MerkleTree(seqnos, Config.ANTI_ENTROPY_LEAVES);
+
+        // Newer sequence number for a key
+        Map<Integer, Integer> newer = new HashMap<>(seqnos);
+        newer.put(42, 1);
+        Set<Integer> divergent = tree.divergentLeaves(new MerkleTree(newer, Config.ANTI_ENTROPY_LEAVES).getNodes());
+        assertEquals(Collections.singleton(MerkleTree.leafOf(42, Config.ANTI_ENTROPY_LEAVES)), divergent,
+                "Wrong divergent key ranges for an updated key");
+
+        // Missing key
+        Map<Integer, Integer> missing = new HashMap<>(seqnos);
+        missing.remove(7);
+        divergent = tree.divergentLeaves(new MerkleTree(missing, Config.ANTI_ENTROPY_LEAVES).getNodes());
+        assertEquals(Collections.singleton(MerkleTree.leafOf(7, Config.ANTI_ENTROPY_LEAVES)), divergent,
+                "Wrong divergent key ranges for a missing key");
+    }
+}
@@ -0,0 +1,81 @@
+package it.unitn.disi.ds1;
+
+import com.sun.net.httpserver.HttpServer;
+import it.unitn.disi.ds1.structures.ActorStats;
+import it.unitn.disi.ds1.structures.Metrics;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.management.ObjectName;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the JMX and Prometheus exporters of the statistics of the actors
+ */
+public class MetricsExporterTest {
+
+    /**
+     * Publish some statistics of a fake cache
+     *
+     * @param name name of the cache
+     * @return registered statistics
+     */
+    private ActorStats publishedStats(String name) {
+        Metrics metrics = new Metrics();
+        for (int i = 0; i < 3; i++) {
+            metrics.increment(Metrics.Counter.HITS);
+            metrics.recordLatency(Config.RequestType.READ, 10);
+        }
+        metrics.increment(Metrics.Counter.MISSES);
+        ActorStats stats = MetricsExporter.register("Cache", name, "L2", true);
+        stats.publish("L2", metrics, 7, 1, 2);
+        return stats;
+    }
+
+    @DisplayName("Testing that the statistics of an actor are exposed as an MBean")
+    @Test
+    void testJmx() throws Exception {
+        ActorStats stats = this.publishedStats("test-cache-jmx");
+        ObjectName name = new ObjectName("it.unitn.disi.ds1:type=Cache,name=" + ObjectName.quote("test-cache-jmx"));
+        assertEquals(0.75, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "HitRatio"));
+        assertEquals(7, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Entries"));
+        assertEquals(10L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "ReadLatencyP99Ms"));
+
+        MetricsExporter.unregister("Cache", stats);
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name), "MBean not unregistered");
+    }
+
+    @DisplayName("Testing that the HTTP endpoint serves the statistics in the Prometheus text format")
+    @Test
+    void testPrometheus() throws Exception {
+        ActorStats stats = this.publishedStats("test-cache-http");
+        HttpServer server = MetricsExporter.startHttpServer(0);
+        String text;
+        try (InputStream stream = new URL("http://localhost:" + server.getAddress().getPort() + "/metrics")
+                .openStream()) {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            for (int read = stream.read(buffer); read > 0; read = stream.read(buffer)) {
+                body.write(buffer, 0, read);
+            }
+            text = new String(body.toByteArray(), StandardCharsets.UTF_8);
+        } finally {
+            server.stop(0);
+            MetricsExporter.unregister("Cache", stats);
+        }
+
+        String labels = "actor=\"test-cache-http\",role=\"L2\"";
+        assertTrue(text.contains("cache_events_total{" + labels + ",event=\"hits\"} 3\n"), "Missing hits");
+        assertTrue(text.contains("cache_hit_ratio{" + labels + "} 0.75\n"), "Missing hit ratio");
+        assertTrue(text.contains("cache_entries{" + labels + "} 7\n"), "Missing entries");
+        assertTrue(text.contains("cache_latency_ms_count{" + labels + ",type=\"READ\"} 3\n"), "Missing latencies");
+    }
+}
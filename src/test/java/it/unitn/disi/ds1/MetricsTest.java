@@ -0,0 +1,77 @@
+package it.unitn.disi.ds1;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import it.unitn.disi.ds1.messages.ReadMessage;
+import it.unitn.disi.ds1.structures.Architecture;
+import it.unitn.disi.ds1.structures.Metrics;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the metrics registry and of their aggregation over the tree of caches
+ */
+public class MetricsTest {
+
+    @DisplayName("Testing that merged metrics add up counters and latencies")
+    @Test
+    void testMerge() {
+        Metrics first = new Metrics();
+        Metrics second = new Metrics();
+        for (int i = 1; i <= 100; i++) {
+            first.recordLatency(Config.RequestType.READ, i);
+            first.increment(Metrics.Counter.HITS);
+        }
+        second.recordLatency(Config.RequestType.READ, 1000);
+        second.increment(Metrics.Counter.MISSES);
+        second.increment(Metrics.Counter.HITS);
+
+        Metrics merged = first.copy();
+        merged.merge(second);
+        assertEquals(2, merged.actors(), "Wrong number of actors");
+        assertEquals(101, merged.count(Metrics.Counter.HITS), "Wrong number of hits");
+        assertEquals(1, merged.count(Metrics.Counter.MISSES), "Wrong number of misses");
+        assertEquals(101, merged.latency(Config.RequestType.READ).getTotalCount(), "Wrong number of latencies");
+        assertEquals(51, merged.latency(Config.RequestType.READ).getValueAtPercentile(50), "Wrong median");
+        assertEquals(1000, merged.latency(Config.RequestType.READ).getMaxValue(), 1, "Wrong maximum");
+
+        // The copy is independent of the original metrics
+        assertEquals(100, first.count(Metrics.Counter.HITS), "Original metrics modified by the merge");
+        assertEquals(0, first.latency(Config.RequestType.WRITE).getTotalCount(), "Unexpected latencies");
+    }
+
+    @DisplayName("Testing that a stats query returns the metrics of the whole architecture")
+    @Test
+    void testClusterStats() {
+        Helper.clearLogFile("logs.txt");
+        Utils.initializeLogger();
+        ActorSystem system = Utils.createActorSystem();
+        Map<Integer, Integer> database = Utils.createDatabase();
+        Architecture architecture = Utils.createArchiteture(system, database, 2, 2, 2);
+        Logger.logConfig(2, 2, 2);
+        Logger.logDatabase(database);
+
+        int key = (int) database.keySet().toArray()[0];
+        architecture.clients.get(0).tell(new ReadMessage(key, new ArrayList<>(), null, false, -1),
+                ActorRef.noSender());
+        Utils.timeout(500);
+
+        Metrics metrics = Utils.collectMetrics(architecture);
+        system.terminate();
+        assertNotNull(metrics, "No answer to the stats query");
+        // Database, 2 L1 caches, 4 L2 caches and 2 clients
+        assertEquals(9, metrics.actors(), "Stats of some actors are missing");
+        // The read misses at the client, at the L2 cache and at the L1 cache, then it is served by the database
+        assertEquals(1, metrics.count(Metrics.Counter.HITS), "Wrong number of hits");
+        assertEquals(3, metrics.count(Metrics.Counter.MISSES), "Wrong number of misses");
+        assertEquals(2, metrics.count(Metrics.Counter.FORWARDS), "Wrong number of forwards");
+        assertEquals(4, metrics.latency(Config.RequestType.READ).getTotalCount(), "Wrong number of read latencies");
+    }
+}
@@ -0,0 +1,107 @@
+package it.unitn.disi.ds1;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.testkit.javadsl.TestKit;
+import it.unitn.disi.ds1.actors.Cache;
+import it.unitn.disi.ds1.messages.NearCacheInvalidationMessage;
+import it.unitn.disi.ds1.messages.ReadMessage;
+import it.unitn.disi.ds1.messages.ResponseMessage;
+import it.unitn.disi.ds1.messages.WriteMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests of the invalidations an L2 cache sends to the near caches of the clients
+ * <p>
+ * The parent and the clients are probes, so that the messages of the L2 cache can be checked one by one
+ */
+public class NearCacheInvalidationTest {
+    /**
+     * Key of the tests
+     */
+    private static final int KEY = 3;
+
+    private ActorSystem system;
+    private TestKit parent;
+    private TestKit reader;
+    private TestKit writer;
+
+    @BeforeEach
+    void resetState() {
+        Helper.clearLogFile("logs.txt");
+        Utils.initializeLogger();
+        this.system = Utils.createActorSystem();
+        this.parent = new TestKit(this.system);
+        this.reader = new TestKit(this.system);
+        this.writer = new TestKit(this.system);
+        this.parent.ignoreMsg(msg -> !(msg instanceof ReadMessage || msg instanceof WriteMessage));
+    }
+
+    @AfterEach
+    void shutdown() {
+        TestKit.shutdownActorSystem(this.system);
+    }
+
+    @DisplayName("Testing that an L2 cache invalidates the near cache of a client which read a key once it changes")
+    @Test
+    void testInvalidation() {
+        ActorRef l2 = this.system.actorOf(Cache.props(1, this.parent.getRef(), this.parent.getRef(), 0, true),
+                "l2-cache-0-1");
+        this.read(l2);
+
+        this.write(l2);
+        assertEquals(KEY, this.reader.expectMsgClass(Helper.WAIT, NearCacheInvalidationMessage.class).key,
+                "Wrong key invalidated");
+        // The writer has not read the key, hence it does not store it
+        this.writer.expectNoMessage(Duration.ofMillis(Config.NETWORK_DELAY_MS * 10L));
+    }
+
+    @DisplayName("Testing that an L2 cache does not invalidate the near caches unless it is told to")
+    @Test
+    void testDisabledInvalidation() {
+        ActorRef l2 = this.system.actorOf(Cache.props(1, this.parent.getRef(), this.parent.getRef(), 0,
+                Config.NEAR_CACHE_SIZE > 0), "l2-cache-0-1");
+        this.read(l2);
+
+        this.write(l2);
+        this.reader.expectNoMessage(Duration.ofMillis(Config.NETWORK_DELAY_MS * 10L));
+    }
+
+    /**
+     * Read the key of the tests through the L2 cache on behalf of the reader
+     *
+     * @param l2 L2 cache
+     */
+    private void read(ActorRef l2) {
+        l2.tell(new ReadMessage(KEY, Collections.singletonList(this.reader.getRef()), UUID.randomUUID(), false, -1),
+                this.reader.getRef());
+        ReadMessage forwarded = this.parent.expectMsgClass(Helper.WAIT, ReadMessage.class);
+        l2.tell(new ResponseMessage(Collections.singletonMap(KEY, 10), Collections.singletonList(this.reader.getRef()),
+                forwarded.queryUUID, Config.RequestType.READ, false, 0), this.parent.getRef());
+        assertEquals(10, this.reader.expectMsgClass(Helper.WAIT, ResponseMessage.class).values.get(KEY),
+                "Wrong value read");
+    }
+
+    /**
+     * Write the key of the tests through the L2 cache on behalf of the writer
+     *
+     * @param l2 L2 cache
+     */
+    private void write(ActorRef l2) {
+        l2.tell(new WriteMessage(KEY, 11, Collections.singletonList(this.writer.getRef()), UUID.randomUUID(), false),
+                this.writer.getRef());
+        WriteMessage forwarded = this.parent.expectMsgClass(Helper.WAIT, WriteMessage.class);
+        l2.tell(new ResponseMessage(Collections.singletonMap(KEY, 11), Collections.singletonList(this.writer.getRef()),
+                forwarded.queryUUID, Config.RequestType.WRITE, false, 1), this.parent.getRef());
+        assertEquals(1, this.writer.expectMsgClass(Helper.WAIT, ResponseMessage.class).seqno, "Write failed");
+    }
+}
@@ -0,0 +1,44 @@
+package it.unitn.disi.ds1;
+
+import it.unitn.disi.ds1.structures.NearCache;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Tests of the near cache of the clients
+ */
+public class NearCacheTest {
+
+    @DisplayName("Testing that the least recently used entry is evicted and that old values are not stored")
+    @Test
+    void testEviction() {
+        NearCache nearCache = new NearCache(2, Config.NEAR_CACHE_TTL_MS);
+        nearCache.put(1, 10, 0, 1, 0);
+        nearCache.put(2, 20, 0, 1, 0);
+        // Key 1 becomes the most recently used
+        assertNotNull(nearCache.get(1, 0), "Key 1 not cached");
+        nearCache.put(3, 30, 0, 1, 0);
+        assertEquals(2, nearCache.size(), "Near cache larger than its capacity");
+        assertNull(nearCache.get(2, 0), "Least recently used key not evicted");
+
+        nearCache.put(1, 11, 2, 1, 0);
+        nearCache.put(1, 12, 1, 1, 0);
+        assertEquals(11, nearCache.get(1, 0).value, "Older value replaced a newer one");
+
+        nearCache.invalidate(1);
+        assertNull(nearCache.get(1, 0), "Key not invalidated");
+    }
+
+    @DisplayName("Testing that the entries expire after their time to live")
+    @Test
+    void testExpiry() {
+        NearCache nearCache = new NearCache(1, Config.NEAR_CACHE_TTL_MS);
+        nearCache.put(1, 10, 0, 1, 0);
+        assertNotNull(nearCache.get(1, Config.NEAR_CACHE_TTL_MS), "Entry expired too early");
+        assertNull(nearCache.get(1, Config.NEAR_CACHE_TTL_MS + 1), "Entry not expired");
+    }
+}
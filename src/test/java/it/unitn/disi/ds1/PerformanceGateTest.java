@@ -0,0 +1,74 @@
+package it.unitn.disi.ds1;
+
+import it.unitn.disi.ds1.structures.PerformanceReport;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledIfSystemProperty;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Tests of the performance gate, run by the perfTest task instead of the test one
+ */
+@Tag("performance")
+public class PerformanceGateTest {
+    /**
+     * Baseline of the performance gate, as a resource of the classpath
+     */
+    private static final String BASELINE = "/performance-baseline.properties";
+
+    /**
+     * System property with the number of runs from which the baseline is derived, set by the calibrationRuns
+     * property of the perfTest task
+     */
+    private static final String CALIBRATION_RUNS = "ds1.perfGateCalibrationRuns";
+
+    /**
+     * Load the checked-in baseline
+     *
+     * @return expected values and tolerances
+     */
+    private static Properties loadBaseline() throws IOException {
+        Properties baseline = new Properties();
+        try (InputStream stream = PerformanceGateTest.class.getResourceAsStream(BASELINE)) {
+            assertNotNull(stream, "Missing baseline " + BASELINE);
+            baseline.load(stream);
+        }
+        return baseline;
+    }
+
+    @DisplayName("Testing that the fixed workload has not regressed past its baseline")
+    @Test
+    @DisabledIfSystemProperty(named = CALIBRATION_RUNS, matches = ".+")
+    void testGate() throws IOException {
+        Helper.clearLogFile("logs.txt");
+        Utils.initializeLogger();
+        Properties baseline = loadBaseline();
+        PerformanceReport report = new PerformanceGate().run();
+        assertNotNull(report, "The load generator has not ended in time");
+
+        System.out.print(report.toTable(baseline));
+        // Printed to be copied into the baseline once a change is known to be slower, or faster
+        assertEquals(Collections.emptyList(), report.regressions(baseline),
+                "The performance has regressed, the measured baseline is:\n" + report.toBaseline(baseline));
+    }
+
+    @DisplayName("Deriving the baseline of the fixed workload from the variance of several runs")
+    @Test
+    @EnabledIfSystemProperty(named = CALIBRATION_RUNS, matches = "[1-9][0-9]*")
+    void testCalibration() {
+        Helper.clearLogFile("logs.txt");
+        Utils.initializeLogger();
+        String baseline = new PerformanceGate().calibrate(Integer.getInteger(CALIBRATION_RUNS));
+        assertNotNull(baseline, "The load generator has not ended in time");
+        System.out.println("Calibrated baseline:\n" + baseline);
+    }
+}
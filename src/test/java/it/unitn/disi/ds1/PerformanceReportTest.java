@@ -0,0 +1,62 @@
+package it.unitn.disi.ds1;
+
+import it.unitn.disi.ds1.structures.PerformanceReport;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the report of the performance gate, which do not run any workload
+ */
+public class PerformanceReportTest {
+
+    @DisplayName("Testing that only the metrics worse than their baseline beyond the tolerance are regressions")
+    @Test
+    void testRegressions() throws IOException {
+        Properties baseline = new Properties();
+        baseline.load(new StringReader("throughput=100\nthroughput.tolerance=0.1\n" +
+                "p99_latency_ms=50\np99_latency_ms.tolerance=0.2\n" +
+                "messages_per_operation=10\nmessages_per_operation.tolerance=0.1\n" +
+                "allocated_bytes_per_operation=1000\nallocated_bytes_per_operation.tolerance=0.1\n"));
+
+        // Faster and cheaper than the baseline, or worse within the tolerance
+        assertEquals(Collections.emptyList(), new PerformanceReport(120, 59, 5, Double.NaN).regressions(baseline),
+                "Improvements reported as regressions");
+
+        PerformanceReport report = new PerformanceReport(89, 40, 12, 1000);
+        assertEquals(2, report.regressions(baseline).size(), "Wrong number of regressions");
+        assertTrue(report.regressions(baseline).get(0).startsWith("throughput"), "Wrong regression");
+        assertTrue(report.regressions(baseline).get(1).startsWith("messages_per_operation"), "Wrong regression");
+        assertTrue(report.toBaseline(baseline).contains("throughput=89.00"), "Wrong measured baseline");
+
+        baseline.remove("p99_latency_ms.tolerance");
+        assertThrows(IllegalArgumentException.class, () -> report.regressions(baseline), "Missing tolerance");
+    }
+
+    @DisplayName("Testing that the calibrated tolerances cover the variance of the runs")
+    @Test
+    void testBaseline() throws IOException {
+        Properties baseline = new Properties();
+        baseline.load(new StringReader(PerformanceReport.baseline(Arrays.asList(
+                new PerformanceReport(100, 40, 10, 1000),
+                new PerformanceReport(100, 60, 10, 1000),
+                new PerformanceReport(100, 50, 10, 1000)), 3, 0.05)));
+
+        assertEquals("100.00", baseline.getProperty("throughput"), "Wrong expected throughput");
+        assertEquals("0.05", baseline.getProperty("throughput.tolerance"), "Steady metric below the minimum");
+        assertEquals("50.00", baseline.getProperty("p99_latency_ms"), "Wrong expected latency");
+        // Standard deviation of 10 over a mean of 50, three times
+        assertEquals("0.60", baseline.getProperty("p99_latency_ms.tolerance"), "Wrong latency tolerance");
+        assertEquals(Collections.emptyList(), new PerformanceReport(96, 79, 10, 1040).regressions(baseline),
+                "Runs within the variance reported as regressions");
+    }
+}
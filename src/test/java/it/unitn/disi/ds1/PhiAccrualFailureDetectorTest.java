@@ -0,0 +1,62 @@
+package it.unitn.disi.ds1;
+
+import it.unitn.disi.ds1.structures.PhiAccrualFailureDetector;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the phi-accrual failure detector fed by the heartbeats
+ */
+public class PhiAccrualFailureDetectorTest {
+    /**
+     * Milliseconds between two heartbeats, which are disabled by default
+     */
+    private static final int INTERVAL_MS = 100;
+
+    /**
+     * Create a detector with the configured parameters, fed with regular heartbeats until the given time
+     *
+     * @param until time of the last heartbeat
+     * @return detector
+     */
+    private PhiAccrualFailureDetector regularHeartbeats(long until) {
+        PhiAccrualFailureDetector detector = new PhiAccrualFailureDetector(Config.PHI_THRESHOLD,
+                Config.PHI_WINDOW_SIZE, Config.PHI_MIN_STD_DEVIATION_MS, Config.PHI_ACCEPTABLE_PAUSE_MS);
+        for (long now = 0; now <= until; now += INTERVAL_MS) {
+            detector.heartbeat(now);
+        }
+        return detector;
+    }
+
+    @DisplayName("Testing that the suspicion grows with the time elapsed since the last heartbeat")
+    @Test
+    void testSuspicion() {
+        PhiAccrualFailureDetector detector = new PhiAccrualFailureDetector(Config.PHI_THRESHOLD,
+                Config.PHI_WINDOW_SIZE, Config.PHI_MIN_STD_DEVIATION_MS, Config.PHI_ACCEPTABLE_PAUSE_MS);
+        assertEquals(0.0, detector.phi(10000), "A peer without heartbeats has to be trusted");
+
+        long last = 10 * INTERVAL_MS;
+        detector = this.regularHeartbeats(last);
+        assertFalse(detector.isSuspected(last + INTERVAL_MS), "Peer suspected on time");
+        assertFalse(detector.isSuspected(last + 2 * INTERVAL_MS), "Peer suspected after a pause");
+        assertTrue(detector.phi(last + 3 * INTERVAL_MS) <
+                detector.phi(last + 4 * INTERVAL_MS), "Suspicion not growing");
+        assertTrue(detector.isSuspected(last + 10 * INTERVAL_MS), "Silent peer not suspected");
+    }
+
+    @DisplayName("Testing that a heartbeat of a suspected peer makes it trusted again")
+    @Test
+    void testRecovery() {
+        long last = 10 * INTERVAL_MS;
+        PhiAccrualFailureDetector detector = this.regularHeartbeats(last);
+        long recovery = last + 20 * INTERVAL_MS;
+        assertTrue(detector.isSuspected(recovery), "Silent peer not suspected");
+
+        detector.heartbeat(recovery);
+        assertFalse(detector.isSuspected(recovery + INTERVAL_MS), "Recovered peer still suspected");
+    }
+}
@@ -0,0 +1,157 @@
+package it.unitn.disi.ds1;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.testkit.javadsl.TestKit;
+import it.unitn.disi.ds1.actors.Database;
+import it.unitn.disi.ds1.messages.JoinCachesMessage;
+import it.unitn.disi.ds1.messages.LeaseGrantMessage;
+import it.unitn.disi.ds1.messages.LeaseRecallMessage;
+import it.unitn.disi.ds1.messages.LeaseRecallResponseMessage;
+import it.unitn.disi.ds1.messages.ReadMessage;
+import it.unitn.disi.ds1.messages.ResponseMessage;
+import it.unitn.disi.ds1.messages.WriteMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the read leases granted by the database to the L1 caches on critical reads
+ * <p>
+ * The L1 caches are probes, so that the messages of the database can be checked one by one
+ */
+public class ReadLeaseTest {
+    /**
+     * Key of the tests
+     */
+    private static final int KEY = 3;
+
+    /**
+     * Duration of the leases, which are disabled by default
+     */
+    private static final int LEASE_MS = 200;
+
+    private ActorSystem system;
+    private TestKit reader;
+    private TestKit writer;
+    private ActorRef database;
+
+    @BeforeEach
+    void resetState() {
+        Helper.clearLogFile("logs.txt");
+        Utils.initializeLogger();
+        this.system = Utils.createActorSystem();
+        this.reader = new TestKit(this.system);
+        this.writer = new TestKit(this.system);
+        this.reader.ignoreMsg(msg -> !(msg instanceof ResponseMessage || msg instanceof LeaseGrantMessage ||
+                msg instanceof LeaseRecallMessage));
+        this.writer.ignoreMsg(msg -> !(msg instanceof ResponseMessage || msg instanceof LeaseGrantMessage));
+
+        this.database = this.system.actorOf(Database.props(0, Utils.createDatabase(), LEASE_MS), "database-0");
+        this.database.tell(new JoinCachesMessage(Arrays.asList(this.reader.getRef(), this.writer.getRef())),
+                ActorRef.noSender());
+    }
+
+    @AfterEach
+    void shutdown() {
+        TestKit.shutdownActorSystem(this.system);
+    }
+
+    @DisplayName("Testing that a lease is granted after the response to a critical read, and only to it")
+    @Test
+    void testGrant() {
+        this.read(this.reader, false);
+        this.reader.expectNoMessage(Duration.ofMillis(100));
+
+        long before = System.currentTimeMillis();
+        this.read(this.reader, true);
+        LeaseGrantMessage grant = this.reader.expectMsgClass(Helper.WAIT, LeaseGrantMessage.class);
+        assertEquals(KEY, grant.key, "Lease granted on the wrong key");
+        assertEquals(0, grant.seqno, "Lease granted on the wrong sequence number");
+        assertTrue(grant.expiresAt >= before + LEASE_MS &&
+                grant.expiresAt <= System.currentTimeMillis() + LEASE_MS, "Wrong expiration of the lease");
+    }
+
+    @DisplayName("Testing that the writes wait for the leases to be given up, are applied in order, and stop new leases")
+    @Test
+    void testRecall() {
+        this.read(this.reader, true);
+        this.reader.expectMsgClass(Helper.WAIT, LeaseGrantMessage.class);
+
+        this.write(this.writer, 1);
+        this.write(this.writer, 2);
+        assertEquals(KEY, this.reader.expectMsgClass(Helper.WAIT, LeaseRecallMessage.class).key, "Wrong key recalled");
+
+        // No lease is granted while the writes wait
+        ResponseMessage read = this.read(this.writer, true);
+        assertEquals(0, read.seqno, "Deferred write applied before the recall");
+        this.writer.expectNoMessage(Duration.ofMillis(50));
+
+        this.database.tell(new LeaseRecallResponseMessage(KEY), this.reader.getRef());
+        // A write arriving after the recall is applied after the deferred ones
+        this.write(this.reader, 3);
+        for (int seqno = 1; seqno <= 2; seqno++) {
+            ResponseMessage response = this.writer.expectMsgClass(Helper.WAIT, ResponseMessage.class);
+            assertEquals(seqno, response.seqno, "Deferred writes applied out of order");
+            assertEquals(seqno, response.values.get(KEY), "Wrong value of the deferred write");
+        }
+        assertEquals(3, this.reader.expectMsgClass(Helper.WAIT, ResponseMessage.class).seqno,
+                "Write overtook the deferred ones");
+    }
+
+    @DisplayName("Testing that the writes wait for a lease which is not given up until it expires")
+    @Test
+    void testExpiry() {
+        this.read(this.reader, true);
+        LeaseGrantMessage grant = this.reader.expectMsgClass(Helper.WAIT, LeaseGrantMessage.class);
+
+        this.write(this.writer, 1);
+        this.reader.expectMsgClass(Helper.WAIT, LeaseRecallMessage.class);
+        ResponseMessage response = this.writer.expectMsgClass(Helper.WAIT, ResponseMessage.class);
+        assertTrue(System.currentTimeMillis() >= grant.expiresAt, "Write applied before the lease has expired");
+        assertEquals(1, response.seqno, "Wrong sequence number of the write");
+    }
+
+    @DisplayName("Testing that leases long enough to make the L2 caches time out are rejected")
+    @Test
+    void testTooLongLease() {
+        assertThrows(IllegalArgumentException.class,
+                () -> Database.props(1, Utils.createDatabase(), Config.READ_LEASE_MAX_MS + 1));
+    }
+
+    /**
+     * Read the key of the tests on behalf of an L1 cache
+     *
+     * @param cache      probe L1 cache
+     * @param isCritical whether the read is critical
+     * @return response of the database
+     */
+    private ResponseMessage read(TestKit cache, boolean isCritical) {
+        this.database.tell(new ReadMessage(KEY, Collections.singletonList(cache.getRef()), UUID.randomUUID(),
+                isCritical, -1), cache.getRef());
+        ResponseMessage response = cache.expectMsgClass(Helper.WAIT, ResponseMessage.class);
+        assertTrue(response.values.containsKey(KEY), "Read failed");
+        return response;
+    }
+
+    /**
+     * Write the key of the tests on behalf of an L1 cache, without waiting for the response
+     *
+     * @param cache probe L1 cache
+     * @param value value to write
+     */
+    private void write(TestKit cache, int value) {
+        this.database.tell(new WriteMessage(KEY, value, Collections.singletonList(cache.getRef()), UUID.randomUUID(),
+                false), cache.getRef());
+    }
+}
@@ -0,0 +1,121 @@
+package it.unitn.disi.ds1;
+
+import akka.actor.ActorSystem;
+import it.unitn.disi.ds1.structures.Architecture;
+import it.unitn.disi.ds1.structures.KeyDistribution;
+import it.unitn.disi.ds1.structures.LoadReport;
+import it.unitn.disi.ds1.structures.OperationMix;
+import it.unitn.disi.ds1.structures.RequestTrace;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the capture, of the conversion and of the replay of request traces
+ */
+public class RequestTraceTest {
+    @DisplayName("Testing that a trace is written compactly and read back unchanged")
+    @Test
+    void testRoundTrip() throws IOException {
+        File file = File.createTempFile("trace", ".bin");
+        file.deleteOnExit();
+        List<RequestTrace.Entry> entries = Arrays.asList(
+                new RequestTrace.Entry(0, 7, Config.RequestType.READ, 3, null),
+                new RequestTrace.Entry(15, 8, Config.RequestType.WRITE, 42, 99),
+                new RequestTrace.Entry(15, 7, Config.RequestType.CRITREAD, 42, null),
+                new RequestTrace.Entry(100000, 9, Config.RequestType.CRITWRITE, 1000, 7)
+        );
+        new RequestTrace(1234567890L, entries).write(file.getPath());
+
+        RequestTrace trace = RequestTrace.read(file.getPath());
+        assertEquals(1234567890L, trace.startMillis, "Wrong start time");
+        assertEquals(entries.size(), trace.entries().size(), "Wrong number of requests");
+        for (int i = 0; i < entries.size(); i++) {
+            RequestTrace.Entry expected = entries.get(i), actual = trace.entries().get(i);
+            assertEquals(expected.offsetMillis, actual.offsetMillis, "Wrong time of request " + i);
+            assertEquals(expected.client, actual.client, "Wrong client of request " + i);
+            assertEquals(expected.type, actual.type, "Wrong type of request " + i);
+            assertEquals(expected.key, actual.key, "Wrong key of request " + i);
+            assertEquals(expected.value, actual.value, "Wrong value of request " + i);
+        }
+        // Header of 13 bytes, 4 bytes for the first read
+        assertTrue(file.length() <= 13 + 4 + 5 + 4 + 8, "Trace not compact: " + file.length() + " bytes");
+    }
+
+    @DisplayName("Testing the conversion of the requests of the clients in a log file")
+    @Test
+    void testFromLog() throws IOException {
+        File file = File.createTempFile("logs", ".txt");
+        file.deleteOnExit();
+        try (FileWriter writer = new FileWriter(file)) {
+            // One L1 cache with one L2 cache: the clients have ids from 3
+            writer.write("CONFIG:\t1\t1\t2\n");
+            writer.write("CONFIG:\t0-10\t1-11\n");
+            writer.write("FINE:FINE\t20240101_100000\t3\t2\tREAD\tfalse\t0\tnull\t-1\tu1\tRequest read for key " +
+                    "[CRIT: false]\n");
+            writer.write("FINE:FINE\t20240101_100000\t2\t1\tREAD\tfalse\t0\tnull\t-1\tu1\tRequest read for key " +
+                    "[CRIT: false]\n");
+            writer.write("FINE:FINE\t20240101_100000\t4\t2\tWRITE\tfalse\t1\t5\tnull\tu2\tRequest write for key " +
+                    "[CRIT: false]\n");
+            writer.write("FINE:FINE\t20240101_100000\t1\t3\tREAD\ttrue\t0\t10\t0\tu1\tResponse\n");
+            writer.write("FINE:FINE\t20240101_100001\t4\t2\tWRITE\tfalse\t1\t5\tnull\tu3\tRequest to another " +
+                    "cache for key [CRIT: false]\n");
+            writer.write("FINE:FINE\t20240101_100002\t3\t2\tCRITREAD\tfalse\t1\tnull\t-1\tu4\tRequest read for " +
+                    "key [CRIT: true]\n");
+        }
+
+        List<RequestTrace.Entry> entries = RequestTrace.fromLog(file.getPath()).entries();
+        assertEquals(3, entries.size(), "Only the first requests of the clients are converted");
+        assertEquals(0, entries.get(0).offsetMillis, "Wrong time of the first request");
+        assertEquals(500, entries.get(1).offsetMillis, "Requests within a second not spread");
+        assertEquals(Config.RequestType.WRITE, entries.get(1).type, "Wrong type of the write");
+        assertEquals(Integer.valueOf(5), entries.get(1).value, "Wrong written value");
+        assertEquals(2000, entries.get(2).offsetMillis, "Wrong time of the critical read");
+        assertNull(entries.get(2).value, "Value of a read");
+    }
+
+    @DisplayName("Testing that a recorded stream is replayed through the clients")
+    @Test
+    void testRecordAndReplay() throws IOException {
+        File file = File.createTempFile("trace", ".bin");
+        file.deleteOnExit();
+        Helper.clearLogFile("logs.txt");
+        Utils.initializeLogger();
+        ActorSystem system = Utils.createActorSystem();
+        Map<Integer, Integer> database = Utils.createDatabase();
+        Architecture architecture = Utils.createArchiteture(system, database, 2, 2, 4);
+        Logger.logConfig(2, 2, 4);
+        Logger.logDatabase(database);
+        Utils.timeout(200);
+
+        RequestRecorder.start(file.getPath());
+        LoadReport recorded = Utils.runLoad(system, architecture, database, 20, 2, KeyDistribution.Type.UNIFORM,
+                OperationMix.parse("80,20,0,0"));
+        RequestRecorder.stop();
+        assertNotNull(recorded, "No report of the recorded run");
+
+        RequestTrace trace = RequestTrace.read(file.getPath());
+        assertEquals(40, trace.entries().size(), "Wrong number of recorded requests");
+        assertTrue(trace.durationMillis() > 1500 && trace.durationMillis() < 2500, "Wrong duration of the trace");
+
+        // Twice as fast as recorded
+        LoadReport replayed = Utils.replayTrace(system, architecture, trace, 2);
+        system.terminate();
+        assertNotNull(replayed, "No report of the replay");
+        assertEquals(40, replayed.scheduled(), "Wrong number of replayed requests");
+        assertEquals(40, replayed.latency().getTotalCount(), "Requests without a latency");
+        assertTrue(replayed.elapsedMillis() < 1600, "Trace not accelerated: " + replayed.elapsedMillis() + " ms");
+        assertTrue(replayed.toJson().contains("\"distribution\":null"), "Missing settings in the report");
+    }
+}
@@ -0,0 +1,130 @@
+package it.unitn.disi.ds1;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.testkit.javadsl.TestKit;
+import it.unitn.disi.ds1.actors.Cache;
+import it.unitn.disi.ds1.messages.AntiEntropyKeysMessage;
+import it.unitn.disi.ds1.messages.AntiEntropyRepairMessage;
+import it.unitn.disi.ds1.messages.AntiEntropyTickMessage;
+import it.unitn.disi.ds1.messages.JoinCachesMessage;
+import it.unitn.disi.ds1.messages.ReadMessage;
+import it.unitn.disi.ds1.messages.RecoveryMessage;
+import it.unitn.disi.ds1.messages.ResponseMessage;
+import it.unitn.disi.ds1.messages.ResyncMessage;
+import it.unitn.disi.ds1.messages.ResyncRequestMessage;
+import it.unitn.disi.ds1.messages.ResyncResponseMessage;
+import it.unitn.disi.ds1.messages.SummaryUpdateMessage;
+import it.unitn.disi.ds1.structures.MerkleTree;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the resync of a recovering L1 cache and of the summary it keeps at the database
+ * <p>
+ * The database and the L2 caches are probes, so that the messages of the L1 cache can be checked one by one
+ */
+public class ResyncTest {
+    private ActorSystem system;
+    private TestKit database;
+    private TestKit firstChild;
+    private TestKit secondChild;
+    private ActorRef l1;
+
+    @BeforeEach
+    void resetState() {
+        Helper.clearLogFile("logs.txt");
+        Utils.initializeLogger();
+        this.system = Utils.createActorSystem();
+        this.database = new TestKit(this.system);
+        this.firstChild = new TestKit(this.system);
+        this.secondChild = new TestKit(this.system);
+        this.database.ignoreMsg(msg -> !(msg instanceof SummaryUpdateMessage || msg instanceof ReadMessage ||
+                msg instanceof ResyncRequestMessage));
+        this.firstChild.ignoreMsg(msg -> !(msg instanceof ResponseMessage || msg instanceof ResyncMessage));
+        this.secondChild.ignoreMsg(msg -> !(msg instanceof ResponseMessage || msg instanceof ResyncMessage));
+
+        this.l1 = this.system.actorOf(Cache.props(1, this.database.getRef(), this.database.getRef()),
+                "l1-cache-0-1");
+        this.l1.tell(new JoinCachesMessage(Arrays.asList(this.firstChild.getRef(), this.secondChild.getRef())),
+                ActorRef.noSender());
+    }
+
+    @AfterEach
+    void shutdown() {
+        TestKit.shutdownActorSystem(this.system);
+    }
+
+    @DisplayName("Testing that a recovering L1 cache stores the resynced keys and retracts the other ones")
+    @Test
+    void testResync() {
+        Helper.readThroughL1(this.l1, this.database, this.firstChild, 1, 10, 0);
+        Helper.readThroughL1(this.l1, this.database, this.firstChild, 2, 20, 0);
+
+        this.l1.tell(new RecoveryMessage(), ActorRef.noSender());
+        assertEquals(new HashSet<>(Arrays.asList(1, 2)), this.database.expectMsgClass(Helper.WAIT,
+                ResyncRequestMessage.class).keys, "Wrong keys to resync");
+        // Key 2 is not resynced, for instance since it is in the middle of a critical write
+        this.l1.tell(new ResyncResponseMessage(Collections.singletonMap(1, 11), Collections.singletonMap(1, 1)),
+                this.database.getRef());
+
+        ResyncMessage firstResync = this.firstChild.expectMsgClass(Helper.WAIT, ResyncMessage.class);
+        assertEquals(Collections.singletonMap(1, 1), firstResync.seqnos, "Wrong resync of the first child");
+        ResyncMessage secondResync = this.secondChild.expectMsgClass(Helper.WAIT, ResyncMessage.class);
+        assertEquals(Collections.singletonMap(1, 1), secondResync.seqnos, "Wrong resync of the second child");
+        SummaryUpdateMessage update = this.database.expectMsgClass(Helper.WAIT, SummaryUpdateMessage.class);
+        assertEquals(Collections.singleton(2), update.removedKeys, "Wrong keys retracted from the summary");
+        assertTrue(update.addedKeys.isEmpty(), "Keys announced by the resync");
+
+        // The resynced value is served by the L1 cache
+        ResponseMessage response = this.read(this.secondChild, 1);
+        assertEquals(11, response.values.get(1), "Resynced value not stored");
+        assertEquals(1, response.seqno, "Resynced sequence number not stored");
+        this.database.expectNoMessage(Duration.ofMillis(200));
+
+        // The retracted key is announced again before being asked for
+        Helper.readThroughL1(this.l1, this.database, this.secondChild, 2, 21, 1);
+    }
+
+    @DisplayName("Testing that a key evicted by an L1 cache is retracted once no child stores it")
+    @Test
+    void testEviction() {
+        Helper.readThroughL1(this.l1, this.database, this.firstChild, 2, 20, 0);
+
+        // The database does not store the key anymore, the child still does
+        this.l1.tell(new AntiEntropyRepairMessage(Collections.emptyMap(), Collections.emptyMap(),
+                Collections.singleton(2)), this.database.getRef());
+        this.database.expectNoMessage(Duration.ofMillis(200));
+
+        // The child reports that it does not store the key anymore
+        this.l1.tell(new AntiEntropyKeysMessage(Collections.singleton(MerkleTree.leafOf(2, Config.ANTI_ENTROPY_LEAVES)),
+                Collections.emptyMap()), this.firstChild.getRef());
+        this.l1.tell(new AntiEntropyTickMessage(), ActorRef.noSender());
+        SummaryUpdateMessage update = this.database.expectMsgClass(Helper.WAIT, SummaryUpdateMessage.class);
+        assertEquals(Collections.singleton(2), update.removedKeys, "Evicted key not retracted from the summary");
+    }
+
+    /**
+     * Read a key which the L1 cache stores
+     *
+     * @param child probe child asking for the key
+     * @param key   key to read
+     * @return response of the L1 cache
+     */
+    private ResponseMessage read(TestKit child, int key) {
+        this.l1.tell(new ReadMessage(key, Collections.singletonList(child.getRef()), UUID.randomUUID(), false, -1),
+                child.getRef());
+        return child.expectMsgClass(Helper.WAIT, ResponseMessage.class);
+    }
+}
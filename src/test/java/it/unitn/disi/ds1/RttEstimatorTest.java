@@ -0,0 +1,63 @@
+package it.unitn.disi.ds1;
+
+import it.unitn.disi.ds1.structures.RttEstimator;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the round trip time estimator employed for the adaptive timeouts
+ */
+public class RttEstimatorTest {
+
+    @DisplayName("Testing that the timeout adapts to the samples within the floor and the ceiling")
+    @Test
+    void testAdaptiveTimeout() {
+        RttEstimator estimator = new RttEstimator(Config.L2_TIMEOUT, Config.L2_TIMEOUT_MIN, Config.L2_TIMEOUT_MAX);
+        assertEquals(Config.L2_TIMEOUT, estimator.timeout(), "Wrong timeout before any sample");
+
+        // Fast and stable round trip times bring the timeout down to the floor
+        for (int i = 0; i < 50; i++) {
+            estimator.sample(20);
+        }
+        assertEquals(Config.L2_TIMEOUT_MIN, estimator.timeout(), "Timeout not clamped to the floor");
+
+        // Slow round trip times bring the timeout up to the ceiling
+        for (int i = 0; i < 50; i++) {
+            estimator.sample(5000);
+        }
+        assertEquals(Config.L2_TIMEOUT_MAX, estimator.timeout(), "Timeout not clamped to the ceiling");
+    }
+
+    @DisplayName("Testing that a timeout doubles the timeout until the next sample")
+    @Test
+    void testBackoff() {
+        RttEstimator estimator = new RttEstimator(100, 10, 10000);
+        estimator.backoff();
+        assertEquals(200, estimator.timeout(), "Timeout not doubled by the back-off");
+        estimator.backoff();
+        assertEquals(400, estimator.timeout(), "Timeout not doubled by the second back-off");
+
+        // 20 ms of smoothed round trip time plus four times 10 ms of variation
+        estimator.sample(20);
+        assertEquals(60, estimator.timeout(), "Back-off not reset by a new sample");
+    }
+
+    @DisplayName("Testing that the client timeout never fires before the timeouts of the caches")
+    @Test
+    void testClientTimeoutFloor() {
+        RttEstimator estimator = new RttEstimator(Config.CLIENT_TIMEOUT, Config.CLIENT_TIMEOUT_MIN,
+                Config.CLIENT_TIMEOUT_MAX);
+        assertTrue(Config.CLIENT_TIMEOUT >= Config.CLIENT_TIMEOUT_MIN, "Initial client timeout below its floor");
+
+        // Fast round trip times bring the client timeout down to its floor, which is still beyond the caches
+        for (int i = 0; i < 50; i++) {
+            estimator.sample(20);
+        }
+        assertTrue(estimator.timeout() > Config.L2_TIMEOUT_MAX, "Client gives up before the L2 timeout");
+        assertTrue(estimator.timeout() > Config.CRIT_WRITE_TIME_OUT_MAX,
+                "Client gives up before the critical write timeout");
+    }
+}
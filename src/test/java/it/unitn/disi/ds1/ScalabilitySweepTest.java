@@ -0,0 +1,44 @@
+package it.unitn.disi.ds1;
+
+import it.unitn.disi.ds1.structures.KeyDistribution;
+import it.unitn.disi.ds1.structures.OperationMix;
+import it.unitn.disi.ds1.structures.ScalabilityReport;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the scalability sweep, run by the perfTest task instead of the test one
+ */
+@Tag("performance")
+public class ScalabilitySweepTest {
+    @DisplayName("Testing that the sweep runs the load against each architecture of the grid")
+    @Test
+    void testSweep() {
+        Helper.clearLogFile("logs.txt");
+        Utils.initializeLogger();
+        ScalabilityReport report = new ScalabilitySweep(20, 2, KeyDistribution.Type.UNIFORM,
+                OperationMix.parse(Config.LOAD_DEFAULT_MIX)).run(Arrays.asList(1, 2), Collections.singletonList(1),
+                Collections.singletonList(2));
+        assertEquals(2, report.points().size(), "Missing points");
+
+        for (ScalabilityReport.Point point : report.points()) {
+            assertEquals(40, point.load.scheduled(), "Wrong number of scheduled operations");
+            assertTrue(point.databaseMessages() > 0, "No message reached the database");
+            assertTrue(point.heapBytes > 0, "Missing heap usage");
+        }
+        assertEquals(7, report.points().get(1).actors(), "Wrong number of actors");
+
+        String[] rows = report.toCsv().split("\n");
+        assertEquals(3, rows.length, "Wrong number of rows");
+        assertTrue(rows[0].startsWith("l1,l2,clients,"), "Missing header");
+        assertTrue(rows[2].startsWith("2,1,2,7,20.000,"), "Wrong row: " + rows[2]);
+        assertEquals(rows[0].split(",").length, rows[2].split(",", -1).length, "Wrong number of columns");
+    }
+}
@@ -0,0 +1,89 @@
+package it.unitn.disi.ds1;
+
+import akka.actor.ActorSystem;
+import it.unitn.disi.ds1.structures.Architecture;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the deterministic simulation mode
+ */
+public class SimulationTest {
+    /**
+     * Basic information about the created architecture
+     */
+    private final int countL1 = 2, countL2 = 2, countClients = 4;
+
+    @AfterEach
+    void stopSimulation() {
+        Simulation.stop();
+    }
+
+    /**
+     * Run a scenario of random requests and crashes in virtual time
+     *
+     * @param seed    seed of the simulation
+     * @param seconds seconds of virtual time during which the actions are scheduled
+     * @return lines of the log file, without their timestamps
+     */
+    private List<String> runScenario(long seed, int seconds) throws IOException {
+        Simulation.start(seed);
+        Map<Integer, Integer> database = Utils.createDatabase();
+
+        Helper.clearLogFile("logs.txt");
+        Utils.initializeLogger();
+        Logger.logConfig(this.countL1, this.countL2, this.countClients);
+        Logger.logDatabase(database);
+        ActorSystem system = Utils.createActorSystem();
+        Architecture architecture = Utils.createArchiteture(system, database, countL1, countL2, countClients);
+
+        for (int i = 0; i < seconds; i++) {
+            Utils.randomAction(system, architecture, database, 0, 1000, 0.1f);
+            Utils.randomAction(system, architecture, database, 0, 1000, 0.1f);
+            Utils.timeout(1000);
+        }
+        // Let the crashed caches recover and the pending requests end
+        Utils.timeout(Config.MAX_RECOVERY_IN + 5000);
+        Simulation.terminate(system);
+        Simulation.stop();
+
+        // The log timestamps are the ones of the wall clock
+        return Files.readAllLines(Paths.get("logs.txt")).stream()
+                .map(line -> line.replaceFirst("^(FINE:FINE\t)[^\t]*", "$1"))
+                .collect(Collectors.toList());
+    }
+
+    @DisplayName("Testing that the runs with the same seed are identical")
+    @Test
+    void testSameSeedSameRun() throws IOException {
+        List<String> first = this.runScenario(42, 20);
+        List<String> second = this.runScenario(42, 20);
+        assertTrue(first.size() > 50, "Too few messages logged: " + first.size());
+        assertEquals(first, second, "Different runs with the same seed");
+
+        List<String> other = this.runScenario(43, 20);
+        assertTrue(!first.equals(other), "Same run with a different seed");
+    }
+
+    @DisplayName("Testing that a long run with crashes takes a few seconds and stays consistent")
+    @Test
+    void testLongRunInVirtualTime() throws IOException {
+        long startedAt = System.currentTimeMillis();
+        this.runScenario(7, 120);
+        long elapsed = System.currentTimeMillis() - startedAt;
+
+        assertTrue(elapsed < 30000, "Simulation too slow: " + elapsed + " ms");
+        assertTrue(Checker.check(), "Not consistent");
+    }
+}
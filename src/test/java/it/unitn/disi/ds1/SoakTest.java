@@ -0,0 +1,57 @@
+package it.unitn.disi.ds1;
+
+import it.unitn.disi.ds1.structures.KeyDistribution;
+import it.unitn.disi.ds1.structures.Metrics;
+import it.unitn.disi.ds1.structures.OperationMix;
+import it.unitn.disi.ds1.structures.SoakReport;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the soak test, run by the perfTest task instead of the test one
+ */
+@Tag("performance")
+public class SoakTest {
+    @DisplayName("Testing that a short soak test with crashes samples the actors without leaking")
+    @Test
+    void testSoak() {
+        SoakReport report = new Soak(1, 2, 2, 20, KeyDistribution.Type.ZIPFIAN,
+                OperationMix.parse(Config.LOAD_DEFAULT_MIX)).run(24);
+        assertFalse(report.samples().isEmpty(), "Missing samples");
+
+        long operations = 0;
+        for (SoakReport.Sample sample : report.samples()) {
+            operations += sample.operations;
+            assertTrue(sample.heapBytes > 0, "Missing heap in use");
+        }
+        assertTrue(operations > 0, "No operation has succeeded");
+        assertTrue(report.samples().get(report.samples().size() - 1).crashes > 0, "No cache has crashed");
+        assertEquals(Collections.emptyList(), report.leaks(), "Some state has leaked");
+        assertTrue(report.toCsv().startsWith("millis,operations,failed,crashes,timers,"), "Wrong CSV header");
+    }
+
+    @DisplayName("Testing that only the gauges which keep growing after the warm up are reported as leaks")
+    @Test
+    void testLeaks() {
+        SoakReport report = new SoakReport();
+        for (int i = 0; i < 20; i++) {
+            Metrics metrics = new Metrics();
+            // Pending queries and sequence numbers keep growing, timers settle after the warm up and drop at a crash
+            metrics.set(Metrics.Gauge.PENDING_QUERIES, 100L * i);
+            metrics.set(Metrics.Gauge.SEQNOS, 100L * i);
+            metrics.set(Metrics.Gauge.TIMERS, i < 5 ? 20L * i : (i == 12 ? 0 : 100));
+            report.add(new SoakReport.Sample(1000L * i, 10, 0, metrics, 1024 * 1024));
+        }
+
+        assertEquals(1, report.leaks().size(), "Wrong number of leaks: " + report.leaks());
+        assertTrue(report.leaks().get(0).startsWith("PENDING_QUERIES"), "Wrong leak");
+        assertEquals(21, report.toCsv().split("\n").length, "Wrong number of CSV rows");
+    }
+}
@@ -0,0 +1,106 @@
+package it.unitn.disi.ds1;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import it.unitn.disi.ds1.messages.ReadMessage;
+import it.unitn.disi.ds1.structures.Architecture;
+import it.unitn.disi.ds1.structures.Span;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the tracing of the requests across the tree of caches
+ */
+public class TracerTest {
+    /**
+     * Identifiers and name of an exported span
+     */
+    private final static Pattern SPAN = Pattern.compile(
+            "\"traceId\":\"(\\w+)\",\"spanId\":\"(\\w+)\"(?:,\"parentSpanId\":\"(\\w+)\")?,\"name\":\"([^\"]+)\"");
+
+    @DisplayName("Testing that a span is encoded in the OTLP/JSON format")
+    @Test
+    void testSpanJson() {
+        Span span = new Span("0af7651916cd43dd8448eb211c80319c", "b7ad6b7169203331", "00f067aa0ba902b7",
+                "Cache \"ReadMessage\"", 1000);
+        span.setAttribute("actor", "l1_1");
+        span.addToAttribute("network_delay_ms", 3);
+        span.addToAttribute("network_delay_ms", 4);
+        span.setAttribute("ratio", 0.5);
+        span.end(2500);
+
+        assertEquals("{\"traceId\":\"0af7651916cd43dd8448eb211c80319c\",\"spanId\":\"b7ad6b7169203331\"," +
+                "\"parentSpanId\":\"00f067aa0ba902b7\",\"name\":\"Cache \\\"ReadMessage\\\"\",\"kind\":1," +
+                "\"startTimeUnixNano\":\"1000\",\"endTimeUnixNano\":\"2500\",\"attributes\":[" +
+                "{\"key\":\"actor\",\"value\":{\"stringValue\":\"l1_1\"}}," +
+                "{\"key\":\"network_delay_ms\",\"value\":{\"intValue\":\"7\"}}," +
+                "{\"key\":\"ratio\",\"value\":{\"doubleValue\":0.5}}]}", span.toJson(), "Wrong encoding");
+    }
+
+    @DisplayName("Testing that the hops of a read are exported as the spans of a single trace")
+    @Test
+    void testReadTrace() throws IOException {
+        File traces = File.createTempFile("traces", ".json");
+        traces.deleteOnExit();
+
+        Helper.clearLogFile("logs.txt");
+        Utils.initializeLogger();
+        ActorSystem system = Utils.createActorSystem();
+        Map<Integer, Integer> database = Utils.createDatabase();
+        Architecture architecture = Utils.createArchiteture(system, database, 1, 1, 1);
+        Logger.logConfig(1, 1, 1);
+        Logger.logDatabase(database);
+
+        int key = (int) database.keySet().toArray()[0];
+        Tracer.start(traces.getPath());
+        try {
+            architecture.clients.get(0).tell(new ReadMessage(key, new ArrayList<>(), null, false, -1),
+                    ActorRef.noSender());
+            Utils.timeout(500);
+        } finally {
+            Tracer.stop();
+            system.terminate();
+        }
+
+        // Spans of each trace, by span identifier
+        Map<String, Map<String, String>> parents = new HashMap<>();
+        Map<String, List<String>> names = new HashMap<>();
+        String readTrace = null;
+        for (String line : Files.readAllLines(traces.toPath(), StandardCharsets.UTF_8)) {
+            Matcher matcher = SPAN.matcher(line);
+            assertTrue(matcher.find(), "Line without a span: " + line);
+            parents.computeIfAbsent(matcher.group(1), k -> new HashMap<>()).put(matcher.group(2), matcher.group(3));
+            names.computeIfAbsent(matcher.group(1), k -> new ArrayList<>()).add(matcher.group(4));
+            if (matcher.group(3) == null && matcher.group(4).equals("Client ReadMessage")) {
+                readTrace = matcher.group(1);
+            }
+        }
+        assertNotNull(readTrace, "No trace of the read");
+
+        // Client, L2 and L1 cache, database, then the response back through the caches to the client
+        Set<String> spans = new HashSet<>(names.get(readTrace));
+        assertEquals(7, names.get(readTrace).size(), "Wrong number of spans: " + names.get(readTrace));
+        assertTrue(spans.contains("Database ReadMessage"), "The read has not reached the database");
+        assertTrue(spans.contains("Client ResponseMessage"), "The response has not reached the client");
+        for (String parent : parents.get(readTrace).values()) {
+            assertTrue(parent == null || parents.get(readTrace).containsKey(parent), "Dangling parent span");
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package it.unitn.disi.ds1;
+
+import it.unitn.disi.ds1.structures.KeyDistribution;
+import it.unitn.disi.ds1.structures.OperationMix;
+import it.unitn.disi.ds1.structures.WorkloadProfile;
+import it.unitn.disi.ds1.structures.WorkloadReport;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the workload profiles and of their runner
+ */
+public class WorkloadProfileTest {
+    @DisplayName("Testing the operation mixes of the profiles in the two protocol modes")
+    @Test
+    void testProfileMixes() {
+        OperationMix eventual = WorkloadProfile.A.mix(WorkloadProfile.Mode.EVENTUAL);
+        assertEquals(0.5, eventual.fraction(Config.RequestType.WRITE), 1e-9, "Wrong share of writes");
+        assertEquals(0.0, eventual.fraction(Config.RequestType.CRITREAD), 1e-9, "Critical reads in eventual mode");
+
+        OperationMix critical = WorkloadProfile.B.mix(WorkloadProfile.Mode.CRITICAL);
+        assertEquals(0.95, critical.fraction(Config.RequestType.CRITREAD), 1e-9, "Wrong share of critical reads");
+        assertEquals(0.0, critical.fraction(Config.RequestType.READ), 1e-9, "Plain reads in critical mode");
+
+        assertEquals(1.0, WorkloadProfile.C.mix(WorkloadProfile.Mode.EVENTUAL).fraction(Config.RequestType.READ),
+                1e-9, "Updates in the read only profile");
+        assertEquals(2.0 / 3, WorkloadProfile.F.mix(WorkloadProfile.Mode.EVENTUAL).fraction(Config.RequestType.READ),
+                1e-9, "A read-modify-write is not a read and a write");
+    }
+
+    @DisplayName("Testing that the latest distribution favours the most recently written keys")
+    @Test
+    void testLatestDistribution() {
+        KeyDistribution distribution = new KeyDistribution(KeyDistribution.Type.LATEST,
+                IntStream.range(0, 100).boxed().collect(Collectors.toList()));
+        distribution.recordWrite(42);
+        Random random = new Random(42);
+        int latest = 0;
+        for (int i = 0; i < 10000; i++) {
+            latest += distribution.next(random) == 42 ? 1 : 0;
+        }
+        // The most recent key is the hottest Zipfian one, drawn about 19% of the times
+        assertEquals(0.19, latest / 10000.0, 0.02, "Wrong frequency of the latest key");
+    }
+
+    @DisplayName("Testing that the runner reports the metrics of each level of the tree")
+    @Test
+    void testRunner() {
+        Helper.clearLogFile("logs.txt");
+        Utils.initializeLogger();
+        WorkloadReport report = new WorkloadRunner(2, 2, 4, 20, 2).run(
+                Collections.singletonList(WorkloadProfile.B), Collections.singletonList(WorkloadProfile.Mode.EVENTUAL));
+        assertEquals(1, report.runs().size(), "Missing run");
+
+        WorkloadReport.Run run = report.runs().get(0);
+        assertEquals(40, run.load.scheduled(), "Wrong number of scheduled operations");
+        assertNotNull(run.l1, "Missing metrics of the L1 caches");
+        assertEquals(2, run.l1.actors(), "The metrics of the L1 caches include their subtrees");
+        assertEquals(4, run.l2.actors(), "Missing metrics of some L2 caches");
+        assertEquals(1, run.database.actors(), "The metrics of the database include its subtree");
+        assertFalse(Double.isNaN(WorkloadReport.hitRatio(run.l2)), "No read reached the L2 caches");
+        assertTrue(run.databaseReads() > 0, "No read reached the database");
+        assertTrue(report.toTable().contains("B/EVENTUAL"), "Missing run in the table");
+        assertTrue(report.toJson().startsWith("[{\"profile\":\"B\""), "Missing run in the JSON report");
+    }
+}
@@ -0,0 +1,185 @@
+package it.unitn.disi.ds1;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.testkit.javadsl.TestKit;
+import it.unitn.disi.ds1.actors.Database;
+import it.unitn.disi.ds1.messages.JoinCachesMessage;
+import it.unitn.disi.ds1.messages.ReadMessage;
+import it.unitn.disi.ds1.messages.ResponseMessage;
+import it.unitn.disi.ds1.messages.SummaryUpdateMessage;
+import it.unitn.disi.ds1.messages.WriteBatchMessage;
+import it.unitn.disi.ds1.messages.WriteMessage;
+import it.unitn.disi.ds1.structures.Architecture;
+import it.unitn.disi.ds1.structures.DistributedCacheNode;
+import it.unitn.disi.ds1.structures.WriteBatch;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the batches of write updates propagated by the parents to their children
+ */
+public class WriteBatchTest {
+    /**
+     * Longest time to wait for a message
+     */
+    private static final Duration WAIT = Duration.ofSeconds(3);
+
+    private ActorSystem system;
+    private Map<Integer, Integer> database;
+
+    @BeforeEach
+    void resetState() {
+        Helper.clearLogFile("logs.txt");
+        Utils.initializeLogger();
+        this.system = Utils.createActorSystem();
+        this.database = Utils.createDatabase();
+    }
+
+    @AfterEach
+    void shutdown() {
+        TestKit.shutdownActorSystem(this.system);
+    }
+
+    @DisplayName("Testing that repeated updates of a key collapse into the one with the highest sequence number")
+    @Test
+    void testCollapse() {
+        UUID first = UUID.randomUUID(), second = UUID.randomUUID();
+        WriteBatch batch = new WriteBatch();
+        batch.put(1, 10, 1, first);
+        batch.put(1, 30, 3, second);
+        // An older update arriving later does not replace the newer one
+        batch.put(1, 20, 2, UUID.randomUUID());
+        batch.put(2, 40, 1, first);
+
+        assertEquals(2, batch.size(), "Wrong number of updates");
+        assertEquals(30, batch.values.get(1), "Older value kept");
+        assertEquals(3, batch.seqnos.get(1), "Older sequence number kept");
+        assertEquals(second, batch.queryUUIDs.get(1), "Wrong write of the update");
+
+        batch.remove(1);
+        batch.remove(2);
+        assertTrue(batch.isEmpty(), "Removed updates still in the batch");
+    }
+
+    @DisplayName("Testing that the writes reach the other L1 caches in batches, each key with its latest sequence number")
+    @Test
+    void testBatching() {
+        TestKit requester = new TestKit(this.system);
+        TestKit follower = new TestKit(this.system);
+        requester.ignoreMsg(msg -> !(msg instanceof ResponseMessage));
+        follower.ignoreMsg(msg -> !(msg instanceof WriteBatchMessage));
+        ActorRef db = this.system.actorOf(Database.props(0, this.database), "database-0");
+        db.tell(new JoinCachesMessage(Arrays.asList(requester.getRef(), follower.getRef())), ActorRef.noSender());
+
+        // The follower stores only the first two keys
+        int writes = 5;
+        db.tell(new SummaryUpdateMessage(new HashSet<>(Arrays.asList(1, 2)), Collections.emptySet()),
+                follower.getRef());
+        for (int i = 1; i <= writes; i++) {
+            for (int key = 1; key <= 3; key++) {
+                db.tell(new WriteMessage(key, i, Collections.singletonList(requester.getRef()), UUID.randomUUID(),
+                        false), requester.getRef());
+            }
+        }
+
+        // The L1 cache which has forwarded the writes receives each of them right away
+        for (int i = 0; i < 3 * writes; i++) {
+            ResponseMessage response = requester.expectMsgClass(WAIT, ResponseMessage.class);
+            assertEquals(1, response.values.size(), "Wrong response to the write");
+        }
+
+        int batches = 0;
+        int[] seqnos = new int[3];
+        while (seqnos[1] < writes || seqnos[2] < writes) {
+            WriteBatchMessage batch = follower.expectMsgClass(WAIT, WriteBatchMessage.class);
+            batches++;
+            assertFalse(batch.values.containsKey(3), "Key not stored by the follower propagated");
+            assertTrue(batch.values.size() <= Config.WRITE_BATCH_MAX_SIZE, "Batch larger than its maximum size");
+            for (Map.Entry<Integer, Integer> update : batch.seqnos.entrySet()) {
+                assertTrue(update.getValue() > seqnos[update.getKey()], "Older update propagated after a newer one");
+                seqnos[update.getKey()] = update.getValue();
+                assertEquals(update.getValue(), batch.values.get(update.getKey()), "Wrong value of the update");
+            }
+        }
+        assertTrue(batches < 2 * writes, "Updates not batched: " + batches + " batches for " + 2 * writes +
+                " writes");
+        follower.expectNoMessage(Duration.ofMillis(3L * Config.WRITE_BATCH_WINDOW_MS));
+    }
+
+    @DisplayName("Testing that a batched write reaches every L2 cache, which serves it without its parent")
+    @Test
+    void testBatchedWriteReachesEveryL2() {
+        Architecture architecture = Utils.createArchiteture(this.system, this.database, 2, 2, 0);
+        TestKit client = new TestKit(this.system);
+        client.ignoreMsg(msg -> !(msg instanceof ResponseMessage));
+        List<ActorRef> l2Caches = new ArrayList<>();
+        for (DistributedCacheNode l1 : architecture.cacheTree.database.children) {
+            for (DistributedCacheNode l2 : l1.children) {
+                l2Caches.add(l2.actor);
+            }
+        }
+        int key = 7;
+
+        // Every L2 cache stores the key
+        for (ActorRef l2 : l2Caches) {
+            this.read(client, l2, key);
+        }
+
+        // The writes go through the first L2 cache, all the others receive them in batches
+        int writes = 3;
+        for (int i = 1; i <= writes; i++) {
+            l2Caches.get(0).tell(new WriteMessage(key, 100 + i, Collections.singletonList(client.getRef()),
+                    UUID.randomUUID(), false), client.getRef());
+            ResponseMessage response = client.expectMsgClass(WAIT, ResponseMessage.class);
+            assertEquals(i, response.seqno, "Wrong sequence number of the write");
+        }
+        Utils.timeout(10 * Config.WRITE_BATCH_WINDOW_MS);
+
+        // Without their parents, the L2 caches can only serve the key from their own storage
+        TestKit watcher = new TestKit(this.system);
+        for (DistributedCacheNode l1 : architecture.cacheTree.database.children) {
+            watcher.watch(l1.actor);
+            this.system.stop(l1.actor);
+            watcher.expectTerminated(WAIT, l1.actor);
+        }
+        for (ActorRef l2 : l2Caches) {
+            ResponseMessage response = this.read(client, l2, key);
+            assertEquals(writes, response.seqno, "Stale sequence number at " + l2.path().name());
+            assertEquals(100 + writes, response.values.get(key), "Stale value at " + l2.path().name());
+        }
+    }
+
+    /**
+     * Read a key from an L2 cache on behalf of a probe client
+     *
+     * @param client probe client
+     * @param l2     L2 cache to ask
+     * @param key    key to read
+     * @return response of the L2 cache
+     */
+    private ResponseMessage read(TestKit client, ActorRef l2, int key) {
+        l2.tell(new ReadMessage(key, Collections.singletonList(client.getRef()), UUID.randomUUID(), false, -1),
+                client.getRef());
+        ResponseMessage response = client.expectMsgClass(WAIT, ResponseMessage.class);
+        assertNotNull(response.values, "Read of key " + key + " failed at " + l2.path().name());
+        assertTrue(response.values.containsKey(key), "Read of key " + key + " failed at " + l2.path().name());
+        return response;
+    }
+}